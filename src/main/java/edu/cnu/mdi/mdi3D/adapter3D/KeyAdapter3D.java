@@ -64,32 +64,30 @@ public class KeyAdapter3D implements KeyListener {
 			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_X) {
 			panel3D.rotateX(ang);
-			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_Y) {
 			panel3D.rotateY(ang);
-			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_Z) {
 			panel3D.rotateZ(ang);
-			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_1) { // x out
 			panel3D.loadIdentityMatrix();
 			panel3D.rotateX(180f);
 			panel3D.rotateY(90f);
-			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_2) { // y out3
 			panel3D.loadIdentityMatrix();
 			panel3D.rotateZ(-90f);
 			panel3D.rotateY(-90f);
-			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_3) { // z out
 			panel3D.loadIdentityMatrix();
 			panel3D.refresh();
 		} else if (keyCode == KeyEvent.VK_4) { // z in
 			panel3D.loadIdentityMatrix();
 			panel3D.rotateY(180f);
-			panel3D.refresh();
+		} else {
+			return;
 		}
 
+		// the redraw is queued, so it is drawn at interaction quality
+		panel3D.interacting();
 	}
 
 	@Override
@@ -81,6 +81,9 @@ public class KeyBindings3D {
 				return;
 			}
 
+			// every binding moves the camera
+			_panel3D.interacting();
+
 			String command = e.getActionCommand();
 
 			float step = _panel3D.getZStep();
@@ -105,41 +108,32 @@ public class KeyBindings3D {
 				_panel3D.refresh();
 			} else if ("x".equals(command)) {
 				_panel3D.rotateX(DTHETA);
-				_panel3D.refresh();
 			} else if ("y".equals(command)) {
 				_panel3D.rotateY(DTHETA);
-				_panel3D.refresh();
 			} else if ("z".equals(command)) {
 				_panel3D.rotateZ(DTHETA);
-				_panel3D.refresh();
 			} else if ("X".equals(command)) {
 				_panel3D.rotateX(-DTHETA);
-				_panel3D.refresh();
 			} else if ("Y".equals(command)) {
 				_panel3D.rotateY(-DTHETA);
-				_panel3D.refresh();
 			} else if ("Z".equals(command)) {
 				_panel3D.rotateZ(-DTHETA);
-				_panel3D.refresh();
 			}
 
 			else if ("1".equals(command)) {
 				_panel3D.loadIdentityMatrix();
 				_panel3D.rotateX(180f);
 				_panel3D.rotateY(90f);
-				_panel3D.refresh();
 			} else if ("2".equals(command)) {
 				_panel3D.loadIdentityMatrix();
 				_panel3D.rotateZ(-90f);
 				_panel3D.rotateY(-90f);
-				_panel3D.refresh();
 			} else if ("3".equals(command)) {
 				_panel3D.loadIdentityMatrix();
 				_panel3D.refresh();
 			} else if ("4".equals(command)) {
 				_panel3D.loadIdentityMatrix();
 				_panel3D.rotateY(180f);
-				_panel3D.refresh();
 			}
 
 		}
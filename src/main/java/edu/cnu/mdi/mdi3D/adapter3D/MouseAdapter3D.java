@@ -35,6 +35,7 @@ public class MouseAdapter3D implements MouseListener, MouseMotionListener, Mouse
 
 	@Override
 	public void mouseDragged(MouseEvent e) {
+		_panel3D.interacting();
 
 		final int x = e.getX();
 		final int y = e.getY();
@@ -70,11 +71,9 @@ public class MouseAdapter3D implements MouseListener, MouseMotionListener, Mouse
 			_panel3D.rotate(axis, angle);
 		}
 
+		// rotate() requests the redraw
 		prevMouseX = x;
 		prevMouseY = y;
-
-		_panel3D.refresh();
-
 	}
 
 	/**
@@ -94,10 +93,14 @@ public class MouseAdapter3D implements MouseListener, MouseMotionListener, Mouse
 
 	@Override
 	public void mouseMoved(MouseEvent e) {
+		if (_panel3D.isHoverPicking()) {
+			_panel3D.hoverMoved(e);
+		}
 	}
 
 	@Override
 	public void mouseClicked(MouseEvent e) {
+		_panel3D.itemClicked(_panel3D.pick(e.getX(), e.getY()), e);
 	}
 
 	@Override
@@ -121,6 +124,7 @@ public class MouseAdapter3D implements MouseListener, MouseMotionListener, Mouse
 		}
 
 		lastWheelEventTime = now;
+		_panel3D.interacting();
 
 		int clicks = e.getWheelRotation();
 		float maxZoomStep = _panel3D.getZStep() * 5; // Cap maximum zoom step
@@ -0,0 +1,117 @@
+package edu.cnu.mdi.mdi3D.item3D;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL2;
+
+import edu.cnu.mdi.mdi3D.panel.Glyphs3D;
+import edu.cnu.mdi.mdi3D.panel.MeshCache3D;
+import edu.cnu.mdi.mdi3D.panel.Panel3D;
+
+/**
+ * A set of arrows, e.g. a vector field, given as packed arrays of tails and
+ * tips. Each arrow is a tube (the shaft) and a cone (the head). All the shafts
+ * are one instanced draw of a cached unit cylinder and all the heads one of a
+ * cached unit cone (see {@link Glyphs3D}).
+ */
+public class ArrowSet3D extends CylinderSet3D {
+
+	// the heads
+	private final Glyphs3D _heads = new Glyphs3D(MeshCache3D.Primitive.CONE, SLICES, 1);
+
+	// the head length as a fraction of the arrow length
+	private float _headLength = 0.25f;
+
+	// the head radius as a multiple of the shaft radius
+	private float _headRadius = 2.5f;
+
+	/**
+	 * Create a set of arrows with their own radii and colors.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param ends    the tails and tips as [x1, y1, z1, x2, y2, z2, ...]
+	 * @param radii   the shaft radius of each arrow
+	 * @param colors  the color of each arrow as ARGB, as
+	 *                <code>Color.getRGB()</code>
+	 */
+	public ArrowSet3D(Panel3D panel3D, float[] ends, float[] radii, int[] colors) {
+		super(panel3D, ends, radii, colors);
+	}
+
+	/**
+	 * Create a set of same radius and color arrows.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param ends    the tails and tips as [x1, y1, z1, x2, y2, z2, ...]
+	 * @param radius  the shaft radius of the arrows
+	 * @param color   the color of the arrows
+	 */
+	public ArrowSet3D(Panel3D panel3D, float[] ends, float radius, Color color) {
+		super(panel3D, ends, radius, color);
+	}
+
+	/**
+	 * Set the shape of the heads.
+	 *
+	 * @param length the head length as a fraction of the arrow length (0 to 1)
+	 * @param radius the head radius as a multiple of the shaft radius
+	 */
+	public void setHead(float length, float radius) {
+		_headLength = Math.max(0f, Math.min(1f, length));
+		_headRadius = radius;
+		markDirty();
+	}
+
+	@Override
+	public void setShaded(boolean shaded) {
+		super.setShaded(shaded);
+		_heads.setShaded(shaded);
+	}
+
+	@Override
+	protected void updateShapes() {
+		float[] ends = getEnds();
+		int n = getCount();
+		float s = 1f - _headLength;
+
+		Glyphs3D shafts = getTubes();
+		shafts.setCount(n);
+		_heads.setCount(n);
+		for (int i = 0; i < n; i++) {
+			int k = 6 * i;
+			float x1 = ends[k];
+			float y1 = ends[k + 1];
+			float z1 = ends[k + 2];
+			float x2 = ends[k + 3];
+			float y2 = ends[k + 4];
+			float z2 = ends[k + 5];
+
+			// the shaft ends where the head starts
+			float xh = x1 + s * (x2 - x1);
+			float yh = y1 + s * (y2 - y1);
+			float zh = z1 + s * (z2 - z1);
+
+			float r = getRadius(i);
+			int argb = getColor(i);
+			shafts.set(i, x1, y1, z1, xh, yh, zh, r, argb);
+			_heads.set(i, xh, yh, zh, x2, y2, z2, _headRadius * r, argb);
+		}
+	}
+
+	@Override
+	protected void drawShapes(GL2 gl) {
+		super.drawShapes(gl);
+		_heads.draw(gl);
+	}
+
+	@Override
+	protected float getOuterRadius(int index) {
+		return Math.max(1f, _headRadius) * getRadius(index);
+	}
+
+	@Override
+	protected void disposeShapes(GL2 gl) {
+		super.disposeShapes(gl);
+		_heads.dispose(gl);
+	}
+}
@@ -10,6 +10,7 @@ import com.jogamp.opengl.util.awt.TextRenderer;
 
 import edu.cnu.mdi.format.DoubleFormat;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.RenderState3D;
 
 public class Axis3D extends Line3D {
 
@@ -43,6 +44,12 @@ public class Axis3D extends Line3D {
 	/** text renderer */
 	private TextRenderer _renderer;
 
+	// text anchors as [x, y, z, ...] (axis label first, then ticks), their
+	// window positions, and the tick label strings
+	private float _textCoords[];
+	private float _textWin[];
+	private String _textStrings[];
+
 	// if null will use default
 	private final String _label;
 
@@ -162,7 +169,10 @@ public class Axis3D extends Line3D {
 		super.draw(drawable);
 		GL2 gl = drawable.getGL().getGL2();
 
-		// now the text
+		// now the text, unless the user is moving the camera
+		if (_panel3D.getInteractionQuality().isHidingLabels()) {
+			return;
+		}
 
 		if (_renderer == null) {
 			_renderer = new TextRenderer(getFont());
@@ -185,42 +195,62 @@ public class Axis3D extends Line3D {
 		}
 
 		FontMetrics fm = _panel3D.getFontMetrics(getFont());
-		float winPos[] = new float[3];
-
-		float extend[] = new float[3];
+		int yoff = fm.getHeight() + 4;
 
-		double extLen = Math.abs(Math.max(getX1(), Math.max(getY1(), getZ1()))) / 10;
-		extendedPoint(1, (float) extLen, extend);
-
-		_panel3D.project(gl, extend[0], extend[1], extend[2], winPos);
-		// _panel3D.project(gl, getX1(), getY1(), getZ1(), winPos);
-		int x = (int) winPos[0] + 4;
-		int y = (int) winPos[1] - (fm.getHeight() + 4);
+		// project the axis label anchor and all the tick anchors in one batch
+		if (_textCoords == null) {
+			buildTextAnchors();
+		}
+		_panel3D.project(_textCoords, _textWin);
 
 		_renderer.beginRendering(drawable.getSurfaceWidth(), drawable.getSurfaceHeight());
 		_renderer.setColor(getTextColor());
-		_renderer.draw(s, x, y);
+		for (int k = 0; k < _textStrings.length; k++) {
+			// skip anchors behind the eye
+			if ((_textStrings[k] != null) && !Float.isNaN(_textWin[3 * k])) {
+				int x = (int) _textWin[3 * k] + 4;
+				int y = (int) _textWin[3 * k + 1] - yoff;
+				_renderer.draw(k == 0 ? s : _textStrings[k], x, y);
+			}
+		}
 		_renderer.endRendering();
 
-		// axis values
+		// the text renderer changed the current color
+		RenderState3D.invalidate(gl);
+
+	}
+
+	// the text anchors never move, so they and the tick labels are built once
+	private void buildTextAnchors() {
+		int count = 1;
 		if (_numDec >= 0) {
-			for (int i = 0; i < _numTick; i++) {
-
-				if (_lines1[i] != null) {
-					s = DoubleFormat.doubleFormat(_vals[i] + _offset, _numDec);
-					_panel3D.project(gl, _lines1[i].getX1(), _lines1[i].getY1(), _lines1[i].getZ1(), winPos);
-					x = (int) winPos[0] + 4;
-					y = (int) winPos[1] - (fm.getHeight() + 4);
-
-					_renderer.beginRendering(drawable.getSurfaceWidth(), drawable.getSurfaceHeight());
-					_renderer.setColor(getTextColor());
-					_renderer.draw(s, x, y);
-					_renderer.endRendering();
-				}
-			}
+			count += _numTick;
+		}
 
+		float coords[] = new float[3 * count];
+		String strings[] = new String[count];
+
+		// the axis label, slightly beyond the end of the axis
+		double extLen = Math.abs(Math.max(getX1(), Math.max(getY1(), getZ1()))) / 10;
+		float extend[] = new float[3];
+		extendedPoint(1, (float) extLen, extend);
+		System.arraycopy(extend, 0, coords, 0, 3);
+		strings[0] = ""; // replaced by the current label when drawn
+
+		// the axis values
+		for (int i = 1; i < count; i++) {
+			Line3D tick = _lines1[i - 1];
+			if (tick != null) {
+				coords[3 * i] = tick.getX1();
+				coords[3 * i + 1] = tick.getY1();
+				coords[3 * i + 2] = tick.getZ1();
+				strings[i] = DoubleFormat.doubleFormat(_vals[i - 1] + _offset, _numDec);
+			}
 		}
 
+		_textWin = new float[coords.length];
+		_textStrings = strings;
+		_textCoords = coords;
 	}
 
 	private static float[] getEndpoints(AxisType type, float vmin, float vmax) {
@@ -4,7 +4,10 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
 public class Cube extends Item3D {
@@ -57,5 +60,16 @@ public class Cube extends Item3D {
 		return new float[] { xc, yc, zc };
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		float h = length / 2;
+		bounds.include(xc - h, yc - h, zc - h);
+		bounds.include(xc + h, yc + h, zc + h);
+	}
 
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		float h = length / 2;
+		return result.offer(this, ray.hitBox(xc - h, yc - h, zc - h, xc + h, yc + h, zc + h), -1);
+	}
 }
@@ -4,6 +4,8 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
+import edu.cnu.mdi.mdi3D.panel.LevelOfDetail3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
@@ -21,6 +23,12 @@ public class Cylinder extends Item3D {
 	private boolean _extend;
 	private float _extensionFactor = 2;
 
+	// the full resolution around the tube
+	private int _slices = 50;
+
+	// the level of detail drawn last frame, -1 if none
+	private int _level = -1;
+
 	/**
 	 * Constructor for a Cylinder item in 3D space.
 	 *
@@ -55,6 +63,7 @@ public class Cylinder extends Item3D {
 	 */
 	public void setExtend(boolean extend) {
 		_extend = extend;
+		markDirty();
 	}
 
 	/**
@@ -64,6 +73,7 @@ public class Cylinder extends Item3D {
 	 */
 	public void setExtensionFactor(float extensionFactor) {
 		_extensionFactor = extensionFactor;
+		markDirty();
 	}
 
 	public Cylinder(Panel3D panel3D, float data[], Color color) {
@@ -87,13 +97,32 @@ public class Cylinder extends Item3D {
 
 			float z1 = _z1 - sm1 * dz;
 			float z2 = _z1 + _extensionFactor * dz;
-			Support3D.drawTube(drawable, x1, y1, z1, x2, y2, z2, _radius, _color);
+			Support3D.drawTube(drawable, x1, y1, z1, x2, y2, z2, _radius, slices(x1, y1, z1, x2, y2, z2), _color);
 
 		} else {
-			Support3D.drawTube(drawable, _x1, _y1, _z1, _x2, _y2, _z2, _radius, _color);
+			Support3D.drawTube(drawable, _x1, _y1, _z1, _x2, _y2, _z2, _radius, slices(_x1, _y1, _z1, _x2, _y2, _z2),
+					_color);
 		}
 	}
 
+	/**
+	 * Set the resolution around the tube. This is the full resolution; thinner
+	 * tubes on screen are drawn coarser (see {@link Panel3D#getLevelOfDetail()}).
+	 *
+	 * @param slices the number of subdivisions around the tube
+	 */
+	public void setResolution(int slices) {
+		_slices = Math.max(3, slices);
+	}
+
+	// the slices for the level of detail of the end nearer the eye
+	private int slices(float x1, float y1, float z1, float x2, float y2, float z2) {
+		int level1 = _panel3D.selectLevel(_level, x1, y1, z1, _radius);
+		int level2 = _panel3D.selectLevel(_level, x2, y2, z2, _radius);
+		_level = Math.max(level1, level2);
+		return LevelOfDetail3D.getSlices(_level, _slices);
+	}
+
 	public void reset(float x1, float y1, float z1, float x2, float y2, float z2) {
 		_x1 = x1;
 		_y1 = y1;
@@ -101,6 +130,7 @@ public class Cylinder extends Item3D {
 		_x2 = x2;
 		_y2 = y2;
 		_z2 = z2;
+		markDirty();
 	}
 
 	@Override
@@ -108,5 +138,24 @@ public class Cylinder extends Item3D {
 		return new float[] { (_x1 + _x2) / 2, (_y1 + _y2) / 2, (_z1 + _z2) / 2 };
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		float x1 = _x1, y1 = _y1, z1 = _z1;
+		float x2 = _x2, y2 = _y2, z2 = _z2;
+		if (_extend) {
+			float sm1 = _extensionFactor - 1;
+			x1 = _x1 - sm1 * (_x2 - _x1);
+			y1 = _y1 - sm1 * (_y2 - _y1);
+			z1 = _z1 - sm1 * (_z2 - _z1);
+			x2 = _x1 + _extensionFactor * (_x2 - _x1);
+			y2 = _y1 + _extensionFactor * (_y2 - _y1);
+			z2 = _z1 + _extensionFactor * (_z2 - _z1);
+		}
+
+		// the end caps lie within a sphere of the radius around each end
+		bounds.include(x1, y1, z1, _radius);
+		bounds.include(x2, y2, z2, _radius);
+	}
+
 
 }
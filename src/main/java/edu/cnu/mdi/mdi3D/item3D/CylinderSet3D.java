@@ -0,0 +1,109 @@
+package edu.cnu.mdi.mdi3D.item3D;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL2;
+
+import edu.cnu.mdi.mdi3D.panel.Glyphs3D;
+import edu.cnu.mdi.mdi3D.panel.MeshCache3D;
+import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+
+/**
+ * A set of tubes, e.g. the segments of many tracks, given as packed arrays.
+ * All the tubes are drawn in one call as {@link Glyphs3D} copies of a cached
+ * unit cylinder, instead of one {@link Cylinder} item (and one transform and
+ * tessellation) per tube. The glyphs are rebuilt only when the set is marked
+ * dirty.
+ */
+public class CylinderSet3D extends ShapeSet3D {
+
+	// the resolution of the unit cylinder
+	protected static final int SLICES = 16;
+
+	// the tubes
+	private final Glyphs3D _tubes = new Glyphs3D(MeshCache3D.Primitive.CYLINDER, SLICES, 1);
+
+	/**
+	 * Create a set of tubes with their own radii and colors.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param ends    the ends as [x1, y1, z1, x2, y2, z2, ...]
+	 * @param radii   the radius of each tube
+	 * @param colors  the color of each tube as ARGB, as
+	 *                <code>Color.getRGB()</code>
+	 */
+	public CylinderSet3D(Panel3D panel3D, float[] ends, float[] radii, int[] colors) {
+		super(panel3D, 2, ends, radii, colors, 1f, Color.gray);
+	}
+
+	/**
+	 * Create a set of same radius and color tubes.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param ends    the ends as [x1, y1, z1, x2, y2, z2, ...]
+	 * @param radius  the radius of the tubes
+	 * @param color   the color of the tubes
+	 */
+	public CylinderSet3D(Panel3D panel3D, float[] ends, float radius, Color color) {
+		super(panel3D, 2, ends, null, null, radius, color);
+	}
+
+	/**
+	 * Set whether the tubes are shaded by the scene light.
+	 *
+	 * @param shaded <code>true</code> to shade, <code>false</code> for flat
+	 *               colors
+	 */
+	public void setShaded(boolean shaded) {
+		_tubes.setShaded(shaded);
+	}
+
+	/**
+	 * Get the packed ends.
+	 *
+	 * @return the ends as [x1, y1, z1, x2, y2, z2, ...]
+	 */
+	public float[] getEnds() {
+		return getCoords();
+	}
+
+	@Override
+	protected void updateShapes() {
+		float[] ends = getEnds();
+		int n = getCount();
+		_tubes.setCount(n);
+		for (int i = 0; i < n; i++) {
+			int k = 6 * i;
+			_tubes.set(i, ends[k], ends[k + 1], ends[k + 2], ends[k + 3], ends[k + 4], ends[k + 5], getRadius(i),
+					getColor(i));
+		}
+	}
+
+	@Override
+	protected void drawShapes(GL2 gl) {
+		_tubes.draw(gl);
+	}
+
+	@Override
+	protected void disposeShapes(GL2 gl) {
+		_tubes.dispose(gl);
+	}
+
+	/**
+	 * Get the glyphs of the tubes.
+	 *
+	 * @return the tube glyphs
+	 */
+	protected Glyphs3D getTubes() {
+		return _tubes;
+	}
+
+	@Override
+	protected float hitShape(PickRay3D ray, int index) {
+		float[] ends = getEnds();
+		int k = 6 * index;
+		return ray.hitSegment(ends[k], ends[k + 1], ends[k + 2], ends[k + 3], ends[k + 4], ends[k + 5],
+				getOuterRadius(index));
+	}
+}
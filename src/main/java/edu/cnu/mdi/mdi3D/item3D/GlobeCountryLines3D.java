@@ -9,8 +9,10 @@ import java.util.Objects;
 import com.jogamp.opengl.GLAutoDrawable;
 
 import edu.cnu.mdi.mapping.GeoJsonCountryLoader.CountryFeature;
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
+import edu.cnu.mdi.mdi3D.panel.VertexBuffer3D;
 
 /**
  * Draws country outlines on a sphere as 3D polyline strips.
@@ -34,6 +36,9 @@ import edu.cnu.mdi.mdi3D.panel.Support3D;
  * <h2>Rendering details</h2>
  * By default, vertices are placed slightly above the sphere surface ({@link #getRadialLift()})
  * to reduce z-fighting with the sphere mesh.
+ * <p>
+ * When vertex buffers are available all strips are flattened into one set of line
+ * segments and drawn with a single call (see {@link Item3D#hasRetainedGeometry()}).
  */
 public class GlobeCountryLines3D extends Item3D {
 
@@ -69,6 +74,7 @@ public class GlobeCountryLines3D extends Item3D {
      */
     public final void rebuild(List<CountryFeature> features) {
         strips.clear();
+        markDirty();
         for (CountryFeature feature : features) {
             if (feature == null) {
                 continue;
@@ -171,6 +177,48 @@ public class GlobeCountryLines3D extends Item3D {
         }
     }
 
+    @Override
+    protected boolean hasRetainedGeometry() {
+        return true;
+    }
+
+    @Override
+    protected void computeBounds(Bounds3D bounds) {
+        for (float[] coords : strips) {
+            bounds.include(coords);
+        }
+    }
+
+    @Override
+    protected float[] getRetainedVertices() {
+        // Flatten the strips into disjoint segments so one GL_LINES draw covers them all.
+        int numSegments = 0;
+        for (float[] coords : strips) {
+            if (coords != null && coords.length >= 6) {
+                numSegments += coords.length / 3 - 1;
+            }
+        }
+
+        float[] segments = new float[6 * numSegments];
+        int k = 0;
+        for (float[] coords : strips) {
+            if (coords == null || coords.length < 6) {
+                continue;
+            }
+            int np = coords.length / 3;
+            for (int i = 0; i < np - 1; i++) {
+                System.arraycopy(coords, 3 * i, segments, k, 6);
+                k += 6;
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    protected void drawRetained(GLAutoDrawable drawable, VertexBuffer3D vbo) {
+        Support3D.drawLines(drawable, vbo, lineColor, lineWidth);
+    }
+
     // ----------------------------- internal helpers -----------------------------
 
     private void addRingAsStrips(List<Point2D.Double> ring) {
@@ -2,14 +2,20 @@ package edu.cnu.mdi.mdi3D.item3D;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.nio.FloatBuffer;
 import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
 
+import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 
 import edu.cnu.mdi.mdi3D.panel.Bad3DPropertyException;
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
+import edu.cnu.mdi.mdi3D.panel.VertexBuffer3D;
 
 public abstract class Item3D {
 
@@ -34,9 +40,19 @@ public abstract class Item3D {
 	/** property string for font. Default is defined below */
 	public static final String FONT = "FONT";
 
-	// this item's properties
+	// extension properties, i.e. any key other than the style keys above;
+	// created on first use
 	private Properties _properties;
 
+	// the style, in typed fields. The colors include their alpha, and are
+	// replaced (never modified) when they change, so the render thread can
+	// use them without copying or locking
+	private float _lineWidth;
+	private Color _fillColor;
+	private Color _lineColor;
+	private Color _textColor;
+	private Font _font;
+
 	// controls whether the item is visible
 	// only in the sense do we "want" to draw it
 	private boolean _visible = true;
@@ -50,6 +66,23 @@ public abstract class Item3D {
 	// the owner panel
 	protected Panel3D _panel3D;
 
+	// retained mode vertex buffer, created on first retained draw
+	private VertexBuffer3D _vertexBuffer;
+
+	// if true the retained geometry must be (re)uploaded
+	private volatile boolean _dirty = true;
+
+	// if false, always draw in immediate mode
+	private boolean _retained = true;
+
+	// cached sort point, valid until the geometry changes
+	private final float[] _sortPoint = new float[3];
+	private volatile boolean _sortPointValid;
+
+	// cached bounds of this item and its children
+	private final Bounds3D _bounds = new Bounds3D();
+	private volatile boolean _boundsValid;
+
 	// defaults
 	private static final float _defaultLineWidth = 1f;
 	private static final int _defaultFillAlpha = 255;
@@ -70,27 +103,61 @@ public abstract class Item3D {
 	}
 
 	/**
-	 * Set the default properties
+	 * Set the default style
 	 */
 	protected void defaultProperties() {
-		_properties = new Properties();
-		_properties.put(LINE_WIDTH, _defaultLineWidth);
-		_properties.put(FILLCOLOR, _defaultFillColor);
-		_properties.put(FILLALPHA, _defaultFillAlpha);
-		_properties.put(LINECOLOR, _defaultLineColor);
-		_properties.put(LINEALPHA, _defaultLineAlpha);
-		_properties.put(TEXT_COLOR, _defaultTextColor);
-		_properties.put(FONT, _defaultFont);
+		_lineWidth = _defaultLineWidth;
+		_fillColor = setAlphaOfColor(_defaultFillColor, _defaultFillAlpha);
+		_lineColor = setAlphaOfColor(_defaultLineColor, _defaultLineAlpha);
+		_textColor = _defaultTextColor;
+		_font = _defaultFont;
 	}
 
 	/**
-	 * set a property
+	 * Set a property. The style keys ({@link #LINE_WIDTH}, {@link #FILLCOLOR},
+	 * {@link #FILLALPHA}, {@link #LINECOLOR}, {@link #LINEALPHA},
+	 * {@link #TEXT_COLOR} and {@link #FONT}) are routed to the typed setters, and
+	 * a value of the wrong type for one of them is ignored. Any other key is
+	 * stored as an extension property.
 	 *
 	 * @param key   the key
 	 * @param value the value
 	 */
 	public void put(Object key, Object value) {
-		_properties.put(key, value);
+		if (LINE_WIDTH.equals(key)) {
+			if (value instanceof Number) {
+				setLineWidth(((Number) value).floatValue());
+			}
+		} else if (FILLCOLOR.equals(key)) {
+			if (value instanceof Color) {
+				setFillStyle((Color) value, _fillColor.getAlpha());
+			}
+		} else if (FILLALPHA.equals(key)) {
+			if (value instanceof Number) {
+				setFillAlpha(((Number) value).intValue());
+			}
+		} else if (LINECOLOR.equals(key)) {
+			if (value instanceof Color) {
+				setLineStyle((Color) value, _lineColor.getAlpha());
+			}
+		} else if (LINEALPHA.equals(key)) {
+			if (value instanceof Number) {
+				setLineAlpha(((Number) value).intValue());
+			}
+		} else if (TEXT_COLOR.equals(key)) {
+			if (value instanceof Color) {
+				setTextColor((Color) value);
+			}
+		} else if (FONT.equals(key)) {
+			if (value instanceof Font) {
+				setFont((Font) value);
+			}
+		} else {
+			if (_properties == null) {
+				_properties = new Properties();
+			}
+			_properties.put(key, value);
+		}
 	}
 
 	/**
@@ -99,7 +166,9 @@ public abstract class Item3D {
 	 * @param drawable the OpenGL drawable
 	 */
 	public final void drawItem(GLAutoDrawable drawable) {
-		draw(drawable);
+		if (!drawRetained(drawable)) {
+			draw(drawable);
+		}
 
 		if (_children != null) {
 			for (Item3D item : _children) {
@@ -111,21 +180,335 @@ public abstract class Item3D {
 	}
 
 	/**
-	 * The custom drawing method
+	 * The custom drawing method. This is the immediate mode path, and is used
+	 * whenever the retained path is not available.
 	 *
 	 * @param drawable the OpenGL drawable
 	 */
 	public abstract void draw(GLAutoDrawable drawable);
 
+	// draw from the vertex buffer if this item supports it. Returns false
+	// if the caller should fall back to immediate mode.
+	private boolean drawRetained(GLAutoDrawable drawable) {
+		if (!_retained || !hasRetainedGeometry()) {
+			return false;
+		}
+
+		GL2 gl = drawable.getGL().getGL2();
+		if (!VertexBuffer3D.isSupported(gl)) {
+			return false;
+		}
+
+		if (_vertexBuffer == null) {
+			_vertexBuffer = new VertexBuffer3D();
+		}
+
+		if (_dirty || !_vertexBuffer.isValid(gl)) {
+			_dirty = false;
+			_vertexBuffer.setStreaming(isDynamic());
+			FloatBuffer buffer = getRetainedBuffer();
+			if (buffer != null) {
+				// a duplicate, so the owner's position and limit are left alone
+				_vertexBuffer.upload(gl, buffer.duplicate());
+			} else {
+				float[] coords = getRetainedVertices();
+				_vertexBuffer.upload(gl, coords, (coords == null) ? 0 : coords.length);
+			}
+		}
+
+		drawRetained(drawable, _vertexBuffer);
+		return true;
+	}
+
+	/**
+	 * Whether this item can describe its geometry as a single packed vertex array
+	 * and draw it from a vertex buffer. Subclasses that return <code>true</code>
+	 * must also override {@link #getRetainedVertices()} and
+	 * {@link #drawRetained(GLAutoDrawable, VertexBuffer3D)}. The default is
+	 * <code>false</code>, i.e. immediate mode via {@link #draw(GLAutoDrawable)}.
+	 *
+	 * @return <code>true</code> if the retained path is supported
+	 */
+	protected boolean hasRetainedGeometry() {
+		return false;
+	}
+
 	/**
-	 * Get a 3D property
+	 * Get the vertices to upload to the vertex buffer. Only called when the item
+	 * is dirty (see {@link #markDirty()}), so it may allocate.
+	 *
+	 * @return the vertices as [x, y, z, x, y, z, ...], may be <code>null</code>
+	 */
+	protected float[] getRetainedVertices() {
+		return null;
+	}
+
+	/**
+	 * Get the vertices to upload to the vertex buffer as a buffer, used instead
+	 * of {@link #getRetainedVertices()} if not <code>null</code>. The floats
+	 * between the position and the limit are used. A direct, native ordered
+	 * buffer goes to the GPU without being copied on the way. The default is
+	 * <code>null</code>.
+	 *
+	 * @return the vertices as [x, y, z, x, y, z, ...], or <code>null</code>
+	 */
+	protected FloatBuffer getRetainedBuffer() {
+		return null;
+	}
+
+	/**
+	 * Whether the retained geometry changes about every frame, e.g. the
+	 * particles of a running simulation. The vertex buffer of a dynamic item is
+	 * streamed (see {@link VertexBuffer3D#setStreaming(boolean)}), so uploading
+	 * it does not wait for the previous frame's draws. The default is
+	 * <code>false</code>.
+	 *
+	 * @return <code>true</code> if the geometry changes every frame
+	 */
+	protected boolean isDynamic() {
+		return false;
+	}
+
+	/**
+	 * Draw from the (already uploaded) vertex buffer. Set color, point size and
+	 * the like, then draw with a single call such as
+	 * {@link VertexBuffer3D#draw(GL2, int)}.
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @param vbo      the vertex buffer holding this item's geometry
+	 */
+	protected void drawRetained(GLAutoDrawable drawable, VertexBuffer3D vbo) {
+	}
+
+	/**
+	 * Called by the panel3D. Do not overwrite. Draws the next part of this item
+	 * and of its visible children, for those still being drawn progressively.
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @return <code>true</code> if this item or a child has still more to draw
+	 */
+	public final boolean refineItem(GLAutoDrawable drawable) {
+		boolean more = false;
+		if (isRefining()) {
+			refine(drawable);
+			more = isRefining();
+		}
+
+		if (_children != null) {
+			for (Item3D item : _children) {
+				if (item.isVisible()) {
+					more |= item.refineItem(drawable);
+				}
+			}
+		}
+		return more;
+	}
+
+	/**
+	 * Check whether this item or a visible child is only partly drawn.
+	 *
+	 * @return <code>true</code> if more is to be drawn in the following frames
+	 */
+	public final boolean isRefiningItem() {
+		if (isRefining()) {
+			return true;
+		}
+
+		if (_children != null) {
+			for (Item3D item : _children) {
+				if (item.isVisible() && item.isRefiningItem()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether the last draw drew only part of this item, e.g. the first
+	 * chunks of a very large point set (see
+	 * {@link edu.cnu.mdi.mdi3D.panel.Progressive3D}). While this
+	 * is <code>true</code> and the view is unchanged, the panel draws the
+	 * following frames without clearing, calling
+	 * {@link #refine(GLAutoDrawable)} instead of a full draw. The default is
+	 * <code>false</code>.
+	 *
+	 * @return <code>true</code> if more is to be drawn in the following frames
+	 */
+	public boolean isRefining() {
+		return false;
+	}
+
+	/**
+	 * Draw the next part of a partly drawn item over the last frame. Only called
+	 * while {@link #isRefining()} is <code>true</code>. The default does nothing.
+	 *
+	 * @param drawable the OpenGL drawable
+	 */
+	public void refine(GLAutoDrawable drawable) {
+	}
+
+	/**
+	 * Mark the geometry as changed. The retained geometry is uploaded again on the
+	 * next draw, and cached values derived from the geometry (the sort point and
+	 * the bounds, including those of the ancestors) are recomputed. Subclasses must
+	 * call this whenever their geometry changes, e.g. in a coordinate setter.
+	 */
+	public void markDirty() {
+		_dirty = true;
+		_sortPointValid = false;
+		invalidateBounds();
+	}
+
+	// the bounds of this item and all its ancestors are stale
+	private void invalidateBounds() {
+		for (Item3D item = this; item != null; item = item._parent) {
+			item._boundsValid = false;
+		}
+	}
+
+	/**
+	 * Compute the world space bounds of this item's own geometry, not including
+	 * its children. Only called after the geometry changed (see
+	 * {@link #markDirty()}), so it may be as expensive as a pass over the
+	 * vertices. The default sets the bounds to infinite, so the item is never
+	 * culled. Override in items with a known extent.
+	 *
+	 * @param bounds an empty bounds to grow
+	 */
+	protected void computeBounds(Bounds3D bounds) {
+		bounds.setInfinite();
+	}
+
+	/**
+	 * Get the world space bounds (box and enclosing sphere) of this item and all
+	 * its children, cached until the next {@link #markDirty()}. Used by the panel
+	 * for view frustum culling. The returned object is shared and must not be
+	 * modified.
+	 *
+	 * @return the bounds
+	 */
+	public final Bounds3D getBounds() {
+		if (!_boundsValid) {
+			// mark valid first, so a concurrent markDirty() is not lost
+			_boundsValid = true;
+			_bounds.setEmpty();
+			computeBounds(_bounds);
+			if (_children != null) {
+				for (Item3D item : _children) {
+					_bounds.include(item.getBounds());
+				}
+			}
+		}
+		return _bounds;
+	}
+
+	/**
+	 * Called by the panel's picker. Do not overwrite. Tests this item's geometry
+	 * and that of its visible children against a pick ray.
+	 *
+	 * @param ray    the pick ray
+	 * @param result receives the closest hit
+	 * @return <code>true</code> if this item or a child improved the hit
+	 */
+	public final boolean pickItem(PickRay3D ray, PickResult3D result) {
+		boolean hit = pick(ray, result);
+
+		if (_children != null) {
+			for (Item3D item : _children) {
+				if (item.isVisible()) {
+					hit |= item.pickItem(ray, result);
+				}
+			}
+		}
+		return hit;
+	}
+
+	/**
+	 * Test this item's own geometry (not its children) against a pick ray, and
+	 * {@link PickResult3D#offer(Item3D, float, int) offer} any hit to the result.
+	 * The default is not pickable. Points and lines should use the ray's
+	 * tolerance (e.g. {@link PickRay3D#hitPoint(float, float, float)}); items
+	 * with many primitives should report the index of the one hit.
+	 *
+	 * @param ray    the pick ray
+	 * @param result receives the closest hit
+	 * @return <code>true</code> if the hit was improved
+	 */
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		return false;
+	}
+
+	/**
+	 * Check whether the retained geometry is stale.
+	 *
+	 * @return <code>true</code> if the geometry will be uploaded on the next draw
+	 */
+	public boolean isDirty() {
+		return _dirty;
+	}
+
+	/**
+	 * Set whether this item may use the retained (vertex buffer) render path.
+	 * Items that do not support it always draw in immediate mode regardless.
+	 *
+	 * @param retained if <code>false</code> always use immediate mode
+	 */
+	public void setRetained(boolean retained) {
+		_retained = retained;
+		_dirty = true;
+	}
+
+	/**
+	 * Release the OpenGL resources this item and its children created in the
+	 * drawable's context, which must be current. Resources of other contexts are
+	 * kept. The resources are recreated if the item is drawn again.
+	 *
+	 * @param drawable the OpenGL drawable
+	 */
+	public void dispose(GLAutoDrawable drawable) {
+		GL2 gl = drawable.getGL().getGL2();
+		if ((_vertexBuffer != null) && _vertexBuffer.isValid(gl)) {
+			_vertexBuffer.dispose(gl);
+			_vertexBuffer = null;
+			_dirty = true;
+		}
+
+		if (_children != null) {
+			for (Item3D item : _children) {
+				item.dispose(drawable);
+			}
+		}
+	}
+
+	/**
+	 * Get a 3D property. The style keys return the current style (the colors with
+	 * their alpha applied).
 	 *
 	 * @param key the name of the property
 	 * @return the object corresponding to that key, or null
 	 * @throws Bad3DPropertyException
 	 */
 	public Object get(String key) throws Bad3DPropertyException {
-		Object obj = _properties.get(key);
+		Object obj;
+		if (LINE_WIDTH.equals(key)) {
+			obj = _lineWidth;
+		} else if (FILLCOLOR.equals(key)) {
+			obj = _fillColor;
+		} else if (FILLALPHA.equals(key)) {
+			obj = _fillColor.getAlpha();
+		} else if (LINECOLOR.equals(key)) {
+			obj = _lineColor;
+		} else if (LINEALPHA.equals(key)) {
+			obj = _lineColor.getAlpha();
+		} else if (TEXT_COLOR.equals(key)) {
+			obj = _textColor;
+		} else if (FONT.equals(key)) {
+			obj = _font;
+		} else {
+			obj = (_properties == null) ? null : _properties.get(key);
+		}
+
 		if (obj == null) {
 			throw new Bad3DPropertyException("Item has no property named: " + key);
 		}
@@ -223,11 +606,7 @@ public abstract class Item3D {
 	 * @return the line width. (Default is 1f)
 	 */
 	public float getLineWidth() {
-		try {
-			return getFloat(LINE_WIDTH);
-		} catch (Bad3DPropertyException e) {
-			return _defaultLineWidth;
-		}
+		return _lineWidth;
 	}
 
 	/**
@@ -236,22 +615,16 @@ public abstract class Item3D {
 	 * @param lineWidth the line width.
 	 */
 	public void setLineWidth(float lineWidth) {
-		put(LINE_WIDTH, lineWidth);
+		_lineWidth = lineWidth;
 	}
 
 	/**
 	 * Convenience method to get the fill color for this item
 	 *
-	 * @return the fill color.
+	 * @return the fill color, including the fill alpha.
 	 */
 	public Color getFillColor() {
-		try {
-			Color color = getColor(FILLCOLOR);
-			color = setAlphaOfColor(color, getFillAlpha());
-			return color;
-		} catch (Bad3DPropertyException e) {
-			return _defaultFillColor;
-		}
+		return _fillColor;
 	}
 
 	/**
@@ -260,15 +633,7 @@ public abstract class Item3D {
 	 * @return the fill alpha.
 	 */
 	public int getFillAlpha() {
-	    try {
-	        return getInt(FILLALPHA);
-	    } catch (Bad3DPropertyException e) {
-	        try {
-	            return getColor(FILLCOLOR).getAlpha();
-	        } catch (Bad3DPropertyException ignored) {
-	            return _defaultFillAlpha;
-	        }
-	    }
+		return _fillColor.getAlpha();
 	}
 
 	/**
@@ -277,30 +642,16 @@ public abstract class Item3D {
 	 * @return the line (frame) alpha.
 	 */
 	public int getLineAlpha() {
-	    try {
-	        return getInt(LINEALPHA);
-	    } catch (Bad3DPropertyException e) {
-	        try {
-	            return getColor(LINECOLOR).getAlpha();
-	        } catch (Bad3DPropertyException ignored) {
-	            return _defaultLineAlpha;
-	        }
-	    }
+		return _lineColor.getAlpha();
 	}
 
 	/**
 	 * Convenience method to get the line (and frame)color for this item
 	 *
-	 * @return the line (frame) color.
+	 * @return the line (frame) color, including the line alpha.
 	 */
 	public Color getLineColor() {
-		try {
-			Color color = getColor(LINECOLOR);
-			color = setAlphaOfColor(color, getLineAlpha());
-			return color;
-		} catch (Bad3DPropertyException e) {
-			return _defaultLineColor;
-		}
+		return _lineColor;
 	}
 
 	/**
@@ -309,11 +660,7 @@ public abstract class Item3D {
 	 * @return the text color.
 	 */
 	public Color getTextColor() {
-		try {
-			return getColor(TEXT_COLOR);
-		} catch (Bad3DPropertyException e) {
-			return _defaultTextColor;
-		}
+		return _textColor;
 	}
 
 	/**
@@ -322,31 +669,31 @@ public abstract class Item3D {
 	 * @return the font.
 	 */
 	public Font getFont() {
-		try {
-			return getFont(FONT);
-		} catch (Bad3DPropertyException e) {
-			return _defaultFont;
-		}
+		return _font;
 	}
 
 	/**
-	 * Convenience method to set the fill color
+	 * Convenience method to set the fill color. The color's alpha becomes the
+	 * fill alpha.
 	 *
 	 * @param color the fill color.
 	 */
 	public void setFillColor(Color color) {
-		put(FILLALPHA, color.getAlpha());
-		put(FILLCOLOR, color);
+		if (color != null) {
+			setFillStyle(color, color.getAlpha());
+		}
 	}
 
 	/**
-	 * Convenience method to set the line (frame) color
+	 * Convenience method to set the line (frame) color. The color's alpha becomes
+	 * the line alpha.
 	 *
 	 * @param color the line (frame) color.
 	 */
 	public void setLineColor(Color color) {
-		put(LINEALPHA, color.getAlpha());
-		put(LINECOLOR, color);
+		if (color != null) {
+			setLineStyle(color, color.getAlpha());
+		}
 	}
 
 	/**
@@ -355,7 +702,7 @@ public abstract class Item3D {
 	 * @param alpha the fill alpha [0..255].
 	 */
 	public void setFillAlpha(int alpha) {
-		put(FILLALPHA, alpha);
+		setFillStyle(_fillColor, alpha);
 	}
 
 	/**
@@ -364,7 +711,7 @@ public abstract class Item3D {
 	 * @param alpha the line (frame) alpha [0..255].
 	 */
 	public void setLineAlpha(int alpha) {
-		put(LINEALPHA, alpha);
+		setLineStyle(_lineColor, alpha);
 	}
 
 	/**
@@ -373,7 +720,9 @@ public abstract class Item3D {
 	 * @param textColor the text color.
 	 */
 	public void setTextColor(Color textColor) {
-		put(TEXT_COLOR, textColor);
+		if (textColor != null) {
+			_textColor = textColor;
+		}
 	}
 
 	/**
@@ -382,7 +731,42 @@ public abstract class Item3D {
 	 * @param font the text font.
 	 */
 	public void setFont(Font font) {
-		put(FONT, font);
+		if (font != null) {
+			_font = font;
+		}
+	}
+
+	// bake the fill color and alpha, telling the panel if the alpha changed
+	private void setFillStyle(Color color, int alpha) {
+		Color c = setAlphaOfColor(color, alpha);
+		if (c.equals(_fillColor)) {
+			return;
+		}
+		boolean alphaChanged = c.getAlpha() != _fillColor.getAlpha();
+		_fillColor = c;
+		if (alphaChanged) {
+			transparencyChanged();
+		}
+	}
+
+	// bake the line color and alpha, telling the panel if the alpha changed
+	private void setLineStyle(Color color, int alpha) {
+		Color c = setAlphaOfColor(color, alpha);
+		if (c.equals(_lineColor)) {
+			return;
+		}
+		boolean alphaChanged = c.getAlpha() != _lineColor.getAlpha();
+		_lineColor = c;
+		if (alphaChanged) {
+			transparencyChanged();
+		}
+	}
+
+	// alpha changes may move a top level item between the opaque and transparent passes
+	private void transparencyChanged() {
+		if (_panel3D != null) {
+			_panel3D.itemTransparencyChanged(this);
+		}
 	}
 
 	/**
@@ -438,6 +822,7 @@ public abstract class Item3D {
 			_children.remove(item);
 			_children.addElement(item);
 			item._parent = this;
+			invalidateBounds();
 		}
 	}
 
@@ -449,6 +834,7 @@ public abstract class Item3D {
 	public void removeChild(Item3D item) {
 		if ((_children != null) && (item != null)) {
 			_children.remove(item);
+			invalidateBounds();
 		}
 	}
 
@@ -489,5 +875,25 @@ public abstract class Item3D {
 	    return new float[] {0f, 0f, 0f};
 	}
 
+	/**
+	 * The sort point, cached until the next {@link #markDirty()}. This is what the
+	 * panel uses for depth sorting, so {@link #getSortPoint()} (which may be
+	 * expensive, e.g. a centroid) runs once per geometry change rather than once
+	 * per comparison. The returned array is shared and must not be modified.
+	 *
+	 * @return the cached sort point as [x, y, z]
+	 */
+	public final float[] getCachedSortPoint() {
+		if (!_sortPointValid) {
+			// mark valid first, so a concurrent markDirty() is not lost
+			_sortPointValid = true;
+			float[] p = getSortPoint();
+			_sortPoint[0] = p[0];
+			_sortPoint[1] = p[1];
+			_sortPoint[2] = p[2];
+		}
+		return _sortPoint;
+	}
+
 
 }
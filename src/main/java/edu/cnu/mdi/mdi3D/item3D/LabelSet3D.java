@@ -1,21 +1,21 @@
 package edu.cnu.mdi.mdi3D.item3D;
 
 import java.awt.Color;
-import java.awt.Font;
 
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
-import com.jogamp.opengl.fixedfunc.GLMatrixFunc;
 import com.jogamp.opengl.util.awt.TextRenderer;
 
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.RenderState3D;
 
 /**
  * Draws screen-space text labels for a set of 3D points.
  * <p>
- * This item projects each 3D point into window coordinates using
- * {@link Panel3D#project(GL2, float, float, float, float[])} and then renders
- * the corresponding label in pixel coordinates via JOGL's {@link TextRenderer}.
+ * This item projects all its 3D points into window coordinates in one batch on
+ * the CPU, using the view the panel captured for the frame (see
+ * {@link edu.cnu.mdi.mdi3D.panel.Projector3D}), and then renders the
+ * corresponding labels in pixel coordinates via JOGL's {@link TextRenderer}.
  * <p>
  * This keeps label size constant regardless of zoom and avoids any need for 3D
  * text geometry. Label visibility policy (e.g., globe front-hemisphere) is
@@ -61,6 +61,12 @@ public class LabelSet3D extends Item3D {
     /** Lazily-created JOGL text renderer. */
     private TextRenderer _textRenderer;
 
+    /** Reusable per-frame work arrays. */
+    private float[] _win = new float[0];
+    private int[] _sx = new int[0];
+    private int[] _sy = new int[0];
+    private boolean[] _ok = new boolean[0];
+
     /**
      * Create a label set for 3D points.
      *
@@ -128,6 +134,11 @@ public class LabelSet3D extends Item3D {
             return;
         }
 
+        // no labels while the user moves the camera
+        if (_panel3D.getInteractionQuality().isHidingLabels()) {
+            return;
+        }
+
         int n = _coords.length / 3;
         if (_labels.length < n) {
             n = _labels.length;
@@ -142,32 +153,26 @@ public class LabelSet3D extends Item3D {
 
         // Lazily create TextRenderer using this item's font property.
         if (_textRenderer == null) {
-            Font font = null;
-            try {
-                font = getFont(FONT);
-            } catch (Exception ignored) { }
-            if (font == null) {
-                font = new Font("SansSerif", Font.PLAIN, 12);
-            }
-            _textRenderer = new TextRenderer(font, true, true);
+            _textRenderer = new TextRenderer(getFont(), true, true);
         }
 
-        Color textColor;
-        try {
-            textColor = getColor(TEXT_COLOR);
-        } catch (Exception e) {
-            textColor = Color.white;
-        }
+        final Color textColor = getTextColor();
 
-        // Snapshot current modelview matrix (the one used for the 3D scene)
-        final float[] mv = new float[16];
-        gl.glGetFloatv(GLMatrixFunc.GL_MODELVIEW_MATRIX, mv, 0);
+        // The modelview of the 3D scene, captured by the panel for this frame
+        final float[] mv = _panel3D.getProjector().getModelview();
 
-        // Project FIRST (while 3D matrices are active).
-        final float[] win = new float[3];
-        final int[] sx = new int[n];
-        final int[] sy = new int[n];
-        final boolean[] ok = new boolean[n];
+        // Project all points at once, on the CPU, with the frame's view.
+        if (_win.length < 3 * n) {
+            _win = new float[3 * n];
+            _sx = new int[n];
+            _sy = new int[n];
+            _ok = new boolean[n];
+        }
+        final float[] win = _win;
+        final int[] sx = _sx;
+        final int[] sy = _sy;
+        final boolean[] ok = _ok;
+        _panel3D.getProjector().project(_coords, win, n);
 
         for (int i = 0; i < n; i++) {
 
@@ -181,11 +186,15 @@ public class LabelSet3D extends Item3D {
             final float y = _coords[3 * i + 1];
             final float z = _coords[3 * i + 2];
 
-            _panel3D.project(gl, x, y, z, win);
+            final float wx = win[3 * i];
+            final float wy = win[3 * i + 1];
+            final float wz = win[3 * i + 2];
 
-            final float wx = win[0];
-            final float wy = win[1];
-            final float wz = win[2];
+            // behind the eye: no window position
+            if (Float.isNaN(wz)) {
+                ok[i] = false;
+                continue;
+            }
 
             if (_clipToViewport) {
                 if (wz < 0f || wz > 1f) {
@@ -222,6 +231,9 @@ public class LabelSet3D extends Item3D {
         }
 
         _textRenderer.endRendering();
+
+        // the text renderer changed the current color
+        RenderState3D.invalidate(gl);
     }
 
     // --------------------------------------------------------------------
@@ -4,7 +4,10 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
 public class Line3D extends Item3D {
@@ -178,5 +181,14 @@ public class Line3D extends Item3D {
 		return new float[] { (_p0[0] + _p1[0]) / 2, (_p0[1] + _p1[1]) / 2, (_p0[2] + _p1[2]) / 2 };
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		bounds.include(_p0[0], _p0[1], _p0[2]);
+		bounds.include(_p1[0], _p1[1], _p1[2]);
+	}
 
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		return result.offer(this, ray.hitSegment(_p0[0], _p0[1], _p0[2], _p1[0], _p1[1], _p1[2]), -1);
+	}
 }
@@ -1,17 +1,31 @@
 package edu.cnu.mdi.mdi3D.item3D;
 
 import java.awt.Color;
+import java.nio.FloatBuffer;
 
+import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.BVH3D;
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
+import edu.cnu.mdi.mdi3D.panel.PointSprites3D;
+import edu.cnu.mdi.mdi3D.panel.Progressive3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
+import edu.cnu.mdi.mdi3D.panel.VertexBuffer3D;
 
 public class PointSet3D extends Item3D {
 
 	// the points as [x1, y1, z1, ..., xn, yn, zn]
 	private float _coords[];
 
+	// or the points in a (typically direct) buffer, with an array copy made
+	// only for the paths that need one
+	private FloatBuffer _coordBuffer;
+	private float[] _coordCopy;
+
 	// the point color
 	private Color _color;
 
@@ -21,6 +35,33 @@ public class PointSet3D extends Item3D {
 	// draw circular points?
 	private boolean _circular;
 
+	// the per point colors as [r, g, b, a, ...] and sizes, null if none
+	private byte[] _colors;
+	private float[] _sizes;
+
+	// the frame color, null for no frame
+	private Color _frameColor;
+
+	// the shader path, created on first use
+	private PointSprites3D _sprites;
+	private boolean _useSprites = true;
+
+	// if true the coordinates change every frame
+	private boolean _dynamic;
+
+	// bounds given by the caller, null to compute them from the points
+	private Bounds3D _fixedBounds;
+
+	// progressive drawing, null if off, and the buffer being drawn
+	private Progressive3D _progressive;
+	private VertexBuffer3D _progressiveBuffer;
+
+	// tree over the points for picking, built once the points are picked again
+	// without having changed, and whether they have not changed since the last
+	// pick
+	private BVH3D _pickTree;
+	private boolean _pickStable;
+
 	/**
 	 * Create a set of same color and size points for use on a Panel3D.
 	 *
@@ -39,7 +80,210 @@ public class PointSet3D extends Item3D {
 
 	@Override
 	public void draw(GLAutoDrawable drawable) {
-		Support3D.drawPoints(drawable, _coords, _color, _pointSize, _circular);
+		float[] coords = getCoordArray();
+		if (_colors == null) {
+			Support3D.drawPoints(drawable, coords, _color, _frameColor, _pointSize, _circular);
+		} else {
+			Support3D.drawPoints(drawable, coords, _colors, _pointSize, _circular);
+		}
+	}
+
+	@Override
+	protected boolean hasRetainedGeometry() {
+		return true;
+	}
+
+	@Override
+	protected float[] getRetainedVertices() {
+		return _coords;
+	}
+
+	@Override
+	protected FloatBuffer getRetainedBuffer() {
+		return _coordBuffer;
+	}
+
+	/**
+	 * Draws with the point sprite shader where available: per point colors and
+	 * sizes, anti-aliased round points and the frame all in one pass. Otherwise
+	 * falls back to fixed function points (per point sizes are then ignored).
+	 * When drawn progressively only the chunks that fit in the frame budget are
+	 * drawn; the panel draws the rest in the following frames. While the user
+	 * moves the camera large sets draw only a fixed subsample (see
+	 * {@link Panel3D#getInteractionQuality()}).
+	 */
+	@Override
+	protected void drawRetained(GLAutoDrawable drawable, VertexBuffer3D vbo) {
+		int step = _panel3D.getInteractionQuality().getPointStep(vbo.getVertexCount());
+		if (step > 1) {
+			_progressiveBuffer = null;
+			drawChunk(drawable, vbo, 0, step);
+		} else if (_progressive == null) {
+			drawChunk(drawable, vbo, 0, 1);
+		} else {
+			_progressiveBuffer = vbo;
+			_progressive.restart(vbo.getVertexCount());
+			refine(drawable);
+		}
+	}
+
+	// draw every step-th point starting at first
+	private void drawChunk(GLAutoDrawable drawable, VertexBuffer3D vbo, int first, int step) {
+		GL2 gl = drawable.getGL().getGL2();
+		if (_useSprites && PointSprites3D.isSupported(gl)) {
+			if (_sprites == null) {
+				_sprites = new PointSprites3D();
+				_sprites.setColors(_colors);
+				_sprites.setSizes(_sizes);
+			}
+			if (_sprites.draw(gl, vbo, _color, _pointSize, _frameColor, _circular, first, step)) {
+				return;
+			}
+		}
+
+		if ((_colors != null) || (_frameColor != null)) {
+			// the immediate mode path cannot draw chunks, so it draws all at once
+			if (first == 0) {
+				draw(drawable);
+			}
+		} else {
+			Support3D.drawPoints(drawable, vbo, _color, _pointSize, _circular, first, step);
+		}
+	}
+
+	@Override
+	public boolean isRefining() {
+		return (_progressive != null) && (_progressiveBuffer != null) && !_progressive.isComplete();
+	}
+
+	@Override
+	public void refine(GLAutoDrawable drawable) {
+		final VertexBuffer3D vbo = _progressiveBuffer;
+		GL2 gl = drawable.getGL().getGL2();
+		if ((vbo == null) || !vbo.isValid(gl)) {
+			// the buffer went away with its context; the next full frame restarts
+			_progressiveBuffer = null;
+			return;
+		}
+		_progressive.drawNext(gl, (g, first, step) -> drawChunk(drawable, vbo, first, step));
+	}
+
+	/**
+	 * Set whether the points are dynamic, i.e. given new coordinates about every
+	 * frame, e.g. the particles of a running simulation. Dynamic points are
+	 * streamed to the GPU without waiting for the draws of earlier frames,
+	 * instead of being treated as static geometry.
+	 *
+	 * @param dynamic <code>true</code> if the coordinates change every frame
+	 */
+	public void setDynamic(boolean dynamic) {
+		_dynamic = dynamic;
+		markDirty();
+	}
+
+	@Override
+	protected boolean isDynamic() {
+		return _dynamic;
+	}
+
+	/**
+	 * Set bounds known to contain the points, e.g. the box a simulation keeps its
+	 * particles in, so they are not computed from the points after every change.
+	 * Without them a dynamic set is never culled rather than scanned every frame.
+	 *
+	 * @param bounds the bounds, copied, or <code>null</code> to compute them from
+	 *               the points
+	 */
+	public void setBounds(Bounds3D bounds) {
+		if (bounds == null) {
+			_fixedBounds = null;
+		} else {
+			_fixedBounds = new Bounds3D();
+			_fixedBounds.set(bounds);
+		}
+		markDirty();
+	}
+
+	/**
+	 * Set whether the points are drawn progressively: a few chunks, each an even
+	 * sample of the set, per frame, within a frame budget, refining over the
+	 * following frames until the view changes. Meant for sets too large to draw
+	 * at an interactive rate. Only the retained path draws progressively.
+	 *
+	 * @param progressive <code>true</code> to draw progressively
+	 */
+	public void setProgressive(boolean progressive) {
+		if (!progressive) {
+			_progressive = null;
+			_progressiveBuffer = null;
+		} else if (_progressive == null) {
+			_progressive = new Progressive3D();
+		}
+	}
+
+	/**
+	 * Get the progressive drawing, e.g. to set its chunk size or frame budget.
+	 *
+	 * @return the progressive drawing, <code>null</code> if not drawn
+	 *         progressively
+	 */
+	public Progressive3D getProgressive() {
+		return _progressive;
+	}
+
+	/**
+	 * Set per point colors. Call again after changing the array in place; the
+	 * positions are not uploaded again.
+	 *
+	 * @param rgba the colors as [r, g, b, a, ...], four bytes per point, or
+	 *             <code>null</code> to use the common color
+	 */
+	public void setColors(byte[] rgba) {
+		_colors = rgba;
+		if (_sprites != null) {
+			_sprites.setColors(rgba);
+		}
+	}
+
+	/**
+	 * Set per point sizes. Call again after changing the array in place; the
+	 * positions are not uploaded again. Only the shader path honors them.
+	 *
+	 * @param sizes the sizes in pixels, one per point, or <code>null</code> to
+	 *              use the common size
+	 */
+	public void setSizes(float[] sizes) {
+		_sizes = sizes;
+		if (_sprites != null) {
+			_sprites.setSizes(sizes);
+		}
+	}
+
+	/**
+	 * Set the color of a one pixel frame around each point.
+	 *
+	 * @param frameColor the frame color, <code>null</code> for no frame
+	 */
+	public void setFrameColor(Color frameColor) {
+		_frameColor = frameColor;
+	}
+
+	/**
+	 * Set whether the point sprite shader may be used.
+	 *
+	 * @param useSprites if <code>false</code> always draw fixed function points
+	 */
+	public void setUseSprites(boolean useSprites) {
+		_useSprites = useSprites;
+	}
+
+	@Override
+	public void dispose(GLAutoDrawable drawable) {
+		super.dispose(drawable);
+		_progressiveBuffer = null;
+		if (_sprites != null) {
+			_sprites.dispose(drawable.getGL().getGL2());
+		}
 	}
 
 	/**
@@ -49,6 +293,38 @@ public class PointSet3D extends Item3D {
 	 */
 	public void setCoords(float[] coords) {
 		_coords = coords;
+		_coordBuffer = null;
+		markDirty();
+	}
+
+	/**
+	 * Set the coordinates of the points from a buffer, e.g. one a simulation
+	 * writes its positions into. A direct, native ordered buffer is uploaded to
+	 * the GPU without a copy. The floats between the position and the limit are
+	 * used. Call again (or {@link #markDirty()}) after changing the contents.
+	 *
+	 * @param coords the points as [x1, y1, z1, ..., xn, yn, zn]
+	 */
+	public void setCoords(FloatBuffer coords) {
+		_coordBuffer = coords;
+		_coords = null;
+		markDirty();
+	}
+
+	// the coordinates as an array; points given as a buffer are copied out
+	// once per change, for the immediate mode draw and picking only
+	private float[] getCoordArray() {
+		FloatBuffer buffer = _coordBuffer;
+		if (buffer == null) {
+			return _coords;
+		}
+		float[] copy = _coordCopy;
+		if (copy == null) {
+			copy = new float[buffer.remaining()];
+			buffer.duplicate().get(copy);
+			_coordCopy = copy;
+		}
+		return copy;
 	}
 
 	/**
@@ -57,6 +333,21 @@ public class PointSet3D extends Item3D {
 	 * @return the points as [x1, y1, z1, ..., xn, yn, zn]
 	 */
 	public float[] getCentroid() {
+		FloatBuffer buffer = _coordBuffer;
+		if (buffer != null) {
+			int start = buffer.position();
+			int n = buffer.remaining() / 3;
+			float cx = 0;
+			float cy = 0;
+			float cz = 0;
+			for (int i = start; i < start + 3 * n; i += 3) {
+				cx += buffer.get(i);
+				cy += buffer.get(i + 1);
+				cz += buffer.get(i + 2);
+			}
+			return new float[] { cx / n, cy / n, cz / n };
+		}
+
 		int n = _coords.length / 3;
 		float cx = 0;
 		float cy = 0;
@@ -74,5 +365,78 @@ public class PointSet3D extends Item3D {
 		return getCentroid();
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		if (_fixedBounds != null) {
+			bounds.include(_fixedBounds);
+		} else if (_dynamic) {
+			bounds.setInfinite();
+		} else if (_coordBuffer != null) {
+			bounds.include(_coordBuffer);
+		} else {
+			bounds.include(_coords);
+		}
+	}
 
+	@Override
+	public void markDirty() {
+		super.markDirty();
+		_coordCopy = null;
+		_pickTree = null;
+		_pickStable = false;
+	}
+
+	/**
+	 * Pick the nearest point within the ray's tolerance. The hit index is the
+	 * point index. Dynamic points, and points that changed since the last pick,
+	 * are scanned directly, O(n) without copying them. Once the points are picked
+	 * again without changing a tree is built over them, O(n log n); later picks
+	 * only visit the points near the ray.
+	 */
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		float before = result.getDistance();
+
+		BVH3D tree = _pickTree;
+		if ((tree == null) && (_dynamic || !_pickStable)) {
+			// not worth a tree yet: the points may change again before the next pick
+			_pickStable = !_dynamic;
+			scan(ray, result);
+			return result.getDistance() < before;
+		}
+
+		final float[] coords = getCoordArray();
+		if (coords == null) {
+			return false;
+		}
+		if (tree == null) {
+			tree = new BVH3D();
+			tree.buildPoints(coords, coords.length / 3);
+			_pickTree = tree;
+		}
+
+		tree.traverse(ray, before, (index, best) -> {
+			int i = 3 * index;
+			result.offer(this, ray.hitPoint(coords[i], coords[i + 1], coords[i + 2]), index);
+			return result.getDistance();
+		});
+		return result.getDistance() < before;
+	}
+
+	// offer every point to the pick, straight from the array or buffer
+	private void scan(PickRay3D ray, PickResult3D result) {
+		FloatBuffer buffer = _coordBuffer;
+		if (buffer != null) {
+			int start = buffer.position();
+			int n = buffer.remaining() / 3;
+			for (int index = 0, i = start; index < n; index++, i += 3) {
+				result.offer(this, ray.hitPoint(buffer.get(i), buffer.get(i + 1), buffer.get(i + 2)), index);
+			}
+		} else if (_coords != null) {
+			int n = _coords.length / 3;
+			for (int index = 0, i = 0; index < n; index++, i += 3) {
+				result.offer(this, ray.hitPoint(_coords[i], _coords[i + 1], _coords[i + 2]), index);
+			}
+		}
+	}
 }
@@ -4,7 +4,10 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
 public class Quad3D extends Item3D {
@@ -131,4 +134,21 @@ public class Quad3D extends Item3D {
 		return getCentroid();
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		bounds.include(_coords);
+	}
+
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		// each quad is hit as two triangles, reporting the quad index
+		boolean hit = false;
+		int n = _coords.length / 12;
+		for (int i = 0; i < n; i++) {
+			int v = 12 * i;
+			hit |= result.offer(this, ray.hitTriangle(_coords, v, v + 3, v + 6), i);
+			hit |= result.offer(this, ray.hitTriangle(_coords, v, v + 6, v + 9), i);
+		}
+		return hit;
+	}
 }
@@ -0,0 +1,286 @@
+package edu.cnu.mdi.mdi3D.item3D;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLAutoDrawable;
+
+import edu.cnu.mdi.mdi3D.panel.BVH3D;
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
+import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
+
+/**
+ * A set of round shapes given as packed arrays: the points of each shape (one
+ * center, or two ends), a radius per shape or a common one, and a color per
+ * shape or a common one. The subclass draws the whole set at once and rebuilds
+ * what it draws only after the set is marked dirty. Bounds, the sort point and
+ * picking, through a tree over the shapes built on the first pick after a
+ * change, are common to all sets.
+ */
+public abstract class ShapeSet3D extends Item3D {
+
+	// the points per shape
+	private final int _points;
+
+	// the points as [x1, y1, z1, ...], _points of them per shape
+	private float[] _coords;
+
+	// the radius per shape, or null to use _radius
+	private float[] _radii;
+	private float _radius;
+
+	// the color per shape as ARGB, or null to use _color
+	private int[] _colors;
+	private Color _color;
+
+	// if true what is drawn must be rebuilt before drawing
+	private boolean _stale = true;
+
+	// tree over the shapes for picking, built on the first pick after a change
+	private BVH3D _pickTree;
+
+	/**
+	 * Create a set of shapes.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param points  the number of points per shape
+	 * @param coords  the points as [x1, y1, z1, ...]
+	 * @param radii   the radius of each shape, or <code>null</code> to use the
+	 *                common radius
+	 * @param colors  the color of each shape as ARGB, or <code>null</code> to
+	 *                use the common color
+	 * @param radius  the common radius
+	 * @param color   the common color
+	 */
+	protected ShapeSet3D(Panel3D panel3D, int points, float[] coords, float[] radii, int[] colors, float radius,
+			Color color) {
+		super(panel3D);
+		_points = points;
+		_coords = coords;
+		_radii = radii;
+		_colors = colors;
+		_radius = radius;
+		_color = color;
+	}
+
+	/**
+	 * Replace the shapes.
+	 *
+	 * @param coords the points as [x1, y1, z1, ...]
+	 * @param radii  the radius of each shape, or <code>null</code> to use the
+	 *               common radius
+	 * @param colors the color of each shape as ARGB, or <code>null</code> to use
+	 *               the common color
+	 */
+	public void setData(float[] coords, float[] radii, int[] colors) {
+		_coords = coords;
+		_radii = radii;
+		_colors = colors;
+		markDirty();
+	}
+
+	/**
+	 * Set the radius used by shapes without their own.
+	 *
+	 * @param radius the common radius
+	 */
+	public void setRadius(float radius) {
+		_radius = radius;
+		markDirty();
+	}
+
+	/**
+	 * Set the color used by shapes without their own.
+	 *
+	 * @param color the common color
+	 */
+	public void setColor(Color color) {
+		_color = color;
+		markDirty();
+	}
+
+	/**
+	 * Get the number of shapes.
+	 *
+	 * @return the number of shapes
+	 */
+	public int getCount() {
+		return (_coords == null) ? 0 : _coords.length / (3 * _points);
+	}
+
+	/**
+	 * Get the radius of a shape.
+	 *
+	 * @param index the index of the shape
+	 * @return its radius
+	 */
+	public float getRadius(int index) {
+		return (_radii == null) ? _radius : _radii[index];
+	}
+
+	/**
+	 * Get the color of a shape.
+	 *
+	 * @param index the index of the shape
+	 * @return its color as ARGB
+	 */
+	public int getColor(int index) {
+		return (_colors == null) ? _color.getRGB() : _colors[index];
+	}
+
+	/**
+	 * Get the packed points.
+	 *
+	 * @return the points as [x1, y1, z1, ...]
+	 */
+	protected float[] getCoords() {
+		return _coords;
+	}
+
+	/**
+	 * Set the packed points, keeping the radii and colors.
+	 *
+	 * @param coords the points as [x1, y1, z1, ...]
+	 */
+	protected void setCoords(float[] coords) {
+		_coords = coords;
+		markDirty();
+	}
+
+	/**
+	 * Get the radius of the widest part of a shape, for bounds and picking.
+	 *
+	 * @param index the index of the shape
+	 * @return the outer radius
+	 */
+	protected float getOuterRadius(int index) {
+		return getRadius(index);
+	}
+
+	/**
+	 * Rebuild what is drawn from the packed arrays. Called before drawing after
+	 * the set is marked dirty.
+	 */
+	protected abstract void updateShapes();
+
+	/**
+	 * Draw the shapes.
+	 *
+	 * @param gl the GL
+	 */
+	protected abstract void drawShapes(GL2 gl);
+
+	/**
+	 * Release the GL resources of the shapes in the current context.
+	 *
+	 * @param gl the GL
+	 */
+	protected abstract void disposeShapes(GL2 gl);
+
+	/**
+	 * Get the distance along a ray to a shape.
+	 *
+	 * @param ray   the pick ray
+	 * @param index the index of the shape
+	 * @return the distance along the ray, or {@link PickRay3D#MISS}
+	 */
+	protected abstract float hitShape(PickRay3D ray, int index);
+
+	@Override
+	public void draw(GLAutoDrawable drawable) {
+		if (_stale) {
+			updateShapes();
+			_stale = false;
+		}
+		drawShapes(drawable.getGL().getGL2());
+	}
+
+	@Override
+	public float[] getSortPoint() {
+		int n = _points * getCount();
+		float cx = 0;
+		float cy = 0;
+		float cz = 0;
+		for (int i = 0; i < n; i++) {
+			cx += _coords[3 * i];
+			cy += _coords[3 * i + 1];
+			cz += _coords[3 * i + 2];
+		}
+		return (n == 0) ? new float[3] : new float[] { cx / n, cy / n, cz / n };
+	}
+
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		int n = getCount();
+		for (int i = 0; i < n; i++) {
+			float r = getOuterRadius(i);
+			for (int p = 0; p < _points; p++) {
+				int k = 3 * (_points * i + p);
+				bounds.include(_coords[k], _coords[k + 1], _coords[k + 2], r);
+			}
+		}
+	}
+
+	@Override
+	public void markDirty() {
+		super.markDirty();
+		_stale = true;
+		_pickTree = null;
+	}
+
+	@Override
+	public void dispose(GLAutoDrawable drawable) {
+		super.dispose(drawable);
+		disposeShapes(drawable.getGL().getGL2());
+		_stale = true;
+	}
+
+	/**
+	 * Pick the nearest shape. The hit index is the shape index. The first pick
+	 * after a change builds a tree over the shapes.
+	 */
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		int n = getCount();
+		if (n == 0) {
+			return false;
+		}
+
+		BVH3D tree = _pickTree;
+		if (tree == null) {
+			tree = new BVH3D();
+			tree.buildBoxes(shapeBoxes(n), n);
+			_pickTree = tree;
+		}
+
+		float before = result.getDistance();
+		tree.traverse(ray, before, (index, best) -> {
+			result.offer(this, hitShape(ray, index), index);
+			return result.getDistance();
+		});
+		return result.getDistance() < before;
+	}
+
+	// the box around each shape as [min x, y, z, max x, y, z, ...]
+	private float[] shapeBoxes(int n) {
+		float[] boxes = new float[6 * n];
+		for (int i = 0; i < n; i++) {
+			float r = getOuterRadius(i);
+			int b = 6 * i;
+			for (int c = 0; c < 3; c++) {
+				float min = Float.POSITIVE_INFINITY;
+				float max = Float.NEGATIVE_INFINITY;
+				for (int p = 0; p < _points; p++) {
+					float v = _coords[3 * (_points * i + p) + c];
+					min = Math.min(min, v);
+					max = Math.max(max, v);
+				}
+				boxes[b + c] = min - r;
+				boxes[b + 3 + c] = max + r;
+			}
+		}
+		return boxes;
+	}
+}
@@ -6,7 +6,11 @@ import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
+import edu.cnu.mdi.mdi3D.panel.LevelOfDetail3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
 public class Sphere extends Item3D {
@@ -22,6 +26,12 @@ public class Sphere extends Item3D {
 	private float[] _phi; // Azimuthal angles [-π, π]
 	private Color _gridColor = Color.BLACK; // Default gridline color
 
+	// the gridline polylines, computed when first drawn after a change
+	private float[][] _gridLines;
+
+	// the level of detail drawn last frame, -1 if none
+	private int _level = -1;
+
 	/**
 	 * Constructor for a Sphere item in 3D space.
 	 *
@@ -50,11 +60,14 @@ public class Sphere extends Item3D {
 		_x = x;
 		_y = y;
 		_z = z;
+		_gridLines = null;
+		markDirty();
 	}
 
 	/**
 	 * Set the resolution of the sphere. Higher values for slices and stacks result
-	 * in a smoother sphere.
+	 * in a smoother sphere. This is the full resolution; smaller spheres on
+	 * screen are drawn coarser (see {@link Panel3D#getLevelOfDetail()}).
 	 *
 	 * @param slices Number of slices (longitude divisions)
 	 * @param stacks Number of stacks (latitude divisions)
@@ -62,6 +75,7 @@ public class Sphere extends Item3D {
 	public void setResolution(int slices, int stacks) {
 		_slices = Math.max(3, slices); // Ensure valid values
 		_stacks = Math.max(2, stacks);
+		_gridLines = null;
 	}
 
 	/**
@@ -73,6 +87,7 @@ public class Sphere extends Item3D {
 	public void setGridlines(float[] theta, float[] phi) {
 		_theta = theta;
 		_phi = phi;
+		_gridLines = null;
 	}
 
 	/**
@@ -86,7 +101,10 @@ public class Sphere extends Item3D {
 
 	@Override
 	public void draw(GLAutoDrawable drawable) {
-		Support3D.solidSphere(drawable, _x, _y, _z, _radius, _slices, _stacks, _color);
+		_level = _panel3D.selectLevel(_level, _x, _y, _z, _radius);
+		int slices = LevelOfDetail3D.getSlices(_level, _slices);
+		int stacks = LevelOfDetail3D.getStacks(slices, _slices, _stacks);
+		Support3D.solidSphere(drawable, _x, _y, _z, _radius, slices, stacks, _color);
 
 		if (_theta != null || _phi != null) {
 			drawGridlines(drawable);
@@ -107,69 +125,81 @@ public class Sphere extends Item3D {
 		gl.glEnable(GL.GL_POLYGON_OFFSET_FILL);
 		gl.glPolygonOffset(-1.0f, -1.0f);
 
-		if (_theta != null) {
-			drawThetaLines(drawable);
+		// the lines only change with the center, resolution or angles
+		float[][] lines = _gridLines;
+		if (lines == null) {
+			lines = computeGridlines();
+			_gridLines = lines;
 		}
-		if (_phi != null) {
-			drawPhiLines(drawable);
+		for (float[] coords : lines) {
+			Support3D.drawPolyLine(drawable, coords, _gridColor, 1.5f);
 		}
 
 		// Disable polygon offset
 		gl.glDisable(GL.GL_POLYGON_OFFSET_FILL);
 	}
 
-	/**
-	 * Draws meridian (longitude) lines at the given azimuthal angles (phi).
-	 */
-	private void drawPhiLines(GLAutoDrawable drawable) {
-		for (float phi : _phi) {
-			float[] coords = new float[(_slices + 1) * 3];
-
-			for (int i = 0; i <= _slices; i++) {
-				float theta = (float) (Math.PI * i / _slices);
-				float x = _x + _radius * (float) (Math.sin(theta) * Math.cos(phi));
-				float y = _y + _radius * (float) (Math.sin(theta) * Math.sin(phi));
-				float z = _z + _radius * (float) Math.cos(theta);
+	// the parallels (theta lines) followed by the meridians (phi lines)
+	private float[][] computeGridlines() {
+		int numTheta = (_theta == null) ? 0 : _theta.length;
+		int numPhi = (_phi == null) ? 0 : _phi.length;
+		float[][] lines = new float[numTheta + numPhi][];
 
-				coords[3 * i] = x;
-				coords[3 * i + 1] = y;
-				coords[3 * i + 2] = z;
-			}
-
-			Support3D.drawPolyLine(drawable, coords, _gridColor, 1.5f);
+		for (int k = 0; k < numTheta; k++) {
+			lines[k] = thetaLine(_theta[k]);
+		}
+		for (int k = 0; k < numPhi; k++) {
+			lines[numTheta + k] = phiLine(_phi[k]);
 		}
+		return lines;
 	}
 
 	/**
-	 * Draws parallel (latitude) lines at the given polar angles (theta).
+	 * A meridian (longitude) line at the given azimuthal angle (phi).
 	 */
-	private void drawThetaLines(GLAutoDrawable drawable) {
-		for (float theta : _theta) {
-
-			// We want (_stacks + 1) samples around the circle, plus 1 extra to close the
-			// loop.
-			final int n = _stacks + 1;
-			float[] coords = new float[(n + 1) * 3];
+	private float[] phiLine(float phi) {
+		float[] coords = new float[(_slices + 1) * 3];
+
+		for (int i = 0; i <= _slices; i++) {
+			float theta = (float) (Math.PI * i / _slices);
+			float x = _x + _radius * (float) (Math.sin(theta) * Math.cos(phi));
+			float y = _y + _radius * (float) (Math.sin(theta) * Math.sin(phi));
+			float z = _z + _radius * (float) Math.cos(theta);
+
+			coords[3 * i] = x;
+			coords[3 * i + 1] = y;
+			coords[3 * i + 2] = z;
+		}
+		return coords;
+	}
 
-			for (int i = 0; i < n; i++) {
-				float phi = (float) (-Math.PI + 2.0 * Math.PI * i / _stacks);
+	/**
+	 * A parallel (latitude) line at the given polar angle (theta).
+	 */
+	private float[] thetaLine(float theta) {
 
-				float x = _x + _radius * (float) (Math.sin(theta) * Math.cos(phi));
-				float y = _y + _radius * (float) (Math.sin(theta) * Math.sin(phi));
-				float z = _z + _radius * (float) (Math.cos(theta));
+		// We want (_stacks + 1) samples around the circle, plus 1 extra to close the
+		// loop.
+		final int n = _stacks + 1;
+		float[] coords = new float[(n + 1) * 3];
 
-				coords[3 * i] = x;
-				coords[3 * i + 1] = y;
-				coords[3 * i + 2] = z;
-			}
+		for (int i = 0; i < n; i++) {
+			float phi = (float) (-Math.PI + 2.0 * Math.PI * i / _stacks);
 
-			// Close loop: last point == first point
-			coords[3 * n] = coords[0];
-			coords[3 * n + 1] = coords[1];
-			coords[3 * n + 2] = coords[2];
+			float x = _x + _radius * (float) (Math.sin(theta) * Math.cos(phi));
+			float y = _y + _radius * (float) (Math.sin(theta) * Math.sin(phi));
+			float z = _z + _radius * (float) (Math.cos(theta));
 
-			Support3D.drawPolyLine(drawable, coords, _gridColor, 1.5f);
+			coords[3 * i] = x;
+			coords[3 * i + 1] = y;
+			coords[3 * i + 2] = z;
 		}
+
+		// Close loop: last point == first point
+		coords[3 * n] = coords[0];
+		coords[3 * n + 1] = coords[1];
+		coords[3 * n + 2] = coords[2];
+		return coords;
 	}
 
 	@Override
@@ -177,4 +207,13 @@ public class Sphere extends Item3D {
 		return new float[] { _x, _y, _z };
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		bounds.include(_x, _y, _z, _radius);
+	}
+
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		return result.offer(this, ray.hitSphere(_x, _y, _z, _radius), -1);
+	}
 }
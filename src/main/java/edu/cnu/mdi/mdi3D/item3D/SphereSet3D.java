@@ -0,0 +1,94 @@
+package edu.cnu.mdi.mdi3D.item3D;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL2;
+
+import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.SphereImpostors3D;
+
+/**
+ * A set of spheres, e.g. the particles of a simulation, given as packed
+ * arrays. The spheres are drawn as ray-cast impostors (see
+ * {@link SphereImpostors3D}): one quad each, with exact silhouettes, shading
+ * and depth, so even very large sets occlude correctly at interactive rates.
+ * The impostors are rebuilt only when the set is marked dirty.
+ */
+public class SphereSet3D extends ShapeSet3D {
+
+	// the impostors
+	private final SphereImpostors3D _impostors = new SphereImpostors3D();
+
+	/**
+	 * Create a set of spheres with their own radii and colors.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param centers the centers as [x1, y1, z1, ..., xn, yn, zn]
+	 * @param radii   the radius of each sphere
+	 * @param colors  the color of each sphere as ARGB, as
+	 *                <code>Color.getRGB()</code>
+	 */
+	public SphereSet3D(Panel3D panel3D, float[] centers, float[] radii, int[] colors) {
+		super(panel3D, 1, centers, radii, colors, 1f, Color.gray);
+	}
+
+	/**
+	 * Create a set of same radius and color spheres.
+	 *
+	 * @param panel3D the owner 3D panel
+	 * @param centers the centers as [x1, y1, z1, ..., xn, yn, zn]
+	 * @param radius  the radius of the spheres
+	 * @param color   the color of the spheres
+	 */
+	public SphereSet3D(Panel3D panel3D, float[] centers, float radius, Color color) {
+		super(panel3D, 1, centers, null, null, radius, color);
+	}
+
+	/**
+	 * Set the centers, keeping the radii and colors. Call again (or
+	 * {@link #markDirty()}) after changing the array in place.
+	 *
+	 * @param centers the centers as [x1, y1, z1, ..., xn, yn, zn]
+	 */
+	public void setCenters(float[] centers) {
+		setCoords(centers);
+	}
+
+	/**
+	 * Set whether the spheres are shaded by the scene light.
+	 *
+	 * @param shaded <code>true</code> to shade, <code>false</code> for flat
+	 *               disks
+	 */
+	public void setShaded(boolean shaded) {
+		_impostors.setShaded(shaded);
+	}
+
+	@Override
+	protected void updateShapes() {
+		float[] centers = getCoords();
+		int n = getCount();
+		_impostors.setCount(n);
+		for (int i = 0; i < n; i++) {
+			_impostors.set(i, centers[3 * i], centers[3 * i + 1], centers[3 * i + 2], getRadius(i), getColor(i));
+		}
+	}
+
+	@Override
+	protected void drawShapes(GL2 gl) {
+		_impostors.draw(gl);
+	}
+
+	@Override
+	protected void disposeShapes(GL2 gl) {
+		_impostors.dispose(gl);
+	}
+
+	@Override
+	protected float hitShape(PickRay3D ray, int index) {
+		float[] centers = getCoords();
+		int k = 3 * index;
+		return ray.hitSphere(centers[k], centers[k + 1], centers[k + 2], getRadius(index));
+	}
+}
@@ -4,7 +4,10 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GLAutoDrawable;
 
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
+import edu.cnu.mdi.mdi3D.panel.PickRay3D;
+import edu.cnu.mdi.mdi3D.panel.PickResult3D;
 import edu.cnu.mdi.mdi3D.panel.Support3D;
 
 public class Triangle3D extends Item3D {
@@ -82,4 +85,19 @@ public class Triangle3D extends Item3D {
 				(_coords[2] + _coords[5] + _coords[8]) / 3 };
 	}
 
+	@Override
+	protected void computeBounds(Bounds3D bounds) {
+		bounds.include(_coords);
+	}
+
+	@Override
+	public boolean pick(PickRay3D ray, PickResult3D result) {
+		boolean hit = false;
+		int n = _coords.length / 9;
+		for (int i = 0; i < n; i++) {
+			int v = 9 * i;
+			hit |= result.offer(this, ray.hitTriangle(_coords, v, v + 3, v + 6), i);
+		}
+		return hit;
+	}
 }
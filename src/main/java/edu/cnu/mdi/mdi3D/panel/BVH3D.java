@@ -0,0 +1,281 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+/**
+ * A bounding volume hierarchy over points or boxes, for ray picking. The tree
+ * is stored in flat arrays and built top down by splitting each node at the
+ * median of its primitives along its longest axis, so it is balanced and
+ * building is O(n log n) with no allocation per node.
+ * <p>
+ * A query visits the nodes that the {@link PickRay3D} tolerance cone can touch,
+ * nearest first, and skips those that cannot hold anything closer than the
+ * best hit so far. For a million points a pick typically tests a few hundred
+ * nodes and points.
+ * <p>
+ * Not thread safe. The tree refers to the primitive array it was built from,
+ * which must not change until the tree is rebuilt.
+ */
+public class BVH3D {
+
+	/**
+	 * Tests the primitives in the leaves reached by a query.
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+
+		/**
+		 * Test one primitive.
+		 *
+		 * @param index the primitive index
+		 * @param best  the distance along the ray of the best hit so far
+		 * @return the new best distance (<code>best</code> if the primitive was
+		 *         not hit or not closer)
+		 */
+		float visit(int index, float best);
+	}
+
+	// maximum primitives in a leaf
+	private static final int LEAF_SIZE = 16;
+
+	// deeper than any balanced tree of an int number of primitives
+	private static final int MAX_DEPTH = 48;
+
+	// the primitives: 3 (points) or 6 (boxes, min then max) floats each
+	private float[] _prims;
+	private int _stride;
+	private int _primCount;
+
+	// primitive indices, grouped by leaf
+	private int[] _order = new int[0];
+
+	// the nodes: box (6 floats), first child (-1 for a leaf), leaf range
+	private float[] _nodeBox = new float[0];
+	private int[] _nodeChild = new int[0];
+	private int[] _nodeStart = new int[0];
+	private int[] _nodeCount = new int[0];
+	private int _numNodes;
+
+	// the traversal stack of nodes and their entry distances, kept between
+	// queries so a pick allocates nothing
+	private final int[] _stack = new int[2 * MAX_DEPTH + 2];
+	private final float[] _stackT = new float[_stack.length];
+
+	/**
+	 * Build the tree over points.
+	 *
+	 * @param xyz the points as [x, y, z, x, y, z, ...]
+	 * @param n   the number of points
+	 */
+	public void buildPoints(float[] xyz, int n) {
+		build(xyz, 3, n);
+	}
+
+	/**
+	 * Build the tree over boxes.
+	 *
+	 * @param boxes the boxes as [minX, minY, minZ, maxX, maxY, maxZ, ...]
+	 * @param n     the number of boxes
+	 */
+	public void buildBoxes(float[] boxes, int n) {
+		build(boxes, 6, n);
+	}
+
+	/**
+	 * Get the number of primitives in the tree.
+	 *
+	 * @return the number of primitives
+	 */
+	public int size() {
+		return _primCount;
+	}
+
+	/**
+	 * Visit the primitives that may be hit by a ray, nearest nodes first.
+	 *
+	 * @param ray     the pick ray
+	 * @param best    the distance of the best hit so far ({@link PickRay3D#MISS}
+	 *                if none)
+	 * @param visitor tests the primitives
+	 * @return the distance of the best hit
+	 */
+	public float traverse(PickRay3D ray, float best, Visitor visitor) {
+		if (_primCount == 0) {
+			return best;
+		}
+
+		final int[] stack = _stack;
+		final float[] stackT = _stackT;
+		int sp = 0;
+
+		float t = enter(ray, 0);
+		if (t < best) {
+			stack[sp] = 0;
+			stackT[sp++] = t;
+		}
+
+		while (sp > 0) {
+			int node = stack[--sp];
+			if (!(stackT[sp] < best)) {
+				continue;
+			}
+
+			int child = _nodeChild[node];
+			if (child < 0) {
+				int end = _nodeStart[node] + _nodeCount[node];
+				for (int i = _nodeStart[node]; i < end; i++) {
+					best = visitor.visit(_order[i], best);
+				}
+				continue;
+			}
+
+			float tl = enter(ray, child);
+			float tr = enter(ray, child + 1);
+
+			// push the farther child first so the nearer is visited first
+			if (tl <= tr) {
+				if (tr < best) {
+					stack[sp] = child + 1;
+					stackT[sp++] = tr;
+				}
+				if (tl < best) {
+					stack[sp] = child;
+					stackT[sp++] = tl;
+				}
+			} else {
+				if (tl < best) {
+					stack[sp] = child;
+					stackT[sp++] = tl;
+				}
+				if (tr < best) {
+					stack[sp] = child + 1;
+					stackT[sp++] = tr;
+				}
+			}
+		}
+		return best;
+	}
+
+	private float enter(PickRay3D ray, int node) {
+		int b = 6 * node;
+		return ray.enterBox(_nodeBox[b], _nodeBox[b + 1], _nodeBox[b + 2], _nodeBox[b + 3], _nodeBox[b + 4],
+				_nodeBox[b + 5]);
+	}
+
+	private void build(float[] prims, int stride, int n) {
+		_prims = prims;
+		_stride = stride;
+		_primCount = Math.max(0, n);
+
+		if (_order.length < _primCount) {
+			_order = new int[_primCount];
+		}
+		for (int i = 0; i < _primCount; i++) {
+			_order[i] = i;
+		}
+
+		// a split leaves at least LEAF_SIZE/2 primitives in each half
+		int maxNodes = 2 * Math.max(1, _primCount / (LEAF_SIZE / 2)) + 1;
+		if (_nodeChild.length < maxNodes) {
+			_nodeBox = new float[6 * maxNodes];
+			_nodeChild = new int[maxNodes];
+			_nodeStart = new int[maxNodes];
+			_nodeCount = new int[maxNodes];
+		}
+
+		_numNodes = 1;
+		buildNode(0, 0, _primCount, 0);
+	}
+
+	// fill a node holding the primitives order[start, start+count), splitting it if large
+	private void buildNode(int node, int start, int count, int depth) {
+		computeBox(node, start, count);
+		_nodeStart[node] = start;
+		_nodeCount[node] = count;
+
+		if ((count <= LEAF_SIZE) || (depth >= MAX_DEPTH)) {
+			_nodeChild[node] = -1;
+			return;
+		}
+
+		// split at the median along the longest axis
+		int b = 6 * node;
+		float ex = _nodeBox[b + 3] - _nodeBox[b];
+		float ey = _nodeBox[b + 4] - _nodeBox[b + 1];
+		float ez = _nodeBox[b + 5] - _nodeBox[b + 2];
+		int axis = (ex >= ey) ? ((ex >= ez) ? 0 : 2) : ((ey >= ez) ? 1 : 2);
+
+		int half = count / 2;
+		select(start, start + count - 1, start + half, axis);
+
+		int child = _numNodes;
+		_numNodes += 2;
+		_nodeChild[node] = child;
+		buildNode(child, start, half, depth + 1);
+		buildNode(child + 1, start + half, count - half, depth + 1);
+	}
+
+	private void computeBox(int node, int start, int count) {
+		float minX = Float.POSITIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		float maxZ = Float.NEGATIVE_INFINITY;
+
+		// the max corner is at offset 0 for points and 3 for boxes
+		int maxOff = _stride - 3;
+		for (int i = start; i < start + count; i++) {
+			int p = _stride * _order[i];
+			minX = Math.min(minX, _prims[p]);
+			minY = Math.min(minY, _prims[p + 1]);
+			minZ = Math.min(minZ, _prims[p + 2]);
+			maxX = Math.max(maxX, _prims[p + maxOff]);
+			maxY = Math.max(maxY, _prims[p + maxOff + 1]);
+			maxZ = Math.max(maxZ, _prims[p + maxOff + 2]);
+		}
+
+		int b = 6 * node;
+		_nodeBox[b] = minX;
+		_nodeBox[b + 1] = minY;
+		_nodeBox[b + 2] = minZ;
+		_nodeBox[b + 3] = maxX;
+		_nodeBox[b + 4] = maxY;
+		_nodeBox[b + 5] = maxZ;
+	}
+
+	// twice the centroid coordinate of a primitive (the factor does not matter for ordering)
+	private float key(int prim, int axis) {
+		int p = _stride * prim + axis;
+		return _prims[p] + _prims[p + _stride - 3];
+	}
+
+	// partially order order[lo..hi] so that order[k] holds the median along an axis
+	private void select(int lo, int hi, int k, int axis) {
+		while (hi > lo) {
+			float pivot = key(_order[(lo + hi) >>> 1], axis);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key(_order[i], axis) < pivot) {
+					i++;
+				}
+				while (key(_order[j], axis) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = _order[i];
+					_order[i] = _order[j];
+					_order[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+}
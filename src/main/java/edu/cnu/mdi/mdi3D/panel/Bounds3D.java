@@ -0,0 +1,280 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mutable world space bounding volume: an axis aligned box plus the sphere
+ * that encloses it.
+ * <p>
+ * A bounds is in one of three states:
+ * <ul>
+ * <li><b>empty</b> no geometry; never visible (the initial state)</li>
+ * <li><b>finite</b> the box and sphere are valid</li>
+ * <li><b>infinite</b> extent unknown; always considered visible</li>
+ * </ul>
+ * Including anything in an infinite bounds leaves it infinite.
+ */
+public class Bounds3D {
+
+	// the box
+	private float _minX, _minY, _minZ;
+	private float _maxX, _maxY, _maxZ;
+
+	// true if nothing has been included
+	private boolean _empty = true;
+
+	// true if the extent is unknown
+	private boolean _infinite;
+
+	/**
+	 * Create an empty bounds.
+	 */
+	public Bounds3D() {
+	}
+
+	/**
+	 * Reset to the empty state.
+	 */
+	public void setEmpty() {
+		_empty = true;
+		_infinite = false;
+	}
+
+	/**
+	 * Set to the infinite state (extent unknown, never culled).
+	 */
+	public void setInfinite() {
+		_empty = false;
+		_infinite = true;
+	}
+
+	/**
+	 * Copy another bounds.
+	 *
+	 * @param b the bounds to copy
+	 */
+	public void set(Bounds3D b) {
+		_minX = b._minX;
+		_minY = b._minY;
+		_minZ = b._minZ;
+		_maxX = b._maxX;
+		_maxY = b._maxY;
+		_maxZ = b._maxZ;
+		_empty = b._empty;
+		_infinite = b._infinite;
+	}
+
+	/**
+	 * Check whether nothing has been included.
+	 *
+	 * @return <code>true</code> if empty
+	 */
+	public boolean isEmpty() {
+		return _empty;
+	}
+
+	/**
+	 * Check whether the extent is unknown.
+	 *
+	 * @return <code>true</code> if infinite
+	 */
+	public boolean isInfinite() {
+		return _infinite;
+	}
+
+	/**
+	 * Grow to include a point. Non-finite coordinates make the bounds infinite.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 */
+	public void include(float x, float y, float z) {
+		if (_infinite) {
+			return;
+		}
+		if (!Float.isFinite(x) || !Float.isFinite(y) || !Float.isFinite(z)) {
+			setInfinite();
+			return;
+		}
+
+		if (_empty) {
+			_minX = _maxX = x;
+			_minY = _maxY = y;
+			_minZ = _maxZ = z;
+			_empty = false;
+			return;
+		}
+
+		_minX = Math.min(_minX, x);
+		_minY = Math.min(_minY, y);
+		_minZ = Math.min(_minZ, z);
+		_maxX = Math.max(_maxX, x);
+		_maxY = Math.max(_maxY, y);
+		_maxZ = Math.max(_maxZ, z);
+	}
+
+	/**
+	 * Grow to include packed points.
+	 *
+	 * @param coords the points as [x, y, z, x, y, z, ...] (may be
+	 *               <code>null</code>)
+	 */
+	public void include(float[] coords) {
+		if (coords == null) {
+			return;
+		}
+		for (int i = 0; i + 2 < coords.length; i += 3) {
+			include(coords[i], coords[i + 1], coords[i + 2]);
+		}
+	}
+
+	/**
+	 * Grow to include packed points held in a buffer. The floats between the
+	 * position and the limit are used; the position is not changed.
+	 *
+	 * @param coords the points as [x, y, z, x, y, z, ...] (may be
+	 *               <code>null</code>)
+	 */
+	public void include(FloatBuffer coords) {
+		if (coords == null) {
+			return;
+		}
+		int end = coords.limit() - 2;
+		for (int i = coords.position(); i < end; i += 3) {
+			include(coords.get(i), coords.get(i + 1), coords.get(i + 2));
+		}
+	}
+
+	/**
+	 * Grow to include a sphere.
+	 *
+	 * @param x      the x coordinate of the center
+	 * @param y      the y coordinate of the center
+	 * @param z      the z coordinate of the center
+	 * @param radius the radius
+	 */
+	public void include(float x, float y, float z, float radius) {
+		radius = Math.abs(radius);
+		include(x - radius, y - radius, z - radius);
+		include(x + radius, y + radius, z + radius);
+	}
+
+	/**
+	 * Grow to include another bounds.
+	 *
+	 * @param b the other bounds
+	 */
+	public void include(Bounds3D b) {
+		if (b._infinite) {
+			setInfinite();
+		} else if (!b._empty) {
+			include(b._minX, b._minY, b._minZ);
+			include(b._maxX, b._maxY, b._maxZ);
+		}
+	}
+
+	/**
+	 * Get the minimum x of the box.
+	 *
+	 * @return the minimum x
+	 */
+	public float getMinX() {
+		return _minX;
+	}
+
+	/**
+	 * Get the minimum y of the box.
+	 *
+	 * @return the minimum y
+	 */
+	public float getMinY() {
+		return _minY;
+	}
+
+	/**
+	 * Get the minimum z of the box.
+	 *
+	 * @return the minimum z
+	 */
+	public float getMinZ() {
+		return _minZ;
+	}
+
+	/**
+	 * Get the maximum x of the box.
+	 *
+	 * @return the maximum x
+	 */
+	public float getMaxX() {
+		return _maxX;
+	}
+
+	/**
+	 * Get the maximum y of the box.
+	 *
+	 * @return the maximum y
+	 */
+	public float getMaxY() {
+		return _maxY;
+	}
+
+	/**
+	 * Get the maximum z of the box.
+	 *
+	 * @return the maximum z
+	 */
+	public float getMaxZ() {
+		return _maxZ;
+	}
+
+	/**
+	 * Get the x coordinate of the center of the bounding sphere.
+	 *
+	 * @return the center x
+	 */
+	public float getCenterX() {
+		return 0.5f * (_minX + _maxX);
+	}
+
+	/**
+	 * Get the y coordinate of the center of the bounding sphere.
+	 *
+	 * @return the center y
+	 */
+	public float getCenterY() {
+		return 0.5f * (_minY + _maxY);
+	}
+
+	/**
+	 * Get the z coordinate of the center of the bounding sphere.
+	 *
+	 * @return the center z
+	 */
+	public float getCenterZ() {
+		return 0.5f * (_minZ + _maxZ);
+	}
+
+	/**
+	 * Get the radius of the bounding sphere, i.e. half the box diagonal.
+	 *
+	 * @return the radius
+	 */
+	public float getRadius() {
+		float dx = _maxX - _minX;
+		float dy = _maxY - _minY;
+		float dz = _maxZ - _minZ;
+		return 0.5f * (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	@Override
+	public String toString() {
+		if (_empty) {
+			return "Bounds3D[empty]";
+		}
+		if (_infinite) {
+			return "Bounds3D[infinite]";
+		}
+		return String.format("Bounds3D[(%g, %g, %g) - (%g, %g, %g)]", _minX, _minY, _minZ, _maxX, _maxY, _maxZ);
+	}
+}
@@ -0,0 +1,106 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
+
+/**
+ * The array buffers an object draws from, kept for each context it is drawn
+ * in, along with the version of the data each one holds. Drawing the same
+ * object in a second context, e.g. an offscreen capture of a panel that is
+ * also on screen, leaves the first context's buffers alone, so they are
+ * neither leaked nor uploaded again; {@link #dispose(GL2)} deletes those of
+ * the current context.
+ * <p>
+ * The owner counts the versions of its data, bumping the count on every
+ * change, and uploads when {@link #bind(GL2, int, int)} says the bound buffer
+ * is behind.
+ * <p>
+ * Render thread only.
+ */
+class ContextBuffers3D {
+
+	// the number of buffers per context
+	private final int _count;
+
+	// per context: the buffer names, then the version each holds
+	private final Map<GLContext, int[]> _buffers = new IdentityHashMap<>(4);
+
+	// the most recently used context and its entry
+	private GLContext _lastContext;
+	private int[] _last;
+
+	/**
+	 * Create the buffers of an object. Nothing is generated until they are first
+	 * bound.
+	 *
+	 * @param count the number of buffers per context
+	 */
+	ContextBuffers3D(int count) {
+		_count = count;
+	}
+
+	/**
+	 * Bind one of the buffers of the current context as the array buffer,
+	 * generating the buffers on first use in the context.
+	 *
+	 * @param gl      the GL
+	 * @param index   the buffer, from 0
+	 * @param version the version of the owner's data
+	 * @return <code>true</code> if the buffer does not hold that version yet, in
+	 *         which case the caller must upload it now
+	 */
+	boolean bind(GL2 gl, int index, int version) {
+		int[] entry = entry(gl);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, entry[index]);
+		if (entry[_count + index] == version) {
+			return false;
+		}
+		entry[_count + index] = version;
+		return true;
+	}
+
+	/**
+	 * Delete the buffers of the current context. They are generated again if
+	 * the object is drawn in it again; other contexts keep theirs.
+	 *
+	 * @param gl the GL
+	 */
+	void dispose(GL2 gl) {
+		GLContext context = gl.getContext();
+		int[] entry = _buffers.remove(context);
+		if (entry != null) {
+			gl.glDeleteBuffers(_count, entry, 0);
+		}
+		if (context == _lastContext) {
+			_lastContext = null;
+			_last = null;
+		}
+	}
+
+	// the entry of the current context, with its buffers generated
+	private int[] entry(GL2 gl) {
+		GLContext context = gl.getContext();
+		if (context == _lastContext) {
+			return _last;
+		}
+
+		int[] entry = _buffers.get(context);
+		if (entry == null) {
+			entry = new int[2 * _count];
+			gl.glGenBuffers(_count, entry, 0);
+
+			// no version uploaded yet
+			for (int i = _count; i < entry.length; i++) {
+				entry[i] = Integer.MIN_VALUE;
+			}
+			_buffers.put(context, entry);
+		}
+		_lastContext = context;
+		_last = entry;
+		return entry;
+	}
+}
@@ -0,0 +1,149 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.Arrays;
+
+/**
+ * Sorts float keys (e.g. view space depths) and returns the permutation, with
+ * no allocation once the internal buffers have grown to the working size.
+ * <p>
+ * Large inputs use a stable 4-pass LSD radix sort on the IEEE bit patterns,
+ * which is linear in the number of keys. Small inputs use an insertion sort.
+ * Both are stable, so equal keys keep their input order. NaN keys sort last.
+ * <p>
+ * Not thread safe; intended to be owned by a single render thread.
+ */
+public class DepthSorter {
+
+	// below this size an insertion sort is faster than four radix passes
+	private static final int INSERTION_SORT_THRESHOLD = 48;
+
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX - 1;
+
+	// the keys, filled by the caller
+	private float[] _keys = new float[0];
+
+	// the keys mapped to unsigned-comparable ints (plus a scratch copy)
+	private int[] _bits = new int[0];
+	private int[] _bitsTmp = new int[0];
+
+	// the permutation (plus a scratch copy)
+	private int[] _order = new int[0];
+	private int[] _orderTmp = new int[0];
+
+	// radix histogram
+	private final int[] _counts = new int[RADIX];
+
+	/**
+	 * Get the key buffer, grown if necessary to hold at least <code>n</code>
+	 * keys. Fill the first <code>n</code> entries and then call
+	 * {@link #sort(int)}.
+	 *
+	 * @param n the number of keys
+	 * @return the key buffer (length may exceed <code>n</code>)
+	 */
+	public float[] keys(int n) {
+		if (_keys.length < n) {
+			int cap = Math.max(n, _keys.length + (_keys.length >> 1));
+			_keys = new float[cap];
+			_bits = new int[cap];
+			_bitsTmp = new int[cap];
+			_order = new int[cap];
+			_orderTmp = new int[cap];
+		}
+		return _keys;
+	}
+
+	/**
+	 * Sort the first <code>n</code> keys ascending.
+	 *
+	 * @param n the number of keys
+	 * @return the permutation: entry <code>i</code> is the index of the
+	 *         <code>i</code>-th smallest key. Only the first <code>n</code>
+	 *         entries are valid; the array is reused by the next call.
+	 */
+	public int[] sort(int n) {
+		keys(n);
+		for (int i = 0; i < n; i++) {
+			_order[i] = i;
+			_bits[i] = sortableBits(_keys[i]);
+		}
+
+		if (n < INSERTION_SORT_THRESHOLD) {
+			insertionSort(n);
+		} else {
+			radixSort(n);
+		}
+		return _order;
+	}
+
+	// map a float to an int whose unsigned order matches the float order
+	private static int sortableBits(float f) {
+		int bits = Float.floatToIntBits(f); // canonical NaN, sorts last
+		return bits ^ ((bits >> 31) | 0x80000000);
+	}
+
+	// stable insertion sort of _order by _bits
+	private void insertionSort(int n) {
+		for (int i = 1; i < n; i++) {
+			int key = _bits[i];
+			int idx = _order[i];
+			int j = i - 1;
+			while ((j >= 0) && (Integer.compareUnsigned(_bits[j], key) > 0)) {
+				_bits[j + 1] = _bits[j];
+				_order[j + 1] = _order[j];
+				j--;
+			}
+			_bits[j + 1] = key;
+			_order[j + 1] = idx;
+		}
+	}
+
+	// stable LSD radix sort of _order by _bits, 8 bits per pass
+	private void radixSort(int n) {
+		int[] src = _bits;
+		int[] dst = _bitsTmp;
+		int[] srcOrder = _order;
+		int[] dstOrder = _orderTmp;
+
+		for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+			Arrays.fill(_counts, 0);
+			for (int i = 0; i < n; i++) {
+				_counts[(src[i] >>> shift) & RADIX_MASK]++;
+			}
+
+			// skip a pass in which every key has the same digit
+			if (_counts[(src[0] >>> shift) & RADIX_MASK] == n) {
+				continue;
+			}
+
+			int sum = 0;
+			for (int d = 0; d < RADIX; d++) {
+				int c = _counts[d];
+				_counts[d] = sum;
+				sum += c;
+			}
+
+			for (int i = 0; i < n; i++) {
+				int d = (src[i] >>> shift) & RADIX_MASK;
+				int pos = _counts[d]++;
+				dst[pos] = src[i];
+				dstOrder[pos] = srcOrder[i];
+			}
+
+			int[] t = src;
+			src = dst;
+			dst = t;
+			t = srcOrder;
+			srcOrder = dstOrder;
+			dstOrder = t;
+		}
+
+		// keep the result in _order/_bits regardless of how many passes ran
+		if (srcOrder != _order) {
+			System.arraycopy(srcOrder, 0, _order, 0, n);
+			System.arraycopy(src, 0, _bits, 0, n);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+/**
+ * The six planes of a view frustum in world (object) coordinates, extracted
+ * from the projection and modelview matrices, used to cull items whose bounds
+ * lie entirely outside the view.
+ * <p>
+ * The tests are conservative: an item is only reported outside when its bounds
+ * are provably outside one of the planes. An item near a frustum corner may be
+ * reported visible when it is not, which costs a draw but never drops one.
+ */
+public class Frustum3D {
+
+	// the planes as (a, b, c, d) with ax + by + cz + d >= 0 inside,
+	// in the order left, right, bottom, top, near, far
+	private final float[] _planes = new float[24];
+
+	// the combined clip matrix (column major)
+	private final float[] _clip = new float[16];
+
+	// false until set
+	private boolean _valid;
+
+	/**
+	 * Extract the planes from OpenGL style (column major) matrices.
+	 *
+	 * @param projection the projection matrix
+	 * @param modelview  the modelview matrix
+	 */
+	public void set(float[] projection, float[] modelview) {
+		// clip = projection * modelview
+		for (int c = 0; c < 4; c++) {
+			for (int r = 0; r < 4; r++) {
+				float sum = 0;
+				for (int k = 0; k < 4; k++) {
+					sum += projection[k * 4 + r] * modelview[c * 4 + k];
+				}
+				_clip[c * 4 + r] = sum;
+			}
+		}
+
+		// Gribb/Hartmann: each plane is the last row plus or minus another row
+		for (int i = 0; i < 6; i++) {
+			int row = i / 2;
+			float sign = ((i & 1) == 0) ? 1f : -1f;
+			float a = _clip[3] + sign * _clip[row];
+			float b = _clip[7] + sign * _clip[4 + row];
+			float c = _clip[11] + sign * _clip[8 + row];
+			float d = _clip[15] + sign * _clip[12 + row];
+
+			float len = (float) Math.sqrt(a * a + b * b + c * c);
+			if (len > 0) {
+				a /= len;
+				b /= len;
+				c /= len;
+				d /= len;
+			}
+
+			int j = 4 * i;
+			_planes[j] = a;
+			_planes[j + 1] = b;
+			_planes[j + 2] = c;
+			_planes[j + 3] = d;
+		}
+		_valid = true;
+	}
+
+	/**
+	 * Check whether the planes have been set.
+	 *
+	 * @return <code>true</code> if {@link #set(float[], float[])} has been called
+	 */
+	public boolean isValid() {
+		return _valid;
+	}
+
+	/**
+	 * Forget the planes, so that everything is considered visible.
+	 */
+	public void invalidate() {
+		_valid = false;
+	}
+
+	/**
+	 * Test a sphere against the frustum.
+	 *
+	 * @param x      the x coordinate of the center
+	 * @param y      the y coordinate of the center
+	 * @param z      the z coordinate of the center
+	 * @param radius the radius
+	 * @return <code>true</code> if the sphere may be visible
+	 */
+	public boolean intersectsSphere(float x, float y, float z, float radius) {
+		if (!_valid) {
+			return true;
+		}
+		for (int j = 0; j < 24; j += 4) {
+			if (_planes[j] * x + _planes[j + 1] * y + _planes[j + 2] * z + _planes[j + 3] < -radius) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Test an axis aligned box against the frustum.
+	 *
+	 * @param minX the minimum x
+	 * @param minY the minimum y
+	 * @param minZ the minimum z
+	 * @param maxX the maximum x
+	 * @param maxY the maximum y
+	 * @param maxZ the maximum z
+	 * @return <code>true</code> if the box may be visible
+	 */
+	public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		if (!_valid) {
+			return true;
+		}
+		for (int j = 0; j < 24; j += 4) {
+			float a = _planes[j];
+			float b = _planes[j + 1];
+			float c = _planes[j + 2];
+
+			// the box corner farthest along the plane normal
+			float px = (a >= 0) ? maxX : minX;
+			float py = (b >= 0) ? maxY : minY;
+			float pz = (c >= 0) ? maxZ : minZ;
+			if (a * px + b * py + c * pz + _planes[j + 3] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Test a bounds against the frustum. The cheap sphere test runs first; the
+	 * tighter box test only for spheres that straddle a plane. Infinite bounds
+	 * are always visible, empty bounds never are.
+	 *
+	 * @param bounds the bounds (<code>null</code> is treated as infinite)
+	 * @return <code>true</code> if the bounds may be visible
+	 */
+	public boolean intersects(Bounds3D bounds) {
+		if ((bounds == null) || bounds.isInfinite()) {
+			return true;
+		}
+		if (bounds.isEmpty()) {
+			return false;
+		}
+		return intersectsSphere(bounds.getCenterX(), bounds.getCenterY(), bounds.getCenterZ(), bounds.getRadius())
+				&& intersectsBox(bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(), bounds.getMaxX(),
+						bounds.getMaxY(), bounds.getMaxZ());
+	}
+}
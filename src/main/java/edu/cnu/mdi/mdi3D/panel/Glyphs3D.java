@@ -0,0 +1,368 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.fixedfunc.GLPointerFunc;
+
+/**
+ * A set of glyphs: copies of one cached unit mesh (see {@link MeshCache3D}),
+ * each stretched along a segment and scaled across it by a radius, in its own
+ * color. The unit mesh's z axis runs from the start of the segment to its end,
+ * so a {@link MeshCache3D.Primitive#CYLINDER CYLINDER} glyph is a tube and a
+ * {@link MeshCache3D.Primitive#CONE CONE} glyph is an arrow head.
+ * <p>
+ * Where shaders and instancing are available the whole set is one instanced
+ * draw: the glyph data (two ends, a radius and a color, 32 bytes a glyph) is
+ * uploaded to a buffer when it changes and a vertex shader places each copy.
+ * Otherwise the glyphs are transformed on the CPU into one batched mesh, which
+ * is rebuilt only when the set changes, and drawn with one call. Either way
+ * the glyphs may be shaded by a light fixed in the scene.
+ * <p>
+ * Render thread only.
+ */
+public class Glyphs3D {
+
+	// bytes per glyph: end1 (3 floats), end2 (3 floats), radius, RGBA bytes
+	private static final int BYTES_PER_GLYPH = 32;
+
+	// attribute locations
+	private static final int END1 = ShaderProgram3D.FIRST_ATTRIBUTE;
+	private static final int END2 = END1 + 1;
+	private static final int RADIUS = END1 + 2;
+	private static final int COLOR = END1 + 3;
+
+	// the shading, also of the SphereImpostors3D: ambient plus diffuse from a
+	// light along (1, 1, 1)
+	static final float AMBIENT = 0.35f;
+	static final float LIGHT = (float) (1 / Math.sqrt(3));
+
+	private static final String VERTEX_SHADER = String.join("\n",
+			"#version 120",
+			"attribute vec3 a_end1;",
+			"attribute vec3 a_end2;",
+			"attribute float a_radius;",
+			"attribute vec4 a_color;",
+			"uniform float u_ambient;",
+			"varying vec4 v_color;",
+			"void main() {",
+			"	vec3 axis = a_end2 - a_end1;",
+			"	float len = length(axis);",
+			"	vec3 w = (len > 0.0) ? axis / len : vec3(0.0, 0.0, 1.0);",
+			"	vec3 u = normalize((abs(w.z) < 0.9) ? vec3(-w.y, w.x, 0.0) : vec3(0.0, -w.z, w.y));",
+			"	vec3 v = cross(w, u);",
+			"	vec3 p = a_end1 + a_radius * (gl_Vertex.x * u + gl_Vertex.y * v) + (gl_Vertex.z * len) * w;",
+			// the inverse transpose of [r u, r v, len w], times r * len
+			"	vec3 n = (len * gl_Normal.x) * u + (len * gl_Normal.y) * v + (a_radius * gl_Normal.z) * w;",
+			"	float nn = length(n);",
+			"	float diffuse = (nn > 0.0) ? max(dot(n, vec3(" + LIGHT + ")) / nn, 0.0) : 0.0;",
+			"	float shade = u_ambient + (1.0 - u_ambient) * diffuse;",
+			"	v_color = vec4(a_color.rgb * shade, a_color.a);",
+			"	gl_Position = gl_ModelViewProjectionMatrix * vec4(p, 1.0);",
+			"}");
+
+	private static final String FRAGMENT_SHADER = String.join("\n",
+			"#version 120",
+			"varying vec4 v_color;",
+			"void main() {",
+			"	gl_FragColor = v_color;",
+			"}");
+
+	// the program shared by all glyph sets
+	private static final ShaderProgram3D PROGRAM = new ShaderProgram3D("Glyphs3D", VERTEX_SHADER, FRAGMENT_SHADER,
+			new String[] { "a_end1", "a_end2", "a_radius", "a_color" }, new int[] { END1, END2, RADIUS, COLOR },
+			"u_ambient");
+
+	// the unit mesh
+	private final MeshCache3D.Primitive _primitive;
+	private final int _slices;
+	private final int _stacks;
+
+	// the glyphs
+	private final InstanceData3D _glyphs = new InstanceData3D(BYTES_PER_GLYPH);
+
+	// options
+	private boolean _shaded = true;
+	private boolean _instanced = true;
+
+	// the CPU batch, and whether it holds the current glyphs
+	private FloatBuffer _batchVertices;
+	private ByteBuffer _batchColors;
+	private IntBuffer _batchIndices;
+	private boolean _batched;
+
+	/**
+	 * Create an empty glyph set.
+	 *
+	 * @param primitive the unit mesh, usually a cylinder or a cone
+	 * @param slices    the number of subdivisions around the axis
+	 * @param stacks    the number of subdivisions along the axis
+	 */
+	public Glyphs3D(MeshCache3D.Primitive primitive, int slices, int stacks) {
+		_primitive = primitive;
+		_slices = slices;
+		_stacks = stacks;
+	}
+
+	/**
+	 * Check whether glyphs can be drawn instanced in the given context.
+	 *
+	 * @param gl the GL
+	 * @return <code>true</code> if the instanced path is available
+	 */
+	public static boolean isInstancingSupported(GL2 gl) {
+		return VertexBuffer3D.isSupported(gl) && ShaderProgram3D.isSupported(gl)
+				&& gl.isFunctionAvailable("glDrawElementsInstanced") && gl.isFunctionAvailable("glVertexAttribDivisor");
+	}
+
+	/**
+	 * Set the number of glyphs. The glyphs must then all be set.
+	 *
+	 * @param count the number of glyphs
+	 */
+	public void setCount(int count) {
+		_glyphs.setCount(count);
+		_batched = false;
+	}
+
+	/**
+	 * Get the number of glyphs.
+	 *
+	 * @return the number of glyphs
+	 */
+	public int getCount() {
+		return _glyphs.getCount();
+	}
+
+	/**
+	 * Set a glyph.
+	 *
+	 * @param index  the index of the glyph
+	 * @param x1     x coordinate of the start
+	 * @param y1     y coordinate of the start
+	 * @param z1     z coordinate of the start
+	 * @param x2     x coordinate of the end
+	 * @param y2     y coordinate of the end
+	 * @param z2     z coordinate of the end
+	 * @param radius the radius across the segment
+	 * @param argb   the color as ARGB, as <code>Color.getRGB()</code>
+	 */
+	public void set(int index, float x1, float y1, float z1, float x2, float y2, float z2, float radius, int argb) {
+		_glyphs.putFloat(index, 0, x1);
+		_glyphs.putFloat(index, 4, y1);
+		_glyphs.putFloat(index, 8, z1);
+		_glyphs.putFloat(index, 12, x2);
+		_glyphs.putFloat(index, 16, y2);
+		_glyphs.putFloat(index, 20, z2);
+		_glyphs.putFloat(index, 24, radius);
+		_glyphs.putColor(index, 28, argb);
+		_batched = false;
+	}
+
+	/**
+	 * Set whether the glyphs are shaded by the scene light. If not they are drawn
+	 * in their flat colors.
+	 *
+	 * @param shaded <code>true</code> to shade
+	 */
+	public void setShaded(boolean shaded) {
+		if (shaded != _shaded) {
+			_shaded = shaded;
+			_batched = false;
+		}
+	}
+
+	/**
+	 * Check whether the glyphs are shaded.
+	 *
+	 * @return <code>true</code> if the glyphs are shaded
+	 */
+	public boolean isShaded() {
+		return _shaded;
+	}
+
+	/**
+	 * Set whether the instanced path may be used. If not the glyphs are always
+	 * batched on the CPU.
+	 *
+	 * @param instanced if <code>false</code> always batch on the CPU
+	 */
+	public void setInstanced(boolean instanced) {
+		_instanced = instanced;
+	}
+
+	/**
+	 * Draw the glyphs with the current transform.
+	 *
+	 * @param gl the GL
+	 */
+	public void draw(GL2 gl) {
+		if (_glyphs.getCount() == 0) {
+			return;
+		}
+
+		Mesh3D mesh = MeshCache3D.get(gl).getMesh(_primitive, _slices, _stacks);
+		if (_instanced && isInstancingSupported(gl) && PROGRAM.use(gl)) {
+			drawInstanced(gl, mesh);
+			PROGRAM.unuse(gl);
+		} else {
+			drawBatched(gl, mesh);
+		}
+	}
+
+	/**
+	 * Release the glyph buffer of the current context, and the CPU batch. The
+	 * buffers of other contexts the glyphs were drawn in are kept until they are
+	 * disposed in turn.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		_glyphs.dispose(gl);
+
+		_batchVertices = null;
+		_batchColors = null;
+		_batchIndices = null;
+		_batched = false;
+	}
+
+	// one instanced draw
+	private void drawInstanced(GL2 gl, Mesh3D mesh) {
+		_glyphs.bind(gl);
+		gl.glUniform1f(PROGRAM.getUniform(gl, 0), _shaded ? AMBIENT : 1f);
+
+		_glyphs.attribute(gl, END1, 3, GL.GL_FLOAT, false, 0);
+		_glyphs.attribute(gl, END2, 3, GL.GL_FLOAT, false, 12);
+		_glyphs.attribute(gl, RADIUS, 1, GL.GL_FLOAT, false, 24);
+		_glyphs.attribute(gl, COLOR, 4, GL.GL_UNSIGNED_BYTE, true, 28);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+		mesh.drawInstanced(gl, _glyphs.getCount());
+
+		_glyphs.disableAttributes(gl, END1, COLOR);
+	}
+
+	// one draw of the glyphs transformed on the CPU
+	private void drawBatched(GL2 gl, Mesh3D mesh) {
+		if (!_batched) {
+			batch(mesh);
+			_batched = true;
+		}
+
+		RenderState3D state = RenderState3D.get(gl);
+		state.lighting(gl, false);
+
+		gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GLPointerFunc.GL_COLOR_ARRAY);
+		gl.glVertexPointer(3, GL.GL_FLOAT, 0, _batchVertices);
+		gl.glColorPointer(4, GL.GL_UNSIGNED_BYTE, 0, _batchColors);
+
+		gl.glDrawElements(mesh.getMode(), _batchIndices.limit(), GL.GL_UNSIGNED_INT, _batchIndices);
+
+		gl.glDisableClientState(GLPointerFunc.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+
+		// the color array leaves the current color undefined
+		state.invalidate();
+	}
+
+	// transform the mesh into every glyph, as the vertex shader does
+	private void batch(Mesh3D mesh) {
+		float[] unit = mesh.getVertexData();
+		int[] unitIndices = mesh.getIndexData();
+		int n = unit.length / 6;
+		float ambient = _shaded ? AMBIENT : 1f;
+
+		int count = _glyphs.getCount();
+		int vertices = count * n;
+		if ((_batchVertices == null) || (_batchVertices.capacity() != 3 * vertices)) {
+			_batchVertices = Buffers.newDirectFloatBuffer(3 * vertices);
+			_batchColors = Buffers.newDirectByteBuffer(4 * vertices);
+			_batchIndices = Buffers.newDirectIntBuffer(count * unitIndices.length);
+		}
+		_batchVertices.clear();
+		_batchColors.clear();
+		_batchIndices.clear();
+
+		for (int g = 0; g < count; g++) {
+			float x1 = _glyphs.getFloat(g, 0);
+			float y1 = _glyphs.getFloat(g, 4);
+			float z1 = _glyphs.getFloat(g, 8);
+			float ax = _glyphs.getFloat(g, 12) - x1;
+			float ay = _glyphs.getFloat(g, 16) - y1;
+			float az = _glyphs.getFloat(g, 20) - z1;
+			float radius = _glyphs.getFloat(g, 24);
+			int argb = _glyphs.getColor(g, 28);
+			float red = (argb >> 16) & 0xFF;
+			float green = (argb >> 8) & 0xFF;
+			float blue = argb & 0xFF;
+			byte alpha = (byte) (argb >>> 24);
+
+			// the frame: w along the axis, u and v across it
+			float len = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+			float wx = 0f;
+			float wy = 0f;
+			float wz = 1f;
+			if (len > 0f) {
+				wx = ax / len;
+				wy = ay / len;
+				wz = az / len;
+			}
+			float ux, uy, uz;
+			if (Math.abs(wz) < 0.9f) {
+				ux = -wy;
+				uy = wx;
+				uz = 0f;
+			} else {
+				ux = 0f;
+				uy = -wz;
+				uz = wy;
+			}
+			float ul = (float) Math.sqrt(ux * ux + uy * uy + uz * uz);
+			ux /= ul;
+			uy /= ul;
+			uz /= ul;
+			float vx = wy * uz - wz * uy;
+			float vy = wz * ux - wx * uz;
+			float vz = wx * uy - wy * ux;
+
+			for (int i = 0; i < n; i++) {
+				int k = 6 * i;
+				float px = radius * unit[k];
+				float py = radius * unit[k + 1];
+				float pz = len * unit[k + 2];
+				_batchVertices.put(x1 + px * ux + py * vx + pz * wx);
+				_batchVertices.put(y1 + px * uy + py * vy + pz * wy);
+				_batchVertices.put(z1 + px * uz + py * vz + pz * wz);
+
+				float nx = len * unit[k + 3];
+				float ny = len * unit[k + 4];
+				float nz = radius * unit[k + 5];
+				float mx = nx * ux + ny * vx + nz * wx;
+				float my = nx * uy + ny * vy + nz * wy;
+				float mz = nx * uz + ny * vz + nz * wz;
+				float nn = (float) Math.sqrt(mx * mx + my * my + mz * mz);
+				float diffuse = (nn > 0f) ? Math.max(LIGHT * (mx + my + mz) / nn, 0f) : 0f;
+				float shade = ambient + (1f - ambient) * diffuse;
+
+				_batchColors.put((byte) (red * shade + 0.5f));
+				_batchColors.put((byte) (green * shade + 0.5f));
+				_batchColors.put((byte) (blue * shade + 0.5f));
+				_batchColors.put(alpha);
+			}
+
+			int first = g * n;
+			for (int index : unitIndices) {
+				_batchIndices.put(first + index);
+			}
+		}
+
+		_batchVertices.flip();
+		_batchColors.flip();
+		_batchIndices.flip();
+	}
+}
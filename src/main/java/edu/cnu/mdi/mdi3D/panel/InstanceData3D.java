@@ -0,0 +1,167 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+
+/**
+ * The per instance data of an instanced draw, e.g. of the {@link Glyphs3D}
+ * and {@link SphereImpostors3D} sets: a fixed number of bytes per instance,
+ * kept in a direct buffer and uploaded to an array buffer in each context the
+ * set is drawn in, again only after it changes.
+ * <p>
+ * Render thread only.
+ */
+class InstanceData3D {
+
+	// bytes per instance
+	private final int _stride;
+
+	// the instances
+	private ByteBuffer _data = ByteBuffer.allocateDirect(0);
+	private int _count;
+
+	// the buffer in each context, and the version of the instances
+	private final ContextBuffers3D _buffers = new ContextBuffers3D(1);
+	private int _version;
+
+	/**
+	 * Create empty instance data.
+	 *
+	 * @param stride the bytes per instance
+	 */
+	InstanceData3D(int stride) {
+		_stride = stride;
+	}
+
+	/**
+	 * Set the number of instances. The instances must then all be set.
+	 *
+	 * @param count the number of instances
+	 */
+	void setCount(int count) {
+		int bytes = count * _stride;
+		if (_data.capacity() < bytes) {
+			_data = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		}
+		_count = count;
+		_version++;
+	}
+
+	/**
+	 * Get the number of instances.
+	 *
+	 * @return the number of instances
+	 */
+	int getCount() {
+		return _count;
+	}
+
+	/**
+	 * Set a float of an instance.
+	 *
+	 * @param index  the index of the instance
+	 * @param offset the byte offset in the instance
+	 * @param value  the value
+	 */
+	void putFloat(int index, int offset, float value) {
+		_data.putFloat(index * _stride + offset, value);
+		_version++;
+	}
+
+	/**
+	 * Get a float of an instance.
+	 *
+	 * @param index  the index of the instance
+	 * @param offset the byte offset in the instance
+	 * @return the value
+	 */
+	float getFloat(int index, int offset) {
+		return _data.getFloat(index * _stride + offset);
+	}
+
+	/**
+	 * Set the color of an instance, as the RGBA bytes the shaders read.
+	 *
+	 * @param index  the index of the instance
+	 * @param offset the byte offset of the color in the instance
+	 * @param argb   the color as ARGB, as <code>Color.getRGB()</code>
+	 */
+	void putColor(int index, int offset, int argb) {
+		int b = index * _stride + offset;
+		_data.put(b, (byte) (argb >> 16));
+		_data.put(b + 1, (byte) (argb >> 8));
+		_data.put(b + 2, (byte) argb);
+		_data.put(b + 3, (byte) (argb >>> 24));
+		_version++;
+	}
+
+	/**
+	 * Get the color of an instance.
+	 *
+	 * @param index  the index of the instance
+	 * @param offset the byte offset of the color in the instance
+	 * @return the color as ARGB
+	 */
+	int getColor(int index, int offset) {
+		int b = index * _stride + offset;
+		return ((_data.get(b + 3) & 0xFF) << 24) | ((_data.get(b) & 0xFF) << 16) | ((_data.get(b + 1) & 0xFF) << 8)
+				| (_data.get(b + 2) & 0xFF);
+	}
+
+	/**
+	 * Bind the buffer of the current context as the array buffer, uploading the
+	 * instances first if it does not hold them yet.
+	 *
+	 * @param gl the GL
+	 */
+	void bind(GL2 gl) {
+		if (_buffers.bind(gl, 0, _version)) {
+			_data.clear();
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) _count * _stride, _data, GL.GL_STATIC_DRAW);
+		}
+	}
+
+	/**
+	 * Point a generic attribute at a field of the bound instances, advancing
+	 * once per instance.
+	 *
+	 * @param gl         the GL
+	 * @param location   the attribute location
+	 * @param size       the number of components
+	 * @param type       the component type
+	 * @param normalized whether integer components are normalized
+	 * @param offset     the byte offset of the field in the instance
+	 */
+	void attribute(GL2 gl, int location, int size, int type, boolean normalized, int offset) {
+		gl.glEnableVertexAttribArray(location);
+		gl.glVertexAttribPointer(location, size, type, normalized, _stride, offset);
+		gl.glVertexAttribDivisor(location, 1);
+	}
+
+	/**
+	 * Turn off the per instance attributes of a draw.
+	 *
+	 * @param gl    the GL
+	 * @param first the first attribute location
+	 * @param last  the last attribute location
+	 */
+	void disableAttributes(GL2 gl, int first, int last) {
+		for (int location = first; location <= last; location++) {
+			gl.glVertexAttribDivisor(location, 0);
+			gl.glDisableVertexAttribArray(location);
+		}
+	}
+
+	/**
+	 * Release the buffer of the current context. Those of other contexts are
+	 * kept until they are disposed in turn.
+	 *
+	 * @param gl the GL
+	 */
+	void dispose(GL2 gl) {
+		_buffers.dispose(gl);
+	}
+}
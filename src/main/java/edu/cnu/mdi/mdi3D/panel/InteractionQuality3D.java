@@ -0,0 +1,198 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import javax.swing.Timer;
+
+/**
+ * The interaction quality policy of a panel. While the user is moving the
+ * camera (dragging, turning the wheel or holding a view key) the frames are
+ * drawn at reduced quality so they keep up with the input: large point sets
+ * draw a fixed, evenly spread subsample of at most {@link #getMaxPoints()}
+ * points, labels are not drawn, and round items are tessellated as if they
+ * were {@link #getDetailScale()} times their size on screen. Once the input
+ * has been idle for {@link #getIdleDelay()} milliseconds a full quality frame
+ * is drawn.
+ * <p>
+ * The input handlers report each camera change with {@link #inputActive()}.
+ * Event dispatch thread only.
+ */
+public class InteractionQuality3D {
+
+	// if false every frame is drawn at full quality
+	private boolean _enabled = true;
+
+	// the idle time after which a full quality frame is drawn, in milliseconds
+	private int _idleDelay = 250;
+
+	// the most points of a set drawn while interacting
+	private int _maxPoints = 250_000;
+
+	// the apparent size of round items while interacting, relative to their true size
+	private float _detailScale = 0.25f;
+
+	// hide labels while interacting?
+	private boolean _hideLabels = true;
+
+	// true from the first input until the input has been idle for the delay
+	private boolean _interacting;
+
+	// fires once the input has been idle for the delay
+	private final Timer _idleTimer;
+
+	/**
+	 * Create the policy.
+	 *
+	 * @param fullFrame requests the full quality frame once the input is idle,
+	 *                  e.g. the panel's refresh
+	 */
+	public InteractionQuality3D(Runnable fullFrame) {
+		_idleTimer = new Timer(_idleDelay, e -> {
+			_interacting = false;
+			fullFrame.run();
+		});
+		_idleTimer.setRepeats(false);
+	}
+
+	/**
+	 * Report that the user moved the camera. The frames are drawn at reduced
+	 * quality until the input has been idle for the delay.
+	 */
+	public void inputActive() {
+		if (!_enabled) {
+			return;
+		}
+		_interacting = true;
+		_idleTimer.setInitialDelay(_idleDelay);
+		_idleTimer.restart();
+	}
+
+	/**
+	 * Check whether the user is moving the camera, i.e. whether frames are drawn
+	 * at reduced quality.
+	 *
+	 * @return <code>true</code> while interacting
+	 */
+	public boolean isInteracting() {
+		return _interacting;
+	}
+
+	/**
+	 * Get the step with which to subsample a point set in the current frame.
+	 * Drawing every step-th point from the first keeps the same points in every
+	 * frame, so the subsample does not flicker.
+	 *
+	 * @param count the number of points in the set
+	 * @return the step, 1 to draw all points
+	 */
+	public int getPointStep(int count) {
+		if (!_interacting || (count <= _maxPoints)) {
+			return 1;
+		}
+		return (count + _maxPoints - 1) / _maxPoints;
+	}
+
+	/**
+	 * Get the scale to apply to the size on screen of round items when choosing
+	 * their tessellation in the current frame.
+	 *
+	 * @return the scale, 1 at full quality
+	 */
+	public float getFrameDetailScale() {
+		return _interacting ? _detailScale : 1f;
+	}
+
+	/**
+	 * Check whether labels are to be skipped in the current frame.
+	 *
+	 * @return <code>true</code> if labels are not drawn
+	 */
+	public boolean isHidingLabels() {
+		return _interacting && _hideLabels;
+	}
+
+	/**
+	 * Set whether frames are drawn at reduced quality while interacting.
+	 *
+	 * @param enabled <code>false</code> to always draw at full quality
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		if (!enabled && _interacting) {
+			_idleTimer.stop();
+			_interacting = false;
+		}
+	}
+
+	/**
+	 * Check whether frames are drawn at reduced quality while interacting.
+	 *
+	 * @return <code>true</code> if enabled
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * Set the idle time after which a full quality frame is drawn.
+	 *
+	 * @param millis the delay in milliseconds
+	 */
+	public void setIdleDelay(int millis) {
+		_idleDelay = Math.max(0, millis);
+	}
+
+	/**
+	 * Get the idle time after which a full quality frame is drawn.
+	 *
+	 * @return the delay in milliseconds
+	 */
+	public int getIdleDelay() {
+		return _idleDelay;
+	}
+
+	/**
+	 * Set the most points of a set drawn while interacting.
+	 *
+	 * @param maxPoints the points per set
+	 */
+	public void setMaxPoints(int maxPoints) {
+		_maxPoints = Math.max(1, maxPoints);
+	}
+
+	/**
+	 * Get the most points of a set drawn while interacting.
+	 *
+	 * @return the points per set
+	 */
+	public int getMaxPoints() {
+		return _maxPoints;
+	}
+
+	/**
+	 * Set the apparent size of round items while interacting, relative to their
+	 * size on screen. Smaller is coarser.
+	 *
+	 * @param scale the scale, e.g. 0.25
+	 */
+	public void setDetailScale(float scale) {
+		_detailScale = Math.max(0f, Math.min(1f, scale));
+	}
+
+	/**
+	 * Get the apparent size of round items while interacting, relative to their
+	 * size on screen.
+	 *
+	 * @return the scale
+	 */
+	public float getDetailScale() {
+		return _detailScale;
+	}
+
+	/**
+	 * Set whether labels are hidden while interacting.
+	 *
+	 * @param hideLabels <code>true</code> to hide labels
+	 */
+	public void setHideLabels(boolean hideLabels) {
+		_hideLabels = hideLabels;
+	}
+}
@@ -0,0 +1,157 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+/**
+ * The level of detail policy of a panel's tessellated items. A level is a
+ * number of slices around a round primitive, chosen from a short fixed list
+ * so that the meshes of all items of similar size are shared in the
+ * {@link MeshCache3D}. The level is picked from the projected size in pixels
+ * (see {@link Projector3D#getPixelRadius(float, float, float, float)}) so that
+ * the edges of the silhouette are about {@link #getPixelsPerSegment()} pixels
+ * long, and never exceeds the resolution the item was given.
+ * <p>
+ * To avoid flicker while zooming an item only drops to a coarser level once
+ * it is a fraction ({@link #getHysteresis()}) smaller than the size at which
+ * it would have switched up. Each item keeps its own current level; the
+ * policy holds no per item state.
+ */
+public class LevelOfDetail3D {
+
+	// the slices of each level, coarsest first
+	private static final int[] SLICES = { 6, 8, 12, 16, 24, 32, 48, 64, 96, 128 };
+
+	// the target length of a silhouette edge in pixels
+	private float _pixelsPerSegment = 6f;
+
+	// the fraction an item must shrink below a threshold before dropping a level
+	private float _hysteresis = 0.2f;
+
+	// if false items use their full resolution
+	private boolean _enabled = true;
+
+	/**
+	 * Get the number of levels.
+	 *
+	 * @return the number of levels
+	 */
+	public static int getLevelCount() {
+		return SLICES.length;
+	}
+
+	/**
+	 * Select the level for an item, given its current level.
+	 *
+	 * @param level       the item's current level, -1 if none yet
+	 * @param pixelRadius the item's radius on screen in pixels
+	 * @return the new level
+	 */
+	public int select(int level, float pixelRadius) {
+		if (!_enabled) {
+			return SLICES.length - 1;
+		}
+
+		int wanted = levelFor(pixelRadius);
+		if ((level < 0) || (wanted > level)) {
+			return wanted;
+		}
+		if (wanted < level) {
+			// go down only as far as a somewhat larger item would
+			return Math.min(level, levelFor(pixelRadius * (1f + _hysteresis)));
+		}
+		return level;
+	}
+
+	/**
+	 * Get the slices of a level, capped at the item's own resolution.
+	 *
+	 * @param level     the level
+	 * @param maxSlices the item's full resolution
+	 * @return the slices to draw with
+	 */
+	public static int getSlices(int level, int maxSlices) {
+		return Math.min(SLICES[Math.max(0, Math.min(level, SLICES.length - 1))], maxSlices);
+	}
+
+	/**
+	 * Get the stacks that go with a number of slices, keeping the proportion of
+	 * the item's full resolution.
+	 *
+	 * @param slices    the slices being drawn
+	 * @param maxSlices the item's full slices
+	 * @param maxStacks the item's full stacks
+	 * @return the stacks to draw with, at least 2
+	 */
+	public static int getStacks(int slices, int maxSlices, int maxStacks) {
+		if (slices >= maxSlices) {
+			return maxStacks;
+		}
+		return Math.max(2, Math.round((float) slices * maxStacks / maxSlices));
+	}
+
+	/**
+	 * Set the target length of a silhouette edge. Larger is coarser.
+	 *
+	 * @param pixels the edge length in pixels
+	 */
+	public void setPixelsPerSegment(float pixels) {
+		_pixelsPerSegment = Math.max(0.5f, pixels);
+	}
+
+	/**
+	 * Get the target length of a silhouette edge.
+	 *
+	 * @return the edge length in pixels
+	 */
+	public float getPixelsPerSegment() {
+		return _pixelsPerSegment;
+	}
+
+	/**
+	 * Set the hysteresis.
+	 *
+	 * @param hysteresis the fraction by which an item must shrink past a
+	 *                   threshold before dropping a level, e.g. 0.2
+	 */
+	public void setHysteresis(float hysteresis) {
+		_hysteresis = Math.max(0f, hysteresis);
+	}
+
+	/**
+	 * Get the hysteresis.
+	 *
+	 * @return the fraction by which an item must shrink past a threshold before
+	 *         dropping a level
+	 */
+	public float getHysteresis() {
+		return _hysteresis;
+	}
+
+	/**
+	 * Set whether the level of detail is used. If not every item is drawn at its
+	 * full resolution.
+	 *
+	 * @param enabled <code>true</code> to choose the level by size
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+	}
+
+	/**
+	 * Check whether the level of detail is used.
+	 *
+	 * @return <code>true</code> if the level is chosen by size
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	// the coarsest level whose silhouette edges are short enough
+	private int levelFor(float pixelRadius) {
+		float wanted = (float) (2 * Math.PI * pixelRadius / _pixelsPerSegment);
+		for (int level = 0; level < SLICES.length; level++) {
+			if (SLICES[level] >= wanted) {
+				return level;
+			}
+		}
+		return SLICES.length - 1;
+	}
+}
@@ -0,0 +1,492 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.fixedfunc.GLPointerFunc;
+
+/**
+ * An indexed mesh of positions and normals, generated once on the CPU and
+ * drawn from GPU buffers (or from client arrays where vertex buffers are not
+ * available). The generators build unit primitives (a unit sphere, a unit
+ * cylinder, ...) that are drawn with a transform; get them through a
+ * {@link MeshCache3D} rather than creating them per frame.
+ * <p>
+ * A mesh's buffers belong to the context it is first drawn in.
+ */
+public class Mesh3D {
+
+	// floats per vertex: position then normal
+	private static final int FLOATS_PER_VERTEX = 6;
+	private static final int STRIDE = FLOATS_PER_VERTEX * Float.BYTES;
+
+	// the primitive type, e.g. GL_TRIANGLES
+	private final int _mode;
+
+	// interleaved vertices and the indices, kept for the client array path
+	private final FloatBuffer _vertices;
+	private final FloatBuffer _normals;
+	private final IntBuffer _indices;
+	private final int _vertexCount;
+	private final int _indexCount;
+
+	// whether the normals are meaningful
+	private final boolean _hasNormals;
+
+	// the buffer objects, 0 until uploaded
+	private int _vertexBuffer;
+	private int _indexBuffer;
+
+	/**
+	 * Create a mesh.
+	 *
+	 * @param mode       the primitive type, e.g. <code>GL.GL_TRIANGLES</code>
+	 * @param vertices   the vertices as [x, y, z, nx, ny, nz, ...]
+	 * @param indices    the vertex indices of the primitives
+	 * @param hasNormals <code>false</code> if the normals should not be used
+	 *                   (e.g. for lines)
+	 */
+	public Mesh3D(int mode, float[] vertices, int[] indices, boolean hasNormals) {
+		_mode = mode;
+		_vertexCount = vertices.length / FLOATS_PER_VERTEX;
+		_indexCount = indices.length;
+		_hasNormals = hasNormals;
+
+		_vertices = Buffers.newDirectFloatBuffer(vertices);
+		_vertices.position(3);
+		_normals = _vertices.slice();
+		_vertices.position(0);
+		_indices = Buffers.newDirectIntBuffer(indices);
+	}
+
+	/**
+	 * Get the number of vertices.
+	 *
+	 * @return the vertex count
+	 */
+	public int getVertexCount() {
+		return _vertexCount;
+	}
+
+	/**
+	 * Get the number of indices, i.e. three times the number of triangles for a
+	 * triangle mesh.
+	 *
+	 * @return the index count
+	 */
+	public int getIndexCount() {
+		return _indexCount;
+	}
+
+	/**
+	 * Draw the mesh with the current transform, color and lighting.
+	 *
+	 * @param gl the GL
+	 */
+	public void draw(GL2 gl) {
+		if (VertexBuffer3D.isSupported(gl)) {
+			if (_vertexBuffer == 0) {
+				upload(gl);
+			}
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _vertexBuffer);
+			gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, _indexBuffer);
+			gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+			gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, 0L);
+			if (_hasNormals) {
+				gl.glEnableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+				gl.glNormalPointer(GL.GL_FLOAT, STRIDE, 3L * Float.BYTES);
+			}
+
+			gl.glDrawElements(_mode, _indexCount, GL.GL_UNSIGNED_INT, 0L);
+
+			disableArrays(gl);
+			gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		} else {
+			gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+			gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, _vertices);
+			if (_hasNormals) {
+				gl.glEnableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+				gl.glNormalPointer(GL.GL_FLOAT, STRIDE, _normals);
+			}
+
+			gl.glDrawElements(_mode, _indexCount, GL.GL_UNSIGNED_INT, _indices);
+
+			disableArrays(gl);
+		}
+	}
+
+	/**
+	 * Draw copies of the mesh with a single instanced call. The caller has made
+	 * current a program that places each instance, and has set up its per
+	 * instance attributes. Requires vertex buffers and instancing.
+	 *
+	 * @param gl        the GL
+	 * @param instances the number of copies
+	 */
+	public void drawInstanced(GL2 gl, int instances) {
+		if (_vertexBuffer == 0) {
+			upload(gl);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _vertexBuffer);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, _indexBuffer);
+		gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, 0L);
+		if (_hasNormals) {
+			gl.glEnableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+			gl.glNormalPointer(GL.GL_FLOAT, STRIDE, 3L * Float.BYTES);
+		}
+
+		gl.glDrawElementsInstanced(_mode, _indexCount, GL.GL_UNSIGNED_INT, 0L, instances);
+
+		disableArrays(gl);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Get the primitive type.
+	 *
+	 * @return the mode, e.g. <code>GL.GL_TRIANGLES</code>
+	 */
+	public int getMode() {
+		return _mode;
+	}
+
+	/**
+	 * Get a copy of the vertices, e.g. to transform them on the CPU.
+	 *
+	 * @return the vertices as [x, y, z, nx, ny, nz, ...]
+	 */
+	public float[] getVertexData() {
+		float[] vertices = new float[_vertices.capacity()];
+		_vertices.get(0, vertices);
+		return vertices;
+	}
+
+	/**
+	 * Get a copy of the indices.
+	 *
+	 * @return the vertex indices of the primitives
+	 */
+	public int[] getIndexData() {
+		int[] indices = new int[_indexCount];
+		_indices.get(0, indices);
+		return indices;
+	}
+
+	/**
+	 * Release the buffer objects. Must be called with the owning context current.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		if (_vertexBuffer != 0) {
+			gl.glDeleteBuffers(2, new int[] { _vertexBuffer, _indexBuffer }, 0);
+			_vertexBuffer = 0;
+			_indexBuffer = 0;
+		}
+	}
+
+	private void disableArrays(GL2 gl) {
+		gl.glDisableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		if (_hasNormals) {
+			gl.glDisableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+		}
+	}
+
+	private void upload(GL2 gl) {
+		int ids[] = new int[2];
+		gl.glGenBuffers(2, ids, 0);
+		_vertexBuffer = ids[0];
+		_indexBuffer = ids[1];
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _vertexBuffer);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) _vertices.capacity() * Float.BYTES, _vertices,
+				GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, _indexBuffer);
+		gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, (long) _indexCount * Integer.BYTES, _indices,
+				GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Get the vertex positions of a unit sphere grid, the same vertices as
+	 * {@link #sphere(int, int, boolean)}: <code>(stacks+1)*(slices+1)</code>
+	 * points, row <code>i</code> at polar angle <code>i*PI/stacks</code> from +z,
+	 * column <code>j</code> at azimuth <code>j*2*PI/slices</code>.
+	 *
+	 * @param slices the number of subdivisions around the z axis
+	 * @param stacks the number of subdivisions along the z axis
+	 * @return the points as [x, y, z, ...]
+	 */
+	public static float[] sphereGrid(int slices, int stacks) {
+		float[] sinPhi = new float[slices + 1];
+		float[] cosPhi = new float[slices + 1];
+		for (int j = 0; j <= slices; j++) {
+			double phi = (j == slices) ? 0 : j * 2 * Math.PI / slices;
+			sinPhi[j] = (float) Math.sin(phi);
+			cosPhi[j] = (float) Math.cos(phi);
+		}
+
+		float[] grid = new float[3 * (stacks + 1) * (slices + 1)];
+		int k = 0;
+		for (int i = 0; i <= stacks; i++) {
+			double theta = i * Math.PI / stacks;
+			float sinTheta = (i == stacks) ? 0f : (float) Math.sin(theta);
+			float cosTheta = (float) Math.cos(theta);
+			for (int j = 0; j <= slices; j++) {
+				grid[k++] = sinTheta * cosPhi[j];
+				grid[k++] = sinTheta * sinPhi[j];
+				grid[k++] = cosTheta;
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Generate a unit sphere centered on the origin, with its poles on the z axis
+	 * (as <code>glutSolidSphere</code>).
+	 *
+	 * @param slices the number of subdivisions around the z axis
+	 * @param stacks the number of subdivisions along the z axis
+	 * @param inside if <code>true</code> the normals and the winding face inward
+	 * @return the mesh
+	 */
+	public static Mesh3D sphere(int slices, int stacks, boolean inside) {
+		float[] grid = sphereGrid(slices, stacks);
+		int n = grid.length / 3;
+		float sign = inside ? -1f : 1f;
+
+		float[] vertices = new float[FLOATS_PER_VERTEX * n];
+		for (int v = 0; v < n; v++) {
+			for (int c = 0; c < 3; c++) {
+				vertices[FLOATS_PER_VERTEX * v + c] = grid[3 * v + c];
+				vertices[FLOATS_PER_VERTEX * v + 3 + c] = sign * grid[3 * v + c];
+			}
+		}
+
+		// two triangles per grid cell, one at the poles
+		int[] indices = new int[6 * slices * (stacks - 1)];
+		int k = 0;
+		for (int i = 0; i < stacks; i++) {
+			for (int j = 0; j < slices; j++) {
+				int a = i * (slices + 1) + j;
+				int b = a + slices + 1;
+				int c = b + 1;
+				int d = a + 1;
+				if (i != 0) {
+					k = triangle(indices, k, a, b, d, inside);
+				}
+				if (i != stacks - 1) {
+					k = triangle(indices, k, d, b, c, inside);
+				}
+			}
+		}
+		return new Mesh3D(GL.GL_TRIANGLES, vertices, indices, true);
+	}
+
+	/**
+	 * Generate an open unit cylinder of radius 1 around the z axis, from z = 0 to
+	 * z = 1 (as <code>gluCylinder</code>).
+	 *
+	 * @param slices the number of subdivisions around the z axis
+	 * @param stacks the number of subdivisions along the z axis
+	 * @return the mesh
+	 */
+	public static Mesh3D cylinder(int slices, int stacks) {
+		float[] vertices = new float[FLOATS_PER_VERTEX * (stacks + 1) * (slices + 1)];
+		int k = 0;
+		for (int i = 0; i <= stacks; i++) {
+			float z = (float) i / stacks;
+			for (int j = 0; j <= slices; j++) {
+				double phi = (j == slices) ? 0 : j * 2 * Math.PI / slices;
+				float x = (float) Math.cos(phi);
+				float y = (float) Math.sin(phi);
+				vertices[k++] = x;
+				vertices[k++] = y;
+				vertices[k++] = z;
+				vertices[k++] = x;
+				vertices[k++] = y;
+				vertices[k++] = 0f;
+			}
+		}
+
+		int[] indices = new int[6 * slices * stacks];
+		k = 0;
+		for (int i = 0; i < stacks; i++) {
+			for (int j = 0; j < slices; j++) {
+				int a = i * (slices + 1) + j;
+				int b = a + 1;
+				int c = a + slices + 2;
+				int d = a + slices + 1;
+				k = triangle(indices, k, a, b, c, false);
+				k = triangle(indices, k, a, c, d, false);
+			}
+		}
+		return new Mesh3D(GL.GL_TRIANGLES, vertices, indices, true);
+	}
+
+	/**
+	 * Generate a unit cone around the z axis with a base of radius 1 at z = 0 and
+	 * its tip at z = 1, base included (as <code>glutSolidCone</code>).
+	 *
+	 * @param slices the number of subdivisions around the z axis
+	 * @param stacks the number of subdivisions along the z axis
+	 * @return the mesh
+	 */
+	public static Mesh3D cone(int slices, int stacks) {
+		int side = (stacks + 1) * (slices + 1);
+		float[] vertices = new float[FLOATS_PER_VERTEX * (side + slices + 2)];
+		float s = (float) Math.sqrt(0.5);
+		int k = 0;
+
+		// the sides, normals of a 45 degree slant (scaled correctly by GL_NORMALIZE)
+		for (int i = 0; i <= stacks; i++) {
+			float z = (float) i / stacks;
+			float r = 1f - z;
+			for (int j = 0; j <= slices; j++) {
+				double phi = (j == slices) ? 0 : j * 2 * Math.PI / slices;
+				float x = (float) Math.cos(phi);
+				float y = (float) Math.sin(phi);
+				vertices[k++] = r * x;
+				vertices[k++] = r * y;
+				vertices[k++] = z;
+				vertices[k++] = s * x;
+				vertices[k++] = s * y;
+				vertices[k++] = s;
+			}
+		}
+
+		// the base: center, then the rim
+		int center = side;
+		k = put(vertices, k, 0f, 0f, 0f, 0f, 0f, -1f);
+		for (int j = 0; j <= slices; j++) {
+			double phi = (j == slices) ? 0 : j * 2 * Math.PI / slices;
+			k = put(vertices, k, (float) Math.cos(phi), (float) Math.sin(phi), 0f, 0f, 0f, -1f);
+		}
+
+		int[] indices = new int[6 * slices * stacks + 3 * slices];
+		k = 0;
+		for (int i = 0; i < stacks; i++) {
+			for (int j = 0; j < slices; j++) {
+				int a = i * (slices + 1) + j;
+				int b = a + 1;
+				int c = a + slices + 2;
+				int d = a + slices + 1;
+				k = triangle(indices, k, a, b, c, false);
+				k = triangle(indices, k, a, c, d, false);
+			}
+		}
+		for (int j = 0; j < slices; j++) {
+			k = triangle(indices, k, center, center + 2 + j, center + 1 + j, false);
+		}
+		return new Mesh3D(GL.GL_TRIANGLES, vertices, indices, true);
+	}
+
+	/**
+	 * Generate a unit cube centered on the origin (from -0.5 to 0.5 on each
+	 * axis), with a normal per face.
+	 *
+	 * @return the mesh
+	 */
+	public static Mesh3D cube() {
+		// per face: the normal axis and sign
+		float[] vertices = new float[FLOATS_PER_VERTEX * 24];
+		int[] indices = new int[36];
+		int k = 0;
+		int m = 0;
+		for (int axis = 0; axis < 3; axis++) {
+			for (int sign = -1; sign <= 1; sign += 2) {
+				int u = (axis + 1) % 3;
+				int v = (axis + 2) % 3;
+				int first = k / FLOATS_PER_VERTEX;
+				for (int corner = 0; corner < 4; corner++) {
+					// corners in counterclockwise order seen from outside
+					float cu = ((corner == 1) || (corner == 2)) ? 0.5f : -0.5f;
+					float cv = (corner >= 2) ? 0.5f : -0.5f;
+					if (sign < 0) {
+						cu = -cu;
+					}
+					float[] p = new float[3];
+					p[axis] = 0.5f * sign;
+					p[u] = cu;
+					p[v] = cv;
+					float[] nrm = new float[3];
+					nrm[axis] = sign;
+					k = put(vertices, k, p[0], p[1], p[2], nrm[0], nrm[1], nrm[2]);
+				}
+				m = triangle(indices, m, first, first + 1, first + 2, false);
+				m = triangle(indices, m, first, first + 2, first + 3, false);
+			}
+		}
+		return new Mesh3D(GL.GL_TRIANGLES, vertices, indices, true);
+	}
+
+	/**
+	 * Generate a square from -1 to 1 in the xy plane, facing +z. Used as the
+	 * billboard of impostors.
+	 *
+	 * @return the mesh
+	 */
+	public static Mesh3D quad() {
+		float[] vertices = new float[FLOATS_PER_VERTEX * 4];
+		int k = 0;
+		k = put(vertices, k, -1f, -1f, 0f, 0f, 0f, 1f);
+		k = put(vertices, k, 1f, -1f, 0f, 0f, 0f, 1f);
+		k = put(vertices, k, 1f, 1f, 0f, 0f, 0f, 1f);
+		k = put(vertices, k, -1f, 1f, 0f, 0f, 0f, 1f);
+		return new Mesh3D(GL.GL_TRIANGLES, vertices, new int[] { 0, 1, 2, 0, 2, 3 }, true);
+	}
+
+	/**
+	 * Generate the twelve edges of a unit cube centered on the origin, as lines.
+	 *
+	 * @return the mesh
+	 */
+	public static Mesh3D cubeEdges() {
+		float[] vertices = new float[FLOATS_PER_VERTEX * 8];
+		int k = 0;
+		for (int c = 0; c < 8; c++) {
+			k = put(vertices, k, ((c & 1) == 0) ? -0.5f : 0.5f, ((c & 2) == 0) ? -0.5f : 0.5f,
+					((c & 4) == 0) ? -0.5f : 0.5f, 0f, 0f, 0f);
+		}
+
+		// corners that differ in exactly one bit share an edge
+		int[] indices = new int[24];
+		int m = 0;
+		for (int c = 0; c < 8; c++) {
+			for (int bit = 1; bit < 8; bit <<= 1) {
+				if ((c & bit) == 0) {
+					indices[m++] = c;
+					indices[m++] = c | bit;
+				}
+			}
+		}
+		return new Mesh3D(GL.GL_LINES, vertices, indices, false);
+	}
+
+	// add a triangle, reversing its winding if requested
+	private static int triangle(int[] indices, int k, int a, int b, int c, boolean reverse) {
+		indices[k++] = a;
+		indices[k++] = reverse ? c : b;
+		indices[k++] = reverse ? b : c;
+		return k;
+	}
+
+	// add a vertex
+	private static int put(float[] vertices, int k, float x, float y, float z, float nx, float ny, float nz) {
+		vertices[k++] = x;
+		vertices[k++] = y;
+		vertices[k++] = z;
+		vertices[k++] = nx;
+		vertices[k++] = ny;
+		vertices[k++] = nz;
+		return k;
+	}
+}
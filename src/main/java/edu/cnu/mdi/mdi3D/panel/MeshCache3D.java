@@ -0,0 +1,210 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
+
+/**
+ * The unit meshes of a GL context, keyed by primitive and resolution. Each
+ * mesh is generated (trigonometry included) and uploaded the first time it is
+ * asked for, then drawn from GPU buffers with a transform, e.g. a translate and
+ * a scale for a sphere. There is one cache per GL context; get it with
+ * {@link #get(GL2)}.
+ * <p>
+ * A lookup does not allocate. Render thread only.
+ */
+public class MeshCache3D {
+
+	/** The cached primitives */
+	public enum Primitive {
+		/** unit sphere at the origin, poles on z */
+		SPHERE,
+		/** unit sphere at the origin with inward normals */
+		SPHERE_INSIDE,
+		/** open cylinder of radius 1 from z = 0 to z = 1 */
+		CYLINDER,
+		/** cone of base radius 1 at z = 0 with its tip at z = 1 */
+		CONE,
+		/** cube from -0.5 to 0.5 */
+		CUBE,
+		/** the edges of the unit cube, as lines */
+		CUBE_EDGES,
+		/** square from -1 to 1 in the xy plane, facing +z */
+		QUAD
+	}
+
+	// key for the cache attached to a context
+	private static final String KEY = MeshCache3D.class.getName();
+
+	// open addressing hash table of key -> mesh (size a power of two)
+	private long[] _keys = new long[64];
+	private Mesh3D[] _meshes = new Mesh3D[64];
+	private int _size;
+
+	// the unit sphere grid most recently used (by the sphere shell), keyed like the meshes
+	private long _gridKey = -1;
+	private float[] _grid;
+
+	/**
+	 * Get the cache for the context of a GL, creating it on first use.
+	 *
+	 * @param gl the GL
+	 * @return the cache for its context
+	 */
+	public static MeshCache3D get(GL2 gl) {
+		GLContext context = gl.getContext();
+		MeshCache3D cache = (MeshCache3D) context.getAttachedObject(KEY);
+		if (cache == null) {
+			cache = new MeshCache3D();
+			context.attachObject(KEY, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Convenience method to draw a cached unit mesh with the current transform.
+	 *
+	 * @param gl        the GL
+	 * @param primitive the primitive
+	 * @param slices    the number of subdivisions around the z axis (ignored for
+	 *                  the cube and the quad)
+	 * @param stacks    the number of subdivisions along the z axis (ignored for
+	 *                  the cube and the quad)
+	 */
+	public static void draw(GL2 gl, Primitive primitive, int slices, int stacks) {
+		get(gl).getMesh(primitive, slices, stacks).draw(gl);
+	}
+
+	/**
+	 * Get a unit mesh, generating it on first use.
+	 *
+	 * @param primitive the primitive
+	 * @param slices    the number of subdivisions around the z axis (ignored for
+	 *                  the cube and the quad)
+	 * @param stacks    the number of subdivisions along the z axis (ignored for
+	 *                  the cube and the quad)
+	 * @return the mesh
+	 */
+	public Mesh3D getMesh(Primitive primitive, int slices, int stacks) {
+		if ((primitive == Primitive.CUBE) || (primitive == Primitive.CUBE_EDGES) || (primitive == Primitive.QUAD)) {
+			slices = 0;
+			stacks = 0;
+		} else {
+			slices = Math.max(3, slices);
+			stacks = Math.max(primitive.ordinal() <= Primitive.SPHERE_INSIDE.ordinal() ? 2 : 1, stacks);
+		}
+
+		long key = key(primitive, slices, stacks);
+		int mask = _keys.length - 1;
+		int slot = hash(key) & mask;
+		while (_meshes[slot] != null) {
+			if (_keys[slot] == key) {
+				return _meshes[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		Mesh3D mesh = create(primitive, slices, stacks);
+		_keys[slot] = key;
+		_meshes[slot] = mesh;
+		if (++_size > _keys.length / 2) {
+			grow();
+		}
+		return mesh;
+	}
+
+	/**
+	 * Get the vertex positions of a unit sphere grid, as
+	 * {@link Mesh3D#sphereGrid(int, int)}. The most recent grid is cached.
+	 *
+	 * @param slices the number of subdivisions around the z axis
+	 * @param stacks the number of subdivisions along the z axis
+	 * @return the points as [x, y, z, ...]; shared, do not modify
+	 */
+	public float[] getSphereGrid(int slices, int stacks) {
+		long key = key(Primitive.SPHERE, slices, stacks);
+		if (key != _gridKey) {
+			_grid = Mesh3D.sphereGrid(slices, stacks);
+			_gridKey = key;
+		}
+		return _grid;
+	}
+
+	/**
+	 * Get the number of meshes generated in this context.
+	 *
+	 * @return the number of cached meshes
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Release all the meshes, and drop the cache from its context, e.g. before
+	 * the context is destroyed. Must be called with the owning context current.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		for (int i = 0; i < _meshes.length; i++) {
+			if (_meshes[i] != null) {
+				_meshes[i].dispose(gl);
+				_meshes[i] = null;
+			}
+		}
+		_size = 0;
+		_gridKey = -1;
+		_grid = null;
+
+		GLContext context = gl.getContext();
+		if (context.getAttachedObject(KEY) == this) {
+			context.detachObject(KEY);
+		}
+	}
+
+	private static Mesh3D create(Primitive primitive, int slices, int stacks) {
+		switch (primitive) {
+		case SPHERE:
+			return Mesh3D.sphere(slices, stacks, false);
+		case SPHERE_INSIDE:
+			return Mesh3D.sphere(slices, stacks, true);
+		case CYLINDER:
+			return Mesh3D.cylinder(slices, stacks);
+		case CONE:
+			return Mesh3D.cone(slices, stacks);
+		case CUBE:
+			return Mesh3D.cube();
+		case QUAD:
+			return Mesh3D.quad();
+		default:
+			return Mesh3D.cubeEdges();
+		}
+	}
+
+	private static long key(Primitive primitive, int slices, int stacks) {
+		return ((long) primitive.ordinal() << 48) | ((long) (slices & 0xFFFFFF) << 24) | (stacks & 0xFFFFFF);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// double the table
+	private void grow() {
+		long[] keys = _keys;
+		Mesh3D[] meshes = _meshes;
+		_keys = new long[2 * keys.length];
+		_meshes = new Mesh3D[2 * meshes.length];
+		int mask = _keys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (meshes[i] != null) {
+				int slot = hash(keys[i]) & mask;
+				while (_meshes[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				_keys[slot] = keys[i];
+				_meshes[slot] = meshes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
+
+/**
+ * Renders a {@link Panel3D} scene without a window, into an offscreen drawable
+ * (an FBO or pbuffer, whichever the platform provides) of a chosen size. The
+ * panel's own item list and {@link Panel3D#display(GLAutoDrawable)} logic are
+ * used, so the image matches what the panel would show at that size.
+ * <p>
+ * Typical uses are report and regression images on batch nodes, and timing
+ * frames without Swing in the way:
+ *
+ * <pre>
+ * OffscreenRenderer3D renderer = new OffscreenRenderer3D(panel3D, 1024, 768);
+ * BufferedImage image = renderer.renderImage();
+ * renderer.dispose();
+ * </pre>
+ *
+ * Only the default capabilities of a software implementation such as Mesa
+ * llvmpipe are requested (8 bit RGBA, 24 bit depth, single buffered). On a
+ * machine with no display at all, JOGL still needs a native GL: run under
+ * Xvfb, or with an EGL capable Mesa.
+ * <p>
+ * All methods must be called from the same thread. The offscreen context has
+ * its own GL objects: items re-upload their retained geometry the first time
+ * they are drawn into it, so alternating offscreen and onscreen frames of the
+ * same panel re-uploads every frame. Use it for a panel that is not showing.
+ */
+public class OffscreenRenderer3D {
+
+	// the panel whose scene is rendered
+	private final Panel3D _panel3D;
+
+	// the offscreen drawable
+	private GLOffscreenAutoDrawable _drawable;
+
+	// the view of the offscreen frames, kept apart from the panel's own
+	private final Projector3D _projector = new Projector3D();
+
+	// current size
+	private int _width;
+	private int _height;
+
+	// the pixels of the last capture, top row first, 4 bytes per pixel
+	private ByteBuffer _rgba;
+
+	// time for the last frame, including glFinish
+	private long _lastFrameNanos;
+
+	// number of frames rendered
+	private long _frameCount;
+
+	/**
+	 * Create an offscreen renderer for a panel's scene.
+	 *
+	 * @param panel3D the panel whose items and view are rendered
+	 * @param width   the image width in pixels
+	 * @param height  the image height in pixels
+	 */
+	public OffscreenRenderer3D(Panel3D panel3D, int width, int height) {
+		_panel3D = panel3D;
+		_width = Math.max(1, width);
+		_height = Math.max(1, height);
+
+		GLCapabilities caps = new GLCapabilities(panel3D.glcapabilities.getGLProfile());
+		caps.setRedBits(8);
+		caps.setGreenBits(8);
+		caps.setBlueBits(8);
+		caps.setAlphaBits(8);
+		caps.setDepthBits(24); // 32 bit depth is often unavailable in software
+		caps.setOnscreen(false);
+		caps.setDoubleBuffered(false);
+
+		GLDrawableFactory factory = GLDrawableFactory.getFactory(caps.getGLProfile());
+		_drawable = factory.createOffscreenAutoDrawable(null, caps, null, _width, _height);
+		_drawable.addGLEventListener(new Listener());
+	}
+
+	/**
+	 * Change the size of the offscreen surface.
+	 *
+	 * @param width  the image width in pixels
+	 * @param height the image height in pixels
+	 */
+	public void setSize(int width, int height) {
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		if ((width != _width) || (height != _height)) {
+			_width = width;
+			_height = height;
+			_drawable.setSurfaceSize(width, height);
+		}
+	}
+
+	/**
+	 * Get the image width.
+	 *
+	 * @return the width in pixels
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Get the image height.
+	 *
+	 * @return the height in pixels
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Render one frame without reading it back. Intended for timing: the frame is
+	 * finished (<code>glFinish</code>) before this returns.
+	 *
+	 * @return the time to render the frame in nanoseconds
+	 */
+	public long renderFrame() {
+		checkDisposed();
+		_drawable.display();
+		return _lastFrameNanos;
+	}
+
+	/**
+	 * Render one frame and return its pixels as packed RGBA bytes, top row first.
+	 * Progressive items are drawn in full, in the one frame. The returned buffer
+	 * is reused by the next call.
+	 *
+	 * @return the pixels, <code>4*width*height</code> bytes
+	 */
+	public ByteBuffer renderRGBA() {
+		checkDisposed();
+		_drawable.display();
+
+		// read the finished frame back without drawing over it again
+		_drawable.invoke(true, drawable -> {
+			readPixels(drawable.getGL().getGL2());
+			return true;
+		});
+		if (_rgba == null) {
+			throw new IllegalStateException("The offscreen frame was not rendered");
+		}
+		_rgba.rewind();
+		return _rgba;
+	}
+
+	/**
+	 * Render one frame and return it as an image.
+	 *
+	 * @return a new ARGB image of the current size
+	 */
+	public BufferedImage renderImage() {
+		ByteBuffer rgba = renderRGBA();
+
+		BufferedImage image = new BufferedImage(_width, _height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < pixels.length; i++) {
+			int r = rgba.get() & 0xFF;
+			int g = rgba.get() & 0xFF;
+			int b = rgba.get() & 0xFF;
+			int a = rgba.get() & 0xFF;
+			pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+		}
+		rgba.rewind();
+		return image;
+	}
+
+	/**
+	 * Get the time taken by the most recent frame, including
+	 * <code>glFinish</code> but not the pixel read back.
+	 *
+	 * @return the frame time in nanoseconds
+	 */
+	public long getLastFrameNanos() {
+		return _lastFrameNanos;
+	}
+
+	/**
+	 * Get the view of the most recent offscreen frame, e.g. to project points
+	 * onto a captured image.
+	 *
+	 * @return the projector
+	 */
+	public Projector3D getProjector() {
+		return _projector;
+	}
+
+	/**
+	 * Get the number of frames rendered.
+	 *
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return _frameCount;
+	}
+
+	/**
+	 * Release the offscreen surface and its context, along with the GL resources
+	 * the items created in it. The renderer cannot be used afterwards.
+	 */
+	public void dispose() {
+		if (_drawable != null) {
+			_drawable.destroy();
+			_drawable = null;
+		}
+		_rgba = null;
+	}
+
+	private void checkDisposed() {
+		if (_drawable == null) {
+			throw new IllegalStateException("OffscreenRenderer3D has been disposed");
+		}
+	}
+
+	// read the current color buffer into _rgba, flipping it to top row first
+	private void readPixels(GL2 gl) {
+		int rowBytes = 4 * _width;
+		int size = rowBytes * _height;
+		if ((_rgba == null) || (_rgba.capacity() != size)) {
+			_rgba = Buffers.newDirectByteBuffer(size);
+		}
+
+		_rgba.clear();
+		gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+		gl.glReadPixels(0, 0, _width, _height, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, _rgba);
+
+		byte[] rowA = new byte[rowBytes];
+		byte[] rowB = new byte[rowBytes];
+		for (int top = 0, bottom = _height - 1; top < bottom; top++, bottom--) {
+			_rgba.position(top * rowBytes);
+			_rgba.get(rowA);
+			_rgba.position(bottom * rowBytes);
+			_rgba.get(rowB);
+			_rgba.position(top * rowBytes);
+			_rgba.put(rowB);
+			_rgba.position(bottom * rowBytes);
+			_rgba.put(rowA);
+		}
+		_rgba.rewind();
+	}
+
+	// forwards to the panel, then times the frame
+	private class Listener implements GLEventListener {
+
+		@Override
+		public void init(GLAutoDrawable drawable) {
+			_panel3D.init(drawable);
+		}
+
+		@Override
+		public void dispose(GLAutoDrawable drawable) {
+			// only this context's objects; the panel may still be showing
+			_panel3D.disposeContext(drawable);
+		}
+
+		@Override
+		public void display(GLAutoDrawable drawable) {
+			long start = System.nanoTime();
+			_panel3D.displayInto(drawable, _projector);
+
+			GL2 gl = drawable.getGL().getGL2();
+			gl.glFinish();
+			_lastFrameNanos = System.nanoTime() - start;
+			_frameCount++;
+		}
+
+		@Override
+		public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+			_panel3D.reshape(drawable, x, y, width, height);
+		}
+	}
+}
@@ -1,10 +1,16 @@
 package edu.cnu.mdi.mdi3D.panel;
 
 import java.awt.BorderLayout;
-import java.util.Vector;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
@@ -49,6 +55,9 @@ public class Panel3D extends JPanel implements GLEventListener {
 	protected final GLJPanel gljpanel;
 	public static GLU glu; // glu utilities
 
+	// coalesces refresh requests into at most one frame per display interval
+	protected final RenderScheduler _renderScheduler;
+
 	// distance in front of the screen
 	private float _zdist;
 
@@ -64,7 +73,69 @@ public class Panel3D extends JPanel implements GLEventListener {
 	private final float[] _rotMat = new float[16];
 
 	// the list of 3D items to be drawn
-	protected Vector<Item3D> _itemList = new Vector<>();
+	protected final SceneList _itemList = new SceneList();
+
+	// transparency test used to partition the scene (cached to avoid per frame allocation)
+	private final Predicate<Item3D> _transparencyTest = this::isTransparent;
+
+	// depth sort of the transparent pass (render thread only)
+	private final DepthSorter _depthSorter = new DepthSorter();
+	private Item3D[] _sortScratch = new Item3D[0];
+
+	// the view of the current frame, for projecting to window coordinates
+	private final Projector3D _projector = new Projector3D();
+
+	// the view of the frame being drawn: the panel's own, or an offscreen
+	// renderer's while it draws (render thread only)
+	private Projector3D _frameProjector = _projector;
+
+	// the level of detail policy of the tessellated items
+	private final LevelOfDetail3D _levelOfDetail = new LevelOfDetail3D();
+
+	// reduced quality frames while the user moves the camera
+	private final InteractionQuality3D _interactionQuality = new InteractionQuality3D(this::refresh);
+
+	// view frustum culling
+	private final Frustum3D _frustum = new Frustum3D();
+	private volatile boolean _frustumCulling = true;
+
+	// set by every refresh request: the next frame is drawn in full
+	private volatile boolean _fullFrame = true;
+
+	// true while progressive items are still being drawn over the last frame,
+	// and the view and drawable of that frame (render thread only)
+	private boolean _refining;
+	private final float[] _refineModelview = new float[16];
+	private final float[] _refineProjection = new float[16];
+	private final int[] _refineViewport = new int[4];
+	private GLAutoDrawable _refineDrawable;
+
+	// the transparent items that survived culling (render thread only)
+	private Item3D[] _transparentDraw = new Item3D[0];
+
+	// opt-in frame profiler
+	protected final RenderProfiler3D _profiler = new RenderProfiler3D();
+
+	// redundant state change filter for the current context
+	private RenderState3D _renderState;
+
+	// items drawn and culled in the last frame
+	private volatile int _drawnCount;
+	private volatile int _culledCount;
+
+	// CPU picking (event dispatch thread)
+	private final Picker3D _picker = new Picker3D();
+	private final PickRay3D _pickRay = new PickRay3D();
+	private float _pickTolerance = 4f;
+	private boolean _hoverPicking;
+
+	// hover picks, at most one per rendered frame: the frame of the last one,
+	// the latest mouse move not picked yet, and the timer that picks it if no
+	// frame comes first. A dynamic point set is scanned by every pick.
+	private static final int HOVER_DELAY_MS = 16;
+	private long _hoverFrame = -1;
+	private MouseEvent _pendingHover;
+	private final Timer _hoverTimer = new Timer(HOVER_DELAY_MS, e -> pickHover());
 
 	// listen for mouse events
 	protected MouseAdapter3D _mouseAdapter;
@@ -136,6 +207,8 @@ public class Panel3D extends JPanel implements GLEventListener {
 
 		gljpanel = new GLJPanel(glcapabilities);
 		gljpanel.addGLEventListener(this);
+		_renderScheduler = new RenderScheduler(gljpanel::display);
+		_hoverTimer.setRepeats(false);
 
 		safeAdd(addNorth(), BorderLayout.NORTH);
 		safeAdd(addSouth(), BorderLayout.SOUTH);
@@ -265,18 +338,40 @@ public class Panel3D extends JPanel implements GLEventListener {
 
 	@Override
 	public void display(GLAutoDrawable drawable) {
+		// reset here, so a request made during this frame gets a full frame
+		boolean fullFrame = _fullFrame;
+		_fullFrame = false;
 
+		drawFrame(drawable, fullFrame, false);
+
+		_renderScheduler.frameRendered();
+
+		// the next part of the progressive items, without forcing a full frame
+		if (_refining) {
+			_renderScheduler.requestFrame();
+		}
+	}
+
+	// Draw a frame: the whole of it, or the next part of the progressive items
+	// over the last one. A complete frame draws the progressive items in full
+	// and leaves the refinement of the on screen frames alone.
+	private void drawFrame(GLAutoDrawable drawable, boolean fullFrame, boolean complete) {
+
+		// must precede getGL(), as it may install the GL call counter
+		_profiler.beginFrame(drawable);
 
 		final GL2 gl = drawable.getGL().getGL2();
 
+		// state may have been changed outside the tracker since the last frame
+		_renderState = RenderState3D.get(gl);
+		_renderState.invalidate();
+
 		gl.glEnable(GL.GL_DEPTH_TEST);
 		gl.glDepthFunc(GL.GL_LEQUAL);
 
 		gl.glDisable(GL.GL_BLEND);
 		gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
 
-		gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
-
 		gl.glMatrixMode(GLMatrixFunc.GL_MODELVIEW);
 		gl.glLoadIdentity();
 
@@ -289,62 +384,262 @@ public class Panel3D extends JPanel implements GLEventListener {
 		}
 		gl.glMultMatrixf(_rotMat, 0);
 
-		// Snapshot items
-		final java.util.List<Item3D> snapshot;
-		synchronized (_itemList) {
-			snapshot = new java.util.ArrayList<>(_itemList);
+		// Capture the view once per frame, for projection and culling
+		final Projector3D projector = _frameProjector;
+		projector.capture(gl);
+
+		if (_frustumCulling) {
+			_frustum.set(projector.getProjection(), projector.getModelview());
+		} else {
+			_frustum.invalidate();
 		}
+		int drawn = 0;
+		int culled = 0;
+
+		// Partition only if the scene or an item's alpha changed since the last frame
+		_itemList.partition(_transparencyTest);
+
+		final Item3D[] opaque = _itemList.getOpaque();
+		final int numOpaque = _itemList.getOpaqueCount();
+		final Item3D[] transparent = _itemList.getTransparent();
+		final int numTransparentItems = _itemList.getTransparentCount();
+
+		// Transparent items leave no depth, so chunks drawn over the kept frame
+		// would show through them unblended: with any in view the progressive
+		// items are drawn in full, in one frame, instead
+		final boolean transparentInView = hasVisible(transparent, numTransparentItems);
+
+		// unless something changed, progressive items continue over the last frame
+		boolean refine = !complete && _refining && !fullFrame && !transparentInView
+				&& (drawable == _refineDrawable) && isRefineView();
+		if (!refine) {
+			gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
+		}
+
+		if (refine) {
+			_refining = refineFrame(drawable, opaque, numOpaque);
+		} else {
+			gl.glPushMatrix();
+			_profiler.beginPass(RenderProfiler3D.Pass.BEFORE_DRAW);
+			beforeDraw(drawable);
+			_renderState.invalidate();
+			_profiler.endPass(RenderProfiler3D.Pass.BEFORE_DRAW);
+
+			// PASS 1: OPAQUE
+			gl.glEnable(GL.GL_DEPTH_TEST);
+			gl.glDepthFunc(GL.GL_LEQUAL);
+			gl.glDepthMask(true);
+			gl.glDisable(GL.GL_BLEND);
+			_profiler.beginPass(RenderProfiler3D.Pass.OPAQUE);
+			for (int i = 0; i < numOpaque; i++) {
+				Item3D item = opaque[i];
+				if (item.isVisible()) {
+					if (_frustum.intersects(item.getBounds())) {
+						_profiler.drawItem(drawable, item);
+						drawn++;
+					} else {
+						culled++;
+					}
+				}
+			}
+			if (transparentInView || complete) {
+				finishItems(drawable, opaque, numOpaque);
+			}
+			_profiler.endPass(RenderProfiler3D.Pass.OPAQUE);
+
+			// PASS 2: TRANSPARENT
+			gl.glEnable(GL.GL_DEPTH_TEST);
+			gl.glDepthFunc(GL.GL_LEQUAL);
+			gl.glDepthMask(false);
+			gl.glEnable(GL.GL_BLEND);
+
+			// Cull before sorting, so only items that will be drawn are sorted
+			_profiler.beginPass(RenderProfiler3D.Pass.SORT);
+			if (_transparentDraw.length < numTransparentItems) {
+				_transparentDraw = new Item3D[transparent.length];
+			}
+			int numTransparent = 0;
+			for (int i = 0; i < numTransparentItems; i++) {
+				Item3D item = transparent[i];
+				if (item.isVisible()) {
+					if (_frustum.intersects(item.getBounds())) {
+						_transparentDraw[numTransparent++] = item;
+					} else {
+						culled++;
+					}
+				}
+			}
 
-		final java.util.List<Item3D> opaque = new java.util.ArrayList<>(snapshot.size());
-		final java.util.List<Item3D> transparent = new java.util.ArrayList<>(snapshot.size());
+			// Sort transparent items back-to-front to improve blending correctness
+			sortTransparentBackToFront(_transparentDraw, numTransparent);
+			_profiler.endPass(RenderProfiler3D.Pass.SORT);
 
-		for (Item3D item : snapshot) {
-			if (item != null && item.isVisible()) {
-				(isTransparent(item) ? transparent : opaque).add(item);
+			_profiler.beginPass(RenderProfiler3D.Pass.TRANSPARENT);
+			for (int i = 0; i < numTransparent; i++) {
+				_profiler.drawItem(drawable, _transparentDraw[i]);
+			}
+			finishItems(drawable, _transparentDraw, numTransparent);
+			_profiler.endPass(RenderProfiler3D.Pass.TRANSPARENT);
+			drawn += numTransparent;
+			Arrays.fill(_transparentDraw, 0, numTransparent, null);
+
+			_drawnCount = drawn;
+			_culledCount = culled;
+
+			gl.glDepthMask(true);
+			gl.glDisable(GL.GL_BLEND);
+
+			_profiler.beginPass(RenderProfiler3D.Pass.AFTER_DRAW);
+			_renderState.restoreDefaults(gl);
+			afterDraw(drawable);
+			_renderState.invalidate();
+			_profiler.endPass(RenderProfiler3D.Pass.AFTER_DRAW);
+			gl.glPopMatrix();
+
+			if (!complete) {
+				_refining = isRefining(opaque, numOpaque) || isRefining(transparent, numTransparentItems);
 			}
+			if (_refining && !complete) {
+				System.arraycopy(projector.getModelview(), 0, _refineModelview, 0, 16);
+				System.arraycopy(projector.getProjection(), 0, _refineProjection, 0, 16);
+				System.arraycopy(projector.getViewport(), 0, _refineViewport, 0, 4);
+				_refineDrawable = drawable;
+			}
+		}
+
+		_profiler.endFrame(drawable, refine);
+
+		if (_skipLastStage) {
+			return;
 		}
 
+		gl.glLoadIdentity();
+	}
 
+	// draw the next part of the progressive items over the last frame. Only
+	// opaque items are refined this way (see display). Returns true if any has
+	// more to draw.
+	private boolean refineFrame(GLAutoDrawable drawable, Item3D[] opaque, int numOpaque) {
+		GL2 gl = drawable.getGL().getGL2();
 		gl.glPushMatrix();
-		beforeDraw(drawable);
 
-		// PASS 1: OPAQUE
 		gl.glEnable(GL.GL_DEPTH_TEST);
 		gl.glDepthFunc(GL.GL_LEQUAL);
 		gl.glDepthMask(true);
 		gl.glDisable(GL.GL_BLEND);
-		for (Item3D item : opaque) {
-			item.drawItem(drawable);
+		boolean more = refineItems(drawable, opaque, numOpaque);
+
+		_renderState.restoreDefaults(gl);
+		_renderState.invalidate();
+		gl.glPopMatrix();
+		return more;
+	}
+
+	// draw the rest of the progressive items of one pass in this frame
+	private void finishItems(GLAutoDrawable drawable, Item3D[] items, int count) {
+		while (refineItems(drawable, items, count)) {
 		}
+	}
 
-		// PASS 2: TRANSPARENT
-		gl.glEnable(GL.GL_DEPTH_TEST);
-		gl.glDepthFunc(GL.GL_LEQUAL);
-		gl.glDepthMask(false);
-		gl.glEnable(GL.GL_BLEND);
-		// Sort transparent items back-to-front to improve blending correctness
-		sortTransparentBackToFront(transparent);
+	// refine the visible, unculled items of one pass
+	private boolean refineItems(GLAutoDrawable drawable, Item3D[] items, int count) {
+		boolean more = false;
+		for (int i = 0; i < count; i++) {
+			Item3D item = items[i];
+			if (item.isVisible() && _frustum.intersects(item.getBounds())) {
+				more |= item.refineItem(drawable);
+			}
+		}
+		return more;
+	}
 
-		for (Item3D item : transparent) {
-			item.drawItem(drawable);
+	// whether any item of one pass is visible and not culled
+	private boolean hasVisible(Item3D[] items, int count) {
+		for (int i = 0; i < count; i++) {
+			Item3D item = items[i];
+			if (item.isVisible() && _frustum.intersects(item.getBounds())) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		gl.glDepthMask(true);
-		gl.glDisable(GL.GL_BLEND);
+	// whether any visible, unculled item of one pass is only partly drawn
+	private boolean isRefining(Item3D[] items, int count) {
+		for (int i = 0; i < count; i++) {
+			Item3D item = items[i];
+			if (item.isVisible() && _frustum.intersects(item.getBounds()) && item.isRefiningItem()) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-		afterDraw(drawable);
-		gl.glPopMatrix();
+	// whether the view is the one the progressive items are being drawn with
+	private boolean isRefineView() {
+		return Arrays.equals(_frameProjector.getModelview(), _refineModelview)
+				&& Arrays.equals(_frameProjector.getProjection(), _refineProjection)
+				&& Arrays.equals(_frameProjector.getViewport(), _refineViewport);
+	}
 
-		if (_skipLastStage) {
-			return;
+	/**
+	 * Draw a complete frame into another drawable, e.g. an offscreen one, with
+	 * the view captured into the given projector, so the view of the on screen
+	 * frames, used for picking, is left alone. Progressive items are drawn in
+	 * full, and neither the on screen refinement nor the render scheduler is
+	 * touched.
+	 *
+	 * @param drawable  the drawable, its context current
+	 * @param projector receives the view of the frame
+	 */
+	void displayInto(GLAutoDrawable drawable, Projector3D projector) {
+		_frameProjector = projector;
+		try {
+			drawFrame(drawable, true, true);
+		} finally {
+			_frameProjector = _projector;
+
+			// the progressive items were drawn to the end here, so the next on
+			// screen frame starts them over rather than continuing
+			_fullFrame = true;
 		}
+	}
 
-		gl.glLoadIdentity();
+	/**
+	 * Check whether progressive items are still being drawn over the last frame,
+	 * i.e. whether the last frame is not yet complete.
+	 *
+	 * @return <code>true</code> if more is to be drawn in the following frames
+	 */
+	public boolean isRefining() {
+		return _refining;
 	}
 
 	@Override
 	public void dispose(GLAutoDrawable drawable) {
 		System.err.println("called dispose");
+
+		// release retained mode buffers while the context is still current
+		disposeContext(drawable);
+	}
+
+	/**
+	 * Release the GL objects the items created in the drawable's context, which
+	 * must be current, e.g. when an offscreen context is destroyed. The objects
+	 * of other contexts, such as the on screen component's, are kept.
+	 *
+	 * @param drawable the drawable whose context is going away
+	 */
+	public void disposeContext(GLAutoDrawable drawable) {
+		for (Item3D item : _itemList.snapshot()) {
+			item.dispose(drawable);
+		}
+
+		// the unit meshes the items shared
+		GL2 gl = drawable.getGL().getGL2();
+		MeshCache3D.get(gl).dispose(gl);
+
+		_profiler.dispose(drawable);
 	}
 
 	public void beforeDraw(GLAutoDrawable drawable) { }
@@ -355,6 +650,9 @@ public class Panel3D extends JPanel implements GLEventListener {
 		glu = GLU.createGLU();
 		GL2 gl = drawable.getGL().getGL2();
 
+		// a new context has no last frame to draw over
+		_fullFrame = true;
+
 		_versionStr = gl.glGetString(GL.GL_VERSION);
 		_rendererStr = gl.glGetString(GL.GL_RENDERER);
 
@@ -370,6 +668,9 @@ public class Panel3D extends JPanel implements GLEventListener {
 		gl.glHint(GL2ES1.GL_PERSPECTIVE_CORRECTION_HINT, GL.GL_NICEST);
 		gl.glShadeModel(GLLightingFunc.GL_FLAT);
 
+		// the cached unit meshes are drawn scaled, so their normals must be renormalized
+		gl.glEnable(GLLightingFunc.GL_NORMALIZE);
+
 		gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
 		gl.glEnable(GL.GL_BLEND);
 		gl.glEnable(GL2ES3.GL_COLOR);
@@ -404,32 +705,90 @@ public class Panel3D extends JPanel implements GLEventListener {
 	public void deltaY(float dy) { _ydist += dy; }
 	public void deltaZ(float dz) { _zdist += dz; }
 
-	public void refreshQueued() { }
+	/**
+	 * Queue a redraw. Any number of queued requests are coalesced into at most one
+	 * frame per display interval (see {@link #setTargetFPS(int)}). Safe to call
+	 * from any thread.
+	 */
+	public void refreshQueued() {
+		_fullFrame = true;
+		if (_renderScheduler != null) {
+			_renderScheduler.requestFrame();
+		}
+	}
 
+	/**
+	 * Request a redraw. This is queued and coalesced, see {@link #refreshQueued()}.
+	 * Use {@link #refreshNow()} if a synchronous redraw is really required.
+	 */
 	public void refresh() {
+		refreshQueued();
+	}
+
+	/**
+	 * Redraw synchronously, bypassing the frame scheduler. Must be called on the
+	 * EDT.
+	 */
+	public void refreshNow() {
 		if (gljpanel == null) {
 			return;
 		}
+		_fullFrame = true;
+		_renderScheduler.cancel();
 		gljpanel.display();
 	}
 
 	/**
-	 * Adds the given item to the panel.
+	 * Set the target frame rate used to coalesce refresh requests.
+	 *
+	 * @param fps the target frames per second
+	 */
+	public void setTargetFPS(int fps) {
+		_renderScheduler.setTargetFPS(fps);
+	}
+
+	/**
+	 * Get the target frame rate used to coalesce refresh requests.
+	 *
+	 * @return the target frames per second
+	 */
+	public int getTargetFPS() {
+		return _renderScheduler.getTargetFPS();
+	}
+
+	/**
+	 * Get the frame scheduler, e.g. for request and frame statistics.
+	 *
+	 * @return the frame scheduler
+	 */
+	public RenderScheduler getRenderScheduler() {
+		return _renderScheduler;
+	}
+
+	/**
+	 * Adds the given item to the panel. If it is already present it is moved to
+	 * the end of the drawing order.
 	 */
 	public void addItem(Item3D item) {
-		if (item != null) {
-			_itemList.remove(item);
-			_itemList.add(item);
-		}
+		_itemList.add(item);
 	}
 
 	/**
 	 * Adds the given item at the specified index in the panel.
 	 */
 	public void addItem(int index, Item3D item) {
-		if (item != null) {
-			_itemList.remove(item);
-			_itemList.add(index, item);
+		_itemList.add(index, item);
+	}
+
+	/**
+	 * Adds several items to the panel as a single change, with one refresh.
+	 *
+	 * @param items the items to add
+	 */
+	public void addItems(Collection<? extends Item3D> items) {
+		if (items != null && !items.isEmpty()) {
+			_itemList.addAll(items);
+			refresh();
 		}
 	}
 
@@ -437,8 +796,23 @@ public class Panel3D extends JPanel implements GLEventListener {
 	 * Removes the given item from the panel.
 	 */
 	public void removeItem(Item3D item) {
-		if (item != null) {
-			_itemList.remove(item);
+		if (_itemList.remove(item)) {
+			disposeLater(item);
+			refresh();
+		}
+	}
+
+	/**
+	 * Removes several items from the panel as a single change, with one refresh.
+	 *
+	 * @param items the items to remove
+	 */
+	public void removeItems(Collection<? extends Item3D> items) {
+		List<Item3D> removed = _itemList.removeAll(items);
+		if (!removed.isEmpty()) {
+			for (Item3D item : removed) {
+				disposeLater(item);
+			}
 			refresh();
 		}
 	}
@@ -447,45 +821,156 @@ public class Panel3D extends JPanel implements GLEventListener {
 	 * Removes all items from the panel.
 	 */
 	public void clearItems() {
-		_itemList.clear();
+		for (Item3D item : _itemList.clear()) {
+			disposeLater(item);
+		}
 		refresh();
 	}
 
 	/**
-	 * Projects the given object coordinates (objX, objY, objZ) to window coordinates.
-	 * The result is stored in winPos[0] (x), winPos[1] (y), winPos[2] (z).
+	 * Get the items drawn by this panel, in drawing order.
+	 *
+	 * @return an unmodifiable snapshot of the items
+	 */
+	public List<Item3D> getItems() {
+		return _itemList.asList();
+	}
+
+	/**
+	 * Notify the panel that an item's style changed in a way that may affect
+	 * whether it is drawn in the opaque or the transparent pass (e.g. its alpha).
+	 * Called by {@link Item3D} when its colors or alphas are set.
+	 *
+	 * @param item the item that changed
+	 */
+	public void itemTransparencyChanged(Item3D item) {
+		_itemList.invalidate();
+	}
+
+	// Release an item's GL resources on the next display, when the context is current.
+	private void disposeLater(final Item3D item) {
+		if ((gljpanel == null) || (item == null)) {
+			return;
+		}
+		gljpanel.invoke(false, drawable -> {
+			item.dispose(drawable);
+			return true;
+		});
+	}
+
+	/**
+	 * Project a world point to window coordinates (gluProject convention), using
+	 * the view captured at the start of the current (or last) frame. No GL calls
+	 * are made.
+	 *
+	 * @param gl     the GL (unused; kept for compatibility)
+	 * @param objX   the world x
+	 * @param objY   the world y
+	 * @param objZ   the world z
+	 * @param winPos receives the window [x, y, z], NaN if behind the eye
 	 */
 	public void project(GL2 gl, float objX, float objY, float objZ, float winPos[]) {
-		int[] view = new int[4];
-		gl.glGetIntegerv(GL.GL_VIEWPORT, view, 0);
+		_frameProjector.project(objX, objY, objZ, winPos);
+	}
 
-		float[] model = new float[16];
-		gl.glGetFloatv(GLMatrixFunc.GL_MODELVIEW_MATRIX, model, 0);
+	/**
+	 * Project a world point to window coordinates (gluProject convention), using
+	 * the view captured at the start of the current (or last) frame.
+	 *
+	 * @param objX   the world x
+	 * @param objY   the world y
+	 * @param objZ   the world z
+	 * @param winPos receives the window [x, y, z], NaN if behind the eye
+	 * @return <code>true</code> if the point is in front of the eye
+	 */
+	public boolean project(float objX, float objY, float objZ, float winPos[]) {
+		return _frameProjector.project(objX, objY, objZ, winPos);
+	}
 
-		float[] proj = new float[16];
-		gl.glGetFloatv(GLMatrixFunc.GL_PROJECTION_MATRIX, proj, 0);
+	/**
+	 * Project packed world points to window coordinates on the CPU, using the view
+	 * captured at the start of the current (or last) frame. Large inputs are
+	 * projected in parallel.
+	 *
+	 * @param xyz    the points as [x, y, z, x, y, z, ...]
+	 * @param outWin receives the window coordinates packed the same way, NaN for
+	 *               points behind the eye
+	 */
+	public void project(float[] xyz, float[] outWin) {
+		_frameProjector.project(xyz, outWin);
+	}
 
-		glu.gluProject(objX, objY, objZ, model, 0, proj, 0, view, 0, winPos, 0);
+	/**
+	 * Get the view captured for the current (or last) frame.
+	 *
+	 * @return the projector
+	 */
+	public Projector3D getProjector() {
+		return _frameProjector;
 	}
 
-	public float getZStep() { return 0.1f; }
+	/**
+	 * Get the level of detail policy of the tessellated items.
+	 *
+	 * @return the level of detail policy
+	 */
+	public LevelOfDetail3D getLevelOfDetail() {
+		return _levelOfDetail;
+	}
 
-	private boolean isTransparent(Item3D item) {
-		try {
-			int fa = item.getFillAlpha();
-			if (fa >= 0 && fa < OPAQUE_ALPHA_CUTOFF) {
-				return true;
-			}
-		} catch (Exception ignored) { }
+	/**
+	 * Get the interaction quality policy, which reduces the quality of the frames
+	 * drawn while the user moves the camera.
+	 *
+	 * @return the interaction quality policy
+	 */
+	public InteractionQuality3D getInteractionQuality() {
+		return _interactionQuality;
+	}
 
-		try {
-			int la = item.getLineAlpha();
-			if (la >= 0 && la < OPAQUE_ALPHA_CUTOFF) {
-				return true;
-			}
-		} catch (Exception ignored) { }
+	/**
+	 * Report that the user moved the camera, e.g. from a mouse or key handler.
+	 * Frames are drawn at reduced quality until the input has been idle for a
+	 * while, then a full quality frame is drawn. Event dispatch thread only.
+	 */
+	public void interacting() {
+		_interactionQuality.inputActive();
+	}
 
-		return false;
+	/**
+	 * Check whether the current frame is drawn at reduced quality because the
+	 * user is moving the camera.
+	 *
+	 * @return <code>true</code> while interacting
+	 */
+	public boolean isInteracting() {
+		return _interactionQuality.isInteracting();
+	}
+
+	/**
+	 * Select the level of detail for something round, from its size on screen in
+	 * the current frame. Call while drawing.
+	 *
+	 * @param level  the level drawn last frame, -1 if none
+	 * @param x      the world x of the center
+	 * @param y      the world y of the center
+	 * @param z      the world z of the center
+	 * @param radius the world radius
+	 * @return the level to draw
+	 */
+	public int selectLevel(int level, float x, float y, float z, float radius) {
+		Projector3D projector = _frameProjector;
+		if (!projector.isValid()) {
+			return LevelOfDetail3D.getLevelCount() - 1;
+		}
+		float pixelRadius = projector.getPixelRadius(x, y, z, radius);
+		return _levelOfDetail.select(level, pixelRadius * _interactionQuality.getFrameDetailScale());
+	}
+
+	public float getZStep() { return 0.1f; }
+
+	private boolean isTransparent(Item3D item) {
+		return (item.getFillAlpha() < OPAQUE_ALPHA_CUTOFF) || (item.getLineAlpha() < OPAQUE_ALPHA_CUTOFF);
 	}
 
 	// --------------------------------------------------------------------
@@ -562,7 +1047,222 @@ public class Panel3D extends JPanel implements GLEventListener {
 		}
 	}
 
-	private void sortTransparentBackToFront(java.util.List<Item3D> transparent) {
+	/**
+	 * Render the scene once into an offscreen image, without using (or needing)
+	 * the on screen component. For repeated renders, or for timing frames, create
+	 * an {@link OffscreenRenderer3D} and keep it.
+	 *
+	 * @param width  the image width in pixels
+	 * @param height the image height in pixels
+	 * @return the rendered image
+	 */
+	public BufferedImage renderOffscreen(int width, int height) {
+		OffscreenRenderer3D renderer = new OffscreenRenderer3D(this, width, height);
+		try {
+			return renderer.renderImage();
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	/**
+	 * Get the state tracker of the context used by the most recent frame, e.g. to
+	 * read how many redundant state changes it avoided.
+	 *
+	 * @return the state tracker, or <code>null</code> before the first frame
+	 */
+	public RenderState3D getRenderState() {
+		return _renderState;
+	}
+
+	/**
+	 * Get the frame profiler. It is off until enabled with
+	 * {@link RenderProfiler3D#setEnabled(boolean)}.
+	 *
+	 * @return the profiler
+	 */
+	public RenderProfiler3D getProfiler() {
+		return _profiler;
+	}
+
+	/**
+	 * Set whether items whose bounds lie entirely outside the view frustum are
+	 * skipped. Items that do not report bounds are never culled.
+	 *
+	 * @param cull if <code>true</code> cull items outside the view
+	 */
+	public void setFrustumCulling(boolean cull) {
+		_frustumCulling = cull;
+		refresh();
+	}
+
+	/**
+	 * Check whether view frustum culling is on.
+	 *
+	 * @return <code>true</code> if items outside the view are skipped
+	 */
+	public boolean isFrustumCulling() {
+		return _frustumCulling;
+	}
+
+	/**
+	 * Get the number of visible top level items that were drawn in the last
+	 * frame.
+	 *
+	 * @return the number of items drawn
+	 */
+	public int getDrawnCount() {
+		return _drawnCount;
+	}
+
+	/**
+	 * Get the number of visible top level items that were skipped in the last
+	 * frame because they were outside the view frustum.
+	 *
+	 * @return the number of items culled
+	 */
+	public int getCulledCount() {
+		return _culledCount;
+	}
+
+	/**
+	 * Pick the closest visible item under a mouse position, using the view of the
+	 * last frame. Picking is done on the CPU against the items' geometry; see
+	 * {@link Item3D#pick(PickRay3D, PickResult3D)}.
+	 *
+	 * @param x the x coordinate, as in a mouse event on the GL component
+	 * @param y the y coordinate, as in a mouse event on the GL component
+	 * @return the hit, or <code>null</code> if nothing was hit
+	 */
+	public PickResult3D pick(int x, int y) {
+		PickResult3D result = new PickResult3D();
+		return pick(x, y, result) ? result : null;
+	}
+
+	/**
+	 * Pick the closest visible item under a mouse position, using the view of the
+	 * last frame. Call on the event dispatch thread.
+	 *
+	 * @param x      the x coordinate, as in a mouse event on the GL component
+	 * @param y      the y coordinate, as in a mouse event on the GL component
+	 * @param result receives the hit
+	 * @return <code>true</code> if something was hit
+	 */
+	public boolean pick(int x, int y, PickResult3D result) {
+		result.reset(null);
+
+		// component (possibly scaled) pixels to GL window pixels, y up
+		float sx = 1f;
+		float sy = 1f;
+		if ((gljpanel.getWidth() > 0) && (gljpanel.getHeight() > 0)) {
+			sx = (float) gljpanel.getSurfaceWidth() / gljpanel.getWidth();
+			sy = (float) gljpanel.getSurfaceHeight() / gljpanel.getHeight();
+		}
+		float winX = (x + 0.5f) * sx;
+		float winY = gljpanel.getSurfaceHeight() - (y + 0.5f) * sy;
+
+		if (!_pickRay.set(_projector, winX, winY, _pickTolerance * sx)) {
+			return false;
+		}
+		return _picker.pick(_itemList.snapshot(), _pickRay, result);
+	}
+
+	/**
+	 * Set how close to a point or line, in pixels, the cursor must be to pick it.
+	 *
+	 * @param tolerance the tolerance in pixels
+	 */
+	public void setPickTolerance(float tolerance) {
+		_pickTolerance = Math.max(0f, tolerance);
+	}
+
+	/**
+	 * Get how close to a point or line, in pixels, the cursor must be to pick it.
+	 *
+	 * @return the tolerance in pixels
+	 */
+	public float getPickTolerance() {
+		return _pickTolerance;
+	}
+
+	/**
+	 * Set whether the mouse adapter picks on mouse moves and reports the result
+	 * to {@link #itemHovered(PickResult3D, MouseEvent)}. Off by default.
+	 *
+	 * @param hoverPicking if <code>true</code> pick on mouse moves
+	 */
+	public void setHoverPicking(boolean hoverPicking) {
+		_hoverPicking = hoverPicking;
+	}
+
+	/**
+	 * Check whether the mouse adapter picks on mouse moves.
+	 *
+	 * @return <code>true</code> if hover picking is on
+	 */
+	public boolean isHoverPicking() {
+		return _hoverPicking;
+	}
+
+	/**
+	 * Called by the mouse adapter on a mouse move when hover picking is on. The
+	 * move is picked at once if a frame was rendered since the last hover pick;
+	 * otherwise only the latest move is picked, after the next frame or a short
+	 * delay, so a fast mouse does not pick many times per frame. Call on the
+	 * event dispatch thread.
+	 *
+	 * @param e the mouse event
+	 */
+	public void hoverMoved(MouseEvent e) {
+		_pendingHover = e;
+		if (_renderScheduler.getFrameCount() != _hoverFrame) {
+			pickHover();
+		} else if (!_hoverTimer.isRunning()) {
+			_hoverTimer.start();
+		}
+	}
+
+	// pick the latest mouse move, if not yet picked
+	private void pickHover() {
+		MouseEvent e = _pendingHover;
+		if (e == null) {
+			return;
+		}
+		_pendingHover = null;
+		_hoverTimer.stop();
+		_hoverFrame = _renderScheduler.getFrameCount();
+		itemHovered(pick(e.getX(), e.getY()), e);
+	}
+
+	/**
+	 * Called with the result of a hover pick when hover picking is on (see
+	 * {@link #hoverMoved(MouseEvent)}). Override e.g. to show a tooltip. The
+	 * default does nothing.
+	 *
+	 * @param hit the hit, or <code>null</code> if the cursor is over nothing
+	 * @param e   the mouse event
+	 */
+	public void itemHovered(PickResult3D hit, MouseEvent e) {
+	}
+
+	/**
+	 * Called by the mouse adapter on a mouse click. Override to select items.
+	 * The default does nothing.
+	 *
+	 * @param hit the hit, or <code>null</code> if nothing was clicked
+	 * @param e   the mouse event
+	 */
+	public void itemClicked(PickResult3D hit, MouseEvent e) {
+	}
+
+	// Sort transparent items back-to-front. Each item's depth is computed exactly once
+	// into a primitive key array, which is then sorted in linear time. Items whose
+	// geometry has not changed reuse their cached sort point, so nothing is allocated.
+	private void sortTransparentBackToFront(Item3D[] transparent, int count) {
+
+	    if (count < 2) {
+			return;
+		}
 
 	    // Copy rotation matrix once (already computed for glMultMatrixf)
 	    final float[] R = _rotMat;
@@ -575,15 +1275,23 @@ public class Panel3D extends JPanel implements GLEventListener {
 	    // Cache scales
 	    final float sx = _xscale, sy = _yscale, sz = _zscale;
 
-	    java.util.Collections.sort(transparent, (a, b) -> {
-	        float za = viewZ(a, R, sx, sy, sz, tx, ty, tz);
-	        float zb = viewZ(b, R, sx, sy, sz, tx, ty, tz);
-	        int c = Float.compare(za, zb);           // ascending: more negative first
-	        if (c != 0) {
-				return c;
-			}
-	        return Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
-	    });	}
+	    final float[] keys = _depthSorter.keys(count);
+	    for (int i = 0; i < count; i++) {
+	    	keys[i] = viewZ(transparent[i], R, sx, sy, sz, tx, ty, tz);
+	    }
+
+	    // ascending: more negative (farther) first; stable, so ties keep scene order
+	    final int[] order = _depthSorter.sort(count);
+
+	    if (_sortScratch.length < count) {
+	    	_sortScratch = new Item3D[transparent.length];
+	    }
+	    for (int i = 0; i < count; i++) {
+	    	_sortScratch[i] = transparent[order[i]];
+	    }
+	    System.arraycopy(_sortScratch, 0, transparent, 0, count);
+	    Arrays.fill(_sortScratch, 0, count, null);
+	}
 
 	/**
 	 * Compute approximate view-space Z for an item using its sort point.
@@ -592,7 +1300,7 @@ public class Panel3D extends JPanel implements GLEventListener {
 	 * and return v.z.
 	 */
 	private float viewZ(Item3D item, float[] R, float sx, float sy, float sz, float tx, float ty, float tz) {
-	    float[] p = item.getSortPoint();
+	    float[] p = item.getCachedSortPoint();
 
 	    float x = p[0];
 	    float y = p[1];
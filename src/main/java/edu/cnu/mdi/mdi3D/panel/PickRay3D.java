@@ -0,0 +1,386 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+/**
+ * A world space ray through a window position, used for CPU picking. The ray
+ * starts on the near plane and ends on the far plane; the parameter
+ * <code>t</code> is the distance from the near plane, in world units.
+ * <p>
+ * Points and lines have no area, so they are hit within a tolerance: the ray
+ * is really a thin cone whose radius at <code>t</code> corresponds to a fixed
+ * number of pixels on the screen. Triangles, spheres and boxes are hit
+ * exactly.
+ * <p>
+ * The <code>hit</code> methods return the <code>t</code> of the hit, or
+ * {@link #MISS} (positive infinity) so that "closer than the best so far"
+ * comparisons need no special case.
+ */
+public class PickRay3D {
+
+	/** The parameter returned for a miss */
+	public static final float MISS = Float.POSITIVE_INFINITY;
+
+	// origin (on the near plane)
+	private float _ox, _oy, _oz;
+
+	// unit direction
+	private float _dx, _dy, _dz;
+
+	// distance from the near to the far plane
+	private float _length;
+
+	// tolerance radius at the near plane and its growth per unit t
+	private float _radius0;
+	private float _radiusSlope;
+
+	/**
+	 * Set the ray through a window position of a captured view.
+	 *
+	 * @param projector the view
+	 * @param winX      the window x in pixels (from the left)
+	 * @param winY      the window y in pixels (from the bottom, as in GL)
+	 * @param tolerance the hit tolerance for points and lines, in pixels
+	 * @return <code>false</code> if the view has not been captured or cannot be
+	 *         inverted
+	 */
+	public boolean set(Projector3D projector, float winX, float winY, float tolerance) {
+		float near[] = new float[3];
+		float far[] = new float[3];
+		float near2[] = new float[3];
+		float far2[] = new float[3];
+
+		if (!projector.unproject(winX, winY, 0f, near) || !projector.unproject(winX, winY, 1f, far)
+				|| !projector.unproject(winX + tolerance, winY, 0f, near2)
+				|| !projector.unproject(winX + tolerance, winY, 1f, far2)) {
+			return false;
+		}
+
+		float dx = far[0] - near[0];
+		float dy = far[1] - near[1];
+		float dz = far[2] - near[2];
+		float len = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (!(len > 0f)) {
+			return false;
+		}
+
+		_ox = near[0];
+		_oy = near[1];
+		_oz = near[2];
+		_dx = dx / len;
+		_dy = dy / len;
+		_dz = dz / len;
+		_length = len;
+
+		float r0 = distance(near, near2);
+		float r1 = distance(far, far2);
+		_radius0 = r0;
+		_radiusSlope = (r1 - r0) / len;
+		return true;
+	}
+
+	/**
+	 * Set the ray explicitly.
+	 *
+	 * @param origin      the origin [x, y, z]
+	 * @param direction   the direction [x, y, z], need not be normalized
+	 * @param length      the length of the ray
+	 * @param radius0     the tolerance radius at the origin
+	 * @param radiusSlope the increase of the tolerance radius per unit length
+	 */
+	public void set(float[] origin, float[] direction, float length, float radius0, float radiusSlope) {
+		float len = (float) Math.sqrt(
+				direction[0] * direction[0] + direction[1] * direction[1] + direction[2] * direction[2]);
+		_ox = origin[0];
+		_oy = origin[1];
+		_oz = origin[2];
+		_dx = direction[0] / len;
+		_dy = direction[1] / len;
+		_dz = direction[2] / len;
+		_length = length;
+		_radius0 = radius0;
+		_radiusSlope = radiusSlope;
+	}
+
+	/**
+	 * Get the length of the ray, from the near to the far plane.
+	 *
+	 * @return the length in world units
+	 */
+	public float getLength() {
+		return _length;
+	}
+
+	/**
+	 * Get the tolerance radius for points and lines at a distance along the ray.
+	 *
+	 * @param t the distance along the ray
+	 * @return the radius in world units
+	 */
+	public float radiusAt(float t) {
+		return _radius0 + _radiusSlope * t;
+	}
+
+	/**
+	 * Get the point at a distance along the ray.
+	 *
+	 * @param t     the distance along the ray
+	 * @param point receives [x, y, z]
+	 */
+	public void pointAt(float t, float[] point) {
+		point[0] = _ox + t * _dx;
+		point[1] = _oy + t * _dy;
+		point[2] = _oz + t * _dz;
+	}
+
+	/**
+	 * Hit a point within the tolerance.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return the distance along the ray of the point's projection, or
+	 *         {@link #MISS}
+	 */
+	public float hitPoint(float x, float y, float z) {
+		float vx = x - _ox;
+		float vy = y - _oy;
+		float vz = z - _oz;
+		float t = vx * _dx + vy * _dy + vz * _dz;
+		if ((t < 0f) || (t > _length)) {
+			return MISS;
+		}
+		float r = radiusAt(t);
+		float perp2 = vx * vx + vy * vy + vz * vz - t * t;
+		return (perp2 <= r * r) ? t : MISS;
+	}
+
+	/**
+	 * Hit a line segment within the tolerance.
+	 *
+	 * @param x0 the x coordinate of one end
+	 * @param y0 the y coordinate of one end
+	 * @param z0 the z coordinate of one end
+	 * @param x1 the x coordinate of the other end
+	 * @param y1 the y coordinate of the other end
+	 * @param z1 the z coordinate of the other end
+	 * @return the distance along the ray of the closest approach, or
+	 *         {@link #MISS}
+	 */
+	public float hitSegment(float x0, float y0, float z0, float x1, float y1, float z1) {
+		return hitSegment(x0, y0, z0, x1, y1, z1, 0f);
+	}
+
+	/**
+	 * Hit a tube around a line segment (with rounded ends) within the tolerance.
+	 *
+	 * @param x0     the x coordinate of one end
+	 * @param y0     the y coordinate of one end
+	 * @param z0     the z coordinate of one end
+	 * @param x1     the x coordinate of the other end
+	 * @param y1     the y coordinate of the other end
+	 * @param z1     the z coordinate of the other end
+	 * @param radius the radius of the tube
+	 * @return the distance along the ray of the closest approach, or
+	 *         {@link #MISS}
+	 */
+	public float hitSegment(float x0, float y0, float z0, float x1, float y1, float z1, float radius) {
+		float vx = x1 - x0;
+		float vy = y1 - y0;
+		float vz = z1 - z0;
+		float wx = _ox - x0;
+		float wy = _oy - y0;
+		float wz = _oz - z0;
+
+		float b = _dx * vx + _dy * vy + _dz * vz;
+		float c = vx * vx + vy * vy + vz * vz;
+		float d = _dx * wx + _dy * wy + _dz * wz;
+		float e = vx * wx + vy * wy + vz * wz;
+
+		// closest points of the two lines, then clamp to the segment and the ray
+		float s = 0f;
+		float denom = c - b * b;
+		if (denom > 1.0e-12f * c) {
+			s = clamp((e - b * d) / denom, 0f, 1f);
+		}
+		float t = clamp(s * b - d, 0f, _length);
+		if (c > 0f) {
+			s = clamp((e + t * b) / c, 0f, 1f);
+		}
+
+		float px = x0 + s * vx - (_ox + t * _dx);
+		float py = y0 + s * vy - (_oy + t * _dy);
+		float pz = z0 + s * vz - (_oz + t * _dz);
+		float r = radiusAt(t) + radius;
+		return (px * px + py * py + pz * pz <= r * r) ? t : MISS;
+	}
+
+	/**
+	 * Hit a triangle (either side).
+	 *
+	 * @param c  the coordinates as [x, y, z, x, y, z, ...]
+	 * @param v0 the offset of the first vertex's x
+	 * @param v1 the offset of the second vertex's x
+	 * @param v2 the offset of the third vertex's x
+	 * @return the distance along the ray, or {@link #MISS}
+	 */
+	public float hitTriangle(float[] c, int v0, int v1, int v2) {
+		float e1x = c[v1] - c[v0];
+		float e1y = c[v1 + 1] - c[v0 + 1];
+		float e1z = c[v1 + 2] - c[v0 + 2];
+		float e2x = c[v2] - c[v0];
+		float e2y = c[v2 + 1] - c[v0 + 1];
+		float e2z = c[v2 + 2] - c[v0 + 2];
+
+		// Moller-Trumbore
+		float px = _dy * e2z - _dz * e2y;
+		float py = _dz * e2x - _dx * e2z;
+		float pz = _dx * e2y - _dy * e2x;
+		float det = e1x * px + e1y * py + e1z * pz;
+		if (Math.abs(det) < 1.0e-20f) {
+			return MISS;
+		}
+		float inv = 1f / det;
+
+		float sx = _ox - c[v0];
+		float sy = _oy - c[v0 + 1];
+		float sz = _oz - c[v0 + 2];
+		float u = (sx * px + sy * py + sz * pz) * inv;
+		if ((u < 0f) || (u > 1f)) {
+			return MISS;
+		}
+
+		float qx = sy * e1z - sz * e1y;
+		float qy = sz * e1x - sx * e1z;
+		float qz = sx * e1y - sy * e1x;
+		float v = (_dx * qx + _dy * qy + _dz * qz) * inv;
+		if ((v < 0f) || (u + v > 1f)) {
+			return MISS;
+		}
+
+		float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+		return ((t >= 0f) && (t <= _length)) ? t : MISS;
+	}
+
+	/**
+	 * Hit a sphere. If the ray starts inside, the exit point is hit.
+	 *
+	 * @param cx     the x coordinate of the center
+	 * @param cy     the y coordinate of the center
+	 * @param cz     the z coordinate of the center
+	 * @param radius the radius
+	 * @return the distance along the ray, or {@link #MISS}
+	 */
+	public float hitSphere(float cx, float cy, float cz, float radius) {
+		float vx = cx - _ox;
+		float vy = cy - _oy;
+		float vz = cz - _oz;
+		float tc = vx * _dx + vy * _dy + vz * _dz;
+		float h2 = radius * radius - (vx * vx + vy * vy + vz * vz - tc * tc);
+		if (h2 < 0f) {
+			return MISS;
+		}
+		float h = (float) Math.sqrt(h2);
+		float t = tc - h;
+		if (t < 0f) {
+			t = tc + h;
+		}
+		return ((t >= 0f) && (t <= _length)) ? t : MISS;
+	}
+
+	/**
+	 * Hit an axis aligned box. If the ray starts inside, the start is hit.
+	 *
+	 * @param minX the minimum x
+	 * @param minY the minimum y
+	 * @param minZ the minimum z
+	 * @param maxX the maximum x
+	 * @param maxY the maximum y
+	 * @param maxZ the maximum z
+	 * @return the distance along the ray to the entry point, or {@link #MISS}
+	 */
+	public float hitBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		float t0 = 0f;
+		float t1 = _length;
+
+		// x slab
+		if (Math.abs(_dx) < 1.0e-12f) {
+			if ((_ox < minX) || (_ox > maxX)) {
+				return MISS;
+			}
+		} else {
+			float ta = (minX - _ox) / _dx;
+			float tb = (maxX - _ox) / _dx;
+			t0 = Math.max(t0, Math.min(ta, tb));
+			t1 = Math.min(t1, Math.max(ta, tb));
+		}
+
+		// y slab
+		if (Math.abs(_dy) < 1.0e-12f) {
+			if ((_oy < minY) || (_oy > maxY)) {
+				return MISS;
+			}
+		} else {
+			float ta = (minY - _oy) / _dy;
+			float tb = (maxY - _oy) / _dy;
+			t0 = Math.max(t0, Math.min(ta, tb));
+			t1 = Math.min(t1, Math.max(ta, tb));
+		}
+
+		// z slab
+		if (Math.abs(_dz) < 1.0e-12f) {
+			if ((_oz < minZ) || (_oz > maxZ)) {
+				return MISS;
+			}
+		} else {
+			float ta = (minZ - _oz) / _dz;
+			float tb = (maxZ - _oz) / _dz;
+			t0 = Math.max(t0, Math.min(ta, tb));
+			t1 = Math.min(t1, Math.max(ta, tb));
+		}
+
+		return (t0 <= t1) ? t0 : MISS;
+	}
+
+	/**
+	 * Conservative test of whether anything inside a box can be hit by the
+	 * tolerance cone. The box is grown by the largest radius the cone can have
+	 * inside it, then hit exactly. Used to traverse a {@link BVH3D}.
+	 *
+	 * @param minX the minimum x
+	 * @param minY the minimum y
+	 * @param minZ the minimum z
+	 * @param maxX the maximum x
+	 * @param maxY the maximum y
+	 * @param maxZ the maximum z
+	 * @return a lower bound of the distance along the ray of any hit inside the
+	 *         box, or {@link #MISS}
+	 */
+	public float enterBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		float hx = 0.5f * (maxX - minX);
+		float hy = 0.5f * (maxY - minY);
+		float hz = 0.5f * (maxZ - minZ);
+
+		// no point of the box is further along the ray than this
+		float tFar = (minX + hx - _ox) * _dx + (minY + hy - _oy) * _dy + (minZ + hz - _oz) * _dz
+				+ (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+		float pad = radiusAt(Math.max(0f, Math.min(tFar, _length)));
+
+		return hitBox(minX - pad, minY - pad, minZ - pad, maxX + pad, maxY + pad, maxZ + pad);
+	}
+
+	private static float clamp(float v, float min, float max) {
+		return (v < min) ? min : ((v > max) ? max : v);
+	}
+
+	private static float distance(float[] a, float[] b) {
+		float dx = a[0] - b[0];
+		float dy = a[1] - b[1];
+		float dz = a[2] - b[2];
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PickRay3D[origin=(%g, %g, %g) dir=(%g, %g, %g) length=%g]", _ox, _oy, _oz, _dx, _dy,
+				_dz, _length);
+	}
+}
@@ -0,0 +1,122 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import edu.cnu.mdi.mdi3D.item3D.Item3D;
+
+/**
+ * The closest hit found by a pick: the item, the distance along the
+ * {@link PickRay3D}, the world point and, for items made of many primitives,
+ * the index of the primitive that was hit (e.g. the point of a point set, the
+ * triangle of a triangle list or the segment of a line strip).
+ * <p>
+ * Items report candidate hits with {@link #offer(Item3D, float, int)}; only a
+ * hit closer than the current one is kept.
+ */
+public class PickResult3D {
+
+	// the item hit, null if none
+	private Item3D _item;
+
+	// distance along the ray
+	private float _distance = PickRay3D.MISS;
+
+	// index of the primitive hit, -1 if not applicable
+	private int _index = -1;
+
+	// the hit point in world coordinates
+	private final float[] _point = new float[3];
+
+	// the ray, for computing the hit point
+	private PickRay3D _ray;
+
+	/**
+	 * Forget any hit and prepare for a pick along a ray.
+	 *
+	 * @param ray the pick ray
+	 */
+	public void reset(PickRay3D ray) {
+		_ray = ray;
+		_item = null;
+		_distance = PickRay3D.MISS;
+		_index = -1;
+	}
+
+	/**
+	 * Offer a candidate hit. It is kept if it is closer than the current hit.
+	 *
+	 * @param item     the item hit
+	 * @param distance the distance along the ray, as returned by the
+	 *                 <code>hit</code> methods of {@link PickRay3D}
+	 * @param index    the index of the primitive hit, or -1
+	 * @return <code>true</code> if the candidate was kept
+	 */
+	public boolean offer(Item3D item, float distance, int index) {
+		if (!(distance < _distance)) {
+			return false;
+		}
+		_item = item;
+		_distance = distance;
+		_index = index;
+		if (_ray != null) {
+			_ray.pointAt(distance, _point);
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether anything was hit.
+	 *
+	 * @return <code>true</code> if there is a hit
+	 */
+	public boolean isHit() {
+		return _item != null;
+	}
+
+	/**
+	 * Get the item hit. For an item with children, this is the child whose
+	 * geometry was hit.
+	 *
+	 * @return the item, or <code>null</code> if nothing was hit
+	 */
+	public Item3D getItem() {
+		return _item;
+	}
+
+	/**
+	 * Get the distance of the hit along the ray, from the near plane.
+	 *
+	 * @return the distance, or {@link PickRay3D#MISS}
+	 */
+	public float getDistance() {
+		return _distance;
+	}
+
+	/**
+	 * Get the index of the primitive hit: the point index of a point set, the
+	 * triangle index of a triangle list, etc.
+	 *
+	 * @return the index, or -1 if the item has no primitives to choose from
+	 */
+	public int getIndex() {
+		return _index;
+	}
+
+	/**
+	 * Get the hit point on the ray in world coordinates. For points and lines,
+	 * which are hit within a tolerance, this is the point of the ray closest to
+	 * the primitive. Shared; do not modify.
+	 *
+	 * @return the point as [x, y, z]
+	 */
+	public float[] getPoint() {
+		return _point;
+	}
+
+	@Override
+	public String toString() {
+		if (_item == null) {
+			return "PickResult3D[no hit]";
+		}
+		return String.format("PickResult3D[%s index=%d distance=%g point=(%g, %g, %g)]",
+				_item.getClass().getSimpleName(), _index, _distance, _point[0], _point[1], _point[2]);
+	}
+}
@@ -0,0 +1,122 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.Arrays;
+
+import edu.cnu.mdi.mdi3D.item3D.Item3D;
+
+/**
+ * Picks the closest item under a ray on the CPU, without the GL selection
+ * mode. Top level items with finite bounds are kept in a {@link BVH3D}; the
+ * tree is rebuilt only when the scene or an item's bounds changed since the
+ * last pick. Items without bounds are tested one by one. The hit is refined by
+ * each item's {@link Item3D#pick(PickRay3D, PickResult3D)}, which tests its
+ * actual geometry.
+ * <p>
+ * Not thread safe; the panel calls it on the event dispatch thread.
+ */
+public class Picker3D {
+
+	private static final Item3D[] EMPTY = new Item3D[0];
+
+	// the items in the tree and their boxes when it was built
+	private Item3D[] _bounded = EMPTY;
+	private float[] _boxes = new float[0];
+	private int _numBounded;
+
+	// items without finite bounds
+	private Item3D[] _unbounded = EMPTY;
+	private int _numUnbounded;
+
+	// the tree over the bounded items
+	private final BVH3D _tree = new BVH3D();
+
+	// scratch for gathering the current scene
+	private Item3D[] _scratchItems = EMPTY;
+	private float[] _scratchBoxes = new float[0];
+
+	/**
+	 * Find the closest visible item hit by a ray.
+	 *
+	 * @param items  the top level items
+	 * @param ray    the pick ray
+	 * @param result receives the hit (reset first)
+	 * @return <code>true</code> if something was hit
+	 */
+	public boolean pick(Item3D[] items, PickRay3D ray, PickResult3D result) {
+		result.reset(ray);
+		update(items);
+
+		_tree.traverse(ray, PickRay3D.MISS, (index, best) -> {
+			Item3D item = _bounded[index];
+			if (item.isVisible()) {
+				item.pickItem(ray, result);
+			}
+			return result.getDistance();
+		});
+
+		for (int i = 0; i < _numUnbounded; i++) {
+			Item3D item = _unbounded[i];
+			if (item.isVisible()) {
+				item.pickItem(ray, result);
+			}
+		}
+		return result.isHit();
+	}
+
+	// rebuild the tree if the scene or any bounds changed
+	private void update(Item3D[] items) {
+		int n = items.length;
+		if (_scratchItems.length < n) {
+			_scratchItems = new Item3D[n];
+			_scratchBoxes = new float[6 * n];
+		}
+
+		int numBounded = 0;
+		int numUnbounded = 0;
+		boolean changed = false;
+		for (Item3D item : items) {
+			Bounds3D bounds = item.getBounds();
+			if (bounds.isEmpty()) {
+				continue;
+			}
+			if (bounds.isInfinite()) {
+				numUnbounded++;
+				continue;
+			}
+
+			int b = 6 * numBounded;
+			_scratchItems[numBounded] = item;
+			_scratchBoxes[b] = bounds.getMinX();
+			_scratchBoxes[b + 1] = bounds.getMinY();
+			_scratchBoxes[b + 2] = bounds.getMinZ();
+			_scratchBoxes[b + 3] = bounds.getMaxX();
+			_scratchBoxes[b + 4] = bounds.getMaxY();
+			_scratchBoxes[b + 5] = bounds.getMaxZ();
+
+			if (!changed && ((numBounded >= _numBounded) || (_bounded[numBounded] != item)
+					|| !Arrays.equals(_scratchBoxes, b, b + 6, _boxes, b, b + 6))) {
+				changed = true;
+			}
+			numBounded++;
+		}
+
+		if (changed || (numBounded != _numBounded)) {
+			_bounded = Arrays.copyOf(_scratchItems, numBounded);
+			_boxes = Arrays.copyOf(_scratchBoxes, 6 * numBounded);
+			_numBounded = numBounded;
+			_tree.buildBoxes(_boxes, numBounded);
+		}
+		Arrays.fill(_scratchItems, 0, numBounded, null);
+
+		Arrays.fill(_unbounded, 0, _numUnbounded, null);
+		if (_unbounded.length < numUnbounded) {
+			_unbounded = new Item3D[numUnbounded];
+		}
+		_numUnbounded = 0;
+		for (Item3D item : items) {
+			if (item.getBounds().isInfinite()) {
+				_unbounded[_numUnbounded++] = item;
+			}
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Draws points as shaded point sprites: round (or square), anti-aliased and
+ * optionally framed in a single pass, with an optional color (RGBA bytes) and
+ * size (pixels) per point. The edge, the frame and the per point attributes
+ * are all resolved in the fragment shader from <code>gl_PointCoord</code>, so
+ * coloring every point or framing them costs no more than one plain draw.
+ * <p>
+ * The positions come from a {@link VertexBuffer3D}; the colors and sizes are
+ * uploaded to buffers of their own only when they change. A point set without
+ * per point colors or sizes uses the common color and size instead.
+ * <p>
+ * Render thread only.
+ */
+public class PointSprites3D {
+
+	// attribute locations
+	private static final int COLOR = ShaderProgram3D.FIRST_ATTRIBUTE;
+	private static final int SIZE = COLOR + 1;
+
+	private static final String VERTEX_SHADER = String.join("\n",
+			"#version 120",
+			"attribute vec4 a_color;",
+			"attribute float a_size;",
+			"varying vec4 v_color;",
+			"varying float v_radius;",
+			"varying float v_half;",
+			"void main() {",
+			"	gl_Position = gl_ModelViewProjectionMatrix * gl_Vertex;",
+			// one extra pixel for the anti-aliased edge
+			"	gl_PointSize = a_size + 1.0;",
+			"	v_color = a_color;",
+			"	v_radius = 0.5 * a_size;",
+			"	v_half = 0.5 * (a_size + 1.0);",
+			"}");
+
+	private static final String FRAGMENT_SHADER = String.join("\n",
+			"#version 120",
+			"uniform float u_round;",
+			"uniform vec4 u_frameColor;",
+			"uniform float u_frameWidth;",
+			"varying vec4 v_color;",
+			"varying float v_radius;",
+			"varying float v_half;",
+			"void main() {",
+			"	vec2 p = (2.0 * gl_PointCoord - 1.0) * v_half;",
+			"	float r = (u_round > 0.5) ? length(p) : max(abs(p.x), abs(p.y));",
+			// the distance inside the edge in pixels gives the coverage
+			"	float inside = v_radius - r;",
+			"	float coverage = clamp(inside + 0.5, 0.0, 1.0);",
+			"	if (coverage <= 0.0) {",
+			"		discard;",
+			"	}",
+			"	vec4 color = v_color;",
+			"	if (u_frameWidth > 0.0) {",
+			"		color = mix(u_frameColor, v_color, clamp(inside - u_frameWidth + 0.5, 0.0, 1.0));",
+			"	}",
+			"	gl_FragColor = vec4(color.rgb, color.a * coverage);",
+			"}");
+
+	// the program shared by all sprite sets
+	private static final ShaderProgram3D PROGRAM = new ShaderProgram3D("PointSprites3D", VERTEX_SHADER,
+			FRAGMENT_SHADER, new String[] { "a_color", "a_size" }, new int[] { COLOR, SIZE }, "u_round",
+			"u_frameColor", "u_frameWidth");
+
+	// the per point colors as [r, g, b, a, ...] and sizes, null if none
+	private byte[] _colors;
+	private float[] _sizes;
+
+	// their buffers in each context, and the versions of the colors and sizes
+	private static final int COLOR_BUFFER = 0;
+	private static final int SIZE_BUFFER = 1;
+	private final ContextBuffers3D _buffers = new ContextBuffers3D(2);
+	private int _colorsVersion;
+	private int _sizesVersion;
+
+	/**
+	 * Check whether point sprites can be drawn in the given context.
+	 *
+	 * @param gl the GL
+	 * @return <code>true</code> if the shader path is available
+	 */
+	public static boolean isSupported(GL2 gl) {
+		return VertexBuffer3D.isSupported(gl) && ShaderProgram3D.isSupported(gl);
+	}
+
+	/**
+	 * Set the per point colors. The array is kept, not copied; call again after
+	 * changing it in place.
+	 *
+	 * @param rgba the colors as [r, g, b, a, ...], four bytes per point, or
+	 *             <code>null</code> to use the common color
+	 */
+	public void setColors(byte[] rgba) {
+		_colors = rgba;
+		_colorsVersion++;
+	}
+
+	/**
+	 * Set the per point sizes. The array is kept, not copied; call again after
+	 * changing it in place.
+	 *
+	 * @param sizes the sizes in pixels, one per point, or <code>null</code> to
+	 *              use the common size
+	 */
+	public void setSizes(float[] sizes) {
+		_sizes = sizes;
+		_sizesVersion++;
+	}
+
+	/**
+	 * Draw the points.
+	 *
+	 * @param gl        the GL
+	 * @param positions the point positions
+	 * @param color     the common color, used without per point colors
+	 * @param size      the common size in pixels, used without per point sizes
+	 * @param frame     the frame color, <code>null</code> for no frame
+	 * @param round     <code>true</code> for round points, <code>false</code> for
+	 *                  squares
+	 * @return <code>false</code> if the shader is not available, in which case
+	 *         nothing was drawn
+	 */
+	public boolean draw(GL2 gl, VertexBuffer3D positions, Color color, float size, Color frame, boolean round) {
+		return draw(gl, positions, color, size, frame, round, 0, 1);
+	}
+
+	/**
+	 * Draw every <code>step</code>-th point starting at <code>first</code> (see
+	 * {@link VertexBuffer3D#drawStrided(GL2, int, int, int)}), e.g. one chunk of
+	 * a progressively drawn set.
+	 *
+	 * @param gl        the GL
+	 * @param positions the point positions
+	 * @param color     the common color, used without per point colors
+	 * @param size      the common size in pixels, used without per point sizes
+	 * @param frame     the frame color, <code>null</code> for no frame
+	 * @param round     <code>true</code> for round points, <code>false</code> for
+	 *                  squares
+	 * @param first     the first point
+	 * @param step      the point step, at least 1
+	 * @return <code>false</code> if the shader is not available, in which case
+	 *         nothing was drawn
+	 */
+	public boolean draw(GL2 gl, VertexBuffer3D positions, Color color, float size, Color frame, boolean round,
+			int first, int step) {
+		int count = positions.getVertexCount();
+		if (positions.getStridedCount(first, step) <= 0) {
+			return true;
+		}
+		if (!isSupported(gl) || !PROGRAM.use(gl)) {
+			return false;
+		}
+
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSmooth(gl, false);
+		state.pointSprite(gl, true);
+
+		gl.glUniform1f(PROGRAM.getUniform(gl, 0), round ? 1f : 0f);
+		if (frame == null) {
+			gl.glUniform1f(PROGRAM.getUniform(gl, 2), 0f);
+		} else {
+			gl.glUniform4f(PROGRAM.getUniform(gl, 1), frame.getRed() / 255f, frame.getGreen() / 255f,
+					frame.getBlue() / 255f, frame.getAlpha() / 255f);
+			gl.glUniform1f(PROGRAM.getUniform(gl, 2), 1f);
+		}
+
+		boolean colors = (_colors != null) && (_colors.length >= 4 * count);
+		if (colors) {
+			if (_buffers.bind(gl, COLOR_BUFFER, _colorsVersion)) {
+				gl.glBufferData(GL.GL_ARRAY_BUFFER, 4L * count, ByteBuffer.wrap(_colors, 0, 4 * count),
+						GL.GL_STATIC_DRAW);
+			}
+			gl.glEnableVertexAttribArray(COLOR);
+			gl.glVertexAttribPointer(COLOR, 4, GL.GL_UNSIGNED_BYTE, true, 4 * step, 4L * first);
+		} else {
+			gl.glVertexAttrib4f(COLOR, color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f,
+					color.getAlpha() / 255f);
+		}
+
+		boolean sizes = (_sizes != null) && (_sizes.length >= count);
+		if (sizes) {
+			if (_buffers.bind(gl, SIZE_BUFFER, _sizesVersion)) {
+				gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) count * Float.BYTES, FloatBuffer.wrap(_sizes, 0, count),
+						GL.GL_STATIC_DRAW);
+			}
+			gl.glEnableVertexAttribArray(SIZE);
+			gl.glVertexAttribPointer(SIZE, 1, GL.GL_FLOAT, false, Float.BYTES * step, (long) Float.BYTES * first);
+		} else {
+			gl.glVertexAttrib1f(SIZE, size);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+		positions.drawStrided(gl, GL.GL_POINTS, first, step);
+
+		if (colors) {
+			gl.glDisableVertexAttribArray(COLOR);
+		}
+		if (sizes) {
+			gl.glDisableVertexAttribArray(SIZE);
+		}
+		PROGRAM.unuse(gl);
+
+		// sprites would square off the fixed function smooth points
+		state.pointSprite(gl, false);
+		return true;
+	}
+
+	/**
+	 * Release the buffers of the current context. Those of other contexts the
+	 * points were drawn in are kept until they are disposed in turn.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		_buffers.dispose(gl);
+	}
+}
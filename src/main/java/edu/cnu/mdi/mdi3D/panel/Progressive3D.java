@@ -0,0 +1,154 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Progressive drawing of a very large primitive set within a frame budget.
+ * The set is split into chunks that are each an even sample of it: chunk
+ * <code>k</code> of <code>m</code> is the primitives <code>k, k + m, k + 2m,
+ * ...</code>, so a partly drawn set already looks like the whole, only
+ * sparser. Each frame draws as many chunks as fit in the budget, and the
+ * {@link Panel3D} keeps drawing the remaining chunks over the following
+ * frames, without clearing, until the set is complete or the view changes.
+ * While a transparent item is in view the panel draws the whole set in one
+ * frame instead, as chunks drawn later would show through it.
+ * <p>
+ * The time of a chunk is measured (with <code>glFinish</code>, so it is the
+ * GPU time, not the time to queue the commands) and the number of chunks per
+ * frame is adapted to it. Sets of a single chunk are simply drawn.
+ * <p>
+ * Render thread only.
+ */
+public class Progressive3D {
+
+	/**
+	 * Draws one chunk of a progressively drawn set.
+	 */
+	@FunctionalInterface
+	public interface ChunkDrawer {
+
+		/**
+		 * Draw every <code>step</code>-th primitive starting at
+		 * <code>first</code>.
+		 *
+		 * @param gl    the GL
+		 * @param first the first primitive, the chunk index
+		 * @param step  the primitive step, the number of chunks
+		 */
+		void drawChunk(GL2 gl, int first, int step);
+	}
+
+	// the primitives per chunk
+	private int _chunkSize = 1_000_000;
+
+	// the time to spend per frame, in milliseconds
+	private float _budgetMillis = 30f;
+
+	// the chunks of the current pass, and the next one to draw
+	private int _chunks;
+	private int _next;
+
+	// the chunks that fit in the budget, as last measured
+	private int _chunksPerFrame = 1;
+
+	/**
+	 * Start drawing a set again from its first chunk, e.g. because the view or
+	 * the set changed.
+	 *
+	 * @param count the number of primitives in the set
+	 */
+	public void restart(int count) {
+		_chunks = (count <= 0) ? 0 : (int) ((count + (long) _chunkSize - 1) / _chunkSize);
+		_next = 0;
+	}
+
+	/**
+	 * Check whether all chunks of the current pass have been drawn.
+	 *
+	 * @return <code>true</code> if the set is complete
+	 */
+	public boolean isComplete() {
+		return _next >= _chunks;
+	}
+
+	/**
+	 * Draw as many of the remaining chunks as fit in the budget, at least one.
+	 *
+	 * @param gl     the GL
+	 * @param drawer draws a chunk
+	 */
+	public void drawNext(GL2 gl, ChunkDrawer drawer) {
+		if (isComplete()) {
+			return;
+		}
+
+		if (_chunks == 1) {
+			drawer.drawChunk(gl, 0, 1);
+			_next = 1;
+			return;
+		}
+
+		int n = Math.min(_chunksPerFrame, _chunks - _next);
+
+		// wait for the earlier work, so only the chunks are timed
+		gl.glFinish();
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			drawer.drawChunk(gl, _next + i, _chunks);
+		}
+		gl.glFinish();
+		float millis = (System.nanoTime() - start) / 1.0e6f;
+		_next += n;
+
+		// grow at most twofold per frame, so one fast frame does not overshoot
+		float perChunk = Math.max(millis / n, 1.0e-3f);
+		int fit = (int) (_budgetMillis / perChunk);
+		_chunksPerFrame = Math.max(1, Math.min(Math.min(fit, 2 * n), _chunks));
+	}
+
+	/**
+	 * Set the number of primitives per chunk. Takes effect on the next
+	 * {@link #restart(int)}.
+	 *
+	 * @param chunkSize the primitives per chunk
+	 */
+	public void setChunkSize(int chunkSize) {
+		_chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Get the number of primitives per chunk.
+	 *
+	 * @return the primitives per chunk
+	 */
+	public int getChunkSize() {
+		return _chunkSize;
+	}
+
+	/**
+	 * Set the time to spend drawing chunks per frame.
+	 *
+	 * @param millis the frame budget in milliseconds
+	 */
+	public void setBudgetMillis(float millis) {
+		_budgetMillis = Math.max(1f, millis);
+	}
+
+	/**
+	 * Get the time to spend drawing chunks per frame.
+	 *
+	 * @return the frame budget in milliseconds
+	 */
+	public float getBudgetMillis() {
+		return _budgetMillis;
+	}
+
+	/**
+	 * Get the fraction of the set drawn so far.
+	 *
+	 * @return the fraction drawn, from 0 to 1
+	 */
+	public float getProgress() {
+		return (_chunks == 0) ? 1f : Math.min(1f, (float) _next / _chunks);
+	}
+}
@@ -0,0 +1,317 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.stream.IntStream;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.fixedfunc.GLMatrixFunc;
+
+/**
+ * Projects world coordinates to window coordinates on the CPU, with the same
+ * convention as <code>gluProject</code> (x and y in pixels from the lower left
+ * of the viewport, z in [0, 1] for points between the near and far planes).
+ * <p>
+ * The modelview, projection and viewport are captured once (per frame) with
+ * {@link #capture(GL2)}, so projecting a point costs a few multiplies and no
+ * GL round trip. Large batches are split across the common fork/join pool.
+ * <p>
+ * Points at or behind the eye (clip w &lt;= 0) have no window position; their
+ * outputs are NaN.
+ */
+public class Projector3D {
+
+	/** Batches with at least this many points are projected in parallel */
+	public static final int PARALLEL_THRESHOLD = 16384;
+
+	// points per parallel task
+	private static final int CHUNK = 4096;
+
+	// captured state (column major matrices)
+	private final float[] _modelview = new float[16];
+	private final float[] _projection = new float[16];
+	private final int[] _viewport = new int[4];
+
+	// projection * modelview
+	private final float[] _mvp = new float[16];
+
+	// the largest scale of the modelview, for projecting lengths
+	private float _scale = 1f;
+
+	// inverse of the combined matrix, computed when first needed
+	private final float[] _inverse = new float[16];
+	private boolean _inverseValid;
+	private boolean _invertible;
+
+	// false until captured or set
+	private boolean _valid;
+
+	/**
+	 * Capture the current modelview, projection and viewport. Three
+	 * <code>glGet</code> calls.
+	 *
+	 * @param gl the GL
+	 */
+	public void capture(GL2 gl) {
+		gl.glGetFloatv(GLMatrixFunc.GL_MODELVIEW_MATRIX, _modelview, 0);
+		gl.glGetFloatv(GLMatrixFunc.GL_PROJECTION_MATRIX, _projection, 0);
+		gl.glGetIntegerv(GL.GL_VIEWPORT, _viewport, 0);
+		update();
+	}
+
+	/**
+	 * Set the transform explicitly.
+	 *
+	 * @param projection the projection matrix (column major)
+	 * @param modelview  the modelview matrix (column major)
+	 * @param viewport   the viewport as [x, y, width, height]
+	 */
+	public void set(float[] projection, float[] modelview, int[] viewport) {
+		System.arraycopy(projection, 0, _projection, 0, 16);
+		System.arraycopy(modelview, 0, _modelview, 0, 16);
+		System.arraycopy(viewport, 0, _viewport, 0, 4);
+		update();
+	}
+
+	/**
+	 * Check whether a transform has been captured.
+	 *
+	 * @return <code>true</code> if captured
+	 */
+	public boolean isValid() {
+		return _valid;
+	}
+
+	/**
+	 * Get the captured modelview matrix. Shared; do not modify.
+	 *
+	 * @return the modelview matrix (column major)
+	 */
+	public float[] getModelview() {
+		return _modelview;
+	}
+
+	/**
+	 * Get the captured projection matrix. Shared; do not modify.
+	 *
+	 * @return the projection matrix (column major)
+	 */
+	public float[] getProjection() {
+		return _projection;
+	}
+
+	/**
+	 * Get the captured viewport. Shared; do not modify.
+	 *
+	 * @return the viewport as [x, y, width, height]
+	 */
+	public int[] getViewport() {
+		return _viewport;
+	}
+
+	/**
+	 * Project a single point.
+	 *
+	 * @param x      the world x
+	 * @param y      the world y
+	 * @param z      the world z
+	 * @param winPos receives the window [x, y, z] (NaN if behind the eye)
+	 * @return <code>true</code> if the point is in front of the eye
+	 */
+	public boolean project(float x, float y, float z, float[] winPos) {
+		return project(x, y, z, winPos, 0);
+	}
+
+	/**
+	 * Project packed points. Uses several threads for large inputs.
+	 *
+	 * @param xyz    the points as [x, y, z, x, y, z, ...]
+	 * @param outWin receives the window coordinates, packed the same way (at
+	 *               least as long as <code>xyz</code>)
+	 */
+	public void project(float[] xyz, float[] outWin) {
+		project(xyz, outWin, xyz.length / 3);
+	}
+
+	/**
+	 * Project the first <code>n</code> packed points. Uses several threads for
+	 * large inputs.
+	 *
+	 * @param xyz    the points as [x, y, z, x, y, z, ...]
+	 * @param outWin receives the window coordinates, packed the same way
+	 * @param n      the number of points
+	 */
+	public void project(float[] xyz, float[] outWin, int n) {
+		if (n < PARALLEL_THRESHOLD) {
+			projectRange(xyz, outWin, 0, n);
+			return;
+		}
+
+		int chunks = (n + CHUNK - 1) / CHUNK;
+		IntStream.range(0, chunks).parallel().forEach(c -> {
+			int start = c * CHUNK;
+			projectRange(xyz, outWin, start, Math.min(n, start + CHUNK));
+		});
+	}
+
+	/**
+	 * Map a window position back to world coordinates (the inverse of
+	 * {@link #project(float, float, float, float[])}, as
+	 * <code>gluUnProject</code>).
+	 *
+	 * @param winX     the window x in pixels
+	 * @param winY     the window y in pixels (from the bottom)
+	 * @param winZ     the window depth, 0 for the near plane and 1 for the far
+	 *                 plane
+	 * @param worldPos receives the world [x, y, z]
+	 * @return <code>false</code> if nothing was captured or the view cannot be
+	 *         inverted
+	 */
+	public boolean unproject(float winX, float winY, float winZ, float[] worldPos) {
+		if (!_valid || (_viewport[2] <= 0) || (_viewport[3] <= 0)) {
+			return false;
+		}
+		if (!_inverseValid) {
+			_inverseValid = true;
+			_invertible = invert(_mvp, _inverse);
+		}
+		if (!_invertible) {
+			return false;
+		}
+
+		float nx = 2f * (winX - _viewport[0]) / _viewport[2] - 1f;
+		float ny = 2f * (winY - _viewport[1]) / _viewport[3] - 1f;
+		float nz = 2f * winZ - 1f;
+
+		final float[] m = _inverse;
+		float w = m[3] * nx + m[7] * ny + m[11] * nz + m[15];
+		if (w == 0f) {
+			return false;
+		}
+		float inv = 1f / w;
+		worldPos[0] = (m[0] * nx + m[4] * ny + m[8] * nz + m[12]) * inv;
+		worldPos[1] = (m[1] * nx + m[5] * ny + m[9] * nz + m[13]) * inv;
+		worldPos[2] = (m[2] * nx + m[6] * ny + m[10] * nz + m[14]) * inv;
+		return true;
+	}
+
+	/**
+	 * Estimate the radius in pixels of a sphere, from the distance of its center
+	 * to the eye. Used to choose a level of detail, so it errs on the large side
+	 * when the sphere is near or around the eye.
+	 *
+	 * @param x      the world x of the center
+	 * @param y      the world y of the center
+	 * @param z      the world z of the center
+	 * @param radius the world radius
+	 * @return the radius in pixels, infinite if the sphere reaches the eye
+	 */
+	public float getPixelRadius(float x, float y, float z, float radius) {
+		final float[] m = _mvp;
+		float cw = m[3] * x + m[7] * y + m[11] * z + m[15];
+		float r = radius * _scale;
+		// under perspective w is the distance in front of the eye
+		if ((_projection[11] != 0f) && !(cw > r)) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return r * Math.abs(_projection[5]) * 0.5f * _viewport[3] / cw;
+	}
+
+	// project points [start, end)
+	private void projectRange(float[] xyz, float[] outWin, int start, int end) {
+		for (int i = start; i < end; i++) {
+			int j = 3 * i;
+			project(xyz[j], xyz[j + 1], xyz[j + 2], outWin, j);
+		}
+	}
+
+	// project one point into out[offset..offset+2]
+	private boolean project(float x, float y, float z, float[] out, int offset) {
+		final float[] m = _mvp;
+		float cw = m[3] * x + m[7] * y + m[11] * z + m[15];
+		if (!(cw > 0f)) {
+			out[offset] = Float.NaN;
+			out[offset + 1] = Float.NaN;
+			out[offset + 2] = Float.NaN;
+			return false;
+		}
+
+		float inv = 1f / cw;
+		float nx = (m[0] * x + m[4] * y + m[8] * z + m[12]) * inv;
+		float ny = (m[1] * x + m[5] * y + m[9] * z + m[13]) * inv;
+		float nz = (m[2] * x + m[6] * y + m[10] * z + m[14]) * inv;
+
+		out[offset] = _viewport[0] + _viewport[2] * (nx + 1f) * 0.5f;
+		out[offset + 1] = _viewport[1] + _viewport[3] * (ny + 1f) * 0.5f;
+		out[offset + 2] = (nz + 1f) * 0.5f;
+		return true;
+	}
+
+	// recompute the combined matrix
+	private void update() {
+		for (int c = 0; c < 4; c++) {
+			for (int r = 0; r < 4; r++) {
+				float sum = 0;
+				for (int k = 0; k < 4; k++) {
+					sum += _projection[k * 4 + r] * _modelview[c * 4 + k];
+				}
+				_mvp[c * 4 + r] = sum;
+			}
+		}
+		_scale = 0f;
+		for (int c = 0; c < 3; c++) {
+			float x = _modelview[4 * c];
+			float y = _modelview[4 * c + 1];
+			float z = _modelview[4 * c + 2];
+			_scale = Math.max(_scale, (float) Math.sqrt(x * x + y * y + z * z));
+		}
+		_valid = true;
+		_inverseValid = false;
+	}
+
+	// invert a 4x4 matrix by cofactors, returning false if it is singular
+	private static boolean invert(float[] m, float[] inv) {
+		float[] r = new float[16];
+		r[0] = m[5] * m[10] * m[15] - m[5] * m[11] * m[14] - m[9] * m[6] * m[15] + m[9] * m[7] * m[14]
+				+ m[13] * m[6] * m[11] - m[13] * m[7] * m[10];
+		r[4] = -m[4] * m[10] * m[15] + m[4] * m[11] * m[14] + m[8] * m[6] * m[15] - m[8] * m[7] * m[14]
+				- m[12] * m[6] * m[11] + m[12] * m[7] * m[10];
+		r[8] = m[4] * m[9] * m[15] - m[4] * m[11] * m[13] - m[8] * m[5] * m[15] + m[8] * m[7] * m[13]
+				+ m[12] * m[5] * m[11] - m[12] * m[7] * m[9];
+		r[12] = -m[4] * m[9] * m[14] + m[4] * m[10] * m[13] + m[8] * m[5] * m[14] - m[8] * m[6] * m[13]
+				- m[12] * m[5] * m[10] + m[12] * m[6] * m[9];
+		r[1] = -m[1] * m[10] * m[15] + m[1] * m[11] * m[14] + m[9] * m[2] * m[15] - m[9] * m[3] * m[14]
+				- m[13] * m[2] * m[11] + m[13] * m[3] * m[10];
+		r[5] = m[0] * m[10] * m[15] - m[0] * m[11] * m[14] - m[8] * m[2] * m[15] + m[8] * m[3] * m[14]
+				+ m[12] * m[2] * m[11] - m[12] * m[3] * m[10];
+		r[9] = -m[0] * m[9] * m[15] + m[0] * m[11] * m[13] + m[8] * m[1] * m[15] - m[8] * m[3] * m[13]
+				- m[12] * m[1] * m[11] + m[12] * m[3] * m[9];
+		r[13] = m[0] * m[9] * m[14] - m[0] * m[10] * m[13] - m[8] * m[1] * m[14] + m[8] * m[2] * m[13]
+				+ m[12] * m[1] * m[10] - m[12] * m[2] * m[9];
+		r[2] = m[1] * m[6] * m[15] - m[1] * m[7] * m[14] - m[5] * m[2] * m[15] + m[5] * m[3] * m[14]
+				+ m[13] * m[2] * m[7] - m[13] * m[3] * m[6];
+		r[6] = -m[0] * m[6] * m[15] + m[0] * m[7] * m[14] + m[4] * m[2] * m[15] - m[4] * m[3] * m[14]
+				- m[12] * m[2] * m[7] + m[12] * m[3] * m[6];
+		r[10] = m[0] * m[5] * m[15] - m[0] * m[7] * m[13] - m[4] * m[1] * m[15] + m[4] * m[3] * m[13]
+				+ m[12] * m[1] * m[7] - m[12] * m[3] * m[5];
+		r[14] = -m[0] * m[5] * m[14] + m[0] * m[6] * m[13] + m[4] * m[1] * m[14] - m[4] * m[2] * m[13]
+				- m[12] * m[1] * m[6] + m[12] * m[2] * m[5];
+		r[3] = -m[1] * m[6] * m[11] + m[1] * m[7] * m[10] + m[5] * m[2] * m[11] - m[5] * m[3] * m[10]
+				- m[9] * m[2] * m[7] + m[9] * m[3] * m[6];
+		r[7] = m[0] * m[6] * m[11] - m[0] * m[7] * m[10] - m[4] * m[2] * m[11] + m[4] * m[3] * m[10]
+				+ m[8] * m[2] * m[7] - m[8] * m[3] * m[6];
+		r[11] = -m[0] * m[5] * m[11] + m[0] * m[7] * m[9] + m[4] * m[1] * m[11] - m[4] * m[3] * m[9]
+				- m[8] * m[1] * m[7] + m[8] * m[3] * m[5];
+		r[15] = m[0] * m[5] * m[10] - m[0] * m[6] * m[9] - m[4] * m[1] * m[10] + m[4] * m[2] * m[9]
+				+ m[8] * m[1] * m[6] - m[8] * m[2] * m[5];
+
+		float det = m[0] * r[0] + m[1] * r[4] + m[2] * r[8] + m[3] * r[12];
+		if ((det == 0f) || Float.isNaN(det)) {
+			return false;
+		}
+		det = 1f / det;
+		for (int i = 0; i < 16; i++) {
+			inv[i] = r[i] * det;
+		}
+		return true;
+	}
+}
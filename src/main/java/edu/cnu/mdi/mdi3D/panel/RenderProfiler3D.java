@@ -0,0 +1,512 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.util.awt.TextRenderer;
+
+import edu.cnu.mdi.mdi3D.item3D.Item3D;
+
+/**
+ * An opt-in per-frame profiler for {@link Panel3D#display(GLAutoDrawable)}.
+ * <p>
+ * When enabled it records, for every frame, the wall time of each
+ * {@link Pass} and of each top level item's <code>drawItem</code> (including
+ * its children), and keeps a rolling window of each so percentiles can be
+ * queried. Times are CPU times to issue the work; turn on
+ * {@link #setFinishEachItem(boolean)} to include the GPU time of each item at
+ * the cost of stalling the pipeline.
+ * <p>
+ * If GL call counting is on (the default) the drawable's GL is replaced, while
+ * profiling, by a counting wrapper that forwards every call. The wrapper is
+ * reflective and therefore slow, which inflates the timings of call heavy
+ * items roughly in proportion to the number of calls they make. Turn counting
+ * off for the most faithful timings.
+ * <p>
+ * The results are available programmatically, and optionally as a text
+ * overlay in the corner of the panel.
+ */
+public class RenderProfiler3D {
+
+	/** The timed parts of a frame */
+	public enum Pass {
+		/** the whole frame */
+		FRAME,
+		/** the panel's beforeDraw */
+		BEFORE_DRAW,
+		/** the opaque pass */
+		OPAQUE,
+		/** culling and depth sorting the transparent items */
+		SORT,
+		/** the transparent pass */
+		TRANSPARENT,
+		/** the panel's afterDraw */
+		AFTER_DRAW,
+		/** a frame that only drew progressive items over the last one */
+		REFINE
+	}
+
+	/**
+	 * The timing summary of a single item.
+	 *
+	 * @param item    the item
+	 * @param nanos   the requested percentile of its drawItem time, in
+	 *                nanoseconds
+	 * @param glCalls the GL calls its last drawItem issued
+	 * @param samples the number of frames in the window
+	 */
+	public record ItemTiming(Item3D item, long nanos, long glCalls, int samples) {
+	}
+
+	/** The default number of frames in the rolling window */
+	public static final int DEFAULT_WINDOW = 240;
+
+	private static final Pass[] PASSES = Pass.values();
+
+	// is profiling on
+	private volatile boolean _enabled;
+
+	// count GL calls through the wrapper
+	private volatile boolean _countGLCalls = true;
+
+	// glFinish after each item
+	private volatile boolean _finishEachItem;
+
+	// draw the overlay
+	private volatile boolean _overlayVisible;
+
+	// size of the rolling windows
+	private volatile int _window = DEFAULT_WINDOW;
+
+	// time per pass
+	private volatile RollingStats[] _passTimes = newPassStats(DEFAULT_WINDOW);
+
+	// GL calls per pass
+	private volatile RollingStats[] _passCalls = newPassStats(DEFAULT_WINDOW);
+
+	// per item stats, dropped with the item
+	private final Map<Item3D, ItemStats> _itemStats = new WeakHashMap<>();
+
+	// frame in progress (render thread only)
+	private final long[] _passStart = new long[PASSES.length];
+	private final long[] _passCallStart = new long[PASSES.length];
+	private GL2 _gl;
+	private boolean _inFrame;
+
+	// the number of GL calls counted so far, render thread only
+	private long _glCalls;
+
+	// number of profiled frames
+	private long _frameCount;
+
+	// the overlay text renderer of each context it was drawn in
+	private final Map<GLContext, TextRenderer> _textRenderers = new IdentityHashMap<>(4);
+
+	/**
+	 * Turn profiling on or off. Takes effect at the start of the next frame.
+	 *
+	 * @param enabled if <code>true</code> profile every frame
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+	}
+
+	/**
+	 * Check whether profiling is on.
+	 *
+	 * @return <code>true</code> if profiling
+	 */
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * Set whether GL calls are counted (through a forwarding wrapper).
+	 *
+	 * @param count if <code>true</code> count GL calls
+	 */
+	public void setCountGLCalls(boolean count) {
+		_countGLCalls = count;
+	}
+
+	/**
+	 * Check whether GL calls are counted.
+	 *
+	 * @return <code>true</code> if counting GL calls
+	 */
+	public boolean isCountGLCalls() {
+		return _countGLCalls;
+	}
+
+	/**
+	 * Set whether to call <code>glFinish</code> after each item, so item times
+	 * include the GPU work rather than just the time to issue it.
+	 *
+	 * @param finish if <code>true</code> finish after each item
+	 */
+	public void setFinishEachItem(boolean finish) {
+		_finishEachItem = finish;
+	}
+
+	/**
+	 * Set whether the summary is drawn over the scene.
+	 *
+	 * @param visible if <code>true</code> draw the overlay
+	 */
+	public void setOverlayVisible(boolean visible) {
+		_overlayVisible = visible;
+	}
+
+	/**
+	 * Check whether the summary is drawn over the scene.
+	 *
+	 * @return <code>true</code> if the overlay is drawn
+	 */
+	public boolean isOverlayVisible() {
+		return _overlayVisible;
+	}
+
+	/**
+	 * Set the number of frames kept for percentiles. Clears the results.
+	 *
+	 * @param frames the window size
+	 */
+	public synchronized void setWindowSize(int frames) {
+		_window = Math.max(1, frames);
+		_passTimes = newPassStats(_window);
+		_passCalls = newPassStats(_window);
+		_itemStats.clear();
+	}
+
+	/**
+	 * Discard all results.
+	 */
+	public synchronized void reset() {
+		for (Pass pass : PASSES) {
+			_passTimes[pass.ordinal()].clear();
+			_passCalls[pass.ordinal()].clear();
+		}
+		_itemStats.clear();
+		_frameCount = 0;
+	}
+
+	/**
+	 * Get a percentile of a pass's time over the window.
+	 *
+	 * @param pass       the pass
+	 * @param percentile the percentile in [0, 100]
+	 * @return the time in milliseconds
+	 */
+	public double getPassMillis(Pass pass, double percentile) {
+		return _passTimes[pass.ordinal()].getPercentile(percentile) / 1.0e6;
+	}
+
+	/**
+	 * Get a percentile of a pass's GL call count over the window. Zero if calls
+	 * are not being counted.
+	 *
+	 * @param pass       the pass
+	 * @param percentile the percentile in [0, 100]
+	 * @return the number of GL calls
+	 */
+	public long getPassGLCalls(Pass pass, double percentile) {
+		return _passCalls[pass.ordinal()].getPercentile(percentile);
+	}
+
+	/**
+	 * Get the rolling stats of a pass's time, in nanoseconds.
+	 *
+	 * @param pass the pass
+	 * @return the stats
+	 */
+	public RollingStats getPassStats(Pass pass) {
+		return _passTimes[pass.ordinal()];
+	}
+
+	/**
+	 * Get the number of profiled frames since the last reset.
+	 *
+	 * @return the frame count
+	 */
+	public synchronized long getFrameCount() {
+		return _frameCount;
+	}
+
+	/**
+	 * Get the items with the largest draw times, slowest first.
+	 *
+	 * @param count      the maximum number of items
+	 * @param percentile the percentile of each item's time to rank by, e.g. 95
+	 * @return the hot items
+	 */
+	public List<ItemTiming> getHotItems(int count, double percentile) {
+		List<ItemTiming> list = new ArrayList<>();
+		synchronized (this) {
+			for (Map.Entry<Item3D, ItemStats> entry : _itemStats.entrySet()) {
+				ItemStats stats = entry.getValue();
+				list.add(new ItemTiming(entry.getKey(), stats.times.getPercentile(percentile), stats.lastCalls,
+						stats.times.getCount()));
+			}
+		}
+		list.sort(Comparator.comparingLong(ItemTiming::nanos).reversed());
+		return (list.size() > count) ? new ArrayList<>(list.subList(0, Math.max(0, count))) : list;
+	}
+
+	// ---- called by the panel on the render thread ----
+
+	/**
+	 * Start a frame. Installs or removes the counting GL wrapper as needed, so
+	 * call it before fetching the GL from the drawable.
+	 *
+	 * @param drawable the drawable being displayed
+	 * @return <code>true</code> if this frame is being profiled
+	 */
+	public boolean beginFrame(GLAutoDrawable drawable) {
+		boolean profile = _enabled;
+		GL gl = drawable.getGL();
+		CountingHandler handler = countingHandler(gl);
+
+		if (profile && _countGLCalls) {
+			if (handler == null) {
+				drawable.setGL(newCountingGL(gl.getGL2()));
+			}
+		} else if (handler != null) {
+			drawable.setGL(handler._target);
+		}
+
+		_inFrame = profile;
+		if (profile) {
+			_gl = drawable.getGL().getGL2();
+			beginPass(Pass.FRAME);
+		}
+		return profile;
+	}
+
+	/**
+	 * Start timing a pass. Does nothing if this frame is not being profiled.
+	 *
+	 * @param pass the pass
+	 */
+	public void beginPass(Pass pass) {
+		if (!_inFrame) {
+			return;
+		}
+		_passCallStart[pass.ordinal()] = _glCalls;
+		_passStart[pass.ordinal()] = System.nanoTime();
+	}
+
+	/**
+	 * Stop timing a pass and record it. Does nothing if this frame is not being
+	 * profiled.
+	 *
+	 * @param pass the pass
+	 */
+	public void endPass(Pass pass) {
+		if (!_inFrame) {
+			return;
+		}
+		int i = pass.ordinal();
+		_passTimes[i].add(System.nanoTime() - _passStart[i]);
+		_passCalls[i].add(_glCalls - _passCallStart[i]);
+	}
+
+	/**
+	 * Draw a top level item (and its children), recording its time if this frame
+	 * is being profiled.
+	 *
+	 * @param drawable the drawable
+	 * @param item     the item
+	 */
+	public void drawItem(GLAutoDrawable drawable, Item3D item) {
+		if (!_inFrame) {
+			item.drawItem(drawable);
+			return;
+		}
+
+		long calls = _glCalls;
+		long start = System.nanoTime();
+		item.drawItem(drawable);
+		if (_finishEachItem) {
+			_gl.glFinish();
+		}
+		long nanos = System.nanoTime() - start;
+		calls = _glCalls - calls;
+
+		ItemStats stats;
+		synchronized (this) {
+			stats = _itemStats.get(item);
+			if (stats == null) {
+				stats = new ItemStats(_window);
+				_itemStats.put(item, stats);
+			}
+		}
+		stats.times.add(nanos);
+		stats.lastCalls = calls;
+	}
+
+	/**
+	 * End the frame, and draw the overlay if it is visible. The overlay is not
+	 * included in the frame time. Does nothing if this frame is not being
+	 * profiled.
+	 *
+	 * @param drawable the drawable
+	 */
+	public void endFrame(GLAutoDrawable drawable) {
+		endFrame(drawable, false);
+	}
+
+	/**
+	 * End the frame. A refine frame, which only drew the next part of the
+	 * progressive items over the last frame, is recorded as {@link Pass#REFINE}
+	 * rather than {@link Pass#FRAME}, and the overlay is not drawn over the kept
+	 * one. Does nothing if this frame is not being profiled.
+	 *
+	 * @param drawable the drawable
+	 * @param refine   <code>true</code> if this was a refine frame
+	 */
+	public void endFrame(GLAutoDrawable drawable, boolean refine) {
+		if (!_inFrame) {
+			return;
+		}
+		if (refine) {
+			int i = Pass.FRAME.ordinal();
+			_passTimes[Pass.REFINE.ordinal()].add(System.nanoTime() - _passStart[i]);
+			_passCalls[Pass.REFINE.ordinal()].add(_glCalls - _passCallStart[i]);
+		} else {
+			endPass(Pass.FRAME);
+		}
+		_inFrame = false;
+		_gl = null;
+		synchronized (this) {
+			_frameCount++;
+		}
+
+		if (_overlayVisible && !refine) {
+			drawOverlay(drawable);
+		}
+	}
+
+	/**
+	 * Release the overlay text renderer of the drawable's context, which must be
+	 * current, e.g. when the context is going away. Those of other contexts are
+	 * kept.
+	 *
+	 * @param drawable the drawable whose context is going away
+	 */
+	public void dispose(GLAutoDrawable drawable) {
+		TextRenderer textRenderer = _textRenderers.remove(drawable.getContext());
+		if (textRenderer != null) {
+			textRenderer.dispose();
+		}
+	}
+
+	// draw the summary in the upper left corner
+	private void drawOverlay(GLAutoDrawable drawable) {
+		// a renderer's texture belongs to its context, so each context has its own
+		TextRenderer textRenderer = _textRenderers.computeIfAbsent(drawable.getContext(),
+				context -> new TextRenderer(new Font(Font.MONOSPACED, Font.PLAIN, 11), true, false));
+
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format("frame %6.2f ms p50 %6.2f ms p95  (%d frames)", getPassMillis(Pass.FRAME, 50),
+				getPassMillis(Pass.FRAME, 95), _passTimes[Pass.FRAME.ordinal()].getCount()));
+		for (Pass pass : PASSES) {
+			if (pass != Pass.FRAME) {
+				lines.add(String.format("  %-12s %6.2f ms p95 %8d calls", pass.name().toLowerCase(),
+						getPassMillis(pass, 95), getPassGLCalls(pass, 50)));
+			}
+		}
+		for (ItemTiming timing : getHotItems(5, 95)) {
+			lines.add(String.format("  %-24.24s %6.2f ms p95 %8d calls", timing.item().getClass().getSimpleName(),
+					timing.nanos() / 1.0e6, timing.glCalls()));
+		}
+
+		int height = drawable.getSurfaceHeight();
+		textRenderer.beginRendering(drawable.getSurfaceWidth(), height);
+		textRenderer.setColor(Color.yellow);
+		int y = height - 14;
+		for (String line : lines) {
+			textRenderer.draw(line, 6, y);
+			y -= 13;
+		}
+		textRenderer.endRendering();
+	}
+
+	private static RollingStats[] newPassStats(int window) {
+		RollingStats[] stats = new RollingStats[PASSES.length];
+		for (int i = 0; i < stats.length; i++) {
+			stats[i] = new RollingStats(window);
+		}
+		return stats;
+	}
+
+	// the counting handler behind a GL, or null if it is not a counting wrapper
+	private CountingHandler countingHandler(GL gl) {
+		if (Proxy.isProxyClass(gl.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(gl);
+			if ((handler instanceof CountingHandler) && (((CountingHandler) handler).owner() == this)) {
+				return (CountingHandler) handler;
+			}
+		}
+		return null;
+	}
+
+	private GL2 newCountingGL(GL2 target) {
+		return (GL2) Proxy.newProxyInstance(GL2.class.getClassLoader(), new Class<?>[] { GL2.class },
+				new CountingHandler(target));
+	}
+
+	// per item results
+	private static class ItemStats {
+		final RollingStats times;
+		volatile long lastCalls;
+
+		ItemStats(int window) {
+			times = new RollingStats(window);
+		}
+	}
+
+	// forwards every call to the real GL, counting the gl* ones
+	private class CountingHandler implements InvocationHandler {
+
+		private final GL2 _target;
+
+		CountingHandler(GL2 target) {
+			_target = target;
+		}
+
+		RenderProfiler3D owner() {
+			return RenderProfiler3D.this;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().startsWith("gl")) {
+				_glCalls++;
+			}
+
+			Object result;
+			try {
+				result = method.invoke(_target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			// getGL2() and friends must keep returning the wrapper
+			return (result == _target) ? proxy : result;
+		}
+	}
+}
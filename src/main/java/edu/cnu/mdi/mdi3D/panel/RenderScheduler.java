@@ -0,0 +1,159 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Coalesces frame requests so that any number of refresh requests results in
+ * at most one rendered frame per display interval.
+ * <p>
+ * A request that arrives while no frame is pending schedules one on the EDT,
+ * delayed just enough to honor the target frame rate. Requests that arrive
+ * while a frame is pending are absorbed by it. A request that arrives while a
+ * frame is being rendered schedules a new frame, so the last change is never
+ * lost.
+ * <p>
+ * {@link #requestFrame()} is safe to call from any thread.
+ */
+public class RenderScheduler {
+
+	/** Default target frames per second */
+	public static final int DEFAULT_TARGET_FPS = 60;
+
+	// performs the actual (synchronous) render, called on the EDT
+	private final Runnable _renderer;
+
+	// one-shot timer used to delay a frame to the next display interval
+	private final Timer _timer;
+
+	// true while a frame is scheduled but has not yet started
+	private final AtomicBoolean _pending = new AtomicBoolean(false);
+
+	// target frame rate
+	private volatile int _targetFPS = DEFAULT_TARGET_FPS;
+
+	// time the last frame was rendered
+	private volatile long _lastFrameNanos;
+
+	// statistics
+	private final AtomicLong _requestCount = new AtomicLong();
+	private final AtomicLong _frameCount = new AtomicLong();
+
+	/**
+	 * Create a scheduler.
+	 *
+	 * @param renderer renders one frame synchronously, e.g.
+	 *                 <code>gljpanel::display</code>. Always called on the EDT.
+	 */
+	public RenderScheduler(Runnable renderer) {
+		_renderer = renderer;
+		_timer = new Timer(0, e -> fire());
+		_timer.setRepeats(false);
+		_timer.setCoalesce(true);
+	}
+
+	/**
+	 * Request a frame. Returns immediately; the frame is rendered later on the EDT
+	 * no sooner than one display interval after the previous frame.
+	 */
+	public void requestFrame() {
+		_requestCount.incrementAndGet();
+		if (_pending.compareAndSet(false, true)) {
+			if (SwingUtilities.isEventDispatchThread()) {
+				schedule();
+			} else {
+				SwingUtilities.invokeLater(this::schedule);
+			}
+		}
+	}
+
+	/**
+	 * Check whether a frame is scheduled but not yet rendered.
+	 *
+	 * @return <code>true</code> if a frame is pending
+	 */
+	public boolean isFramePending() {
+		return _pending.get();
+	}
+
+	/**
+	 * Record that a frame was rendered. Called by the panel at the end of every
+	 * display, whatever triggered it, so that frames caused by Swing (resizes,
+	 * exposure) also count against the frame interval.
+	 */
+	public void frameRendered() {
+		_lastFrameNanos = System.nanoTime();
+		_frameCount.incrementAndGet();
+	}
+
+	/**
+	 * Set the target frame rate. Frames are never rendered faster than this.
+	 *
+	 * @param fps the target frames per second (clamped to [1, 1000])
+	 */
+	public void setTargetFPS(int fps) {
+		_targetFPS = Math.max(1, Math.min(1000, fps));
+	}
+
+	/**
+	 * Get the target frame rate.
+	 *
+	 * @return the target frames per second
+	 */
+	public int getTargetFPS() {
+		return _targetFPS;
+	}
+
+	/**
+	 * Get the minimum time between frames implied by the target frame rate.
+	 *
+	 * @return the frame interval in milliseconds
+	 */
+	public int getFrameIntervalMillis() {
+		return 1000 / _targetFPS;
+	}
+
+	/**
+	 * Get the total number of frame requests received.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return _requestCount.get();
+	}
+
+	/**
+	 * Get the total number of frames rendered.
+	 *
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return _frameCount.get();
+	}
+
+	/**
+	 * Cancel a pending frame, if any.
+	 */
+	public void cancel() {
+		_timer.stop();
+		_pending.set(false);
+	}
+
+	// on the EDT: start the timer so the frame lands on the next interval
+	private void schedule() {
+		long sinceLast = (System.nanoTime() - _lastFrameNanos) / 1_000_000L;
+		long delay = Math.max(0L, getFrameIntervalMillis() - sinceLast);
+		_timer.setInitialDelay((int) delay);
+		_timer.restart();
+	}
+
+	// on the EDT: render. Clear the pending flag first so that requests made
+	// during the render (state changed mid-frame) schedule another frame.
+	private void fire() {
+		_pending.set(false);
+		_renderer.run();
+	}
+}
@@ -0,0 +1,335 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.awt.Color;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GL2ES1;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.fixedfunc.GLLightingFunc;
+
+/**
+ * Tracks the fixed function state that {@link Support3D} sets (line width,
+ * point size, point smoothing, line stipple, current color, lighting and the
+ * light and material of shaded primitives) and skips a GL call when the value
+ * would not change. There is one tracker per GL context; get it with
+ * {@link #get(GL2)}.
+ * <p>
+ * The tracker only knows about changes made through it. The panel
+ * {@link #invalidate() invalidates} it at the start of each frame and around
+ * its <code>beforeDraw</code>/<code>afterDraw</code> hooks. Any other code that
+ * changes tracked state directly (e.g. a <code>TextRenderer</code>, which sets
+ * the current color) must call {@link #invalidate(GL2)} afterwards.
+ * <p>
+ * Render thread only.
+ */
+public class RenderState3D {
+
+	// key for the tracker attached to a context
+	private static final String KEY = RenderState3D.class.getName();
+
+	// the shaded primitive light, a directional light
+	private static final float[] LIGHT_POSITION = { 1.0f, 1.0f, 1.0f, 0.0f };
+	private static final float[] LIGHT_DIFFUSE = { 1.0f, 1.0f, 1.0f, 1.0f };
+	private static final float[] LIGHT_SPECULAR = { 1.0f, 1.0f, 1.0f, 1.0f };
+
+	// the shaded primitive material (the diffuse color varies)
+	private static final float[] MAT_AMBIENT = { 0.2f, 0.2f, 0.2f, 1.0f };
+	private static final float[] MAT_SPECULAR = { 1.0f, 1.0f, 1.0f, 1.0f };
+	private static final float[] MAT_SHININESS = { 50.0f };
+
+	// capability states: -1 unknown, 0 disabled, 1 enabled
+	private int _pointSmooth = -1;
+	private int _pointSprite = -1;
+	private int _lineStipple = -1;
+	private int _lighting = -1;
+	private int _light0 = -1;
+
+	// line width and point size, NaN if unknown
+	private float _lineWidth = Float.NaN;
+	private float _pointSize = Float.NaN;
+
+	// line stipple
+	private boolean _stippleValid;
+	private int _stippleFactor;
+	private short _stipplePattern;
+
+	// the current color as ARGB
+	private boolean _colorValid;
+	private int _argb;
+
+	// light and material
+	private boolean _lightValid;
+	private boolean _materialValid;
+	private boolean _diffuseValid;
+	private int _diffuseRGB;
+	private final float[] _diffuse = new float[4];
+
+	// statistics
+	private long _issued;
+	private long _avoided;
+
+	/**
+	 * Get the tracker for the context of a GL, creating it on first use.
+	 *
+	 * @param gl the GL
+	 * @return the tracker for its context
+	 */
+	public static RenderState3D get(GL2 gl) {
+		GLContext context = gl.getContext();
+		RenderState3D state = (RenderState3D) context.getAttachedObject(KEY);
+		if (state == null) {
+			state = new RenderState3D();
+			context.attachObject(KEY, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Forget everything known about the state of the GL's context. Call after
+	 * changing tracked state without going through the tracker.
+	 *
+	 * @param gl the GL
+	 */
+	public static void invalidate(GL2 gl) {
+		get(gl).invalidate();
+	}
+
+	/**
+	 * Forget everything known about the state, so the next change of each value
+	 * is issued.
+	 */
+	public void invalidate() {
+		_pointSmooth = -1;
+		_pointSprite = -1;
+		_lineStipple = -1;
+		_lighting = -1;
+		_light0 = -1;
+		_lineWidth = Float.NaN;
+		_pointSize = Float.NaN;
+		_stippleValid = false;
+		_colorValid = false;
+		_lightValid = false;
+		_materialValid = false;
+		_diffuseValid = false;
+	}
+
+	/**
+	 * Restore the GL defaults of the state Support3D changes (line width and
+	 * point size 1, smoothing, stipple and lighting off), for code that expects
+	 * them.
+	 *
+	 * @param gl the GL
+	 */
+	public void restoreDefaults(GL2 gl) {
+		lineWidth(gl, 1f);
+		pointSize(gl, 1f);
+		pointSmooth(gl, false);
+		lineStipple(gl, false);
+		lighting(gl, false);
+	}
+
+	/**
+	 * Set the line width.
+	 *
+	 * @param gl    the GL
+	 * @param width the line width in pixels
+	 */
+	public void lineWidth(GL2 gl, float width) {
+		if (width == _lineWidth) {
+			_avoided++;
+			return;
+		}
+		_lineWidth = width;
+		_issued++;
+		gl.glLineWidth(width);
+	}
+
+	/**
+	 * Set the point size.
+	 *
+	 * @param gl   the GL
+	 * @param size the point size in pixels
+	 */
+	public void pointSize(GL2 gl, float size) {
+		if (size == _pointSize) {
+			_avoided++;
+			return;
+		}
+		_pointSize = size;
+		_issued++;
+		gl.glPointSize(size);
+	}
+
+	/**
+	 * Enable or disable point smoothing (round points).
+	 *
+	 * @param gl the GL
+	 * @param on <code>true</code> to enable
+	 */
+	public void pointSmooth(GL2 gl, boolean on) {
+		_pointSmooth = capability(gl, GL2ES1.GL_POINT_SMOOTH, _pointSmooth, on);
+	}
+
+	/**
+	 * Enable or disable point sprites.
+	 *
+	 * @param gl the GL
+	 * @param on <code>true</code> to enable
+	 */
+	public void pointSprite(GL2 gl, boolean on) {
+		_pointSprite = capability(gl, GL2ES1.GL_POINT_SPRITE, _pointSprite, on);
+	}
+
+	/**
+	 * Enable or disable line stippling.
+	 *
+	 * @param gl the GL
+	 * @param on <code>true</code> to enable
+	 */
+	public void lineStipple(GL2 gl, boolean on) {
+		_lineStipple = capability(gl, GL2.GL_LINE_STIPPLE, _lineStipple, on);
+	}
+
+	/**
+	 * Set the line stipple pattern.
+	 *
+	 * @param gl      the GL
+	 * @param factor  the repeat factor
+	 * @param pattern the bit pattern
+	 */
+	public void lineStipple(GL2 gl, int factor, short pattern) {
+		if (_stippleValid && (factor == _stippleFactor) && (pattern == _stipplePattern)) {
+			_avoided++;
+			return;
+		}
+		_stippleValid = true;
+		_stippleFactor = factor;
+		_stipplePattern = pattern;
+		_issued++;
+		gl.glLineStipple(factor, pattern);
+	}
+
+	/**
+	 * Enable or disable lighting.
+	 *
+	 * @param gl the GL
+	 * @param on <code>true</code> to enable
+	 */
+	public void lighting(GL2 gl, boolean on) {
+		_lighting = capability(gl, GLLightingFunc.GL_LIGHTING, _lighting, on);
+	}
+
+	/**
+	 * Set the current color. Safe between <code>glBegin</code> and
+	 * <code>glEnd</code>.
+	 *
+	 * @param gl    the GL
+	 * @param color the color, including alpha
+	 */
+	public void color(GL2 gl, Color color) {
+		int argb = color.getRGB();
+		if (_colorValid && (argb == _argb)) {
+			_avoided++;
+			return;
+		}
+		_colorValid = true;
+		_argb = argb;
+		_issued++;
+		gl.glColor4f(((argb >> 16) & 0xFF) / 255f, ((argb >> 8) & 0xFF) / 255f, (argb & 0xFF) / 255f,
+				((argb >>> 24) & 0xFF) / 255f);
+	}
+
+	/**
+	 * Enable the light used by shaded primitives (<code>GL_LIGHT0</code>) and
+	 * set its material, with the given diffuse color. The light and the constant
+	 * parts of the material are specified once after each invalidation; only a
+	 * change of color costs a call. The light direction is fixed relative to the
+	 * modelview current when it is specified, i.e. the scene's view at the start
+	 * of the frame.
+	 *
+	 * @param gl    the GL
+	 * @param color the diffuse color (its alpha is ignored)
+	 */
+	public void shadedLighting(GL2 gl, Color color) {
+		lighting(gl, true);
+		_light0 = capability(gl, GLLightingFunc.GL_LIGHT0, _light0, true);
+
+		if (_lightValid) {
+			_avoided += 3;
+		} else {
+			_lightValid = true;
+			_issued += 3;
+			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_POSITION, LIGHT_POSITION, 0);
+			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_DIFFUSE, LIGHT_DIFFUSE, 0);
+			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_SPECULAR, LIGHT_SPECULAR, 0);
+		}
+
+		if (_materialValid) {
+			_avoided += 3;
+		} else {
+			_materialValid = true;
+			_issued += 3;
+			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_AMBIENT, MAT_AMBIENT, 0);
+			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_SPECULAR, MAT_SPECULAR, 0);
+			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_SHININESS, MAT_SHININESS, 0);
+		}
+
+		int rgb = color.getRGB() & 0xFFFFFF;
+		if (_diffuseValid && (rgb == _diffuseRGB)) {
+			_avoided++;
+		} else {
+			_diffuseValid = true;
+			_diffuseRGB = rgb;
+			_diffuse[0] = ((rgb >> 16) & 0xFF) / 255f;
+			_diffuse[1] = ((rgb >> 8) & 0xFF) / 255f;
+			_diffuse[2] = (rgb & 0xFF) / 255f;
+			_diffuse[3] = 1f;
+			_issued++;
+			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_DIFFUSE, _diffuse, 0);
+		}
+	}
+
+	/**
+	 * Get the number of state changes that were passed on to GL.
+	 *
+	 * @return the number of calls issued
+	 */
+	public long getIssuedCount() {
+		return _issued;
+	}
+
+	/**
+	 * Get the number of state changes that were skipped because the value had
+	 * not changed.
+	 *
+	 * @return the number of calls avoided
+	 */
+	public long getAvoidedCount() {
+		return _avoided;
+	}
+
+	/**
+	 * Reset the issued and avoided counts.
+	 */
+	public void resetCounts() {
+		_issued = 0;
+		_avoided = 0;
+	}
+
+	// set a capability if needed, returning its new state
+	private int capability(GL2 gl, int cap, int current, boolean on) {
+		int wanted = on ? 1 : 0;
+		if (current == wanted) {
+			_avoided++;
+			return current;
+		}
+		_issued++;
+		if (on) {
+			gl.glEnable(cap);
+		} else {
+			gl.glDisable(cap);
+		}
+		return wanted;
+	}
+}
@@ -0,0 +1,112 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size window of the most recent samples of a quantity (e.g. a time in
+ * nanoseconds) with percentile queries. Adding a sample is O(1) and does not
+ * allocate; a percentile query sorts a copy of the window.
+ * <p>
+ * Thread safe: samples may be added on the render thread while another thread
+ * queries.
+ */
+public class RollingStats {
+
+	// the samples, a ring buffer
+	private final long[] _samples;
+
+	// sorted copy used by queries
+	private final long[] _sorted;
+
+	// next slot to write
+	private int _next;
+
+	// number of valid samples
+	private int _count;
+
+	// the most recent sample
+	private long _last;
+
+	/**
+	 * Create a rolling window.
+	 *
+	 * @param size the number of samples kept
+	 */
+	public RollingStats(int size) {
+		_samples = new long[Math.max(1, size)];
+		_sorted = new long[_samples.length];
+	}
+
+	/**
+	 * Add a sample, replacing the oldest once the window is full.
+	 *
+	 * @param value the sample
+	 */
+	public synchronized void add(long value) {
+		_samples[_next] = value;
+		_next = (_next + 1) % _samples.length;
+		_count = Math.min(_count + 1, _samples.length);
+		_last = value;
+	}
+
+	/**
+	 * Get a percentile of the samples in the window (nearest rank).
+	 *
+	 * @param percentile the percentile in [0, 100], e.g. 50 for the median
+	 * @return the percentile, or 0 if there are no samples
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (_count == 0) {
+			return 0;
+		}
+		System.arraycopy(_samples, 0, _sorted, 0, _count);
+		Arrays.sort(_sorted, 0, _count);
+
+		double p = Math.max(0, Math.min(100, percentile));
+		int rank = (int) Math.ceil(p / 100.0 * _count) - 1;
+		return _sorted[Math.max(0, Math.min(_count - 1, rank))];
+	}
+
+	/**
+	 * Get the mean of the samples in the window.
+	 *
+	 * @return the mean, or 0 if there are no samples
+	 */
+	public synchronized double getMean() {
+		if (_count == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < _count; i++) {
+			sum += _samples[i];
+		}
+		return sum / _count;
+	}
+
+	/**
+	 * Get the most recent sample.
+	 *
+	 * @return the last sample, or 0 if there are none
+	 */
+	public synchronized long getLast() {
+		return _last;
+	}
+
+	/**
+	 * Get the number of samples in the window.
+	 *
+	 * @return the sample count
+	 */
+	public synchronized int getCount() {
+		return _count;
+	}
+
+	/**
+	 * Discard all samples.
+	 */
+	public synchronized void clear() {
+		_next = 0;
+		_count = 0;
+		_last = 0;
+	}
+}
@@ -0,0 +1,327 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import edu.cnu.mdi.mdi3D.item3D.Item3D;
+
+/**
+ * The versioned list of top level items drawn by a {@link Panel3D}.
+ * <p>
+ * Mutations (any thread) take a lock and bump a version number. The render
+ * thread reads an immutable array snapshot that is copied only when the version
+ * has changed, so a frame with an unchanged scene neither locks nor allocates.
+ * <p>
+ * The render thread also keeps the scene partitioned into opaque and
+ * transparent items. The partition is rebuilt only when the version changes,
+ * which happens on structural changes and on {@link #invalidate()}, e.g. when
+ * an item's alpha changes.
+ */
+public class SceneList {
+
+	private static final Item3D[] EMPTY = new Item3D[0];
+
+	// the mutable list, guarded by itself
+	private final ArrayList<Item3D> _items = new ArrayList<>();
+
+	// identity membership for O(1) contains
+	private final Set<Item3D> _members = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// bumped on every change
+	private final AtomicLong _version = new AtomicLong();
+
+	// immutable snapshot and the version it reflects
+	private volatile Item3D[] _snapshot = EMPTY;
+	private volatile long _snapshotVersion = 0;
+
+	// render thread only: the partitioned scene
+	private Item3D[] _opaque = EMPTY;
+	private Item3D[] _transparent = EMPTY;
+	private int _opaqueCount;
+	private int _transparentCount;
+	private long _partitionVersion = -1;
+
+	/**
+	 * Add an item at the end. If already present it is moved to the end.
+	 *
+	 * @param item the item to add
+	 */
+	public void add(Item3D item) {
+		if (item == null) {
+			return;
+		}
+		synchronized (_items) {
+			if (!_members.add(item)) {
+				_items.remove(item);
+			}
+			_items.add(item);
+			_version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Add an item at the given index. If already present it is moved.
+	 *
+	 * @param index the insertion index
+	 * @param item  the item to add
+	 */
+	public void add(int index, Item3D item) {
+		if (item == null) {
+			return;
+		}
+		synchronized (_items) {
+			if (!_members.add(item)) {
+				_items.remove(item);
+			}
+			_items.add(Math.max(0, Math.min(index, _items.size())), item);
+			_version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Add several items at the end, as a single change.
+	 *
+	 * @param items the items to add
+	 */
+	public void addAll(Collection<? extends Item3D> items) {
+		if (items == null || items.isEmpty()) {
+			return;
+		}
+		synchronized (_items) {
+			List<Item3D> moved = null;
+			for (Item3D item : items) {
+				if ((item != null) && !_members.add(item)) {
+					if (moved == null) {
+						moved = new ArrayList<>();
+					}
+					moved.add(item);
+				}
+			}
+			if (moved != null) {
+				Set<Item3D> movedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+				movedSet.addAll(moved);
+				_items.removeIf(movedSet::contains);
+			}
+			for (Item3D item : items) {
+				if (item != null) {
+					_items.add(item);
+				}
+			}
+			_version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Remove an item.
+	 *
+	 * @param item the item to remove
+	 * @return <code>true</code> if the item was present
+	 */
+	public boolean remove(Item3D item) {
+		synchronized (_items) {
+			if ((item == null) || !_members.remove(item)) {
+				return false;
+			}
+			_items.remove(item);
+			_version.incrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * Remove several items as a single change, with one pass over the list.
+	 *
+	 * @param items the items to remove
+	 * @return the items that were actually present
+	 */
+	public List<Item3D> removeAll(Collection<? extends Item3D> items) {
+		List<Item3D> removed = new ArrayList<>();
+		if (items == null || items.isEmpty()) {
+			return removed;
+		}
+		synchronized (_items) {
+			Set<Item3D> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (Item3D item : items) {
+				if ((item != null) && _members.remove(item)) {
+					gone.add(item);
+					removed.add(item);
+				}
+			}
+			if (!gone.isEmpty()) {
+				_items.removeIf(gone::contains);
+				_version.incrementAndGet();
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove all items.
+	 *
+	 * @return the items that were present
+	 */
+	public List<Item3D> clear() {
+		synchronized (_items) {
+			List<Item3D> removed = new ArrayList<>(_items);
+			_items.clear();
+			_members.clear();
+			_version.incrementAndGet();
+			return removed;
+		}
+	}
+
+	/**
+	 * Check whether an item is in the list.
+	 *
+	 * @param item the item
+	 * @return <code>true</code> if present
+	 */
+	public boolean contains(Item3D item) {
+		synchronized (_items) {
+			return _members.contains(item);
+		}
+	}
+
+	/**
+	 * Get the number of items.
+	 *
+	 * @return the number of items
+	 */
+	public int size() {
+		return snapshot().length;
+	}
+
+	/**
+	 * Mark the scene as changed without a structural change, forcing the
+	 * opaque/transparent partition to be rebuilt on the next frame.
+	 */
+	public void invalidate() {
+		_version.incrementAndGet();
+	}
+
+	/**
+	 * Get the current version. It changes on every modification.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return _version.get();
+	}
+
+	/**
+	 * Get an immutable snapshot of the items. The returned array must not be
+	 * modified. It is shared between calls until the list changes.
+	 *
+	 * @return the items in drawing order
+	 */
+	public Item3D[] snapshot() {
+		long version = _version.get();
+		if (version == _snapshotVersion) {
+			return _snapshot;
+		}
+		synchronized (_items) {
+			version = _version.get();
+			if (version != _snapshotVersion) {
+				_snapshot = _items.isEmpty() ? EMPTY : _items.toArray(EMPTY);
+				_snapshotVersion = version;
+			}
+			return _snapshot;
+		}
+	}
+
+	/**
+	 * Get an unmodifiable view of the current snapshot.
+	 *
+	 * @return the items in drawing order
+	 */
+	public List<Item3D> asList() {
+		return Collections.unmodifiableList(Arrays.asList(snapshot()));
+	}
+
+	/**
+	 * Rebuild the opaque and transparent partitions if the list changed since the
+	 * last call. Render thread only. Invisible items are not filtered out here,
+	 * since visibility may change without notice; callers check
+	 * {@link Item3D#isVisible()} when drawing.
+	 *
+	 * @param isTransparent the transparency test
+	 * @return <code>true</code> if the partitions were rebuilt
+	 */
+	public boolean partition(Predicate<Item3D> isTransparent) {
+		long version = _version.get();
+		if (version == _partitionVersion) {
+			return false;
+		}
+
+		Item3D[] items = snapshot();
+		if (_opaque.length < items.length) {
+			_opaque = new Item3D[items.length];
+			_transparent = new Item3D[items.length];
+		}
+
+		int no = 0;
+		int nt = 0;
+		for (Item3D item : items) {
+			if (isTransparent.test(item)) {
+				_transparent[nt++] = item;
+			} else {
+				_opaque[no++] = item;
+			}
+		}
+
+		// clear stale references so removed items can be collected
+		Arrays.fill(_opaque, no, Math.max(no, _opaqueCount), null);
+		Arrays.fill(_transparent, nt, Math.max(nt, _transparentCount), null);
+
+		_opaqueCount = no;
+		_transparentCount = nt;
+		_partitionVersion = version;
+		return true;
+	}
+
+	/**
+	 * Get the opaque partition. Only the first {@link #getOpaqueCount()} entries
+	 * are valid. Render thread only.
+	 *
+	 * @return the opaque items
+	 */
+	public Item3D[] getOpaque() {
+		return _opaque;
+	}
+
+	/**
+	 * Get the number of opaque items.
+	 *
+	 * @return the number of opaque items
+	 */
+	public int getOpaqueCount() {
+		return _opaqueCount;
+	}
+
+	/**
+	 * Get the transparent partition. Only the first
+	 * {@link #getTransparentCount()} entries are valid. The render thread may
+	 * reorder them in place (e.g. depth sorting). Render thread only.
+	 *
+	 * @return the transparent items
+	 */
+	public Item3D[] getTransparent() {
+		return _transparent;
+	}
+
+	/**
+	 * Get the number of transparent items.
+	 *
+	 * @return the number of transparent items
+	 */
+	public int getTransparentCount() {
+		return _transparentCount;
+	}
+}
@@ -0,0 +1,232 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.util.Arrays;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GL2ES2;
+import com.jogamp.opengl.GLContext;
+
+/**
+ * A GLSL program built from vertex and fragment shader sources. The program is
+ * compiled and linked lazily, once per GL context, the first time it is used
+ * in that context; its name and uniform locations are attached to the context.
+ * A program that fails to build is logged once and reported as unavailable, so
+ * callers can fall back to the fixed function pipeline.
+ * <p>
+ * The shaders are written against GLSL 1.20 and may use the compatibility
+ * built-ins (<code>gl_Vertex</code>, <code>gl_ModelViewProjectionMatrix</code>,
+ * ...). Render thread only.
+ */
+public class ShaderProgram3D {
+
+	// the first generic attribute location for the shaders' own attributes,
+	// clear of those some drivers alias to the fixed function arrays
+	static final int FIRST_ATTRIBUTE = 12;
+
+	// the name used in the log and, with the class name, as the context key
+	private final String _name;
+	private final String _key;
+
+	// the sources
+	private final String _vertexSource;
+	private final String _fragmentSource;
+
+	// the generic attributes and the locations they are bound to
+	private final String[] _attributes;
+	private final int[] _locations;
+
+	// the uniforms, located after linking
+	private final String[] _uniforms;
+
+	// the most recently used context and its [program, uniform locations...]
+	private GLContext _lastContext;
+	private int[] _lastProgram;
+
+	/**
+	 * Create a program. Nothing is compiled until it is first used.
+	 *
+	 * @param name           a name for the log
+	 * @param vertexSource   the vertex shader source
+	 * @param fragmentSource the fragment shader source
+	 * @param attributes     the generic vertex attributes
+	 * @param locations      the location to bind each attribute to
+	 * @param uniforms       the uniforms, later referred to by their index
+	 */
+	public ShaderProgram3D(String name, String vertexSource, String fragmentSource, String[] attributes,
+			int[] locations, String... uniforms) {
+		_name = name;
+		_key = ShaderProgram3D.class.getName() + "#" + name;
+		_vertexSource = vertexSource;
+		_fragmentSource = fragmentSource;
+		_attributes = attributes;
+		_locations = locations;
+		_uniforms = uniforms;
+	}
+
+	/**
+	 * Check whether GLSL programs can be used with the given context.
+	 *
+	 * @param gl the GL
+	 * @return <code>true</code> if shaders are available
+	 */
+	public static boolean isSupported(GL2 gl) {
+		return gl.hasGLSL() && gl.isFunctionAvailable("glCreateShader") && gl.isFunctionAvailable("glUseProgram");
+	}
+
+	/**
+	 * Check whether the program built in the GL's context, building it if this
+	 * is the first time it is asked for there.
+	 *
+	 * @param gl the GL
+	 * @return <code>true</code> if the program can be used
+	 */
+	public boolean isAvailable(GL2 gl) {
+		return program(gl)[0] != 0;
+	}
+
+	/**
+	 * Make the program current.
+	 *
+	 * @param gl the GL
+	 * @return <code>false</code> (and nothing is changed) if the program is not
+	 *         available in this context
+	 */
+	public boolean use(GL2 gl) {
+		int program = program(gl)[0];
+		if (program == 0) {
+			return false;
+		}
+		gl.glUseProgram(program);
+		return true;
+	}
+
+	/**
+	 * Return to the fixed function pipeline.
+	 *
+	 * @param gl the GL
+	 */
+	public void unuse(GL2 gl) {
+		gl.glUseProgram(0);
+	}
+
+	/**
+	 * Get the location of a uniform in the GL's context.
+	 *
+	 * @param gl    the GL
+	 * @param index the index of the uniform in the constructor's list
+	 * @return its location, -1 if the program is unavailable or does not use it
+	 */
+	public int getUniform(GL2 gl, int index) {
+		return program(gl)[1 + index];
+	}
+
+	/**
+	 * Delete the program in the current context. It is built again if it is used
+	 * again.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		GLContext context = gl.getContext();
+		int[] program = (int[]) context.detachObject(_key);
+		if ((program != null) && (program[0] != 0)) {
+			gl.glDeleteProgram(program[0]);
+		}
+		if (context == _lastContext) {
+			_lastContext = null;
+			_lastProgram = null;
+		}
+	}
+
+	// the program and uniform locations for the GL's context, built on first use
+	private int[] program(GL2 gl) {
+		GLContext context = gl.getContext();
+		if (context == _lastContext) {
+			return _lastProgram;
+		}
+
+		int[] program = (int[]) context.getAttachedObject(_key);
+		if (program == null) {
+			program = build(gl);
+			context.attachObject(_key, program);
+		}
+		_lastContext = context;
+		_lastProgram = program;
+		return program;
+	}
+
+	// compile and link, returning [0, -1, ...] on failure
+	private int[] build(GL2 gl) {
+		int[] result = new int[1 + _uniforms.length];
+		Arrays.fill(result, -1);
+		result[0] = 0;
+
+		if (!isSupported(gl)) {
+			return result;
+		}
+
+		int vertexShader = compile(gl, GL2ES2.GL_VERTEX_SHADER, _vertexSource);
+		int fragmentShader = compile(gl, GL2ES2.GL_FRAGMENT_SHADER, _fragmentSource);
+		if ((vertexShader == 0) || (fragmentShader == 0)) {
+			gl.glDeleteShader(vertexShader);
+			gl.glDeleteShader(fragmentShader);
+			return result;
+		}
+
+		int program = gl.glCreateProgram();
+		gl.glAttachShader(program, vertexShader);
+		gl.glAttachShader(program, fragmentShader);
+		for (int i = 0; i < _attributes.length; i++) {
+			gl.glBindAttribLocation(program, _locations[i], _attributes[i]);
+		}
+		gl.glLinkProgram(program);
+
+		// the shaders can go once linked
+		gl.glDetachShader(program, vertexShader);
+		gl.glDetachShader(program, fragmentShader);
+		gl.glDeleteShader(vertexShader);
+		gl.glDeleteShader(fragmentShader);
+
+		int[] status = new int[1];
+		gl.glGetProgramiv(program, GL2ES2.GL_LINK_STATUS, status, 0);
+		if (status[0] == 0) {
+			System.err.println("ShaderProgram3D: " + _name + " failed to link\n" + programLog(gl, program));
+			gl.glDeleteProgram(program);
+			return result;
+		}
+
+		result[0] = program;
+		for (int i = 0; i < _uniforms.length; i++) {
+			result[1 + i] = gl.glGetUniformLocation(program, _uniforms[i]);
+		}
+		return result;
+	}
+
+	// compile one shader, 0 on failure
+	private int compile(GL2 gl, int type, String source) {
+		int shader = gl.glCreateShader(type);
+		gl.glShaderSource(shader, 1, new String[] { source }, null, 0);
+		gl.glCompileShader(shader);
+
+		int[] status = new int[1];
+		gl.glGetShaderiv(shader, GL2ES2.GL_COMPILE_STATUS, status, 0);
+		if (status[0] == 0) {
+			int[] length = new int[1];
+			gl.glGetShaderiv(shader, GL2ES2.GL_INFO_LOG_LENGTH, length, 0);
+			byte[] log = new byte[Math.max(1, length[0])];
+			gl.glGetShaderInfoLog(shader, log.length, null, 0, log, 0);
+			System.err.println("ShaderProgram3D: " + _name + " failed to compile\n" + new String(log).trim());
+			gl.glDeleteShader(shader);
+			return 0;
+		}
+		return shader;
+	}
+
+	private static String programLog(GL2 gl, int program) {
+		int[] length = new int[1];
+		gl.glGetProgramiv(program, GL2ES2.GL_INFO_LOG_LENGTH, length, 0);
+		byte[] log = new byte[Math.max(1, length[0])];
+		gl.glGetProgramInfoLog(program, log.length, null, 0, log, 0);
+		return new String(log).trim();
+	}
+}
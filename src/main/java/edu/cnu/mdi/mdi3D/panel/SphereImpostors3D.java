@@ -0,0 +1,240 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+
+/**
+ * A set of spheres drawn as impostors: each sphere is one camera facing quad,
+ * just big enough to cover its silhouette, and the fragment shader ray-casts
+ * the exact sphere, discarding the corners and writing the true depth, so the
+ * spheres occlude each other and the rest of the scene correctly. The whole
+ * set is one instanced draw of a cached {@link MeshCache3D.Primitive#QUAD
+ * QUAD}; the sphere data (center, radius and color, 20 bytes a sphere) is
+ * uploaded when it changes.
+ * <p>
+ * The modelview is assumed to scale uniformly. Where shaders or instancing are
+ * not available the spheres are drawn as {@link Glyphs3D} copies of a cached
+ * low resolution sphere mesh instead.
+ * <p>
+ * Render thread only.
+ */
+public class SphereImpostors3D {
+
+	// bytes per sphere: center (3 floats), radius, RGBA bytes
+	private static final int BYTES_PER_SPHERE = 20;
+
+	// attribute locations
+	private static final int SPHERE = ShaderProgram3D.FIRST_ATTRIBUTE;
+	private static final int COLOR = SPHERE + 1;
+
+	private static final String VERTEX_SHADER = String.join("\n",
+			"#version 120",
+			"attribute vec4 a_sphere;",
+			"attribute vec4 a_color;",
+			"varying vec3 v_point;",
+			"varying vec3 v_center;",
+			"varying float v_radius;",
+			"varying vec4 v_color;",
+			"varying vec3 v_light;",
+			"void main() {",
+			"	vec3 c = (gl_ModelViewMatrix * vec4(a_sphere.xyz, 1.0)).xyz;",
+			"	float r = a_sphere.w * length(gl_ModelViewMatrix[0].xyz);",
+			// face the eye; under perspective the quad must cover the silhouette cone
+			"	vec3 w = vec3(0.0, 0.0, 1.0);",
+			"	float h = r;",
+			"	if (gl_ProjectionMatrix[2][3] != 0.0) {",
+			"		float d = length(c);",
+			"		w = -c / d;",
+			"		h = (d > r) ? r * d / sqrt(d * d - r * r) : 0.0;",
+			"	}",
+			"	vec3 u = normalize((abs(w.z) < 0.9) ? vec3(-w.y, w.x, 0.0) : vec3(0.0, -w.z, w.y));",
+			"	vec3 v = cross(w, u);",
+			"	v_point = c + h * (gl_Vertex.x * u + gl_Vertex.y * v);",
+			"	v_center = c;",
+			"	v_radius = r;",
+			"	v_color = a_color;",
+			"	v_light = normalize(gl_NormalMatrix * vec3(" + Glyphs3D.LIGHT + "));",
+			"	gl_Position = gl_ProjectionMatrix * vec4(v_point, 1.0);",
+			"}");
+
+	private static final String FRAGMENT_SHADER = String.join("\n",
+			"#version 120",
+			"uniform float u_ambient;",
+			"varying vec3 v_point;",
+			"varying vec3 v_center;",
+			"varying float v_radius;",
+			"varying vec4 v_color;",
+			"varying vec3 v_light;",
+			"void main() {",
+			// the eye ray through this fragment
+			"	bool perspective = (gl_ProjectionMatrix[2][3] != 0.0);",
+			"	vec3 o = perspective ? vec3(0.0) : v_point;",
+			"	vec3 dir = perspective ? normalize(v_point) : vec3(0.0, 0.0, -1.0);",
+			"	vec3 oc = o - v_center;",
+			"	float b = dot(oc, dir);",
+			"	float disc = b * b - dot(oc, oc) + v_radius * v_radius;",
+			"	if (disc < 0.0) {",
+			"		discard;",
+			"	}",
+			"	vec3 p = o + (-b - sqrt(disc)) * dir;",
+			"	vec3 n = (p - v_center) / v_radius;",
+			"	float shade = u_ambient + (1.0 - u_ambient) * max(dot(n, v_light), 0.0);",
+			"	gl_FragColor = vec4(v_color.rgb * shade, v_color.a);",
+			"	vec4 clip = gl_ProjectionMatrix * vec4(p, 1.0);",
+			"	gl_FragDepth = 0.5 * (gl_DepthRange.diff * clip.z / clip.w + gl_DepthRange.near + gl_DepthRange.far);",
+			"}");
+
+	// the program shared by all impostor sets
+	private static final ShaderProgram3D PROGRAM = new ShaderProgram3D("SphereImpostors3D", VERTEX_SHADER,
+			FRAGMENT_SHADER, new String[] { "a_sphere", "a_color" }, new int[] { SPHERE, COLOR }, "u_ambient");
+
+	// the spheres
+	private final InstanceData3D _spheres = new InstanceData3D(BYTES_PER_SPHERE);
+
+	// options
+	private boolean _shaded = true;
+	private boolean _impostors = true;
+
+	// the mesh fallback, filled when first needed after a change
+	private Glyphs3D _fallback;
+	private boolean _fallbackValid;
+
+	/**
+	 * Check whether impostors can be drawn in the given context.
+	 *
+	 * @param gl the GL
+	 * @return <code>true</code> if the impostor path is available
+	 */
+	public static boolean isSupported(GL2 gl) {
+		return Glyphs3D.isInstancingSupported(gl);
+	}
+
+	/**
+	 * Set the number of spheres. The spheres must then all be set.
+	 *
+	 * @param count the number of spheres
+	 */
+	public void setCount(int count) {
+		_spheres.setCount(count);
+		_fallbackValid = false;
+	}
+
+	/**
+	 * Get the number of spheres.
+	 *
+	 * @return the number of spheres
+	 */
+	public int getCount() {
+		return _spheres.getCount();
+	}
+
+	/**
+	 * Set a sphere.
+	 *
+	 * @param index  the index of the sphere
+	 * @param x      x coordinate of the center
+	 * @param y      y coordinate of the center
+	 * @param z      z coordinate of the center
+	 * @param radius the radius
+	 * @param argb   the color as ARGB, as <code>Color.getRGB()</code>
+	 */
+	public void set(int index, float x, float y, float z, float radius, int argb) {
+		_spheres.putFloat(index, 0, x);
+		_spheres.putFloat(index, 4, y);
+		_spheres.putFloat(index, 8, z);
+		_spheres.putFloat(index, 12, radius);
+		_spheres.putColor(index, 16, argb);
+		_fallbackValid = false;
+	}
+
+	/**
+	 * Set whether the spheres are shaded by the scene light. If not they are
+	 * drawn as flat disks of their colors.
+	 *
+	 * @param shaded <code>true</code> to shade
+	 */
+	public void setShaded(boolean shaded) {
+		_shaded = shaded;
+		if (_fallback != null) {
+			_fallback.setShaded(shaded);
+		}
+	}
+
+	/**
+	 * Set whether impostors may be used. If not the spheres are always drawn as
+	 * meshes.
+	 *
+	 * @param impostors if <code>false</code> always draw meshes
+	 */
+	public void setImpostors(boolean impostors) {
+		_impostors = impostors;
+	}
+
+	/**
+	 * Draw the spheres with the current transform.
+	 *
+	 * @param gl the GL
+	 */
+	public void draw(GL2 gl) {
+		if (_spheres.getCount() == 0) {
+			return;
+		}
+
+		if (_impostors && isSupported(gl) && PROGRAM.use(gl)) {
+			drawImpostors(gl);
+			PROGRAM.unuse(gl);
+		} else {
+			drawMeshes(gl);
+		}
+	}
+
+	/**
+	 * Release the GL resources of the current context. Those of other contexts
+	 * the spheres were drawn in are kept until they are disposed in turn.
+	 *
+	 * @param gl the GL
+	 */
+	public void dispose(GL2 gl) {
+		if (_fallback != null) {
+			_fallback.dispose(gl);
+		}
+		_spheres.dispose(gl);
+	}
+
+	// one instanced draw of the quads
+	private void drawImpostors(GL2 gl) {
+		_spheres.bind(gl);
+		gl.glUniform1f(PROGRAM.getUniform(gl, 0), _shaded ? Glyphs3D.AMBIENT : 1f);
+
+		_spheres.attribute(gl, SPHERE, 4, GL.GL_FLOAT, false, 0);
+		_spheres.attribute(gl, COLOR, 4, GL.GL_UNSIGNED_BYTE, true, 16);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+		MeshCache3D.get(gl).getMesh(MeshCache3D.Primitive.QUAD, 0, 0).drawInstanced(gl, _spheres.getCount());
+
+		_spheres.disableAttributes(gl, SPHERE, COLOR);
+	}
+
+	// spheres as glyphs: a unit sphere placed at the start, stretched by r along z
+	private void drawMeshes(GL2 gl) {
+		if (_fallback == null) {
+			_fallback = new Glyphs3D(MeshCache3D.Primitive.SPHERE, 16, 12);
+			_fallback.setShaded(_shaded);
+			_fallbackValid = false;
+		}
+
+		if (!_fallbackValid) {
+			int count = _spheres.getCount();
+			_fallback.setCount(count);
+			for (int i = 0; i < count; i++) {
+				float x = _spheres.getFloat(i, 0);
+				float y = _spheres.getFloat(i, 4);
+				float z = _spheres.getFloat(i, 8);
+				float r = _spheres.getFloat(i, 12);
+				_fallback.set(i, x, y, z, x, y, z + r, r, _spheres.getColor(i, 16));
+			}
+			_fallbackValid = true;
+		}
+		_fallback.draw(gl);
+	}
+}
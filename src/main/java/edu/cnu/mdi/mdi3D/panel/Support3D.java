@@ -4,20 +4,15 @@ import java.awt.Color;
 
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
-import com.jogamp.opengl.GL2ES1;
 import com.jogamp.opengl.GL2ES3;
 import com.jogamp.opengl.GLAutoDrawable;
-import com.jogamp.opengl.fixedfunc.GLLightingFunc;
 import com.jogamp.opengl.fixedfunc.GLMatrixFunc;
-import com.jogamp.opengl.glu.GLUquadric;
 import com.jogamp.opengl.util.gl2.GLUT;
 
 public class Support3D {
 
 	public static GLUT glut = new GLUT();
 
-	private static GLUquadric _quad;
-
 	/**
 	 * Draw a set of points
 	 *
@@ -32,16 +27,13 @@ public class Support3D {
 		}
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glPointSize(size);
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSize(gl, size);
 
 		// how many points?
 		int np = coords.length / 3;
 
-		if (circular) {
-			gl.glEnable(GL2ES1.GL_POINT_SMOOTH);
-		} else {
-			gl.glDisable(GL2ES1.GL_POINT_SMOOTH);
-		}
+		state.pointSmooth(gl, circular);
 		gl.glBegin(GL.GL_POINTS);
 		setColor(gl, color);
 
@@ -53,6 +45,81 @@ public class Support3D {
 		gl.glEnd();
 	}
 
+	/**
+	 * Draw a set of points, each in its own color
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @param coords   the vertices as [x, y, z, x, y, z, ...]
+	 * @param rgba     the colors as [r, g, b, a, ...], four bytes per point
+	 * @param size     the points size
+	 * @param circular draw circular points
+	 */
+	public static void drawPoints(GLAutoDrawable drawable, float coords[], byte rgba[], float size, boolean circular) {
+		if (coords == null || coords.length == 0) {
+			return; // Nothing to draw
+		}
+
+		GL2 gl = drawable.getGL().getGL2();
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSize(gl, size);
+		state.pointSmooth(gl, circular);
+
+		int np = Math.min(coords.length / 3, rgba.length / 4);
+		gl.glBegin(GL.GL_POINTS);
+		for (int i = 0; i < np; i++) {
+			int j = i * 3;
+			int k = i * 4;
+			gl.glColor4ub(rgba[k], rgba[k + 1], rgba[k + 2], rgba[k + 3]);
+			gl.glVertex3f(coords[j], coords[j + 1], coords[j + 2]);
+		}
+		gl.glEnd();
+
+		// the current color was changed behind the tracker
+		state.invalidate();
+	}
+
+	/**
+	 * Draw a set of points from a vertex buffer (retained mode)
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @param vbo      the vertex buffer holding the points
+	 * @param color    the color
+	 * @param size     the points size
+	 * @param circular draw circular points
+	 */
+	public static void drawPoints(GLAutoDrawable drawable, VertexBuffer3D vbo, Color color, float size,
+			boolean circular) {
+		drawPoints(drawable, vbo, color, size, circular, 0, 1);
+	}
+
+	/**
+	 * Draw every <code>step</code>-th point of a vertex buffer starting at
+	 * <code>first</code>, e.g. one chunk of a progressively drawn set (retained
+	 * mode)
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @param vbo      the vertex buffer holding the points
+	 * @param color    the color
+	 * @param size     the points size
+	 * @param circular draw circular points
+	 * @param first    the first point
+	 * @param step     the point step
+	 */
+	public static void drawPoints(GLAutoDrawable drawable, VertexBuffer3D vbo, Color color, float size,
+			boolean circular, int first, int step) {
+		if (vbo.getStridedCount(first, step) <= 0) {
+			return; // Nothing to draw
+		}
+
+		GL2 gl = drawable.getGL().getGL2();
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSize(gl, size);
+
+		state.pointSmooth(gl, circular);
+		setColor(gl, color);
+		vbo.drawStrided(gl, GL.GL_POINTS, first, step);
+	}
+
 	/**
 	 * Draw a set of points
 	 *
@@ -103,14 +170,11 @@ public class Support3D {
 	public static void drawPoint(GLAutoDrawable drawable, float x, float y, float z, Color color, float size,
 			boolean circular) {
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glPointSize(size);
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSize(gl, size);
 
 		setColor(gl, color);
-		if (circular) {
-			gl.glEnable(GL2ES1.GL_POINT_SMOOTH);
-		} else {
-			gl.glDisable(GL2ES1.GL_POINT_SMOOTH);
-		}
+		state.pointSmooth(gl, circular);
 
 		gl.glBegin(GL.GL_POINTS);
 		gl.glVertex3f(x, y, z);
@@ -231,10 +295,11 @@ public class Support3D {
 	 */
 	public static void drawPoint(GLAutoDrawable drawable, float x, float y, float z, Color color, float size) {
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glPointSize(size);
+		RenderState3D state = RenderState3D.get(gl);
+		state.pointSize(gl, size);
 
 		setColor(gl, color);
-		gl.glEnable(GL2ES1.GL_POINT_SPRITE);
+		state.pointSprite(gl, true);
 		gl.glBegin(GL.GL_POINTS);
 		gl.glVertex3f(x, y, z);
 		gl.glEnd();
@@ -255,6 +320,7 @@ public class Support3D {
 	public static void wireSphere(GLAutoDrawable drawable, float x, float y, float z, float radius, int slices,
 			int stacks, Color color) {
 		GL2 gl = drawable.getGL().getGL2();
+		RenderState3D.get(gl).lineWidth(gl, 1f);
 		setColor(gl, color);
 		gl.glPushMatrix();
 		gl.glTranslatef(x, y, z);
@@ -281,7 +347,8 @@ public class Support3D {
 		setColor(gl, color);
 		gl.glPushMatrix();
 		gl.glTranslatef(x, y, z);
-		glut.glutSolidSphere(radius, slices, stacks);
+		gl.glScalef(radius, radius, radius);
+		MeshCache3D.draw(gl, MeshCache3D.Primitive.SPHERE, slices, stacks);
 		gl.glPopMatrix();
 
 	}
@@ -293,41 +360,22 @@ public class Support3D {
 // Set color
 		setColor(gl, color);
 
-// Enable lighting if requested
+// Enable lighting if requested. The light and material are only re-specified when they change.
+		RenderState3D state = RenderState3D.get(gl);
 		if (enableLighting) {
-			gl.glEnable(GLLightingFunc.GL_LIGHTING);
-			gl.glEnable(GLLightingFunc.GL_LIGHT0);
-
-// Define light properties
-			float[] lightPosition = { 1.0f, 1.0f, 1.0f, 0.0f }; // Directional light
-			float[] lightDiffuse = { 1.0f, 1.0f, 1.0f, 1.0f };
-			float[] lightSpecular = { 1.0f, 1.0f, 1.0f, 1.0f };
-
-			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_POSITION, lightPosition, 0);
-			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_DIFFUSE, lightDiffuse, 0);
-			gl.glLightfv(GLLightingFunc.GL_LIGHT0, GLLightingFunc.GL_SPECULAR, lightSpecular, 0);
-
-// Material properties
-			float[] matAmbient = { 0.2f, 0.2f, 0.2f, 1.0f };
-			float[] matDiffuse = { color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, 1.0f };
-			float[] matSpecular = { 1.0f, 1.0f, 1.0f, 1.0f };
-			float[] matShininess = { 50.0f }; // Shininess factor
-
-			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_AMBIENT, matAmbient, 0);
-			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_DIFFUSE, matDiffuse, 0);
-			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_SPECULAR, matSpecular, 0);
-			gl.glMaterialfv(GL.GL_FRONT, GLLightingFunc.GL_SHININESS, matShininess, 0);
+			state.shadedLighting(gl, color);
 		}
 
 // Draw sphere
 		gl.glPushMatrix();
 		gl.glTranslatef(x, y, z);
-		glut.glutSolidSphere(radius, slices, stacks);
+		gl.glScalef(radius, radius, radius);
+		MeshCache3D.draw(gl, MeshCache3D.Primitive.SPHERE, slices, stacks);
 		gl.glPopMatrix();
 
 // Disable lighting after drawing
 		if (enableLighting) {
-			gl.glDisable(GLLightingFunc.GL_LIGHTING);
+			state.lighting(gl, false);
 		}
 	}
 
@@ -349,55 +397,43 @@ public class Support3D {
 	public static void solidSphereShell(GLAutoDrawable drawable, float cx, float cy, float cz, float innerRadius,
 			float outerRadius, int slices, int stacks, Color color) {
 		GL2 gl = drawable.getGL().getGL2();
+		MeshCache3D cache = MeshCache3D.get(gl);
+		slices = Math.max(3, slices);
+		stacks = Math.max(2, stacks);
+
 		setColor(gl, color);
 		gl.glPushMatrix();
 		gl.glTranslatef(cx, cy, cz);
 
+		// the cached meshes have their poles on z; the shell has them on y
+		gl.glRotatef(-90f, 1f, 0f, 0f);
+
 		// Draw outer surface (with outward facing normals)
-		drawSphereSurface(gl, outerRadius, slices, stacks, false);
+		gl.glPushMatrix();
+		gl.glScalef(outerRadius, outerRadius, outerRadius);
+		cache.getMesh(MeshCache3D.Primitive.SPHERE, slices, stacks).draw(gl);
+		gl.glPopMatrix();
 
 		// Draw inner surface (with inward facing normals)
-		drawSphereSurface(gl, innerRadius, slices, stacks, true);
+		gl.glPushMatrix();
+		gl.glScalef(innerRadius, innerRadius, innerRadius);
+		cache.getMesh(MeshCache3D.Primitive.SPHERE_INSIDE, slices, stacks).draw(gl);
+		gl.glPopMatrix();
 
 		// Connect the two surfaces by drawing side quads along each horizontal band.
-		// This creates the "thickness" between the outer and inner spheres.
+		// This creates the "thickness" between the outer and inner spheres. The
+		// vertices are those of the cached unit sphere, scaled.
+		float[] grid = cache.getSphereGrid(slices, stacks);
 		for (int i = 0; i < stacks; i++) {
-			float theta1 = (float) (i * Math.PI / stacks);
-			float theta2 = (float) ((i + 1) * Math.PI / stacks);
 			gl.glBegin(GL2.GL_QUAD_STRIP);
 			for (int j = 0; j <= slices; j++) {
-				float phi = (float) (j * 2 * Math.PI / slices);
-				float sinTheta1 = (float) Math.sin(theta1);
-				float cosTheta1 = (float) Math.cos(theta1);
-				float sinTheta2 = (float) Math.sin(theta2);
-				float cosTheta2 = (float) Math.cos(theta2);
-				float sinPhi = (float) Math.sin(phi);
-				float cosPhi = (float) Math.cos(phi);
-
-				// Outer vertices
-				float xOuter1 = outerRadius * sinTheta1 * cosPhi;
-				float yOuter1 = outerRadius * cosTheta1;
-				float zOuter1 = outerRadius * sinTheta1 * sinPhi;
-
-				float xOuter2 = outerRadius * sinTheta2 * cosPhi;
-				float yOuter2 = outerRadius * cosTheta2;
-				float zOuter2 = outerRadius * sinTheta2 * sinPhi;
-
-				// Inner vertices
-				float xInner1 = innerRadius * sinTheta1 * cosPhi;
-				float yInner1 = innerRadius * cosTheta1;
-				float zInner1 = innerRadius * sinTheta1 * sinPhi;
-
-				float xInner2 = innerRadius * sinTheta2 * cosPhi;
-				float yInner2 = innerRadius * cosTheta2;
-				float zInner2 = innerRadius * sinTheta2 * sinPhi;
-
-				// Create a quad strip between outer and inner surfaces.
-				// For each band, we connect the corresponding outer and inner vertices.
-				gl.glVertex3f(xOuter1, yOuter1, zOuter1);
-				gl.glVertex3f(xInner1, yInner1, zInner1);
-				gl.glVertex3f(xOuter2, yOuter2, zOuter2);
-				gl.glVertex3f(xInner2, yInner2, zInner2);
+				int v1 = 3 * (i * (slices + 1) + j);
+				int v2 = v1 + 3 * (slices + 1);
+
+				gl.glVertex3f(outerRadius * grid[v1], outerRadius * grid[v1 + 1], outerRadius * grid[v1 + 2]);
+				gl.glVertex3f(innerRadius * grid[v1], innerRadius * grid[v1 + 1], innerRadius * grid[v1 + 2]);
+				gl.glVertex3f(outerRadius * grid[v2], outerRadius * grid[v2 + 1], outerRadius * grid[v2 + 2]);
+				gl.glVertex3f(innerRadius * grid[v2], innerRadius * grid[v2 + 1], innerRadius * grid[v2 + 2]);
 			}
 			gl.glEnd();
 		}
@@ -405,55 +441,6 @@ public class Support3D {
 		gl.glPopMatrix();
 	}
 
-	/**
-	 * Draws the surface of a sphere.
-	 *
-	 * @param gl            the GL2 context
-	 * @param radius        the radius of the sphere
-	 * @param slices        number of subdivisions around the Z axis
-	 * @param stacks        number of subdivisions along the Z axis
-	 * @param invertNormals if true, normals are inverted (useful for inner
-	 *                      surfaces)
-	 */
-	private static void drawSphereSurface(GL2 gl, float radius, int slices, int stacks, boolean invertNormals) {
-		for (int i = 0; i < stacks; i++) {
-			float theta1 = (float) (i * Math.PI / stacks);
-			float theta2 = (float) ((i + 1) * Math.PI / stacks);
-			gl.glBegin(GL2.GL_QUAD_STRIP);
-			for (int j = 0; j <= slices; j++) {
-				float phi = (float) (j * 2 * Math.PI / slices);
-				float sinTheta1 = (float) Math.sin(theta1);
-				float cosTheta1 = (float) Math.cos(theta1);
-				float sinTheta2 = (float) Math.sin(theta2);
-				float cosTheta2 = (float) Math.cos(theta2);
-				float sinPhi = (float) Math.sin(phi);
-				float cosPhi = (float) Math.cos(phi);
-
-				// Compute positions
-				float x1 = radius * sinTheta1 * cosPhi;
-				float y1 = radius * cosTheta1;
-				float z1 = radius * sinTheta1 * sinPhi;
-				float x2 = radius * sinTheta2 * cosPhi;
-				float y2 = radius * cosTheta2;
-				float z2 = radius * sinTheta2 * sinPhi;
-
-				// Compute normals (invert if necessary)
-				if (invertNormals) {
-					gl.glNormal3f(-x1 / radius, -y1 / radius, -z1 / radius);
-					gl.glVertex3f(x1, y1, z1);
-					gl.glNormal3f(-x2 / radius, -y2 / radius, -z2 / radius);
-					gl.glVertex3f(x2, y2, z2);
-				} else {
-					gl.glNormal3f(x1 / radius, y1 / radius, z1 / radius);
-					gl.glVertex3f(x1, y1, z1);
-					gl.glNormal3f(x2 / radius, y2 / radius, z2 / radius);
-					gl.glVertex3f(x2, y2, z2);
-				}
-			}
-			gl.glEnd();
-		}
-	}
-
 	/**
 	 * Draw a rectangular solid
 	 *
@@ -492,55 +479,14 @@ public class Support3D {
 			float zw, Color fc, Color lc, float lineWidth, boolean frame) {
 		GL2 gl = drawable.getGL().getGL2();
 
-		float xm = xc - xw / 2;
-		float xp = xc + xw / 2;
-		float ym = yc - yw / 2;
-		float yp = yc + yw / 2;
-		float zm = zc - zw / 2;
-		float zp = zc + zw / 2;
+		MeshCache3D cache = MeshCache3D.get(gl);
 
-		Support3D.setColor(gl, fc);
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xm, ym, zp);
-		gl.glVertex3f(xm, yp, zp);
-		gl.glVertex3f(xp, yp, zp);
-		gl.glVertex3f(xp, ym, zp);
-		gl.glEnd();
-
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xm, ym, zm);
-		gl.glVertex3f(xm, yp, zm);
-		gl.glVertex3f(xp, yp, zm);
-		gl.glVertex3f(xp, ym, zm);
-		gl.glEnd();
-
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xm, yp, zm);
-		gl.glVertex3f(xm, yp, zp);
-		gl.glVertex3f(xp, yp, zp);
-		gl.glVertex3f(xp, yp, zm);
-		gl.glEnd();
-
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xm, ym, zm);
-		gl.glVertex3f(xm, ym, zp);
-		gl.glVertex3f(xp, ym, zp);
-		gl.glVertex3f(xp, ym, zm);
-		gl.glEnd();
-
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xp, yp, zm);
-		gl.glVertex3f(xp, yp, zp);
-		gl.glVertex3f(xp, ym, zp);
-		gl.glVertex3f(xp, ym, zm);
-		gl.glEnd();
+		gl.glPushMatrix();
+		gl.glTranslatef(xc, yc, zc);
+		gl.glScalef(xw, yw, zw);
 
-		gl.glBegin(GL2ES3.GL_QUADS);
-		gl.glVertex3f(xm, yp, zm);
-		gl.glVertex3f(xm, yp, zp);
-		gl.glVertex3f(xm, ym, zp);
-		gl.glVertex3f(xm, ym, zm);
-		gl.glEnd();
+		Support3D.setColor(gl, fc);
+		cache.getMesh(MeshCache3D.Primitive.CUBE, 0, 0).draw(gl);
 
 		if (frame) {
 
@@ -548,57 +494,11 @@ public class Support3D {
 				lc = fc.darker();
 			}
 			Support3D.setColor(gl, lc);
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glVertex3f(xm, yp, zp);
-			gl.glVertex3f(xm, ym, zp);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glEnd();
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glVertex3f(xp, yp, zm);
-			gl.glVertex3f(xp, ym, zm);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glEnd();
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glVertex3f(xm, yp, zp);
-			gl.glVertex3f(xp, yp, zp);
-			gl.glVertex3f(xp, yp, zm);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glEnd();
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glVertex3f(xm, ym, zp);
-			gl.glVertex3f(xp, ym, zp);
-			gl.glVertex3f(xp, ym, zm);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glEnd();
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xp, yp, zm);
-			gl.glVertex3f(xp, yp, zp);
-			gl.glVertex3f(xp, ym, zp);
-			gl.glVertex3f(xp, ym, zm);
-			gl.glVertex3f(xp, yp, zm);
-			gl.glEnd();
-
-			gl.glBegin(GL.GL_LINE_STRIP);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glVertex3f(xm, yp, zp);
-			gl.glVertex3f(xm, ym, zp);
-			gl.glVertex3f(xm, ym, zm);
-			gl.glVertex3f(xm, yp, zm);
-			gl.glEnd();
+			RenderState3D.get(gl).lineWidth(gl, lineWidth);
+			cache.getMesh(MeshCache3D.Primitive.CUBE_EDGES, 0, 0).draw(gl);
 		}
-		gl.glLineWidth(1f);
 
+		gl.glPopMatrix();
 	}
 
 	/**
@@ -624,7 +524,7 @@ public class Support3D {
 			float lineWidth) {
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
 
 		gl.glBegin(GL2ES3.GL_QUADS);
 		setColor(gl, color);
@@ -660,7 +560,6 @@ public class Support3D {
 			}
 		}
 
-		gl.glLineWidth(1f);
 
 	}
 
@@ -684,7 +583,7 @@ public class Support3D {
 		int i4 = 3 * index4;
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
 
 		gl.glBegin(GL2ES3.GL_QUADS);
 		setColor(gl, color);
@@ -707,7 +606,6 @@ public class Support3D {
 			gl.glEnd();
 		}
 
-		gl.glLineWidth(1f);
 
 	}
 
@@ -836,7 +734,7 @@ public class Support3D {
 		int i3 = 3 * index3;
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
 
 		gl.glBegin(GL.GL_TRIANGLES);
 		setColor(gl, color);
@@ -856,7 +754,6 @@ public class Support3D {
 			gl.glVertex3f(coords[i1], coords[i1 + 1], coords[i1 + 2]);
 			gl.glEnd();
 		}
-		gl.glLineWidth(1f);
 	}
 
 	/**
@@ -898,7 +795,8 @@ public class Support3D {
 		gl.glTranslatef(x1, y1, z1);
 		gl.glRotatef(ax, rx, ry, 0f);
 
-		glut.glutSolidCone(radius, v, 20, 20);
+		gl.glScalef(radius, radius, v);
+		MeshCache3D.draw(gl, MeshCache3D.Primitive.CONE, 20, 20);
 
 		gl.glPopMatrix();
 	}
@@ -918,10 +816,25 @@ public class Support3D {
 	 */
 	public static void drawTube(GLAutoDrawable drawable, float x1, float y1, float z1, float x2, float y2, float z2,
 			float radius, Color color) {
+		drawTube(drawable, x1, y1, z1, x2, y2, z2, radius, 50, color);
+	}
 
-		if (_quad == null) {
-			_quad = Panel3D.glu.gluNewQuadric();
-		}
+	/**
+	 * Draw a 3D tube with a given resolution
+	 *
+	 * @param drawable the OpenGL drawable
+	 * @param x1       x coordinate of one end
+	 * @param y1       y coordinate of one end
+	 * @param z1       z coordinate of one end
+	 * @param x2       x coordinate of other end
+	 * @param y2       y coordinate of other end
+	 * @param z2       z coordinate of other end
+	 * @param radius   the radius of the tube
+	 * @param slices   the number of subdivisions around the tube
+	 * @param color    the color of the tube
+	 */
+	public static void drawTube(GLAutoDrawable drawable, float x1, float y1, float z1, float x2, float y2, float z2,
+			float radius, int slices, Color color) {
 
 		float vx = x2 - x1;
 		float vy = y2 - y1;
@@ -945,8 +858,8 @@ public class Support3D {
 		// draw the cylinder body
 		gl.glTranslatef(x1, y1, z1);
 		gl.glRotatef(ax, rx, ry, 0f);
-		// gluQuadricOrientation(quadric,GLU_OUTSIDE);
-		Panel3D.glu.gluCylinder(_quad, radius, radius, v, 50, 1);
+		gl.glScalef(radius, radius, v);
+		MeshCache3D.draw(gl, MeshCache3D.Primitive.CYLINDER, slices, 1);
 
 		gl.glPopMatrix();
 	}
@@ -990,14 +903,13 @@ public class Support3D {
 			Color color, float lineWidth) {
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
 
 		gl.glBegin(GL.GL_LINES);
 		setColor(gl, color);
 		gl.glVertex3f(x1, y1, z1);
 		gl.glVertex3f(x2, y2, z2);
 		gl.glEnd();
-		gl.glLineWidth(1f);
 	}
 
 	/**
@@ -1055,7 +967,7 @@ public class Support3D {
 	 */
 	public static void drawPolyLine(GLAutoDrawable drawable, float[] coords, Color color, float lineWidth) {
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
 
 		int np = coords.length / 3;
 
@@ -1067,7 +979,26 @@ public class Support3D {
 			gl.glVertex3f(coords[j], coords[j + 1], coords[j + 2]);
 		}
 		gl.glEnd();
-		gl.glLineWidth(1f);
+	}
+
+	/**
+	 * Draw disjoint line segments from a vertex buffer (retained mode). Each
+	 * consecutive pair of vertices is one segment.
+	 *
+	 * @param drawable  the OpenGL drawable
+	 * @param vbo       the vertex buffer holding the segment end points
+	 * @param color     the color
+	 * @param lineWidth the line width
+	 */
+	public static void drawLines(GLAutoDrawable drawable, VertexBuffer3D vbo, Color color, float lineWidth) {
+		if (vbo.getVertexCount() < 2) {
+			return; // Nothing to draw
+		}
+
+		GL2 gl = drawable.getGL().getGL2();
+		RenderState3D.get(gl).lineWidth(gl, lineWidth);
+		setColor(gl, color);
+		vbo.draw(gl, GL.GL_LINES);
 	}
 
 	/**
@@ -1089,11 +1020,12 @@ public class Support3D {
 			Color color1, Color color2, float lineWidth) {
 
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glEnable(GL2.GL_LINE_STIPPLE);
-		gl.glLineWidth(lineWidth);
+		RenderState3D state = RenderState3D.get(gl);
+		state.lineStipple(gl, true);
+		state.lineWidth(gl, lineWidth);
 
 		if (color1 != null) {
-			gl.glLineStipple(1, (short) 0x00FF); /* dashed */
+			state.lineStipple(gl, 1, (short) 0x00FF); /* dashed */
 			gl.glBegin(GL.GL_LINES);
 			setColor(gl, color1);
 			gl.glVertex3f(x1, y1, z1);
@@ -1101,7 +1033,7 @@ public class Support3D {
 			gl.glEnd();
 		}
 		if (color2 != null) {
-			gl.glLineStipple(1, (short) 0xFF00); /* dashed */
+			state.lineStipple(gl, 1, (short) 0xFF00); /* dashed */
 			gl.glBegin(GL.GL_LINES);
 			setColor(gl, color2);
 			gl.glVertex3f(x1, y1, z1);
@@ -1109,8 +1041,7 @@ public class Support3D {
 			gl.glEnd();
 		}
 
-		gl.glDisable(GL2.GL_LINE_STIPPLE);
-		gl.glLineWidth(1f);
+		state.lineStipple(gl, false);
 
 	}
 
@@ -1126,13 +1057,14 @@ public class Support3D {
 	public static void drawPolyLine(GLAutoDrawable drawable, float[] coords, Color color1, Color color2,
 			float lineWidth) {
 		GL2 gl = drawable.getGL().getGL2();
-		gl.glLineWidth(lineWidth);
-		gl.glEnable(GL2.GL_LINE_STIPPLE);
+		RenderState3D state = RenderState3D.get(gl);
+		state.lineWidth(gl, lineWidth);
+		state.lineStipple(gl, true);
 
 		int np = coords.length / 3;
 
 		if (color1 != null) {
-			gl.glLineStipple(1, (short) 0x00FF); /* dashed */
+			state.lineStipple(gl, 1, (short) 0x00FF); /* dashed */
 			gl.glBegin(GL.GL_LINE_STRIP);
 			setColor(gl, color1);
 
@@ -1143,7 +1075,7 @@ public class Support3D {
 			gl.glEnd();
 		}
 		if (color2 != null) {
-			gl.glLineStipple(1, (short) 0xFF00); /* dashed */
+			state.lineStipple(gl, 1, (short) 0xFF00); /* dashed */
 			gl.glBegin(GL.GL_LINE_STRIP);
 			setColor(gl, color2);
 
@@ -1154,8 +1086,7 @@ public class Support3D {
 			gl.glEnd();
 		}
 
-		gl.glDisable(GL2.GL_LINE_STIPPLE);
-		gl.glLineWidth(1f);
+		state.lineStipple(gl, false);
 
 	}
 
@@ -1198,7 +1129,7 @@ public class Support3D {
 
 		// Draw the border
 		if (lineColor != null) {
-			gl.glLineWidth(lineWidth);
+			RenderState3D.get(gl).lineWidth(gl, lineWidth);
 			gl.glBegin(GL.GL_LINE_LOOP);
 			Support3D.setColor(gl, lineColor);
 			for (int i = 0; i < numPoints; i++) {
@@ -1207,21 +1138,17 @@ public class Support3D {
 			gl.glEnd();
 		}
 
-		gl.glLineWidth(1.0f); // Reset line width to default
 	}
 
 	/**
-	 * Set a color based on an awt color
+	 * Set a color based on an awt color. Skipped if it is already the current
+	 * color (see {@link RenderState3D}).
 	 *
 	 * @param gl    the graphics context
 	 * @param color the awt color
 	 */
 	public static void setColor(GL2 gl, Color color) {
-		float r = color.getRed() / 255f;
-		float g = color.getGreen() / 255f;
-		float b = color.getBlue() / 255f;
-		float a = color.getAlpha() / 255f;
-		gl.glColor4f(r, g, b, a);
+		RenderState3D.get(gl).color(gl, color);
 	}
 
 
@@ -0,0 +1,260 @@
+package edu.cnu.mdi.mdi3D.panel;
+
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.fixedfunc.GLPointerFunc;
+
+/**
+ * A thin wrapper around an OpenGL vertex buffer object (VBO) holding packed
+ * {@code [x, y, z, x, y, z, ...]} float positions.
+ * <p>
+ * This is the storage behind the retained render path of
+ * {@link edu.cnu.mdi.mdi3D.item3D.Item3D}: the geometry is uploaded once, and
+ * then drawn with a single {@code glDrawArrays} call per frame until the owning
+ * item marks itself dirty.
+ * <p>
+ * Buffer names belong to a GL context. If the buffer is used with a different
+ * context than the one it was created in (e.g. the {@code GLJPanel} was
+ * re-parented and its context recreated) the old name is abandoned and a new
+ * one is generated. Callers should treat {@link #upload(GL2, float[], int)} as
+ * required whenever {@link #isValid(GL2)} returns {@code false}.
+ * <p>
+ * A buffer whose contents change every frame should be put in streaming mode
+ * (see {@link #setStreaming(boolean)}). Each upload then orphans the old
+ * storage, so it never waits for the draws of earlier frames still reading it.
+ */
+public class VertexBuffer3D {
+
+	// floats per vertex (x, y, z)
+	private static final int FLOATS_PER_VERTEX = 3;
+
+	// the buffer object name, 0 if none
+	private int _bufferId;
+
+	// the context that owns _bufferId
+	private GLContext _context;
+
+	// number of vertices last uploaded
+	private int _vertexCount;
+
+	// allocated capacity in floats
+	private int _capacity;
+
+	// if true every upload orphans the storage
+	private boolean _streaming;
+
+	/**
+	 * Check whether vertex buffer objects can be used with the given context.
+	 *
+	 * @param gl the GL context
+	 * @return <code>true</code> if VBOs are available
+	 */
+	public static boolean isSupported(GL2 gl) {
+		return gl.isFunctionAvailable("glGenBuffers") && gl.isFunctionAvailable("glBufferData");
+	}
+
+	/**
+	 * Check whether this buffer holds live data for the current context.
+	 *
+	 * @param gl the GL context
+	 * @return <code>true</code> if the buffer exists in this context
+	 */
+	public boolean isValid(GL2 gl) {
+		return (_bufferId != 0) && (_context == gl.getContext());
+	}
+
+	/**
+	 * Upload packed coordinates into the buffer, replacing its contents. The
+	 * buffer storage is reallocated only when it must grow.
+	 *
+	 * @param gl     the GL context
+	 * @param coords the vertices as [x, y, z, x, y, z, ...] (may be
+	 *               <code>null</code>)
+	 * @param length the number of floats of <code>coords</code> to use
+	 */
+	public void upload(GL2 gl, float[] coords, int length) {
+		if ((coords == null) || (length < FLOATS_PER_VERTEX)) {
+			_vertexCount = 0;
+			return;
+		}
+
+		length = Math.min(length, coords.length);
+		upload(gl, FloatBuffer.wrap(coords, 0, length));
+	}
+
+	/**
+	 * Upload packed coordinates into the buffer, replacing its contents. The
+	 * floats between the buffer's position and limit are used.
+	 *
+	 * @param gl   the GL context
+	 * @param data the vertices as [x, y, z, x, y, z, ...]
+	 */
+	public void upload(GL2 gl, FloatBuffer data) {
+		ensureBuffer(gl);
+
+		int length = data.remaining();
+		_vertexCount = length / FLOATS_PER_VERTEX;
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _bufferId);
+		if (_streaming) {
+			// some headroom, so a slowly growing count does not change the size
+			if (length > _capacity) {
+				_capacity = length + length / 4;
+			}
+			// a fresh block of storage: draws still reading the old one do not
+			// stall the copy, and the driver recycles the block once they are done
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) _capacity * Float.BYTES, null, GL2.GL_STREAM_DRAW);
+			gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0L, (long) length * Float.BYTES, data);
+		} else if (length > _capacity) {
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) length * Float.BYTES, data, GL.GL_STATIC_DRAW);
+			_capacity = length;
+		} else {
+			gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0L, (long) length * Float.BYTES, data);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Draw the whole buffer with a single <code>glDrawArrays</code> call. The
+	 * current color, point size, line width etc. are used.
+	 *
+	 * @param gl   the GL context
+	 * @param mode the primitive type, e.g. <code>GL.GL_POINTS</code>
+	 */
+	public void draw(GL2 gl, int mode) {
+		draw(gl, mode, 0, _vertexCount);
+	}
+
+	/**
+	 * Draw a range of the buffer with a single <code>glDrawArrays</code> call.
+	 *
+	 * @param gl    the GL context
+	 * @param mode  the primitive type, e.g. <code>GL.GL_POINTS</code>
+	 * @param first the first vertex
+	 * @param count the number of vertices
+	 */
+	public void draw(GL2 gl, int mode, int first, int count) {
+		count = Math.min(count, _vertexCount - first);
+		if (!isValid(gl) || (first < 0) || (count <= 0)) {
+			return;
+		}
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _bufferId);
+		gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glVertexPointer(FLOATS_PER_VERTEX, GL.GL_FLOAT, 0, 0L);
+
+		gl.glDrawArrays(mode, first, count);
+
+		gl.glDisableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Draw every <code>step</code>-th vertex starting at <code>first</code>, with
+	 * a single <code>glDrawArrays</code> call. Drawing the steps
+	 * <code>0..step-1</code> one after another draws the whole buffer, each part
+	 * an even sample of it.
+	 *
+	 * @param gl    the GL context
+	 * @param mode  the primitive type, e.g. <code>GL.GL_POINTS</code>
+	 * @param first the first vertex
+	 * @param step  the vertex step, at least 1
+	 */
+	public void drawStrided(GL2 gl, int mode, int first, int step) {
+		int count = getStridedCount(first, step);
+		if (!isValid(gl) || (first < 0) || (count <= 0)) {
+			return;
+		}
+
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, _bufferId);
+		gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glVertexPointer(FLOATS_PER_VERTEX, GL.GL_FLOAT, step * FLOATS_PER_VERTEX * Float.BYTES,
+				(long) first * FLOATS_PER_VERTEX * Float.BYTES);
+
+		gl.glDrawArrays(mode, 0, count);
+
+		gl.glDisableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Get the number of vertices {@link #drawStrided(GL2, int, int, int)} draws.
+	 *
+	 * @param first the first vertex
+	 * @param step  the vertex step, at least 1
+	 * @return the vertex count
+	 */
+	public int getStridedCount(int first, int step) {
+		return (_vertexCount <= first) ? 0 : (_vertexCount - first + step - 1) / step;
+	}
+
+	/**
+	 * Set whether the buffer is in streaming mode, for contents replaced every
+	 * frame. A streaming buffer orphans its storage on every upload instead of
+	 * overwriting it in place.
+	 *
+	 * @param streaming <code>true</code> for contents that change every frame
+	 */
+	public void setStreaming(boolean streaming) {
+		_streaming = streaming;
+	}
+
+	/**
+	 * Check whether the buffer is in streaming mode.
+	 *
+	 * @return <code>true</code> if every upload orphans the storage
+	 */
+	public boolean isStreaming() {
+		return _streaming;
+	}
+
+	/**
+	 * Get the number of vertices last uploaded.
+	 *
+	 * @return the vertex count
+	 */
+	public int getVertexCount() {
+		return _vertexCount;
+	}
+
+	/**
+	 * Release the buffer object. Safe to call more than once. Must be called with
+	 * the owning context current; if a different context is current nothing is
+	 * released, so a buffer still in use by its own context stays valid.
+	 *
+	 * @param gl the GL context
+	 */
+	public void dispose(GL2 gl) {
+		if ((_bufferId != 0) && (_context != gl.getContext())) {
+			return;
+		}
+		if (_bufferId != 0) {
+			gl.glDeleteBuffers(1, new int[] { _bufferId }, 0);
+		}
+		reset();
+	}
+
+	// generate a buffer name for the current context if needed
+	private void ensureBuffer(GL2 gl) {
+		if (isValid(gl)) {
+			return;
+		}
+
+		reset();
+		int ids[] = new int[1];
+		gl.glGenBuffers(1, ids, 0);
+		_bufferId = ids[0];
+		_context = gl.getContext();
+	}
+
+	// forget the current buffer
+	private void reset() {
+		_bufferId = 0;
+		_context = null;
+		_vertexCount = 0;
+		_capacity = 0;
+	}
+}
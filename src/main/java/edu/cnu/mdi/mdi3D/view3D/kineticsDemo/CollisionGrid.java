@@ -0,0 +1,441 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Hard sphere collisions between equal mass particles of one radius, for the
+ * {@link KineticsModel}.
+ * <p>
+ * Each step the particles are sorted with a counting sort, O(N) in time and
+ * memory, into a uniform grid of cubic cells at least one diameter wide that
+ * spans the particles' bounding box, so a gas still packed in a corner of the
+ * box is not crowded into a few cells. A particle can then only touch
+ * particles in its own cell and the 26 around it, and each pair of cells is
+ * visited once, from the cell that comes first. Touching particles that are
+ * approaching exchange the components of their velocities along the line
+ * between their centers, i.e. collide elastically. Positions are not changed,
+ * so the positions already published for the step stay valid. A particle
+ * touching several others may be turned back toward one already resolved, so
+ * the grid is swept again while a sweep changed anything, up to
+ * {@link #MAX_SWEEPS} times, until no touching pair is left approaching. A
+ * later sweep only visits the cells that changed in the sweep before and the
+ * cells just before them, and only their pairs with a changed cell.
+ * <p>
+ * Resolving a cell changes only particles in that cell and the next layer of
+ * cells along x. The grid is cut into slabs of {@link #SLAB} layers along x;
+ * slabs two apart never share a particle, so the even slabs, and then the odd
+ * slabs, may be resolved in parallel. The slabs do not depend on the number of
+ * threads and each is resolved in a fixed order, so neither do the results.
+ */
+class CollisionGrid {
+
+	// The largest number of cells per side, bounding the memory
+	private static final int MAX_SIDE = 256;
+
+	// The layers of cells per slab
+	private static final int SLAB = 2;
+
+	// The most sweeps over the grid per resolve
+	static final int MAX_SWEEPS = 16;
+
+	// The neighbor cell offsets that come after a cell, so each pair of cells
+	// is visited once
+	private static final int[][] FORWARD = forwardOffsets();
+
+	// The cells per side, and per side including an empty layer of cells all
+	// around, so every cell has all its neighbors
+	private int side;
+	private int stride;
+
+	// The index distance to each forward neighbor
+	private final int[] forward = new int[FORWARD.length];
+
+	// The corner of the grid, and the width of a cell
+	private float minX, minY, minZ;
+	private float cellSize;
+
+	// The cell of each particle, the first sorted index of each cell (one past
+	// the last cell included), and the particles sorted by cell
+	private int[] cellOf = new int[0];
+	private int[] cellStart = new int[1];
+	private int[] order = new int[0];
+
+	// The sweep that last changed a velocity in each cell, the sweep that last
+	// queued each cell for a visit, and the stamp of the first sweep of this
+	// resolve. Stamps only grow, so older ones never need clearing.
+	private int[] cellStamp = new int[0];
+	private int[] visitStamp = new int[0];
+	private int stampBase;
+
+	// The cells each task changed in the current sweep, and the cells the next
+	// sweep visits, in index order
+	private int[][] changedCells = new int[0][];
+	private int[] changedCount = new int[0];
+	private int[] visit = new int[64];
+	private int visitCount;
+
+	// The positions and velocities copied in sorted order, so the particles of
+	// a cell and of its neighbors are near each other in memory
+	private float[] sx = new float[0], sy = sx, sz = sx;
+	private float[] svx = sx, svy = sx, svz = sx;
+
+	// the squared diameter
+	private float minDist2;
+
+	/**
+	 * Collide touching particles.
+	 *
+	 * @param x       the x positions
+	 * @param y       the y positions
+	 * @param z       the z positions
+	 * @param vx      the x velocities, updated
+	 * @param vy      the y velocities, updated
+	 * @param vz      the z velocities, updated
+	 * @param count   the number of particles
+	 * @param radius  the particle radius
+	 * @param pool    the pool to resolve the slabs on, or <code>null</code> to
+	 *                resolve on the calling thread
+	 * @param threads the number of tasks per pass when a pool is given
+	 */
+	void resolve(float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz, int count, float radius,
+			ForkJoinPool pool, int threads) {
+		if ((count < 2) || (radius <= 0f)) {
+			return;
+		}
+
+		minDist2 = 4f * radius * radius;
+		sort(x, y, z, count, radius);
+		gather(x, y, z, vx, vy, vz, count);
+
+		if (stampBase > Integer.MAX_VALUE - 2 * MAX_SWEEPS) {
+			Arrays.fill(cellStamp, 0);
+			Arrays.fill(visitStamp, 0);
+			stampBase = 0;
+		}
+		stampBase += MAX_SWEEPS + 1;
+
+		int taskCount = (pool == null) ? 1 : threads;
+		if (changedCells.length < taskCount) {
+			changedCells = new int[taskCount][64];
+			changedCount = new int[taskCount];
+		}
+
+		// sweep until nothing changes: the even slabs, then the odd ones. The
+		// first sweep visits every cell, later ones those queued by the last.
+		boolean more = true;
+		for (int sweep = 0; more && (sweep < MAX_SWEEPS); sweep++) {
+			final int stamp = stampBase + sweep;
+			final int recent = (sweep == 0) ? Integer.MIN_VALUE : stamp - 1;
+			for (int parity = 0; parity < 2; parity++) {
+				if (pool == null) {
+					resolveSlabs(parity, 0, 1, recent, stamp);
+				} else {
+					// one barrier per pass: its slabs are independent of each other
+					final int pass = parity;
+					List<Callable<Void>> tasks = new ArrayList<>(threads);
+					for (int t = 0; t < threads; t++) {
+						final int task = t;
+						tasks.add(() -> {
+							resolveSlabs(pass, task, threads, recent, stamp);
+							return null;
+						});
+					}
+					try {
+						for (Future<Void> future : pool.invokeAll(tasks)) {
+							future.get();
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException("CollisionGrid: parallel resolve failed", e);
+					}
+				}
+			}
+			more = queueVisits(taskCount, stamp);
+		}
+
+		// scatter the new velocities back
+		for (int a = 0; a < count; a++) {
+			int i = order[a];
+			vx[i] = svx[a];
+			vy[i] = svy[a];
+			vz[i] = svz[a];
+		}
+	}
+
+	// Counting sort of the particles into cells at least a diameter wide, and
+	// no more cells than about 8 per particle, so the sort stays O(N)
+	private void sort(float[] x, float[] y, float[] z, int count, float radius) {
+		minX = minY = minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+			minZ = Math.min(minZ, z[i]);
+			maxZ = Math.max(maxZ, z[i]);
+		}
+		float length = Math.max(Math.max(maxX - minX, maxY - minY), Math.max(maxZ - minZ, 2f * radius));
+
+		int wanted = Math.max(1, (int) (length / (2f * radius)));
+		int limit = Math.max(1, (int) Math.cbrt(8.0 * count));
+		side = Math.min(wanted, Math.min(limit, MAX_SIDE));
+		cellSize = length / side;
+		stride = side + 2;
+		for (int k = 0; k < FORWARD.length; k++) {
+			forward[k] = (FORWARD[k][0] * stride + FORWARD[k][1]) * stride + FORWARD[k][2];
+		}
+
+		int cells = stride * stride * stride;
+		if (cellOf.length < count) {
+			cellOf = new int[count];
+			order = new int[count];
+		}
+		if (cellStamp.length < cells) {
+			cellStamp = new int[cells];
+			visitStamp = new int[cells];
+			stampBase = 0;
+		}
+		if (cellStart.length < cells + 1) {
+			cellStart = new int[cells + 1];
+		} else {
+			Arrays.fill(cellStart, 0, cells + 1, 0);
+		}
+
+		// count, shifted by one so the prefix sum gives the starts
+		for (int i = 0; i < count; i++) {
+			int c = cellIndex(cell(x[i] - minX), cell(y[i] - minY), cell(z[i] - minZ));
+			cellOf[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < cells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+
+		// place, in index order within each cell; the starts are restored after
+		for (int i = 0; i < count; i++) {
+			order[cellStart[cellOf[i]]++] = i;
+		}
+		for (int c = cells; c > 0; c--) {
+			cellStart[c] = cellStart[c - 1];
+		}
+		cellStart[0] = 0;
+	}
+
+	// Copy the state into sorted order
+	private void gather(float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz, int count) {
+		if (sx.length < count) {
+			sx = new float[count];
+			sy = new float[count];
+			sz = new float[count];
+			svx = new float[count];
+			svy = new float[count];
+			svz = new float[count];
+		}
+		for (int a = 0; a < count; a++) {
+			int i = order[a];
+			sx[a] = x[i];
+			sy[a] = y[i];
+			sz[a] = z[i];
+			svx[a] = vx[i];
+			svy[a] = vy[i];
+			svz[a] = vz[i];
+		}
+	}
+
+	// Resolve this task's share of the slabs of the given parity: every cell in
+	// the first sweep, the queued cells in later ones.
+	private void resolveSlabs(int parity, int task, int tasks, int recent, int stamp) {
+		int slabs = (side + SLAB - 1) / SLAB;
+		int mine = (slabs - parity + 1) / 2;
+		int per = (mine + tasks - 1) / tasks;
+		int end = Math.min(mine, (task + 1) * per);
+
+		for (int k = task * per; k < end; k++) {
+			int x0 = (2 * k + parity) * SLAB;
+			int x1 = Math.min(side, x0 + SLAB);
+			if (recent != Integer.MIN_VALUE) {
+				// the slab's cells are a range of indices
+				int hi = cellIndex(x1, 0, 0);
+				for (int v = lowerBound(cellIndex(x0, 0, 0)); (v < visitCount) && (visit[v] < hi); v++) {
+					resolveCell(visit[v], recent, stamp, task);
+				}
+				continue;
+			}
+			for (int cx = x0; cx < x1; cx++) {
+				for (int cy = 0; cy < side; cy++) {
+					int c = cellIndex(cx, cy, 0);
+					for (int cz = 0; cz < side; cz++, c++) {
+						if (cellStart[c] < cellStart[c + 1]) {
+							resolveCell(c, recent, stamp, task);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Queue the cells the next sweep visits: those changed in this sweep, and
+	// those before them that have them as forward neighbors. Returns true if
+	// any were queued.
+	private boolean queueVisits(int tasks, int stamp) {
+		visitCount = 0;
+		for (int t = 0; t < tasks; t++) {
+			int[] cells = changedCells[t];
+			for (int i = 0; i < changedCount[t]; i++) {
+				int c = cells[i];
+				queueVisit(c, stamp);
+				for (int delta : forward) {
+					queueVisit(c - delta, stamp);
+				}
+			}
+			changedCount[t] = 0;
+		}
+		Arrays.sort(visit, 0, visitCount);
+		return visitCount > 0;
+	}
+
+	// Queue a cell for the next sweep, once, if it has particles
+	private void queueVisit(int c, int stamp) {
+		if ((cellStart[c] == cellStart[c + 1]) || (visitStamp[c] == stamp)) {
+			return;
+		}
+		visitStamp[c] = stamp;
+		if (visitCount == visit.length) {
+			visit = Arrays.copyOf(visit, 2 * visitCount);
+		}
+		visit[visitCount++] = c;
+	}
+
+	// The first queued visit at or after a cell index
+	private int lowerBound(int c) {
+		int lo = 0;
+		int hi = visitCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (visit[mid] < c) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// Record that a task changed a velocity in a cell in this sweep. Only the
+	// task resolving a cell's slab, or the slab before it, touches the cell,
+	// and those never run at once.
+	private void markChanged(int c, int stamp, int task) {
+		if (cellStamp[c] == stamp) {
+			return;
+		}
+		cellStamp[c] = stamp;
+		int[] cells = changedCells[task];
+		int n = changedCount[task];
+		if (n == cells.length) {
+			cells = Arrays.copyOf(cells, 2 * n);
+			changedCells[task] = cells;
+		}
+		cells[n] = c;
+		changedCount[task] = n + 1;
+	}
+
+	// Collide the pairs within a cell and with its forward neighbors, those of
+	// them with a cell changed since the sweep before (recent), and mark the
+	// cells that change.
+	private void resolveCell(int c, int recent, int stamp, int task) {
+		int start = cellStart[c];
+		int end = cellStart[c + 1];
+		boolean fresh = cellStamp[c] >= recent;
+
+		boolean changed = false;
+		if (fresh) {
+			for (int a = start; a < end; a++) {
+				for (int b = a + 1; b < end; b++) {
+					changed |= collide(a, b);
+				}
+			}
+		}
+
+		for (int delta : forward) {
+			int n = c + delta;
+			int nStart = cellStart[n];
+			int nEnd = cellStart[n + 1];
+			if ((nStart == nEnd) || (!fresh && (cellStamp[n] < recent))) {
+				continue;
+			}
+			boolean hit = false;
+			for (int a = start; a < end; a++) {
+				for (int b = nStart; b < nEnd; b++) {
+					hit |= collide(a, b);
+				}
+			}
+			if (hit) {
+				markChanged(n, stamp, task);
+				changed = true;
+			}
+		}
+
+		if (changed) {
+			markChanged(c, stamp, task);
+		}
+	}
+
+	// An elastic collision of equal masses, if the particles (by sorted index)
+	// touch and approach: the velocity components along the line of centers
+	// are exchanged. Returns true if they collided.
+	private boolean collide(int a, int b) {
+		float dx = sx[b] - sx[a];
+		float dy = sy[b] - sy[a];
+		float dz = sz[b] - sz[a];
+		float d2 = dx * dx + dy * dy + dz * dz;
+		if ((d2 >= minDist2) || (d2 == 0f)) {
+			return false;
+		}
+
+		float dot = (svx[b] - svx[a]) * dx + (svy[b] - svy[a]) * dy + (svz[b] - svz[a]) * dz;
+		if (dot >= 0f) {
+			return false; // separating
+		}
+
+		float f = dot / d2;
+		svx[a] += f * dx;
+		svy[a] += f * dy;
+		svz[a] += f * dz;
+		svx[b] -= f * dx;
+		svy[b] -= f * dy;
+		svz[b] -= f * dz;
+		return true;
+	}
+
+	// The cell coordinate of a position relative to the corner, clamped into
+	// the grid
+	private int cell(float p) {
+		return Math.max(0, Math.min(side - 1, (int) (p / cellSize)));
+	}
+
+	// The index of a cell, past the empty layer
+	private int cellIndex(int cx, int cy, int cz) {
+		return ((cx + 1) * stride + cy + 1) * stride + cz + 1;
+	}
+
+	// The 13 of the 26 neighbor offsets that are lexicographically positive
+	private static int[][] forwardOffsets() {
+		int[][] offsets = new int[13][];
+		int k = 0;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dz = -1; dz <= 1; dz++) {
+					if ((dx > 0) || ((dx == 0) && (dy > 0)) || ((dx == 0) && (dy == 0) && (dz > 0))) {
+						offsets[k++] = new int[] { dx, dy, dz };
+					}
+				}
+			}
+		}
+		return offsets;
+	}
+}
@@ -0,0 +1,538 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import java.util.Arrays;
+
+/**
+ * Event driven dynamics of hard spheres in a cubic box, for the
+ * {@link KineticsModel}.
+ * <p>
+ * Rather than moving every particle by a fixed time step and testing for
+ * overlaps, the engine predicts when each particle will next hit a wall, hit
+ * another particle, or leave its cell, and processes those events in time
+ * order from a priority queue. Between events the particles move in straight
+ * lines, so the dynamics are exact, no collision is missed however far the
+ * model is advanced, and the work is proportional to the number of events
+ * rather than to the number of steps times the number of particles.
+ * <p>
+ * Processing an event for a particle changes its velocity and so makes its
+ * other predicted events wrong. Instead of finding and removing them, each
+ * particle has a version that is bumped by every velocity change, and an
+ * event predicted with an older version is skipped when it comes off the
+ * queue.
+ * <p>
+ * Only pairs in neighboring cells of a uniform grid, with cells at least one
+ * diameter wide, are predicted, and only up to the particle's next wall or
+ * cell crossing, when it is predicted again. That keeps the queue to a few
+ * events per particle.
+ * <p>
+ * Positions and times are kept in double precision. Simulation thread only.
+ */
+class EventDrivenEngine {
+
+	// The kinds of event
+	private static final int PAIR = 0;
+	private static final int WALL = 1;
+	private static final int CELL = 2;
+
+	// The largest number of cells per side, bounding the memory
+	private static final int MAX_SIDE = 128;
+
+	private final int count;
+	private final double length;
+	private final double radius;
+
+	// Position (at the particle's own time), velocity, and time of each
+	// particle, indexed [axis][particle] for position and velocity
+	private final double[][] pos;
+	private final double[][] vel;
+	private final double[] t0;
+
+	// The velocity version of each particle
+	private final int[] version;
+
+	// The cell grid: cells per side, cell width, the cell coordinates of each
+	// particle, indexed [axis][particle] like the positions, and a doubly
+	// linked list of the particles in each cell
+	private final int side;
+	private final double cellSize;
+	private final int[][] cellOf;
+	private final int[] head;
+	private final int[] next;
+	private final int[] prev;
+
+	// The queue: a binary min heap of event times, each with the slot of its
+	// event. Only the times and slots move when the heap is reordered.
+	private double[] heapTime = new double[1024];
+	private int[] heapSlot = new int[1024];
+	private int heapSize;
+
+	// The events, by slot: the particles (j unused but for pairs), their
+	// versions when predicted, and the kind with the axis and direction of a
+	// wall or cell event. Slots of processed events are reused.
+	private int[] eventI = new int[1024];
+	private int[] eventJ = new int[1024];
+	private int[] eventVersionI = new int[1024];
+	private int[] eventVersionJ = new int[1024];
+	private int[] eventKind = new int[1024];
+	private int[] freeSlots = new int[1024];
+	private int freeCount;
+	private int slotCount;
+
+	// The size of the queue above which stale events are purged
+	private int purgeSize;
+
+	// The current time
+	private double now;
+
+	// The events processed so far, skipped ones not included
+	private long events;
+
+	/**
+	 * Create the engine from the current state of a model.
+	 *
+	 * @param x      the x positions
+	 * @param y      the y positions
+	 * @param z      the z positions
+	 * @param vx     the x velocities
+	 * @param vy     the y velocities
+	 * @param vz     the z velocities
+	 * @param count  the number of particles
+	 * @param length the side length of the box, whose corner is the origin
+	 * @param radius the particle radius, 0 for point particles that only hit
+	 *               the walls
+	 */
+	EventDrivenEngine(float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz, int count, float length,
+			float radius) {
+		this.count = count;
+		this.length = length;
+		this.radius = radius;
+
+		pos = new double[3][count];
+		vel = new double[3][count];
+		t0 = new double[count];
+		version = new int[count];
+		for (int i = 0; i < count; i++) {
+			pos[0][i] = x[i];
+			pos[1][i] = y[i];
+			pos[2][i] = z[i];
+			vel[0][i] = vx[i];
+			vel[1][i] = vy[i];
+			vel[2][i] = vz[i];
+		}
+
+		// point particles never meet, so they need no grid. The grid is only
+		// swept once, here, so small cells cost nothing per event
+		int wanted = (radius > 0f) ? (int) (length / (2.0 * radius)) : 1;
+		side = Math.max(1, Math.min(wanted, MAX_SIDE));
+		cellSize = length / side;
+
+		cellOf = new int[3][count];
+		head = new int[side * side * side];
+		next = new int[count];
+		prev = new int[count];
+		Arrays.fill(head, -1);
+		for (int i = 0; i < count; i++) {
+			for (int a = 0; a < 3; a++) {
+				cellOf[a][i] = Math.max(0, Math.min(side - 1, (int) (pos[a][i] / cellSize)));
+			}
+			link(i);
+		}
+
+		for (int i = 0; i < count; i++) {
+			predict(i);
+		}
+		purgeSize = Math.max(1024, 2 * heapSize);
+	}
+
+	/**
+	 * Advance the particles by a time interval, processing every event in it,
+	 * and write their state at the end of it.
+	 *
+	 * @param dt the interval
+	 * @param x  the x positions, written
+	 * @param y  the y positions, written
+	 * @param z  the z positions, written
+	 * @param vx the x velocities, written
+	 * @param vy the y velocities, written
+	 * @param vz the z velocities, written
+	 */
+	void advance(double dt, float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz) {
+		double end = now + dt;
+
+		while ((heapSize > 0) && (heapTime[0] <= end)) {
+			double time = heapTime[0];
+			int slot = pop();
+			if (isStale(slot)) {
+				continue;
+			}
+			now = time;
+			events++;
+			int i = eventI[slot];
+			int kind = eventKind[slot];
+			switch (kind & 3) {
+			case PAIR -> collide(i, eventJ[slot]);
+			case WALL -> bounce(i, (kind >> 2) & 3);
+			default -> cross(i, (kind >> 2) & 3, (kind >> 4) - 1);
+			}
+		}
+
+		// Lazy invalidation leaves stale events behind, e.g. the pairs of
+		// particles that have collided with others since; purge them once
+		// they are half the queue
+		if (heapSize > purgeSize) {
+			purge();
+			purgeSize = Math.max(1024, 2 * heapSize);
+		}
+
+		// Bring every particle to the end of the interval; the predicted times
+		// are absolute, so they stay valid
+		now = end;
+		for (int i = 0; i < count; i++) {
+			moveTo(i, end);
+			x[i] = (float) pos[0][i];
+			y[i] = (float) pos[1][i];
+			z[i] = (float) pos[2][i];
+			vx[i] = (float) vel[0][i];
+			vy[i] = (float) vel[1][i];
+			vz[i] = (float) vel[2][i];
+		}
+	}
+
+	/**
+	 * Get the number of events processed so far.
+	 *
+	 * @return the number of collisions and cell crossings
+	 */
+	long getEventCount() {
+		return events;
+	}
+
+	// An event is stale if a particle in it changed velocity since it was
+	// predicted.
+	private boolean isStale(int slot) {
+		return (version[eventI[slot]] != eventVersionI[slot])
+				|| (((eventKind[slot] & 3) == PAIR) && (version[eventJ[slot]] != eventVersionJ[slot]));
+	}
+
+	// An elastic collision of equal masses at the current time: the velocity
+	// components along the line of centers are exchanged.
+	private void collide(int i, int j) {
+		moveTo(i, now);
+		moveTo(j, now);
+
+		double dx = pos[0][j] - pos[0][i];
+		double dy = pos[1][j] - pos[1][i];
+		double dz = pos[2][j] - pos[2][i];
+		double d2 = dx * dx + dy * dy + dz * dz;
+		if (d2 > 0.0) {
+			double dot = (vel[0][j] - vel[0][i]) * dx + (vel[1][j] - vel[1][i]) * dy + (vel[2][j] - vel[2][i]) * dz;
+			double f = dot / d2;
+			vel[0][i] += f * dx;
+			vel[1][i] += f * dy;
+			vel[2][i] += f * dz;
+			vel[0][j] -= f * dx;
+			vel[1][j] -= f * dy;
+			vel[2][j] -= f * dz;
+		}
+
+		version[i]++;
+		version[j]++;
+		predict(i);
+		predict(j);
+	}
+
+	// An elastic collision with a wall at the current time.
+	private void bounce(int i, int axis) {
+		moveTo(i, now);
+		double v = vel[axis][i];
+		pos[axis][i] = (v > 0.0) ? (length - radius) : radius;
+		vel[axis][i] = -v;
+
+		version[i]++;
+		predict(i);
+	}
+
+	// A particle leaves its cell at the current time. Its velocity is
+	// unchanged, so its other events stay valid, but its walls and pairs are
+	// predicted again up to its new horizon.
+	private void cross(int i, int axis, int dir) {
+		moveTo(i, now);
+		unlink(i);
+		cellOf[axis][i] += dir;
+		link(i);
+		predict(i);
+	}
+
+	// Predict the events of a particle: its next cell crossing, and its wall
+	// and its collisions before that. A wall after the crossing need not be
+	// queued, as the particle is predicted again at the crossing; that keeps
+	// far off events, which make every insertion into the heap climb to the
+	// top, out of the queue.
+	private void predict(int i) {
+		double crossing = predictCrossing(i);
+		double horizon = Math.min(predictWall(i, crossing), crossing);
+		predictPairs(i, horizon);
+	}
+
+	// Predict the collisions of a particle with the particles in its own and
+	// neighboring cells, up to a horizon. A collision after the next wall or
+	// cell crossing of the particle need not be queued: the particle is
+	// predicted again then, and the partner is still in a neighboring cell.
+	private void predictPairs(int i, double horizon) {
+		if (radius <= 0.0) {
+			return;
+		}
+
+		int cx = cellOf[0][i];
+		int cy = cellOf[1][i];
+		int cz = cellOf[2][i];
+		for (int nx = Math.max(0, cx - 1); nx <= Math.min(side - 1, cx + 1); nx++) {
+			for (int ny = Math.max(0, cy - 1); ny <= Math.min(side - 1, cy + 1); ny++) {
+				for (int nz = Math.max(0, cz - 1); nz <= Math.min(side - 1, cz + 1); nz++) {
+					for (int j = head[cellIndex(nx, ny, nz)]; j >= 0; j = next[j]) {
+						if (j != i) {
+							predictPair(i, j, horizon);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// The time the particle will hit its first wall, queued if not after the
+	// limit.
+	private double predictWall(int i, double limit) {
+		double best = Double.POSITIVE_INFINITY;
+		int bestAxis = -1;
+		for (int a = 0; a < 3; a++) {
+			double v = vel[a][i];
+			double dt;
+			if (v > 0.0) {
+				dt = (length - radius - pos[a][i]) / v;
+			} else if (v < 0.0) {
+				dt = (radius - pos[a][i]) / v;
+			} else {
+				continue;
+			}
+			if (dt < best) {
+				best = dt;
+				bestAxis = a;
+			}
+		}
+		if (bestAxis < 0) {
+			return best;
+		}
+		double time = t0[i] + Math.max(0.0, best);
+		if (time <= limit) {
+			push(time, WALL | (bestAxis << 2), i, -1);
+		}
+		return time;
+	}
+
+	// The time the particle will cross its first cell boundary, if any,
+	// queued.
+	private double predictCrossing(int i) {
+		if (side == 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double best = Double.POSITIVE_INFINITY;
+		int bestAxis = -1;
+		int bestDir = 0;
+		for (int a = 0; a < 3; a++) {
+			double v = vel[a][i];
+			int c = cellOf[a][i];
+			double dt;
+			int dir;
+			if ((v > 0.0) && (c < side - 1)) {
+				dt = ((c + 1) * cellSize - pos[a][i]) / v;
+				dir = 1;
+			} else if ((v < 0.0) && (c > 0)) {
+				dt = (c * cellSize - pos[a][i]) / v;
+				dir = -1;
+			} else {
+				continue;
+			}
+			if (dt < best) {
+				best = dt;
+				bestAxis = a;
+				bestDir = dir;
+			}
+		}
+		if (bestAxis < 0) {
+			return best;
+		}
+		double time = t0[i] + Math.max(0.0, best);
+		push(time, CELL | (bestAxis << 2) | ((bestDir + 1) << 4), i, -1);
+		return time;
+	}
+
+	// When, if ever up to the horizon, two particles will touch. Particles
+	// already overlapping (e.g. placed so at random) collide at once if
+	// approaching.
+	private void predictPair(int i, int j, double horizon) {
+		// both at the current time
+		double ti = t0[i];
+		double tj = t0[j];
+		double t = Math.max(ti, tj);
+
+		double dx = (pos[0][j] + vel[0][j] * (t - tj)) - (pos[0][i] + vel[0][i] * (t - ti));
+		double dy = (pos[1][j] + vel[1][j] * (t - tj)) - (pos[1][i] + vel[1][i] * (t - ti));
+		double dz = (pos[2][j] + vel[2][j] * (t - tj)) - (pos[2][i] + vel[2][i] * (t - ti));
+		double ux = vel[0][j] - vel[0][i];
+		double uy = vel[1][j] - vel[1][i];
+		double uz = vel[2][j] - vel[2][i];
+
+		double b = dx * ux + dy * uy + dz * uz;
+		if (b >= 0.0) {
+			return; // separating
+		}
+		double u2 = ux * ux + uy * uy + uz * uz;
+		double sigma = 2.0 * radius;
+		double c = dx * dx + dy * dy + dz * dz - sigma * sigma;
+		double dt;
+		if (c <= 0.0) {
+			dt = 0.0;
+		} else {
+			double disc = b * b - u2 * c;
+			if (disc < 0.0) {
+				return; // miss
+			}
+			// the smaller root, in the form that does not cancel
+			dt = c / (-b + Math.sqrt(disc));
+		}
+		if (t + dt <= horizon) {
+			push(t + dt, PAIR, i, j);
+		}
+	}
+
+	// Queue an event, predicted with the current versions of its particles.
+	private void push(double time, int kind, int i, int j) {
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if (slotCount == eventI.length) {
+				int n = 2 * slotCount;
+				eventI = Arrays.copyOf(eventI, n);
+				eventJ = Arrays.copyOf(eventJ, n);
+				eventVersionI = Arrays.copyOf(eventVersionI, n);
+				eventVersionJ = Arrays.copyOf(eventVersionJ, n);
+				eventKind = Arrays.copyOf(eventKind, n);
+				freeSlots = Arrays.copyOf(freeSlots, n);
+			}
+			slot = slotCount++;
+		}
+		eventI[slot] = i;
+		eventJ[slot] = j;
+		eventVersionI[slot] = version[i];
+		eventVersionJ[slot] = (j >= 0) ? version[j] : 0;
+		eventKind[slot] = kind;
+
+		if (heapSize == heapTime.length) {
+			heapTime = Arrays.copyOf(heapTime, 2 * heapSize);
+			heapSlot = Arrays.copyOf(heapSlot, 2 * heapSize);
+		}
+		siftUp(heapSize++, time, slot);
+	}
+
+	// Remove the earliest event from the queue, returning its slot, which is
+	// free for reuse by the next push.
+	private int pop() {
+		int slot = heapSlot[0];
+		heapSize--;
+		if (heapSize > 0) {
+			siftDown(0, heapTime[heapSize], heapSlot[heapSize]);
+		}
+		freeSlots[freeCount++] = slot;
+		return slot;
+	}
+
+	// Remove the stale events and rebuild the heap.
+	private void purge() {
+		int kept = 0;
+		for (int k = 0; k < heapSize; k++) {
+			int slot = heapSlot[k];
+			if (isStale(slot)) {
+				freeSlots[freeCount++] = slot;
+			} else {
+				heapTime[kept] = heapTime[k];
+				heapSlot[kept] = slot;
+				kept++;
+			}
+		}
+		heapSize = kept;
+		for (int k = (heapSize >> 1) - 1; k >= 0; k--) {
+			siftDown(k, heapTime[k], heapSlot[k]);
+		}
+	}
+
+	private void siftUp(int k, double time, int slot) {
+		while (k > 0) {
+			int parent = (k - 1) >> 1;
+			if (heapTime[parent] <= time) {
+				break;
+			}
+			heapTime[k] = heapTime[parent];
+			heapSlot[k] = heapSlot[parent];
+			k = parent;
+		}
+		heapTime[k] = time;
+		heapSlot[k] = slot;
+	}
+
+	private void siftDown(int k, double time, int slot) {
+		int half = heapSize >> 1;
+		while (k < half) {
+			int child = 2 * k + 1;
+			if ((child + 1 < heapSize) && (heapTime[child + 1] < heapTime[child])) {
+				child++;
+			}
+			if (time <= heapTime[child]) {
+				break;
+			}
+			heapTime[k] = heapTime[child];
+			heapSlot[k] = heapSlot[child];
+			k = child;
+		}
+		heapTime[k] = time;
+		heapSlot[k] = slot;
+	}
+
+	// Move a particle along its line to a time.
+	private void moveTo(int i, double t) {
+		double dt = t - t0[i];
+		if (dt != 0.0) {
+			pos[0][i] += vel[0][i] * dt;
+			pos[1][i] += vel[1][i] * dt;
+			pos[2][i] += vel[2][i] * dt;
+			t0[i] = t;
+		}
+	}
+
+	// Add a particle to the list of its cell.
+	private void link(int i) {
+		int c = cellIndex(cellOf[0][i], cellOf[1][i], cellOf[2][i]);
+		prev[i] = -1;
+		next[i] = head[c];
+		if (head[c] >= 0) {
+			prev[head[c]] = i;
+		}
+		head[c] = i;
+	}
+
+	// Remove a particle from the list of its cell.
+	private void unlink(int i) {
+		if (prev[i] >= 0) {
+			next[prev[i]] = next[i];
+		} else {
+			head[cellIndex(cellOf[0][i], cellOf[1][i], cellOf[2][i])] = next[i];
+		}
+		if (next[i] >= 0) {
+			prev[next[i]] = prev[i];
+		}
+	}
+
+	private int cellIndex(int cx, int cy, int cz) {
+		return (cx * side + cy) * side + cz;
+	}
+}
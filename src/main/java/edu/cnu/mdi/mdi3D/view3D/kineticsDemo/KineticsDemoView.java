@@ -6,10 +6,12 @@ import java.awt.Font;
 import edu.cnu.mdi.mdi3D.item3D.Axes3D;
 import edu.cnu.mdi.mdi3D.item3D.Cube;
 import edu.cnu.mdi.mdi3D.item3D.PointSet3D;
+import edu.cnu.mdi.mdi3D.panel.Bounds3D;
 import edu.cnu.mdi.mdi3D.panel.Panel3D;
 import edu.cnu.mdi.mdi3D.view3D.SimulationView3D;
 import edu.cnu.mdi.properties.PropertyUtils;
 import edu.cnu.mdi.sim.SimulationContext;
+import edu.cnu.mdi.sim.SimulationEngine;
 import edu.cnu.mdi.sim.SimulationEngineConfig;
 import edu.cnu.mdi.sim.SimulationState;
 
@@ -43,12 +45,18 @@ public class KineticsDemoView extends SimulationView3D {
 	// Track the time of the last applied snapshot (prevents redundant work)
 	private float lastAppliedTime = Float.NEGATIVE_INFINITY;
 
+	// the coordinate buffer of the last applied snapshot
+	private Object lastAppliedCoords;
+
 	// cube color (with alpha for transparency)
 	private static final Color cubeColor = new Color(0, 0, 0, 10);
 
 	// the PointSet3D that will display the particles (updated on EDT)
 	private PointSet3D particlePoints;
 
+	// true once the view has been closed
+	private boolean closed;
+
 	/**
 	 * Create a kinetics demo view with default parameters.
 	 *
@@ -71,8 +79,11 @@ public class KineticsDemoView extends SimulationView3D {
 
 	// Helper method to create the simulation instance with default parameters.
 	private static KineticsSimulation createSimulation() {
+		// Direct buffers: the positions go from the model to the GPU without a copy
 		KineticsModel model = new KineticsModel(DEFAULT_PARTICLE_COUNT, LENGTH, DEFAULT_VOLUME_FRACTION,
-				DEFAULT_INITIAL_TEMP);
+				DEFAULT_INITIAL_TEMP, true);
+		// Step on every core; the results do not depend on the thread count
+		model.setThreads(Runtime.getRuntime().availableProcessors());
 		// For this demo, entropy every update is fine. If you want faster throughput,
 		// try model.setEntropyEvery(2) or (3).
 		return new KineticsSimulation(model);
@@ -94,6 +105,13 @@ public class KineticsDemoView extends SimulationView3D {
 
 				// Initially empty point set (coords will be swapped in on refresh events)
 				particlePoints = new PointSet3D(this, null, Color.red, 1f, true);
+				particlePoints.setDynamic(true);
+
+				// the particles never leave the box, so its bounds need no scan
+				Bounds3D box = new Bounds3D();
+				box.include(0, 0, 0);
+				box.include(LENGTH, LENGTH, LENGTH);
+				particlePoints.setBounds(box);
 				addItem(particlePoints);
 			}
 		};
@@ -142,6 +160,11 @@ public class KineticsDemoView extends SimulationView3D {
 		if (to == SimulationState.TERMINATED || to == SimulationState.FAILED) {
 			// allow a restart to repaint from t=0
 			lastAppliedTime = Float.NEGATIVE_INFINITY;
+
+			// a closed view's simulation is not restarted
+			if (closed) {
+				getModel().dispose();
+			}
 		}
 	}
 
@@ -152,14 +175,27 @@ public class KineticsDemoView extends SimulationView3D {
 			return;
 		}
 
-		float t = snap.time();
-		if (t <= lastAppliedTime) {
+		// Getting the snapshot may have released the buffer the point set holds
+		// back to the simulation, so whenever the buffer changed it must be
+		// applied, even if its time is not newer (e.g. after a reset)
+		Object coords = (snap.coordBuffer() != null) ? snap.coordBuffer() : snap.coords();
+		if (coords == lastAppliedCoords) {
 			return;
 		}
+		lastAppliedCoords = coords;
 
 		if (particlePoints != null) {
 			// Direct buffer hand-off to JOGL PointSet3D (no per-particle loop on EDT)
-			particlePoints.setCoords(snap.coords());
+			if (snap.coordBuffer() != null) {
+				particlePoints.setCoords(snap.coordBuffer());
+			} else {
+				particlePoints.setCoords(snap.coords());
+			}
+		}
+
+		float t = snap.time();
+		if (t <= lastAppliedTime) {
+			return;
 		}
 
 		EntropyPlotPanel ep = getEntropyPanel();
@@ -207,9 +243,34 @@ public class KineticsDemoView extends SimulationView3D {
 	 * </p>
 	 */
 	public void requestReset() {
+		// The old model is released once its engine has stopped and been replaced
+		KineticsModel oldModel = getModel();
 		requestEngineReset(KineticsDemoView::createSimulation,
-				e -> ((KineticsSimulation) e.getSimulation()).setEngine(e),
+				e -> {
+					((KineticsSimulation) e.getSimulation()).setEngine(e);
+					oldModel.dispose();
+				},
 				true,
 				true);
 	}
+
+	/**
+	 * Stop the simulation when the view is closed. The model's threads are
+	 * released once the engine has stopped.
+	 */
+	@Override
+	public void dispose() {
+		closed = true;
+		SimulationEngine engine = getSimulationEngine();
+		if (engine != null) {
+			SimulationState state = engine.getState();
+			if ((state == SimulationState.NEW) || (state == SimulationState.READY)
+					|| (state == SimulationState.TERMINATED) || (state == SimulationState.FAILED)) {
+				getModel().dispose();
+			} else {
+				engine.requestStop();
+			}
+		}
+		super.dispose();
+	}
 }
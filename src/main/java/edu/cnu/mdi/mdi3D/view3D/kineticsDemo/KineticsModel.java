@@ -1,9 +1,17 @@
 package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
 
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A physics model simulating particles in a 3D box with elastic collisions.
@@ -13,27 +21,92 @@ import java.util.Random;
  * a reference to a packed {@code float[]} coordinate buffer.
  * </p>
  *
- * <h2>Double buffering (front/back)</h2>
+ * <h2>Structure of arrays</h2>
+ * The state is kept as one {@code float[]} per component (x, y, z, vx, vy,
+ * vz) rather than as particle objects, so a step streams through contiguous
+ * memory, and the step kernel writes the new positions of each range into the
+ * buffer being published while the range is still in cache. When the JVM
+ * was started with {@code --add-modules jdk.incubator.vector} the kernel moves
+ * whole vectors of particles with a {@link VectorStepKernel}, applying the
+ * walls without branches; otherwise it steps them one at a time.
+ *
+ * <h2>Triple buffering (back/middle/front)</h2>
  * <ul>
  *   <li>The simulation thread writes new positions into the <em>back</em> buffer.</li>
- *   <li>After the update, buffers are swapped so the <em>front</em> buffer is always
- *       the most recently completed frame.</li>
- *   <li>{@link #getSnapshot()} is <b>side-effect free</b> and simply returns the
- *       current front buffer.</li>
+ *   <li>After the update, the back buffer is published by exchanging it with the
+ *       <em>middle</em> buffer, which always holds the most recently completed
+ *       frame.</li>
+ *   <li>{@link #getSnapshot()} exchanges the consumer's <em>front</em> buffer for
+ *       the middle one if a newer frame was published. The front buffer is never
+ *       written by the simulation thread, so a snapshot stays intact until the
+ *       next {@link #getSnapshot()} releases it.</li>
  * </ul>
+ * Both exchanges are a single atomic swap of a slot index, so neither thread
+ * ever waits for the other.
+ *
+ * <h2>Parallel stepping</h2>
+ * With {@link #setThreads(int)} above one, each step splits the particles into
+ * one contiguous range per thread, aligned to cache lines so no two threads
+ * write the same line, and runs the ranges on the model's own fork/join pool,
+ * joining once per step. When the entropy is due, each range also bins its
+ * particles into a histogram of its own, and the partial histograms are summed
+ * after the join. The particles are independent and the counts are integers,
+ * so the results do not depend on the number of threads.
+ *
+ * <h2>Particle collisions</h2>
+ * With {@link #setParticleRadius(float)} positive the particles are hard
+ * spheres that also collide with each other. After each step a
+ * {@link CollisionGrid} sorts them into cells a diameter wide, in O(N), and
+ * only particles in neighboring cells are tested. Collisions are resolved
+ * on the pool when stepping in parallel, again independent of the number of
+ * threads.
+ *
+ * <h2>Event driven dynamics</h2>
+ * With {@link #setEventDriven(boolean)} the particles are not stepped at all:
+ * an {@link EventDrivenEngine} predicts every wall collision, particle
+ * collision and cell crossing and processes them in time order, and each
+ * update advances it by exactly the time step, which then only sets the
+ * interval between published frames. No collision is missed at any time
+ * step, and a dilute gas takes far fewer operations than fixed stepping.
+ *
+ * <h2>Direct buffers</h2>
+ * A model created with <code>direct</code> set keeps its buffers as direct,
+ * native ordered {@link FloatBuffer}s instead of arrays, and the snapshot
+ * carries the buffer. The positions are then written once, into
+ * native memory, and uploaded to the GPU from there without another copy.
  */
 public class KineticsModel {
 	// This is the complete internal state of the simulation, including velocities.
 	// The public snapshot only exposes positions (raw coords), which is all the GUI needs.
 
-	private final List<PhysicsParticle> internalState = new ArrayList<>();
+	private int count;
+	private float[] x, y, z;
+	private float[] vx, vy, vz;
 	private final float length; // side length of bounding cube
 
-	// Double buffers for coordinates (packed x,y,z)
-	private final float[] bufferA;
-	private final float[] bufferB;
-	private volatile float[] frontBuffer;
-	private volatile float[] backBuffer;
+	// true if the coordinate buffers are direct
+	private final boolean direct;
+
+	// Triple buffers for coordinates (packed x,y,z), as arrays or, if direct,
+	// as direct buffers. Indexed by slot.
+	private final float[][] arrays = new float[3][];
+	private final FloatBuffer[] directs = new FloatBuffer[3];
+
+	// The time and entropy of the frame in each slot
+	private final float[] slotTime = new float[3];
+	private final float[] slotEntropy = new float[3];
+
+	// The middle slot, or'ed with FRESH until the consumer takes it
+	private static final int FRESH = 4;
+	private static final int SLOT = 3;
+	private final AtomicInteger middle = new AtomicInteger(1);
+
+	// The slot written by the simulation thread, and the one held by the consumer
+	private int back = 0;
+	private int front = 2;
+
+	// the source of the initial positions and velocities
+	private final Random random;
 
 	private float temperature;
 	private float time = 0f;
@@ -46,6 +119,49 @@ public class KineticsModel {
 	private int entropyEvery = 1;
 	private int entropyCounter = 0;
 
+	// The cells per side of the entropy histogram
+	private static final int BINS = 10;
+
+	// Whether the vector API is resolved in this JVM, checked once
+	private static final boolean VECTOR = vectorAvailable();
+
+	// Particles per chunk boundary: 16 floats fill a 64 byte cache line
+	private static final int ALIGN = 16;
+
+	// Parallel stepping: the threads, their pool, one task per range, the
+	// histogram of each range, and whether the current step bins
+	private int threads = 1;
+	private ForkJoinPool pool;
+	private final List<Callable<Void>> rangeTasks = new ArrayList<>();
+	private int[][] partialHistograms;
+	private final int[] mergedHistogram = new int[BINS * BINS * BINS];
+	private boolean binning;
+
+	// The particle radius, 0 if the particles pass through each other, and the
+	// cell grid that finds the touching pairs
+	private float particleRadius = 0f;
+	private CollisionGrid collisionGrid;
+
+	// Event driven dynamics instead of fixed steps, and the engine, created
+	// from the state on the first update. Setters on other threads only flag
+	// the engine as stale; the simulation thread drops it at its next update.
+	private boolean eventDriven;
+	private EventDrivenEngine eventEngine;
+	private volatile boolean eventEngineStale;
+
+	// The vector kernel needs the incubator module, which is resolved only if
+	// the JVM was started with it. Loading the kernel class fails without it.
+	private static boolean vectorAvailable() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return false;
+		}
+		try {
+			return VectorStepKernel.laneCount() > 1;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Initializes the simulation.
 	 *
@@ -55,37 +171,83 @@ public class KineticsModel {
 	 * @param initialTemp    initial "temperature" (sets RMS speed; sigma = sqrt(T))
 	 */
 	public KineticsModel(int count, float length, float volumeFraction, float initialTemp) {
+		this(count, length, volumeFraction, initialTemp, false);
+	}
+
+	/**
+	 * Initializes the simulation.
+	 *
+	 * @param count          number of particles
+	 * @param length         side length of the bounding cube
+	 * @param volumeFraction fraction of the cube to populate initially (e.g. 0.25)
+	 * @param initialTemp    initial "temperature" (sets RMS speed; sigma = sqrt(T))
+	 * @param direct         if true, keep the coordinates in direct buffers that
+	 *                       the renderer can upload without copying
+	 */
+	public KineticsModel(int count, float length, float volumeFraction, float initialTemp, boolean direct) {
+		this(count, length, volumeFraction, initialTemp, direct, new Random());
+	}
+
+	// As above, with the initial states drawn from the given source, so runs can
+	// be repeated
+	KineticsModel(int count, float length, float volumeFraction, float initialTemp, boolean direct,
+			Random random) {
+		this.random = random;
 		this.temperature = initialTemp;
 		this.length = length;
-		this.bufferA = new float[count * 3];
-		this.bufferB = new float[count * 3];
-		this.frontBuffer = bufferA;
-		this.backBuffer = bufferB;
-
-		Random rnd = new Random();
+		this.direct = direct;
 
 		// Initialize particles in a sub-cube to create a low-entropy starting state.
-		float subBound = length * volumeFraction;
+		initializeParticles(count, length * volumeFraction);
+
+		// Publish the initial positions
+		lastEntropy = computeEntropy();
+		publishPositions();
+	}
+
+	// Allocate the state and buffers for count particles, and place them at
+	// random in the sub-cube with Maxwell-Boltzmann velocities.
+	private void initializeParticles(int count, float subBound) {
+		if ((x == null) || (this.count != count)) {
+			this.count = count;
+			x = new float[count];
+			y = new float[count];
+			z = new float[count];
+			vx = new float[count];
+			vy = new float[count];
+			vz = new float[count];
+
+			// The ranges of a parallel step depend on the count
+			rangeTasks.clear();
+
+			// New buffers for every slot: a snapshot still held keeps its old one
+			for (int slot = 0; slot < 3; slot++) {
+				if (direct) {
+					directs[slot] = allocateDirect(count * 3);
+				} else {
+					arrays[slot] = new float[count * 3];
+				}
+			}
+		}
+
+		// An event driven engine holds its own copy of the state
+		eventEngineStale = true;
+
+		Random rnd = random;
 
 		// In sim units, sigma = sqrt(T)
 		float sigma = (float) Math.sqrt(temperature);
 
 		for (int i = 0; i < count; i++) {
-			float px = rnd.nextFloat() * subBound;
-			float py = rnd.nextFloat() * subBound;
-			float pz = rnd.nextFloat() * subBound;
+			x[i] = rnd.nextFloat() * subBound;
+			y[i] = rnd.nextFloat() * subBound;
+			z[i] = rnd.nextFloat() * subBound;
 
 			// Gaussian velocities create a Maxwell-Boltzmann distribution
-			float vx = (float) (rnd.nextGaussian() * sigma);
-			float vy = (float) (rnd.nextGaussian() * sigma);
-			float vz = (float) (rnd.nextGaussian() * sigma);
-
-			internalState.add(new PhysicsParticle(px, py, pz, vx, vy, vz));
+			vx[i] = (float) (rnd.nextGaussian() * sigma);
+			vy[i] = (float) (rnd.nextGaussian() * sigma);
+			vz[i] = (float) (rnd.nextGaussian() * sigma);
 		}
-
-		// Seed the front buffer with the initial positions
-		initializeFrontBuffer();
-		lastEntropy = computeEntropy();
 	}
 
 	/**
@@ -94,7 +256,7 @@ public class KineticsModel {
 	 * @return particle count
 	 */
 	public int size() {
-		return internalState.size();
+		return count;
 	}
 
 	/**
@@ -117,13 +279,124 @@ public class KineticsModel {
 		this.entropyEvery = Math.max(1, every);
 	}
 
-	// Populate the initial coordinate buffer from the internal state.
-	private void initializeFrontBuffer() {
-		for (int i = 0; i < internalState.size(); i++) {
-			PhysicsParticle p = internalState.get(i);
-			frontBuffer[3 * i] = p.x;
-			frontBuffer[3 * i + 1] = p.y;
-			frontBuffer[3 * i + 2] = p.z;
+	/**
+	 * Set the number of threads that step the particles. Call between updates,
+	 * e.g. before the simulation starts. The results are the same for any
+	 * number of threads.
+	 *
+	 * @param threads the number of threads, 1 to step on the simulation thread
+	 *                alone
+	 */
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (threads == this.threads) {
+			return;
+		}
+		this.threads = threads;
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		rangeTasks.clear();
+	}
+
+	/**
+	 * Get the number of threads that step the particles.
+	 *
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Release the threads of the model's pool. Call once the model is no longer
+	 * updated, e.g. when its simulation is discarded. The model then steps on
+	 * the calling thread alone.
+	 */
+	public void dispose() {
+		setThreads(1);
+	}
+
+	/**
+	 * Set the radius of the particles. With a positive radius touching
+	 * particles collide elastically with each other, not only with the walls,
+	 * and bounce off a wall when their surface, not their center, reaches it.
+	 *
+	 * @param radius the particle radius, 0 for point particles that pass through
+	 *               each other
+	 */
+	public void setParticleRadius(float radius) {
+		particleRadius = Math.max(0f, radius);
+		eventEngineStale = true;
+	}
+
+	/**
+	 * Get the radius of the particles.
+	 *
+	 * @return the particle radius, 0 for point particles
+	 */
+	public float getParticleRadius() {
+		return particleRadius;
+	}
+
+	/**
+	 * Set whether the particles are moved by an {@link EventDrivenEngine}
+	 * rather than in fixed steps. Each update then advances the model by exactly
+	 * the time step, processing every wall and particle collision in it at its
+	 * exact time, so the time step only sets how often a frame is published.
+	 * The event driven engine runs on the simulation thread alone.
+	 *
+	 * @param eventDriven <code>true</code> for event driven dynamics
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+		eventEngineStale = true;
+	}
+
+	/**
+	 * Check whether the particles are moved by an event driven engine.
+	 *
+	 * @return <code>true</code> for event driven dynamics
+	 */
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+
+	// A native ordered direct buffer of the given number of floats.
+	private static FloatBuffer allocateDirect(int floats) {
+		return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	// Write the current positions into the back buffer and publish them.
+	private void publishPositions() {
+		writePositions();
+		publish();
+	}
+
+	// Write the current positions into the back buffer.
+	private void writePositions() {
+		writePositions(0, count);
+	}
+
+	// Write the positions of particles [from, to) into the back buffer, with
+	// absolute puts into a direct buffer so its position (which the renderer
+	// reads) is never moved.
+	private void writePositions(int from, int to) {
+		if (direct) {
+			final FloatBuffer out = directs[back];
+			for (int i = from; i < to; i++) {
+				out.put(3 * i, x[i]);
+				out.put(3 * i + 1, y[i]);
+				out.put(3 * i + 2, z[i]);
+			}
+		} else {
+			final float[] out = arrays[back];
+			for (int i = from; i < to; i++) {
+				out[3 * i] = x[i];
+				out[3 * i + 1] = y[i];
+				out[3 * i + 2] = z[i];
+			}
 		}
 	}
 
@@ -134,48 +407,217 @@ public class KineticsModel {
 	 * </p>
 	 */
 	public void update() {
-		// Write into backBuffer
-		final float[] out = backBuffer;
+		// Drop an engine whose state was changed from another thread
+		if (eventEngineStale) {
+			eventEngineStale = false;
+			eventEngine = null;
+		}
+
+		// Entropy (optionally rate-limited)
+		entropyCounter++;
+		boolean entropyDue = entropyCounter >= entropyEvery;
+		if (entropyDue) {
+			entropyCounter = 0;
+		}
 
-		for (int i = 0; i < internalState.size(); i++) {
-			PhysicsParticle p = internalState.get(i);
-			p.move(timeStep, length);
+		// Move the particles, writing the new positions into the back buffer
+		if (eventDriven) {
+			eventStep();
+			if (entropyDue) {
+				lastEntropy = computeEntropy();
+			}
+		} else if (threads > 1) {
+			parallelStep(entropyDue);
+		} else {
+			step(0, count);
+			if (entropyDue) {
+				lastEntropy = computeEntropy();
+			}
+		}
 
-			out[3 * i] = p.x;
-			out[3 * i + 1] = p.y;
-			out[3 * i + 2] = p.z;
+		// Particle collisions change only velocities, so the positions just
+		// written stay valid
+		if ((particleRadius > 0f) && !eventDriven) {
+			collide();
 		}
 
 		time += timeStep;
 
-		// Entropy (optionally rate-limited)
-		entropyCounter++;
-		if (entropyCounter >= entropyEvery) {
-			lastEntropy = computeEntropy();
-			entropyCounter = 0;
+		// Publish the back buffer so the finished frame becomes visible to the EDT.
+		publish();
+	}
+
+	// Advance the event driven engine by one time step and write the positions.
+	private void eventStep() {
+		EventDrivenEngine engine = eventEngine;
+		if (engine == null) {
+			engine = new EventDrivenEngine(x, y, z, vx, vy, vz, count, length, particleRadius);
+			eventEngine = engine;
+		}
+		engine.advance(timeStep, x, y, z, vx, vy, vz);
+		writePositions();
+	}
+
+	// Collide touching particles, on the pool if stepping in parallel.
+	private void collide() {
+		if (collisionGrid == null) {
+			collisionGrid = new CollisionGrid();
+		}
+		if ((threads > 1) && (pool == null)) {
+			pool = new ForkJoinPool(threads);
+		}
+		collisionGrid.resolve(x, y, z, vx, vy, vz, count, particleRadius, (threads > 1) ? pool : null, threads);
+	}
+
+	// One step on the pool: every range is stepped (and binned) by its own
+	// task, and invokeAll is the single barrier of the step.
+	private void parallelStep(boolean entropyDue) {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		if (rangeTasks.isEmpty()) {
+			buildRangeTasks();
+		}
+
+		// Written before invokeAll, so the tasks see them
+		binning = entropyDue;
+
+		try {
+			for (Future<Void> future : pool.invokeAll(rangeTasks)) {
+				future.get();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("KineticsModel: parallel step failed", e);
 		}
 
-		// Swap front/back so the finished frame becomes visible to the EDT.
-		swapBuffers();
+		if (entropyDue) {
+			// Integer sums in a fixed order: the same for any number of ranges
+			int[] histogram = mergedHistogram;
+			Arrays.fill(histogram, 0);
+			for (int[] partial : partialHistograms) {
+				for (int k = 0; k < histogram.length; k++) {
+					histogram[k] += partial[k];
+				}
+			}
+			lastEntropy = entropyOf(histogram);
+		}
+	}
+
+	// Split the particles into one range per thread, on cache line boundaries.
+	private void buildRangeTasks() {
+		int per = (count + threads - 1) / threads;
+		per = ((per + ALIGN - 1) / ALIGN) * ALIGN;
+
+		int ranges = Math.max(1, (count + per - 1) / Math.max(1, per));
+		partialHistograms = new int[ranges][BINS * BINS * BINS];
+
+		for (int r = 0; r < ranges; r++) {
+			final int from = r * per;
+			final int to = Math.min(count, from + per);
+			final int[] partial = partialHistograms[r];
+			rangeTasks.add(() -> {
+				step(from, to);
+				if (binning) {
+					Arrays.fill(partial, 0);
+					bin(from, to, partial);
+				}
+				return null;
+			});
+		}
 	}
 
-	// Single point of truth for swapping buffers.
-	private void swapBuffers() {
-		final float[] oldFront = frontBuffer;
-		frontBuffer = backBuffer;
-		backBuffer = oldFront;
+	// Count particles [from, to) into a histogram of BINS^3 cells.
+	private void bin(int from, int to, int[] histogram) {
+		final float cell = length / BINS;
+		for (int i = from; i < to; i++) {
+			int hx = Math.min((int) (x[i] / cell), BINS - 1);
+			int hy = Math.min((int) (y[i] / cell), BINS - 1);
+			int hz = Math.min((int) (z[i] / cell), BINS - 1);
+			histogram[(hx * BINS + hy) * BINS + hz]++;
+		}
+	}
+
+	// The Shannon entropy of a histogram of all particles, in nats.
+	private float entropyOf(int[] histogram) {
+		double entropy = 0.0;
+		for (int n : histogram) {
+			if (n > 0) {
+				double p = (double) n / count;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return (float) entropy;
+	}
+
+	// The step kernel for particles [from, to): move and apply the walls, then
+	// write the new positions into the buffer being published while the range
+	// is still in cache. Whole vectors go to the vector kernel when it is
+	// available. The scalar loop steps the rest: few particles hit a wall in
+	// any step, so its wall tests are almost always predicted correctly and
+	// cost less than branch free min/max/sign arithmetic, which the JIT does
+	// not vectorize.
+	private void step(int from, int to) {
+		final float dt = timeStep;
+
+		// A sphere's center stays a radius away from the walls
+		final float dmin = particleRadius;
+		final float dmax = length - particleRadius;
+		final float[] x = this.x, y = this.y, z = this.z;
+		final float[] vx = this.vx, vy = this.vy, vz = this.vz;
+
+		int start = VECTOR ? VectorStepKernel.step(x, y, z, vx, vy, vz, from, to, dt, dmin, dmax) : from;
+		for (int i = start; i < to; i++) {
+			float px = x[i] + vx[i] * dt;
+			float py = y[i] + vy[i] * dt;
+			float pz = z[i] + vz[i] * dt;
+
+			// Elastic collisions with walls (reverse velocity component, clamp)
+			if ((px < dmin) || (px > dmax)) {
+				vx[i] = -vx[i];
+				px = (px < dmin) ? dmin : dmax;
+			}
+			if ((py < dmin) || (py > dmax)) {
+				vy[i] = -vy[i];
+				py = (py < dmin) ? dmin : dmax;
+			}
+			if ((pz < dmin) || (pz > dmax)) {
+				vz[i] = -vz[i];
+				pz = (pz < dmin) ? dmin : dmax;
+			}
+
+			x[i] = px;
+			y[i] = py;
+			z[i] = pz;
+		}
+
+		writePositions(from, to);
+	}
+
+	// Single point of truth for publishing a frame: the finished back buffer
+	// becomes the middle one, and the previous middle buffer (never the one the
+	// consumer holds) becomes the next back buffer. The atomic swap also makes
+	// the buffer contents and slot values visible to the consumer.
+	private void publish() {
+		slotTime[back] = time;
+		slotEntropy[back] = lastEntropy;
+		back = middle.getAndSet(back | FRESH) & SLOT;
 	}
 
 	/**
 	 * Get an optimized snapshot of the most recently completed simulation state.
 	 * <p>
-	 * This method is side-effect free and safe to call from the EDT.
+	 * The snapshot's coordinates are not written by the simulation until the
+	 * next call, which releases them. There must be a single consumer, e.g. the
+	 * EDT; the call never blocks.
 	 * </p>
 	 *
 	 * @return snapshot containing a reference to the current front buffer
 	 */
 	public SimulationSnapshot<Particle> getSnapshot() {
-		return new SimulationSnapshot<>(null, frontBuffer, time, lastEntropy);
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & SLOT;
+		}
+		return new SimulationSnapshot<>(null, arrays[front], directs[front], slotTime[front], slotEntropy[front]);
 	}
 
 	/**
@@ -187,28 +629,9 @@ public class KineticsModel {
 	 * @return entropy in nats
 	 */
 	public float computeEntropy() {
-		int[][][] histogram = new int[10][10][10];
-		for (PhysicsParticle p : internalState) {
-			int hx = Math.min((int) (p.x / (length / 10f)), 9);
-			int hy = Math.min((int) (p.y / (length / 10f)), 9);
-			int hz = Math.min((int) (p.z / (length / 10f)), 9);
-			histogram[hx][hy][hz]++;
-		}
-
-		double entropy = 0.0;
-		int totalParticles = internalState.size();
-		for (int x = 0; x < 10; x++) {
-			for (int y = 0; y < 10; y++) {
-				for (int z = 0; z < 10; z++) {
-					int count = histogram[x][y][z];
-					if (count > 0) {
-						double p = (double) count / totalParticles;
-						entropy -= p * Math.log(p);
-					}
-				}
-			}
-		}
-		return (float) entropy;
+		int[] histogram = new int[BINS * BINS * BINS];
+		bin(0, count, histogram);
+		return entropyOf(histogram);
 	}
 
 	/**
@@ -225,76 +648,25 @@ public class KineticsModel {
 		float newSigma = (float) Math.sqrt(this.temperature);
 		float ratio = newSigma / oldSigma;
 
-		for (PhysicsParticle p : internalState) {
-			p.vx *= ratio;
-			p.vy *= ratio;
-			p.vz *= ratio;
-		}
-	}
-
-	/**
-	 * Internal mutable class for physics calculations.
-	 * Keeps velocity out of the public snapshot.
-	 */
-	private static class PhysicsParticle {
-		float x, y, z;
-		float vx, vy, vz;
-
-		PhysicsParticle(float x, float y, float z, float vx, float vy, float vz) {
-			this.x = x;
-			this.y = y;
-			this.z = z;
-			this.vx = vx;
-			this.vy = vy;
-			this.vz = vz;
+		for (int i = 0; i < count; i++) {
+			vx[i] *= ratio;
+			vy[i] *= ratio;
+			vz[i] *= ratio;
 		}
 
-		void move(float dt, float dmax) {
-			// Update position
-			x += vx * dt;
-			y += vy * dt;
-			z += vz * dt;
-
-			// Elastic collisions with walls (reverse velocity component)
-			if (x < 0 || x > dmax) {
-				vx *= -1;
-				x = Math.max(0, Math.min(dmax, x));
-			}
-			if (y < 0 || y > dmax) {
-				vy *= -1;
-				y = Math.max(0, Math.min(dmax, y));
-			}
-			if (z < 0 || z > dmax) {
-				vz *= -1;
-				z = Math.max(0, Math.min(dmax, z));
-			}
-		}
+		// An event driven engine holds its own copy of the velocities
+		eventEngineStale = true;
 	}
 
 	// Optional reset method to reinitialize the simulation with new parameters.
 	public void reset(int count, float length, float volumeFraction, float initialTemp) {
-		internalState.clear();
 		this.temperature = initialTemp;
 		this.time = 0f;
 
-		Random rnd = new Random();
-		float subBound = length * volumeFraction;
-		float sigma = (float) Math.sqrt(temperature);
-
-		for (int i = 0; i < count; i++) {
-			float px = rnd.nextFloat() * subBound;
-			float py = rnd.nextFloat() * subBound;
-			float pz = rnd.nextFloat() * subBound;
-
-			float vx = (float) (rnd.nextGaussian() * sigma);
-			float vy = (float) (rnd.nextGaussian() * sigma);
-			float vz = (float) (rnd.nextGaussian() * sigma);
-
-			internalState.add(new PhysicsParticle(px, py, pz, vx, vy, vz));
-		}
+		initializeParticles(count, length * volumeFraction);
 
-		initializeFrontBuffer();
 		lastEntropy = computeEntropy();
+		publishPositions();
 	}
 
 }
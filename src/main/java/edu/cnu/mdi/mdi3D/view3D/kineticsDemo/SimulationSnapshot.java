@@ -1,10 +1,28 @@
 package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
 
+import java.nio.FloatBuffer;
+
 /**
- * Optimized snapshot containing raw coordinates for OpenGL.
+ * Optimized snapshot containing raw coordinates for OpenGL. The coordinates
+ * are either a heap array or, for a model writing straight into native memory,
+ * a direct buffer that can be uploaded without a copy; the other is
+ * <code>null</code>.
  */
 public record SimulationSnapshot<T>(java.util.List<T> entities,
 		float[] coords,
+		FloatBuffer coordBuffer,
 		float time,
 		float entropy) {
-}
\ No newline at end of file
+
+	/**
+	 * Create a snapshot of heap coordinates.
+	 *
+	 * @param entities the entities, may be <code>null</code>
+	 * @param coords   the coordinates as [x1, y1, z1, ..., xn, yn, zn]
+	 * @param time     the simulation time
+	 * @param entropy  the entropy
+	 */
+	public SimulationSnapshot(java.util.List<T> entities, float[] coords, float time, float entropy) {
+		this(entities, coords, null, time, entropy);
+	}
+}
@@ -0,0 +1,77 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link KineticsModel} step kernel written with the
+ * {@code jdk.incubator.vector} API, for the widest vectors the CPU has.
+ * <p>
+ * The walls are applied without branches: the lanes outside the walls have
+ * their velocity negated under a mask, and every position is clamped with
+ * min and max. The results are bit for bit those of the scalar kernel.
+ * <p>
+ * The incubator module is only resolved when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}. Without it this class cannot be
+ * loaded, so the model only calls it after {@link #laneCount()} succeeded
+ * and otherwise uses its scalar kernel.
+ */
+final class VectorStepKernel {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private VectorStepKernel() {
+	}
+
+	/**
+	 * Get the number of particles stepped at once. This is the first use of
+	 * the class, so without the incubator module it throws a
+	 * {@link LinkageError}.
+	 *
+	 * @return the lanes of the preferred float vector
+	 */
+	static int laneCount() {
+		return SPECIES.length();
+	}
+
+	/**
+	 * Move the particles of a range and apply the walls, for as many whole
+	 * vectors as fit in it.
+	 *
+	 * @param x    the x positions
+	 * @param y    the y positions
+	 * @param z    the z positions
+	 * @param vx   the x velocities
+	 * @param vy   the y velocities
+	 * @param vz   the z velocities
+	 * @param from the first particle
+	 * @param to   one past the last particle
+	 * @param dt   the time step
+	 * @param dmin the lowest coordinate of a center
+	 * @param dmax the highest coordinate of a center
+	 * @return the first particle not stepped, for the scalar kernel to finish
+	 */
+	static int step(float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz, int from, int to, float dt,
+			float dmin, float dmax) {
+		int end = from + SPECIES.loopBound(to - from);
+		int i = from;
+		for (; i < end; i += SPECIES.length()) {
+			stepAxis(x, vx, i, dt, dmin, dmax);
+			stepAxis(y, vy, i, dt, dmin, dmax);
+			stepAxis(z, vz, i, dt, dmin, dmax);
+		}
+		return i;
+	}
+
+	// One axis of one vector of particles
+	private static void stepAxis(float[] p, float[] v, int i, float dt, float dmin, float dmax) {
+		FloatVector vel = FloatVector.fromArray(SPECIES, v, i);
+		FloatVector pos = FloatVector.fromArray(SPECIES, p, i).add(vel.mul(dt));
+
+		VectorMask<Float> out = pos.lt(dmin).or(pos.compare(VectorOperators.GT, dmax));
+		vel.lanewise(VectorOperators.NEG, out).intoArray(v, i);
+		pos.max(dmin).min(dmax).intoArray(p, i);
+	}
+}
@@ -0,0 +1,111 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Behaviour of the {@link CollisionGrid}: results that do not depend on the
+ * number of threads, and no touching pair left approaching.
+ */
+class CollisionGridTest {
+
+	private static final int COUNT = 3_000;
+	private static final float RADIUS = 0.01f;
+
+	// a gas packed densely enough into part of the unit box that many pairs touch
+	private final float[] x = new float[COUNT], y = new float[COUNT], z = new float[COUNT];
+	private final float[] vx = new float[COUNT], vy = new float[COUNT], vz = new float[COUNT];
+
+	CollisionGridTest() {
+		Random rnd = new Random(7);
+		for (int i = 0; i < COUNT; i++) {
+			x[i] = 0.3f * rnd.nextFloat();
+			y[i] = 0.3f * rnd.nextFloat();
+			z[i] = 0.3f * rnd.nextFloat();
+			vx[i] = (float) rnd.nextGaussian();
+			vy[i] = (float) rnd.nextGaussian();
+			vz[i] = (float) rnd.nextGaussian();
+		}
+	}
+
+	/**
+	 * Resolving on any number of threads gives exactly the velocities of
+	 * resolving on the calling thread.
+	 */
+	@Test
+	void resultDoesNotDependOnThreads() {
+		float[][] serial = resolve(null, 1);
+
+		for (int threads : new int[] { 2, 3, 8 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				float[][] parallel = resolve(pool, threads);
+				for (int k = 0; k < 3; k++) {
+					assertArrayEquals(serial[k], parallel[k], "velocities differ with " + threads + " threads");
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * After a resolve no overlapping pair is still approaching, so no overlap
+	 * grows in the next step, and the collisions conserve momentum and energy.
+	 */
+	@Test
+	void noOverlappingPairLeftApproaching() {
+		float[][] v = resolve(null, 1);
+
+		float minDist2 = 4f * RADIUS * RADIUS;
+		int touching = 0;
+		for (int i = 0; i < COUNT; i++) {
+			for (int j = i + 1; j < COUNT; j++) {
+				float dx = x[j] - x[i];
+				float dy = y[j] - y[i];
+				float dz = z[j] - z[i];
+				float d2 = dx * dx + dy * dy + dz * dz;
+				if ((d2 < minDist2) && (d2 > 0f)) {
+					touching++;
+					float dot = (v[0][j] - v[0][i]) * dx + (v[1][j] - v[1][i]) * dy + (v[2][j] - v[2][i]) * dz;
+					assertTrue(dot >= -1e-4f * (float) Math.sqrt(d2), "particles " + i + " and " + j + " still approach");
+				}
+			}
+		}
+		assertTrue(touching > 0, "no touching pairs were tested");
+
+		assertEquals(sum(vx), sum(v[0]), 1e-2);
+		assertEquals(sum(vy), sum(v[1]), 1e-2);
+		assertEquals(sum(vz), sum(v[2]), 1e-2);
+		assertEquals(energy(vx, vy, vz), energy(v[0], v[1], v[2]), 1e-3 * energy(vx, vy, vz));
+	}
+
+	// resolve a copy of the velocities
+	private float[][] resolve(ForkJoinPool pool, int threads) {
+		float[] ux = vx.clone(), uy = vy.clone(), uz = vz.clone();
+		new CollisionGrid().resolve(x, y, z, ux, uy, uz, COUNT, RADIUS, pool, threads);
+		return new float[][] { ux, uy, uz };
+	}
+
+	private static double sum(float[] v) {
+		double s = 0;
+		for (float f : v) {
+			s += f;
+		}
+		return s;
+	}
+
+	private static double energy(float[] ux, float[] uy, float[] uz) {
+		double e = 0;
+		for (int i = 0; i < ux.length; i++) {
+			e += ux[i] * ux[i] + uy[i] * uy[i] + uz[i] * uz[i];
+		}
+		return 0.5 * e;
+	}
+}
@@ -0,0 +1,98 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Behaviour of the {@link EventDrivenEngine}: over many events the kinetic
+ * energy is conserved, no particle leaves the box, and no two overlap.
+ */
+class EventDrivenEngineTest {
+
+	private static final int SIDE = 10;
+	private static final int COUNT = SIDE * SIDE * SIDE;
+	private static final float LENGTH = 1f;
+
+	// slack for the single precision state written back
+	private static final float TOLERANCE = 1e-4f;
+
+	private final float[] x = new float[COUNT], y = new float[COUNT], z = new float[COUNT];
+	private final float[] vx = new float[COUNT], vy = new float[COUNT], vz = new float[COUNT];
+
+	// the particles on a lattice, so none overlap, with random velocities
+	EventDrivenEngineTest() {
+		Random rnd = new Random(11);
+		float spacing = LENGTH / SIDE;
+		for (int i = 0; i < COUNT; i++) {
+			x[i] = (i % SIDE + 0.5f) * spacing;
+			y[i] = ((i / SIDE) % SIDE + 0.5f) * spacing;
+			z[i] = (i / (SIDE * SIDE) + 0.5f) * spacing;
+			vx[i] = (float) rnd.nextGaussian();
+			vy[i] = (float) rnd.nextGaussian();
+			vz[i] = (float) rnd.nextGaussian();
+		}
+	}
+
+	/**
+	 * Hard spheres conserve energy, stay in the box, and never overlap.
+	 */
+	@Test
+	void spheresConserveEnergyAndStayInBox() {
+		run(0.02f, true);
+	}
+
+	/**
+	 * Point particles, which only hit the walls, conserve energy and stay in
+	 * the box.
+	 */
+	@Test
+	void pointsConserveEnergyAndStayInBox() {
+		run(0f, false);
+	}
+
+	private void run(float radius, boolean checkOverlap) {
+		double energy = energy();
+		EventDrivenEngine engine = new EventDrivenEngine(x, y, z, vx, vy, vz, COUNT, LENGTH, radius);
+
+		for (int step = 0; step < 200; step++) {
+			engine.advance(0.01, x, y, z, vx, vy, vz);
+			assertInBox(radius, step);
+			assertEquals(energy, energy(), 1e-5 * energy, "energy changed at step " + step);
+		}
+		assertTrue(engine.getEventCount() > COUNT, "too few events: " + engine.getEventCount());
+
+		if (checkOverlap) {
+			float minDist = 2f * radius - TOLERANCE;
+			for (int i = 0; i < COUNT; i++) {
+				for (int j = i + 1; j < COUNT; j++) {
+					float dx = x[j] - x[i];
+					float dy = y[j] - y[i];
+					float dz = z[j] - z[i];
+					assertTrue(dx * dx + dy * dy + dz * dz >= minDist * minDist,
+							"particles " + i + " and " + j + " overlap");
+				}
+			}
+		}
+	}
+
+	private void assertInBox(float radius, int step) {
+		float lo = radius - TOLERANCE;
+		float hi = LENGTH - radius + TOLERANCE;
+		for (int i = 0; i < COUNT; i++) {
+			assertTrue((x[i] >= lo) && (x[i] <= hi) && (y[i] >= lo) && (y[i] <= hi) && (z[i] >= lo) && (z[i] <= hi),
+					"particle " + i + " escaped at step " + step);
+		}
+	}
+
+	private double energy() {
+		double e = 0;
+		for (int i = 0; i < COUNT; i++) {
+			e += vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i];
+		}
+		return 0.5 * e;
+	}
+}
@@ -0,0 +1,94 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Behaviour of the {@link KineticsModel}: the triple buffered hand-off of the
+ * positions to a consumer, and parallel steps that match the serial ones.
+ */
+class KineticsModelTest {
+
+	/**
+	 * While the simulation thread keeps updating, a snapshot's coordinates are
+	 * never written until the consumer takes the next snapshot, and the frames
+	 * it sees never go back in time.
+	 */
+	@Test
+	void snapshotIsNeverWrittenWhileHeld() throws Exception {
+		KineticsModel model = new KineticsModel(2_000, 1f, 0.25f, 0.01f);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Thread simulation = new Thread(() -> {
+			try {
+				while (running.get()) {
+					model.update();
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		simulation.start();
+
+		try {
+			float lastTime = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < 500; i++) {
+				SimulationSnapshot<Particle> snap = model.getSnapshot();
+				float[] coords = snap.coords();
+				float[] copy = Arrays.copyOf(coords, coords.length);
+
+				// give the simulation time to publish a few frames
+				Thread.sleep(0, 200_000);
+				Thread.yield();
+
+				assertArrayEquals(copy, coords, "a held snapshot was written");
+				assertTrue(snap.time() >= lastTime, "a snapshot went back in time");
+				lastTime = snap.time();
+			}
+		} finally {
+			running.set(false);
+			simulation.join();
+		}
+		assertNull(failure.get());
+	}
+
+	/**
+	 * From the same initial state, stepping on several threads gives exactly the
+	 * positions and entropy histogram of stepping on one, every step.
+	 */
+	@Test
+	void parallelStepMatchesSerialStep() {
+		// not a multiple of the cache line aligned ranges
+		final int count = 10_007;
+		KineticsModel serial = new KineticsModel(count, 1f, 0.25f, 0.01f, false, new Random(42));
+		KineticsModel parallel = new KineticsModel(count, 1f, 0.25f, 0.01f, false, new Random(42));
+		parallel.setThreads(4);
+
+		try {
+			for (int i = 0; i < 200; i++) {
+				serial.update();
+				parallel.update();
+
+				SimulationSnapshot<Particle> a = serial.getSnapshot();
+				SimulationSnapshot<Particle> b = parallel.getSnapshot();
+				assertArrayEquals(a.coords(), b.coords(), "positions differ at step " + i);
+
+				// the entropy is a function of the histogram alone
+				assertEquals(a.entropy(), b.entropy(), 0f, "histograms differ at step " + i);
+			}
+		} finally {
+			serial.dispose();
+			parallel.dispose();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package edu.cnu.mdi.mdi3D.view3D.kineticsDemo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Behaviour of the {@link VectorStepKernel}: the same positions and velocities
+ * as stepping the particles one at a time. Skipped unless the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorStepKernelTest {
+
+	private static final float DT = 0.05f;
+	private static final float DMIN = 0.01f;
+	private static final float DMAX = 0.99f;
+
+	/**
+	 * Vector steps, with many particles crossing the walls, match scalar steps
+	 * bit for bit.
+	 */
+	@Test
+	void matchesScalarStep() {
+		assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "no vector module");
+
+		// not a whole number of vectors, and fast enough that many hit walls
+		final int count = 1_003;
+		Random rnd = new Random(3);
+		float[][] a = new float[6][count];
+		for (float[] c : a) {
+			for (int i = 0; i < count; i++) {
+				c[i] = (c == a[0] || c == a[1] || c == a[2]) ? rnd.nextFloat() : 4f * (float) rnd.nextGaussian();
+			}
+		}
+		float[][] b = new float[6][];
+		for (int k = 0; k < 6; k++) {
+			b[k] = a[k].clone();
+		}
+
+		for (int s = 0; s < 50; s++) {
+			int start = VectorStepKernel.step(a[0], a[1], a[2], a[3], a[4], a[5], 0, count, DT, DMIN, DMAX);
+			assertTrue(start <= count);
+			scalarStep(a, start, count);
+			scalarStep(b, 0, count);
+		}
+		for (int k = 0; k < 6; k++) {
+			assertArrayEquals(b[k], a[k], "component " + k + " differs");
+		}
+	}
+
+	// The scalar wall rule of the model's kernel
+	private static void scalarStep(float[][] s, int from, int to) {
+		for (int axis = 0; axis < 3; axis++) {
+			float[] p = s[axis];
+			float[] v = s[axis + 3];
+			for (int i = from; i < to; i++) {
+				float q = p[i] + v[i] * DT;
+				if ((q < DMIN) || (q > DMAX)) {
+					v[i] = -v[i];
+					q = (q < DMIN) ? DMIN : DMAX;
+				}
+				p[i] = q;
+			}
+		}
+	}
+}